@@ -0,0 +1,191 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014-2020 Gary Rowe
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package org.hid4java.benchmarks;
+
+import org.hid4java.jna.HidApi;
+import org.hid4java.jna.HidApiLibrary;
+import org.hid4java.jna.HidDeviceInfoStructure;
+import org.hid4java.jna.HidDeviceStructure;
+import org.hid4java.jna.RoutingHidApiLibrary;
+import org.hid4java.simulated.SimulatedHidApiLibrary;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per call cost of reaching the same device through each backend of a {@link RoutingHidApiLibrary}
+ *
+ * By default both backends are simulated and see the same device, so "hidraw" and "libusb" show the
+ * routing overhead against "direct" (the device without a router). With <code>-p library=native</code> the
+ * real Linux variants are used against an attached device selected with <code>-p vendorId=... -p productId=...</code>
+ * so the routes compare hidraw and libusb transfers ("direct" is the default native variant). The write
+ * benchmark sends zero filled reports so only use a device that ignores them.
+ *
+ * @since 0.8.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BackendRoutingBenchmark {
+
+  @Param({"direct", RoutingHidApiLibrary.HIDRAW, RoutingHidApiLibrary.LIBUSB})
+  public String route;
+
+  @Param({"8", "64"})
+  public int reportLength;
+
+  /**
+   * Either "simulated" or "native"
+   */
+  @Param({"simulated"})
+  public String library;
+
+  /**
+   * The vendor ID of the native device (0 for any)
+   */
+  @Param({"0"})
+  public int vendorId;
+
+  /**
+   * The product ID of the native device (0 for any)
+   */
+  @Param({"0"})
+  public int productId;
+
+  private HidDeviceStructure device;
+  private byte[] inputBuffer;
+  private byte[] outputReport;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+
+    HidApi.logTraffic = false;
+    boolean simulated = "simulated".equals(library);
+    if (!simulated && !"native".equals(library)) {
+      throw new IllegalArgumentException("'library' must be simulated or native.");
+    }
+
+    if ("direct".equals(route)) {
+      if (simulated) {
+        HidApi.init(simulatedBackend());
+      } else {
+        HidApi.init();
+      }
+    } else {
+      RoutingHidApiLibrary routingLibrary;
+      if (simulated) {
+        routingLibrary = new RoutingHidApiLibrary();
+        routingLibrary.addBackend(RoutingHidApiLibrary.HIDRAW, simulatedBackend());
+        routingLibrary.addBackend(RoutingHidApiLibrary.LIBUSB, simulatedBackend());
+      } else {
+        routingLibrary = RoutingHidApiLibrary.createLinux();
+      }
+      routingLibrary.addRule(vendorId, productId, route);
+      HidApi.init(routingLibrary);
+    }
+
+    String path = firstPath();
+    device = path == null ? null : HidApi.open(path);
+    if (device == null) {
+      throw new IllegalStateException("Unable to open a device (attach one or use -p vendorId=... -p productId=...)");
+    }
+    HidApi.setNonBlocking(device, true);
+    inputBuffer = new byte[reportLength];
+    outputReport = new byte[reportLength];
+
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    HidApi.close(device);
+    HidApi.exit();
+  }
+
+  /**
+   * Non-blocking so an idle device measures the call rather than the wait
+   */
+  @Benchmark
+  public int read() {
+    return HidApi.read(device, inputBuffer);
+  }
+
+  @Benchmark
+  public int write() {
+    return HidApi.write(device, outputReport, reportLength, (byte) 0);
+  }
+
+  /**
+   * Includes merging and deduplicating the backend enumerations
+   */
+  @Benchmark
+  public int enumerate() {
+    int count = 0;
+    HidDeviceInfoStructure root = HidApi.enumerateDevices(0, 0);
+    for (HidDeviceInfoStructure info = root; info != null; info = info.next()) {
+      count++;
+    }
+    if (root != null) {
+      HidApi.freeEnumeration(root);
+    }
+    return count;
+  }
+
+  /**
+   * @return A backend with one device that always has input waiting
+   */
+  private HidApiLibrary simulatedBackend() {
+    SimulatedHidApiLibrary simulatedLibrary = new SimulatedHidApiLibrary(1);
+    simulatedLibrary.setInputReportRate(1_000_000);
+    simulatedLibrary.setInputReportLength(reportLength);
+    return simulatedLibrary;
+  }
+
+  private String firstPath() {
+    HidDeviceInfoStructure root = HidApi.enumerateDevices(vendorId, productId);
+    if (root == null) {
+      return null;
+    }
+    String firstPath = root.path;
+    HidApi.freeEnumeration(root);
+    return firstPath;
+  }
+
+}
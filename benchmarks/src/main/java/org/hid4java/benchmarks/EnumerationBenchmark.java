@@ -0,0 +1,105 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014-2020 Gary Rowe
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package org.hid4java.benchmarks;
+
+import org.hid4java.HidDevice;
+import org.hid4java.HidServicesSpecification;
+import org.hid4java.jna.HidApi;
+import org.hid4java.jna.HidDeviceInfoStructure;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Enumeration cost of reading the {@link HidDeviceInfoStructure} list from native memory and walking it
+ *
+ * This mirrors the work done on every scan by the device manager.
+ *
+ * @since 0.8.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EnumerationBenchmark {
+
+  @Param({"1", "16", "128"})
+  public int deviceCount;
+
+  private final HidServicesSpecification hidServicesSpecification = new HidServicesSpecification();
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    HidApi.init(new StubHidApiLibrary(deviceCount, 64));
+  }
+
+  /**
+   * @param blackhole Consumes the paths so the walk is not eliminated
+   */
+  @Benchmark
+  public void enumerate(Blackhole blackhole) {
+
+    HidDeviceInfoStructure root = HidApi.enumerateDevices(0, 0);
+    HidDeviceInfoStructure hidDeviceInfoStructure = root;
+    while (hidDeviceInfoStructure != null) {
+      blackhole.consume(hidDeviceInfoStructure.path);
+      hidDeviceInfoStructure = hidDeviceInfoStructure.next();
+    }
+    HidApi.freeEnumeration(root);
+
+  }
+
+  /**
+   * @param blackhole Consumes the devices so the walk is not eliminated
+   */
+  @Benchmark
+  public void enumerateToDevices(Blackhole blackhole) {
+
+    HidDeviceInfoStructure root = HidApi.enumerateDevices(0, 0);
+    HidDeviceInfoStructure hidDeviceInfoStructure = root;
+    while (hidDeviceInfoStructure != null) {
+      blackhole.consume(new HidDevice(hidDeviceInfoStructure, null, hidServicesSpecification));
+      hidDeviceInfoStructure = hidDeviceInfoStructure.next();
+    }
+    HidApi.freeEnumeration(root);
+
+  }
+
+}
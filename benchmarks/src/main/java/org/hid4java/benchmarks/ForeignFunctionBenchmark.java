@@ -0,0 +1,156 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014-2020 Gary Rowe
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package org.hid4java.benchmarks;
+
+import com.sun.jna.Native;
+import org.hid4java.ffm.ForeignHidApi;
+import org.hid4java.jna.HidApi;
+import org.hid4java.jna.HidApiLibrary;
+import org.hid4java.jna.HidDeviceInfoStructure;
+import org.hid4java.jna.HidDeviceStructure;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per call cost of the JNA binding against the java.lang.foreign binding of a native hidapi library
+ *
+ * Unlike the other benchmarks this calls real native code so it needs either an attached device (the
+ * first enumerated unless <code>-p path=...</code> is given) or a hidapi compatible loopback library
+ * (<code>-p library=/path/to/libhidapi.so</code>). The write and feature benchmarks send zero filled
+ * reports so only use a device that ignores them. The ffm binding needs Java 22 or later.
+ *
+ * @since 0.8.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ForeignFunctionBenchmark {
+
+  @Param({"jna", "ffm"})
+  public String binding;
+
+  @Param({"8", "64"})
+  public int reportLength;
+
+  /**
+   * The hidapi library to load instead of the bundled native variant (empty for the bundled one)
+   */
+  @Param({""})
+  public String library;
+
+  /**
+   * The device path (empty for the first enumerated device)
+   */
+  @Param({""})
+  public String path;
+
+  private HidDeviceStructure device;
+  private byte[] inputBuffer;
+  private byte[] outputReport;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+
+    boolean foreign = "ffm".equals(binding);
+    if (foreign && !ForeignHidApi.isSupported()) {
+      throw new IllegalStateException("The ffm binding requires Java 22 or later");
+    }
+
+    HidApi.logTraffic = false;
+    if (library.isEmpty()) {
+      HidApi.useForeignFunctionApi = foreign;
+      HidApi.init();
+    } else {
+      HidApiLibrary jnaLibrary = Native.load(library, HidApiLibrary.class);
+      HidApi.init(foreign ? ForeignHidApi.wrap(jnaLibrary) : jnaLibrary);
+    }
+
+    String devicePath = path.isEmpty() ? firstPath() : path;
+    device = devicePath == null ? null : HidApi.open(devicePath);
+    if (device == null) {
+      throw new IllegalStateException("Unable to open a device (attach one or use -p path=...)");
+    }
+    HidApi.setNonBlocking(device, true);
+    inputBuffer = new byte[reportLength];
+    outputReport = new byte[reportLength];
+
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    HidApi.close(device);
+  }
+
+  /**
+   * Non-blocking so an idle device measures the call rather than the wait
+   */
+  @Benchmark
+  public int read() {
+    return HidApi.read(device, inputBuffer);
+  }
+
+  @Benchmark
+  public int readTimeout() {
+    return HidApi.read(device, inputBuffer, 0);
+  }
+
+  @Benchmark
+  public int write() {
+    return HidApi.write(device, outputReport, reportLength, (byte) 0);
+  }
+
+  @Benchmark
+  public int getFeatureReport() {
+    return HidApi.getFeatureReport(device, inputBuffer, (byte) 0);
+  }
+
+  private static String firstPath() {
+    HidDeviceInfoStructure root = HidApi.enumerateDevices(0, 0);
+    if (root == null) {
+      return null;
+    }
+    String firstPath = root.path;
+    HidApi.freeEnumeration(root);
+    return firstPath;
+  }
+
+}
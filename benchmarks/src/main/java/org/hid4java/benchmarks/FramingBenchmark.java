@@ -0,0 +1,120 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014-2020 Gary Rowe
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package org.hid4java.benchmarks;
+
+import org.hid4java.framing.FramedHidDevice;
+import org.hid4java.framing.HidMessageCodec;
+import org.hid4java.framing.SequenceNumberedCodec;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Stop-and-wait packet upload against pipelined {@link FramedHidDevice} message upload
+ *
+ * The loopback device charges a fixed latency per output report (the interrupt OUT endpoint interval) and
+ * a round trip latency before the echo of a packet can be read. Stop-and-wait waits for every packet to come
+ * back before sending the next one, as typical firmware upload loops do, so it pays the round trip per packet.
+ *
+ * @since 0.8.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+public class FramingBenchmark {
+
+  private static final int PACKET_LENGTH = 64;
+
+  @Param({"60000"})
+  public int messageLength;
+
+  @Param({"125"})
+  public long writeLatencyMicros;
+
+  @Param({"1000"})
+  public long roundTripMicros;
+
+  private final byte[] ack = new byte[PACKET_LENGTH];
+
+  private byte[] message;
+  private HidMessageCodec codec;
+  private LoopbackHidDevice device;
+  private FramedHidDevice framedHidDevice;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+
+    message = new byte[messageLength];
+    new Random(1).nextBytes(message);
+
+    codec = new SequenceNumberedCodec();
+    device = new LoopbackHidDevice(TimeUnit.MICROSECONDS.toNanos(writeLatencyMicros), TimeUnit.MICROSECONDS.toNanos(roundTripMicros));
+    framedHidDevice = new FramedHidDevice(device, codec, PACKET_LENGTH, (byte) 0x00);
+
+  }
+
+  @Benchmark
+  public int stopAndWait() {
+
+    List<byte[]> packets = codec.encode(message, PACKET_LENGTH);
+    for (byte[] packet : packets) {
+      device.write(packet, PACKET_LENGTH, (byte) 0x00);
+      if (device.read(ack, 1000) <= 0) {
+        throw new IllegalStateException("Missing acknowledgement");
+      }
+    }
+    return packets.size();
+  }
+
+  @Benchmark
+  public byte[] pipelined() {
+
+    framedHidDevice.writeMessage(message);
+    // A single read of the reassembled echo stands in for the final acknowledgement
+    byte[] echo = framedHidDevice.readMessage(10000);
+    if (echo == null) {
+      throw new IllegalStateException("Missing echo");
+    }
+    return echo;
+  }
+
+}
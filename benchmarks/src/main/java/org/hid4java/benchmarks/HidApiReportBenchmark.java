@@ -0,0 +1,119 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014-2020 Gary Rowe
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package org.hid4java.benchmarks;
+
+import com.sun.jna.Memory;
+import com.sun.jna.Pointer;
+import org.hid4java.jna.HidApi;
+import org.hid4java.jna.HidDeviceStructure;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Report marshalling cost of the {@link HidApi} read, write and feature report calls
+ *
+ * Each call allocates a {@link org.hid4java.jna.WideStringBuffer} and copies the report in and out of native
+ * memory. The stub native side means the figures exclude the USB transfer entirely.
+ *
+ * @since 0.8.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HidApiReportBenchmark {
+
+  /**
+   * Report length excluding the report ID (full speed and high speed interrupt packets)
+   */
+  @Param({"8", "64", "1024"})
+  public int reportLength;
+
+  private HidDeviceStructure device;
+  private byte[] inputBuffer;
+  private byte[] outputReport;
+  private Memory encodedReport;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    HidApi.logTraffic = false;
+    HidApi.init(new StubHidApiLibrary(1, reportLength));
+    device = new HidDeviceStructure(new Pointer(1), "/dev/hidraw0");
+    inputBuffer = new byte[reportLength];
+    outputReport = new byte[reportLength];
+    encodedReport = HidApi.encodeReport(outputReport, reportLength, (byte) 0, true);
+  }
+
+  @Benchmark
+  public int read() {
+    return HidApi.read(device, inputBuffer);
+  }
+
+  @Benchmark
+  public int readTimeout() {
+    return HidApi.read(device, inputBuffer, 0);
+  }
+
+  @Benchmark
+  public int write() {
+    return HidApi.write(device, outputReport, reportLength, (byte) 0);
+  }
+
+  @Benchmark
+  public int writeEncoded() {
+    return HidApi.write(device, encodedReport);
+  }
+
+  @Benchmark
+  public Memory encodeReport() {
+    return HidApi.encodeReport(outputReport, reportLength, (byte) 0, true);
+  }
+
+  @Benchmark
+  public int getFeatureReport() {
+    return HidApi.getFeatureReport(device, inputBuffer, (byte) 0);
+  }
+
+  @Benchmark
+  public int sendFeatureReport() {
+    return HidApi.sendFeatureReport(device, outputReport, (byte) 0);
+  }
+
+}
@@ -0,0 +1,136 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014-2020 Gary Rowe
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package org.hid4java.benchmarks;
+
+import org.hid4java.HidDevice;
+import org.hid4java.HidDeviceGroup;
+import org.hid4java.HidServices;
+import org.hid4java.HidServicesSpecification;
+import org.hid4java.ScanMode;
+import org.hid4java.jna.HidApi;
+import org.hid4java.simulated.SimulatedHidApiLibrary;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One report pushed to many devices by a serial loop of writes against a {@link HidDeviceGroup} fan-out
+ *
+ * The devices are simulated with a fixed latency per output report standing in for the interrupt OUT
+ * endpoint interval and the native write call.
+ *
+ * @since 0.8.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+public class HidDeviceGroupBenchmark {
+
+  private static final int PACKET_LENGTH = 64;
+
+  @Param({"200"})
+  public int deviceCount;
+
+  @Param({"1000"})
+  public int writeLatencyMicros;
+
+  @Param({"32"})
+  public int maxConcurrency;
+
+  private final byte[] message = new byte[PACKET_LENGTH];
+
+  private HidServices hidServices;
+  private List<HidDevice> devices;
+  private HidDeviceGroup group;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+
+    HidApi.logTraffic = false;
+    SimulatedHidApiLibrary library = new SimulatedHidApiLibrary(deviceCount);
+    library.setInputReportRate(0);
+    library.setWriteLatencyMicros(writeLatencyMicros);
+
+    HidServicesSpecification specification = new HidServicesSpecification();
+    specification.setHidApiLibrary(library);
+    specification.setScanMode(ScanMode.NO_SCAN);
+    specification.setAutoShutdown(false);
+    hidServices = new HidServices(specification);
+
+    devices = hidServices.getAttachedHidDevices();
+    group = new HidDeviceGroup(devices, maxConcurrency);
+    if (!group.openAll(0).isAllSuccessful()) {
+      throw new IllegalStateException("Unable to open the simulated devices");
+    }
+
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    group.closeAll(0);
+    group.shutdown();
+    hidServices.shutdown();
+  }
+
+  @Benchmark
+  public int serial() {
+    int total = 0;
+    for (HidDevice device : devices) {
+      int bytesWritten = device.write(message, PACKET_LENGTH, (byte) 0x00);
+      if (bytesWritten < 0) {
+        throw new IllegalStateException("Write failed");
+      }
+      total += bytesWritten;
+    }
+    return total;
+  }
+
+  @Benchmark
+  public int group() {
+    HidDeviceGroup.GroupResult result = group.write(message, PACKET_LENGTH, (byte) 0x00, false);
+    if (!result.isAllSuccessful()) {
+      throw new IllegalStateException("Write failed");
+    }
+    return result.getSuccessCount();
+  }
+
+}
@@ -0,0 +1,127 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014-2020 Gary Rowe
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package org.hid4java.benchmarks;
+
+import org.hid4java.HidDevice;
+import org.hid4java.HidServicesListener;
+import org.hid4java.HidServicesSpecification;
+import org.hid4java.event.HidServicesEvent;
+import org.hid4java.event.HidServicesListenerList;
+import org.hid4java.jna.HidDeviceInfoStructure;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Dispatch cost of {@link HidServicesListenerList#fireHidDataReceived(HidDevice, byte[])}
+ *
+ * Each invocation fires a batch of events and waits until every listener has seen all of them, so the
+ * figure per event covers the hand off to the event workers as well as the delivery.
+ *
+ * @since 0.8.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ListenerDispatchBenchmark {
+
+  private static final int BATCH = 1000;
+
+  @Param({"1", "4"})
+  public int listenerCount;
+
+  private final AtomicLong delivered = new AtomicLong();
+  private final byte[] report = new byte[64];
+
+  private HidServicesListenerList listenerList;
+  private HidDevice hidDevice;
+  private long expected;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+
+    HidDeviceInfoStructure hidDeviceInfoStructure = new HidDeviceInfoStructure();
+    hidDeviceInfoStructure.path = "/dev/hidraw0";
+    hidDevice = new HidDevice(hidDeviceInfoStructure, null, new HidServicesSpecification());
+
+    listenerList = new HidServicesListenerList();
+    for (int i = 0; i < listenerCount; i++) {
+      listenerList.add(new HidServicesListener() {
+        @Override
+        public void hidDeviceAttached(HidServicesEvent event) {
+        }
+
+        @Override
+        public void hidDeviceDetached(HidServicesEvent event) {
+        }
+
+        @Override
+        public void hidFailure(HidServicesEvent event) {
+        }
+
+        @Override
+        public void hidDataReceived(HidServicesEvent event) {
+          delivered.incrementAndGet();
+        }
+      });
+    }
+
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(BATCH)
+  public long fireHidDataReceived() {
+
+    for (int i = 0; i < BATCH; i++) {
+      listenerList.fireHidDataReceived(hidDevice, report);
+    }
+
+    // Wait for delivery so that the worker queue cannot grow without bound
+    expected += (long) BATCH * listenerCount;
+    while (delivered.get() < expected) {
+      Thread.yield();
+    }
+
+    return expected;
+  }
+
+}
@@ -0,0 +1,403 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014-2020 Gary Rowe
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package org.hid4java.benchmarks;
+
+import org.hid4java.HidDevice;
+import org.hid4java.HidSelectionKey;
+import org.hid4java.HidSelector;
+import org.hid4java.HidServices;
+import org.hid4java.HidServicesListener;
+import org.hid4java.HidServicesSpecification;
+import org.hid4java.event.HidServicesEvent;
+import org.hid4java.metrics.LatencyHistogram;
+import org.hid4java.simulated.SimulatedHidApiLibrary;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.OperatingSystemMXBean;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * End to end load harness to provide the following to regression tracking:
+ * <ul>
+ * <li>Report arrival to <code>hidDataReceived</code> latency distribution through {@link HidServices}</li>
+ * <li>Reports dropped by the device buffer, delayed beyond a threshold or never delivered</li>
+ * <li>Process CPU per 1,000 reports/s and heap growth over the run</li>
+ * </ul>
+ *
+ * Each device count runs against a fresh {@link SimulatedHidApiLibrary} with automatic data read enabled, as
+ * an application would, or with a {@link HidSelector} of <code>--selectorThreads</code> pollers drained by a
+ * single consumer thread. Results are written as one JSON object per line (stdout or <code>--output</code>).
+ *
+ * Usage: <code>java -cp target/benchmarks.jar org.hid4java.benchmarks.LoadHarness [--devices 1,10,100,1000]
+ * [--rate 5] [--reportLength 64] [--dataReadInterval 500] [--warmup 2] [--duration 10] [--delayThreshold 1000]
+ * [--selectorThreads 0] [--output results.jsonl]</code>
+ *
+ * @since 0.8.0
+ */
+public class LoadHarness {
+
+  private final int[] deviceCounts;
+  private final double reportRate;
+  private final int reportLength;
+  private final int dataReadInterval;
+  private final int warmupSeconds;
+  private final int durationSeconds;
+  private final int delayThresholdMillis;
+  private final int selectorThreads;
+
+  public LoadHarness(int[] deviceCounts, double reportRate, int reportLength, int dataReadInterval, int warmupSeconds, int durationSeconds, int delayThresholdMillis, int selectorThreads) {
+
+    if (reportLength < SimulatedHidApiLibrary.TIMESTAMPED_REPORT_LENGTH || reportLength > 64) {
+      throw new IllegalArgumentException("'reportLength' must be between " + SimulatedHidApiLibrary.TIMESTAMPED_REPORT_LENGTH + " and 64.");
+    }
+    if (reportRate <= 0) {
+      throw new IllegalArgumentException("'reportRate' must be greater than zero.");
+    }
+
+    this.deviceCounts = deviceCounts;
+    this.reportRate = reportRate;
+    this.reportLength = reportLength;
+    this.dataReadInterval = dataReadInterval;
+    this.warmupSeconds = warmupSeconds;
+    this.durationSeconds = durationSeconds;
+    this.delayThresholdMillis = delayThresholdMillis;
+    this.selectorThreads = selectorThreads;
+  }
+
+  public static void main(String[] args) throws Exception {
+
+    Map<String, String> options = new LinkedHashMap<>();
+    options.put("devices", "1,10,100,1000");
+    options.put("rate", "5");
+    options.put("reportLength", "64");
+    options.put("dataReadInterval", String.valueOf(new HidServicesSpecification().getDataReadInterval()));
+    options.put("warmup", "2");
+    options.put("duration", "10");
+    options.put("delayThreshold", "1000");
+    options.put("selectorThreads", "0");
+    options.put("output", null);
+
+    for (int i = 0; i < args.length; i += 2) {
+      String name = args[i].startsWith("--") ? args[i].substring(2) : args[i];
+      if (!options.containsKey(name) || i + 1 >= args.length) {
+        throw new IllegalArgumentException("Unknown option or missing value: " + args[i] + " (options are " + options.keySet() + ")");
+      }
+      options.put(name, args[i + 1]);
+    }
+
+    String[] counts = options.get("devices").split(",");
+    int[] deviceCounts = new int[counts.length];
+    for (int i = 0; i < counts.length; i++) {
+      deviceCounts[i] = Integer.parseInt(counts[i].trim());
+    }
+
+    LoadHarness harness = new LoadHarness(
+      deviceCounts,
+      Double.parseDouble(options.get("rate")),
+      Integer.parseInt(options.get("reportLength")),
+      Integer.parseInt(options.get("dataReadInterval")),
+      Integer.parseInt(options.get("warmup")),
+      Integer.parseInt(options.get("duration")),
+      Integer.parseInt(options.get("delayThreshold")),
+      Integer.parseInt(options.get("selectorThreads"))
+    );
+
+    String output = options.get("output");
+    PrintWriter writer = output == null
+      ? new PrintWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8), true)
+      : new PrintWriter(new OutputStreamWriter(new FileOutputStream(output, true), StandardCharsets.UTF_8), true);
+    try {
+      harness.run(writer);
+    } finally {
+      writer.flush();
+      if (output != null) {
+        writer.close();
+      }
+    }
+  }
+
+  /**
+   * Run every device count in turn
+   *
+   * @param writer Receives one JSON line per device count
+   *
+   * @throws InterruptedException If interrupted
+   * @throws IOException          If the output cannot be written
+   */
+  public void run(PrintWriter writer) throws InterruptedException, IOException {
+    for (int deviceCount : deviceCounts) {
+      writer.println(toJson(run(deviceCount)));
+      if (writer.checkError()) {
+        throw new IOException("Unable to write results");
+      }
+    }
+  }
+
+  /**
+   * @param deviceCount The number of simulated devices
+   *
+   * @return The named results in output order
+   *
+   * @throws InterruptedException If interrupted
+   */
+  Map<String, Object> run(int deviceCount) throws InterruptedException {
+
+    SimulatedHidApiLibrary library = new SimulatedHidApiLibrary(deviceCount);
+    library.setInputReportRate(reportRate);
+    library.setInputReportLength(reportLength);
+
+    HidServicesSpecification hidServicesSpecification = new HidServicesSpecification();
+    hidServicesSpecification.setHidApiLibrary(library);
+    hidServicesSpecification.setAutoStart(false);
+    hidServicesSpecification.setAutoShutdown(false);
+    hidServicesSpecification.setAutoDataRead(selectorThreads == 0);
+    hidServicesSpecification.setDataReadInterval(dataReadInterval);
+
+    final Recorder recorder = new Recorder(TimeUnit.MILLISECONDS.toNanos(delayThresholdMillis));
+
+    HidServices hidServices = new HidServices(hidServicesSpecification);
+    hidServices.addHidServicesListener(new HidServicesListener() {
+      @Override
+      public void hidDeviceAttached(HidServicesEvent event) {
+      }
+
+      @Override
+      public void hidDeviceDetached(HidServicesEvent event) {
+      }
+
+      @Override
+      public void hidFailure(HidServicesEvent event) {
+      }
+
+      @Override
+      public void hidDataReceived(HidServicesEvent event) {
+        recorder.record(event.getDataReceived(), System.nanoTime());
+      }
+    });
+    hidServices.start();
+
+    // Devices returned here are not tracked by the services so must be closed explicitly
+    List<HidDevice> hidDevices = hidServices.getAttachedHidDevices();
+    for (HidDevice hidDevice : hidDevices) {
+      hidDevice.open();
+    }
+    Thread consumer = selectorThreads == 0 ? null : startSelector(hidDevices, recorder);
+
+    Thread.sleep(TimeUnit.SECONDS.toMillis(warmupSeconds));
+
+    MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+    memory.gc();
+    long heapBefore = memory.getHeapMemoryUsage().getUsed();
+    long droppedBefore = library.getDroppedReportCount();
+    long cpuBefore = processCpuNanos();
+
+    long start = System.nanoTime();
+    recorder.window(start, start + TimeUnit.SECONDS.toNanos(durationSeconds));
+    Thread.sleep(TimeUnit.SECONDS.toMillis(durationSeconds));
+    long wallNanos = System.nanoTime() - start;
+
+    long cpuNanos = processCpuNanos() - cpuBefore;
+    long dropped = library.getDroppedReportCount() - droppedBefore;
+    int threads = ManagementFactory.getThreadMXBean().getThreadCount();
+
+    // Allow reports that arrived late in the window to be delivered
+    Thread.sleep(dataReadInterval + delayThresholdMillis);
+
+    memory.gc();
+    long heapAfter = memory.getHeapMemoryUsage().getUsed();
+
+    for (HidDevice hidDevice : hidDevices) {
+      hidDevice.close();
+    }
+    if (consumer != null) {
+      consumer.interrupt();
+      consumer.join();
+    }
+    hidServices.shutdown();
+
+    long expected = (long) (deviceCount * reportRate * durationSeconds);
+    long delivered = recorder.count.get();
+    double deliveredPerSecond = delivered / (wallNanos / 1e9);
+    double cpuPercent = cpuNanos < 0 ? -1 : 100.0 * cpuNanos / wallNanos;
+
+    Map<String, Object> result = new LinkedHashMap<>();
+    result.put("devices", deviceCount);
+    result.put("reportRate", reportRate);
+    result.put("reportLength", reportLength);
+    result.put("dataReadInterval", dataReadInterval);
+    result.put("selectorThreads", selectorThreads);
+    result.put("durationSeconds", durationSeconds);
+    result.put("expectedReports", expected);
+    result.put("deliveredReports", delivered);
+    result.put("droppedReports", dropped);
+    result.put("delayedReports", recorder.delayed.get());
+    result.put("missingReports", Math.max(0, expected - delivered));
+    result.put("deliveredReportsPerSecond", deliveredPerSecond);
+    result.put("latencyMicros", summary(recorder.latency));
+    result.put("cpuPercent", cpuPercent);
+    result.put("cpuPercentPer1000ReportsPerSecond", cpuPercent < 0 || delivered == 0 ? -1 : cpuPercent / (deliveredPerSecond / 1000));
+    result.put("heapGrowthBytes", heapAfter - heapBefore);
+    result.put("threads", threads);
+    return result;
+
+  }
+
+  /**
+   * Register the devices with a selector drained by a single consumer thread
+   *
+   * @return The consumer thread (interrupt to close the selector)
+   */
+  private Thread startSelector(List<HidDevice> hidDevices, final Recorder recorder) {
+
+    final HidSelector selector = new HidSelector(selectorThreads);
+    for (HidDevice hidDevice : hidDevices) {
+      selector.register(hidDevice);
+    }
+
+    Thread consumer = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        while (!Thread.currentThread().isInterrupted()) {
+          for (HidSelectionKey key : selector.select(100)) {
+            byte[] report;
+            while ((report = key.read()) != null) {
+              recorder.record(report, System.nanoTime());
+            }
+          }
+        }
+        selector.close();
+      }
+    });
+    consumer.setDaemon(true);
+    consumer.setName("hid4java selector consumer");
+    consumer.start();
+    return consumer;
+
+  }
+
+  /**
+   * @return The CPU time used by this process or -1 if the JVM does not report it
+   */
+  private static long processCpuNanos() {
+    OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+    if (os instanceof com.sun.management.OperatingSystemMXBean) {
+      return ((com.sun.management.OperatingSystemMXBean) os).getProcessCpuTime();
+    }
+    return -1;
+  }
+
+  private static Map<String, Object> summary(LatencyHistogram histogram) {
+    Map<String, Object> summary = new LinkedHashMap<>();
+    summary.put("mean", histogram.getMean());
+    summary.put("p50", histogram.getPercentile(50));
+    summary.put("p90", histogram.getPercentile(90));
+    summary.put("p99", histogram.getPercentile(99));
+    summary.put("p999", histogram.getPercentile(99.9));
+    summary.put("max", histogram.getMax());
+    return summary;
+  }
+
+  @SuppressWarnings("unchecked")
+  static String toJson(Map<String, Object> values) {
+    StringBuilder json = new StringBuilder("{");
+    for (Map.Entry<String, Object> entry : values.entrySet()) {
+      if (json.length() > 1) {
+        json.append(',');
+      }
+      json.append('"').append(entry.getKey()).append("\":");
+      Object value = entry.getValue();
+      if (value instanceof Map) {
+        json.append(toJson((Map<String, Object>) value));
+      } else if (value instanceof Double) {
+        json.append(String.format(Locale.ROOT, "%.3f", (Double) value));
+      } else {
+        json.append(value);
+      }
+    }
+    return json.append('}').toString();
+  }
+
+  /**
+   * Decodes the reports in each data received event (see {@link SimulatedHidApiLibrary} for the layout)
+   */
+  private static final class Recorder {
+
+    /**
+     * Automatic data read concatenates whole 64 byte packets into one event (selector reports are single packets)
+     */
+    private static final int PACKET_LENGTH = 64;
+
+    private final long delayThresholdNanos;
+    private final LatencyHistogram latency = new LatencyHistogram(TimeUnit.HOURS.toMicros(1));
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong delayed = new AtomicLong();
+
+    private volatile long windowStart = Long.MAX_VALUE;
+    private volatile long windowEnd = Long.MAX_VALUE;
+
+    private Recorder(long delayThresholdNanos) {
+      this.delayThresholdNanos = delayThresholdNanos;
+    }
+
+    /**
+     * Only reports that arrived at the device within the window are recorded
+     */
+    private void window(long start, long end) {
+      windowEnd = end;
+      windowStart = start;
+    }
+
+    private void record(byte[] data, long receivedNanos) {
+      for (int offset = 0; offset + SimulatedHidApiLibrary.TIMESTAMPED_REPORT_LENGTH <= data.length; offset += PACKET_LENGTH) {
+        long arrival = 0;
+        for (int i = 0; i < 8; i++) {
+          arrival = (arrival << 8) | (data[offset + 5 + i] & 0xff);
+        }
+        if (arrival - windowStart < 0 || arrival - windowEnd >= 0) {
+          continue;
+        }
+        long latencyNanos = receivedNanos - arrival;
+        count.incrementAndGet();
+        if (latencyNanos > delayThresholdNanos) {
+          delayed.incrementAndGet();
+        }
+        latency.record(TimeUnit.NANOSECONDS.toMicros(Math.max(0, latencyNanos)));
+      }
+    }
+  }
+
+}
@@ -0,0 +1,126 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014-2020 Gary Rowe
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package org.hid4java.benchmarks;
+
+import org.hid4java.HidDevice;
+import org.hid4java.HidServicesSpecification;
+import org.hid4java.jna.HidDeviceInfoStructure;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Simulated device that echoes every output report back as an input report
+ *
+ * Each output report costs a fixed latency to model the interrupt OUT endpoint interval and its
+ * echo only becomes readable after a further latency to model the device processing time and
+ * interrupt IN polling.
+ *
+ * @since 0.8.0
+ */
+class LoopbackHidDevice extends HidDevice {
+
+  private final BlockingQueue<InputReport> inputReports = new LinkedBlockingQueue<>();
+  private final long writeLatencyNanos;
+  private final long inputLatencyNanos;
+
+  LoopbackHidDevice(long writeLatencyNanos, long inputLatencyNanos) {
+    super(infoStructure(), null, new HidServicesSpecification());
+    this.writeLatencyNanos = writeLatencyNanos;
+    this.inputLatencyNanos = inputLatencyNanos;
+  }
+
+  private static HidDeviceInfoStructure infoStructure() {
+    HidDeviceInfoStructure structure = new HidDeviceInfoStructure();
+    structure.path = "loopback";
+    return structure;
+  }
+
+  @Override
+  public boolean isClosed() {
+    return false;
+  }
+
+  @Override
+  public int read(byte[] bytes, int timeoutMillis) {
+    try {
+      InputReport inputReport = inputReports.poll(timeoutMillis, TimeUnit.MILLISECONDS);
+      if (inputReport == null) {
+        return 0;
+      }
+      // Reports are queued in order of availability
+      long wait;
+      while ((wait = inputReport.availableAt - System.nanoTime()) > 0) {
+        LockSupport.parkNanos(wait);
+      }
+      byte[] report = inputReport.bytes;
+      int length = Math.min(bytes.length, report.length);
+      System.arraycopy(report, 0, bytes, 0, length);
+      return length;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return -1;
+    }
+  }
+
+  @Override
+  public int write(byte[] message, int packetLength, byte reportId) {
+    return write(message, packetLength, reportId, false);
+  }
+
+  @Override
+  public int write(byte[] message, int packetLength, byte reportId, boolean applyPadding) {
+    if (writeLatencyNanos > 0) {
+      LockSupport.parkNanos(writeLatencyNanos);
+    }
+    inputReports.add(new InputReport(Arrays.copyOf(message, packetLength), System.nanoTime() + inputLatencyNanos));
+    return packetLength + 1;
+  }
+
+  @Override
+  public int write(List<byte[]> packets, int packetLength, byte reportId, boolean applyPadding) {
+    int total = 0;
+    for (byte[] packet : packets) {
+      total += write(packet, packetLength, reportId, applyPadding);
+    }
+    return total;
+  }
+
+  private static final class InputReport {
+
+    private final byte[] bytes;
+    private final long availableAt;
+
+    private InputReport(byte[] bytes, long availableAt) {
+      this.bytes = bytes;
+      this.availableAt = availableAt;
+    }
+  }
+}
@@ -0,0 +1,186 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014-2020 Gary Rowe
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package org.hid4java.benchmarks;
+
+import org.hid4java.HidManager;
+import org.hid4java.HidServices;
+import org.hid4java.HidServicesSpecification;
+import org.hid4java.ScanMode;
+import org.hid4java.jna.NativeLibraryCache;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Startup harness to provide the following to regression tracking:
+ * <ul>
+ * <li>Wall time of a fresh JVM that obtains {@link HidServices} from {@link HidManager} and exits</li>
+ * <li>Time spent inside the JVM from <code>main</code> until the services are ready</li>
+ * </ul>
+ *
+ * Each mode starts <code>--runs</code> JVMs against the bundled native library: "jna" leaves extraction to JNA
+ * (the behaviour before {@link NativeLibraryCache}), "cold" starts with an empty cache every run and "warm"
+ * reuses a populated cache. Those modes leave the first scan to the application so the remaining two measure it
+ * with a warm cache: "scan" starts automatically on the calling thread and "async" uses
+ * {@link HidServicesSpecification#setAsyncInitialisation(boolean)}. Results are one JSON object per mode with
+ * median and 90th percentile milliseconds.
+ *
+ * Usage: <code>java -cp target/benchmarks.jar org.hid4java.benchmarks.StartupHarness [--runs 20]</code>
+ *
+ * @since 0.8.0
+ */
+public class StartupHarness {
+
+  private static final String PROBE = "--probe";
+
+  /**
+   * Probe property selecting an automatic start ("sync" or "async")
+   */
+  private static final String START_PROPERTY = "hid4java.startup.start";
+
+  public static void main(String[] args) throws Exception {
+
+    if (args.length == 1 && PROBE.equals(args[0])) {
+      probe();
+      return;
+    }
+
+    Map<String, String> options = new LinkedHashMap<>();
+    options.put("runs", "20");
+    for (int i = 0; i < args.length; i += 2) {
+      String name = args[i].startsWith("--") ? args[i].substring(2) : args[i];
+      if (!options.containsKey(name) || i + 1 >= args.length) {
+        throw new IllegalArgumentException("Unknown option or missing value: " + args[i] + " (options are " + options.keySet() + ")");
+      }
+      options.put(name, args[i + 1]);
+    }
+    int runs = Integer.parseInt(options.get("runs"));
+    if (runs < 1) {
+      throw new IllegalArgumentException("'runs' must be greater than zero.");
+    }
+
+    File cacheRoot = Files.createTempDirectory("hid4java-startup").toFile();
+    File warmCache = new File(cacheRoot, "warm");
+    // Populate the warm cache (and the OS page cache) before measuring anything
+    run("-D" + NativeLibraryCache.CACHE_DIRECTORY_PROPERTY + "=" + warmCache, "-D" + START_PROPERTY + "=none");
+
+    for (String mode : Arrays.asList("jna", "cold", "warm", "scan", "async")) {
+      long[] wallMillis = new long[runs];
+      long[] readyMillis = new long[runs];
+      for (int i = 0; i < runs; i++) {
+        String property;
+        String start = "-D" + START_PROPERTY + "=none";
+        if ("jna".equals(mode)) {
+          property = "-D" + NativeLibraryCache.ENABLED_PROPERTY + "=false";
+        } else if ("cold".equals(mode)) {
+          property = "-D" + NativeLibraryCache.CACHE_DIRECTORY_PROPERTY + "=" + new File(cacheRoot, "cold" + i);
+        } else {
+          property = "-D" + NativeLibraryCache.CACHE_DIRECTORY_PROPERTY + "=" + warmCache;
+          if ("scan".equals(mode)) {
+            start = "-D" + START_PROPERTY + "=sync";
+          } else if ("async".equals(mode)) {
+            start = "-D" + START_PROPERTY + "=async";
+          }
+        }
+        long begin = System.nanoTime();
+        readyMillis[i] = run(property, start);
+        wallMillis[i] = (System.nanoTime() - begin) / 1_000_000;
+      }
+      Arrays.sort(wallMillis);
+      Arrays.sort(readyMillis);
+      System.out.println(String.format(Locale.ROOT,
+        "{\"mode\":\"%s\",\"runs\":%d,\"wallP50Millis\":%d,\"wallP90Millis\":%d,\"readyP50Millis\":%d,\"readyP90Millis\":%d}",
+        mode, runs, percentile(wallMillis, 50), percentile(wallMillis, 90), percentile(readyMillis, 50), percentile(readyMillis, 90)));
+    }
+
+  }
+
+  /**
+   * Obtain the services as an application would and report the time taken
+   */
+  private static void probe() {
+
+    String start = System.getProperty(START_PROPERTY, "none");
+    long begin = System.nanoTime();
+    HidServicesSpecification hidServicesSpecification = new HidServicesSpecification();
+    hidServicesSpecification.setAutoStart(!"none".equals(start));
+    hidServicesSpecification.setAsyncInitialisation("async".equals(start));
+    hidServicesSpecification.setScanMode(ScanMode.NO_SCAN);
+    hidServicesSpecification.setAutoShutdown(false);
+    HidServices hidServices = HidManager.getHidServices(hidServicesSpecification);
+    long readyMillis = (System.nanoTime() - begin) / 1_000_000;
+    // Let any background initialisation finish before shutting down
+    hidServices.getAttachedHidDevices();
+    hidServices.shutdown();
+    System.out.println(readyMillis);
+
+  }
+
+  /**
+   * @param properties The system properties selecting the mode
+   *
+   * @return The milliseconds reported by the probe
+   */
+  private static long run(String... properties) throws IOException, InterruptedException {
+
+    List<String> command = new ArrayList<>();
+    command.add(new File(System.getProperty("java.home"), "bin" + File.separator + "java").getPath());
+    command.addAll(Arrays.asList(properties));
+    command.add("-cp");
+    command.add(System.getProperty("java.class.path"));
+    command.add(StartupHarness.class.getName());
+    command.add(PROBE);
+
+    Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+    String last = null;
+    try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        last = line;
+      }
+    }
+    if (process.waitFor() != 0 || last == null) {
+      throw new IllegalStateException("Probe failed: " + last);
+    }
+    return Long.parseLong(last.trim());
+
+  }
+
+  private static long percentile(long[] sorted, int percentile) {
+    return sorted[Math.min(sorted.length - 1, (sorted.length * percentile) / 100)];
+  }
+
+}
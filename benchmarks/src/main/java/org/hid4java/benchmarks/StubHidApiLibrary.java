@@ -0,0 +1,254 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014-2020 Gary Rowe
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package org.hid4java.benchmarks;
+
+import com.sun.jna.Memory;
+import com.sun.jna.Pointer;
+import com.sun.jna.Structure;
+import com.sun.jna.WString;
+import org.hid4java.jna.HidApiLibrary;
+import org.hid4java.jna.HidDeviceInfoStructure;
+import org.hid4java.jna.WideStringBuffer;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Stub native side to provide the following to the benchmarks:
+ * <ul>
+ * <li>Calls that return immediately so only Java side cost is measured</li>
+ * <li>The structure copying JNA performs around a native call (write before, read after)</li>
+ * <li>An enumeration list that lives in native memory and is read back by JNA</li>
+ * </ul>
+ *
+ * A single open device is assumed and all handles are treated alike.
+ *
+ * @since 0.8.0
+ */
+public class StubHidApiLibrary implements HidApiLibrary {
+
+  public static final String MANUFACTURER = "hid4java benchmark manufacturer";
+  public static final String PRODUCT = "hid4java benchmark product";
+
+  private final Memory error = new Memory(512);
+  private final byte[] manufacturer = wide(MANUFACTURER);
+  private final byte[] product = wide(PRODUCT);
+
+  /**
+   * Keeps the Java side of the native list reachable (JNA frees the native strings otherwise)
+   */
+  private final List<HidDeviceInfoStructure> enumeration = new ArrayList<>();
+  private final Pointer enumerationHead;
+
+  private final byte[] inputReport;
+
+  /**
+   * @param deviceCount       The number of devices in each enumeration
+   * @param inputReportLength The number of bytes returned by each read
+   */
+  public StubHidApiLibrary(int deviceCount, int inputReportLength) {
+
+    error.clear();
+
+    inputReport = new byte[inputReportLength];
+    for (int i = 0; i < inputReportLength; i++) {
+      inputReport[i] = (byte) i;
+    }
+
+    // Write from the tail so that each next pointer is valid
+    HidDeviceInfoStructure next = null;
+    for (int i = deviceCount - 1; i >= 0; i--) {
+      HidDeviceInfoStructure structure = new HidDeviceInfoStructure();
+      structure.path = "/dev/hidraw" + i;
+      structure.vendor_id = 0x1209;
+      structure.product_id = 0x0001;
+      structure.serial_number = new WString(String.format("BENCH%05d", i));
+      structure.release_number = 0x0100;
+      structure.manufacturer_string = new WString(MANUFACTURER);
+      structure.product_string = new WString(PRODUCT);
+      structure.usage_page = (short) 0xff00;
+      structure.usage = 0x01;
+      structure.interface_number = 0;
+      structure.next = next;
+      structure.write();
+      enumeration.add(structure);
+      next = structure;
+    }
+    enumerationHead = next == null ? null : next.getPointer();
+
+  }
+
+  private static byte[] wide(String value) {
+    byte[] bytes = value.getBytes(StandardCharsets.UTF_16LE);
+    byte[] terminated = new byte[bytes.length + 2];
+    System.arraycopy(bytes, 0, terminated, 0, bytes.length);
+    return terminated;
+  }
+
+  /**
+   * Copy into the native memory of a structure argument as the native library would
+   *
+   * @param structure The structure argument (written to native memory first, read back after)
+   * @param source    The bytes to place in native memory
+   * @param length    The maximum number of bytes to copy
+   *
+   * @return The number of bytes copied
+   */
+  private static int fill(WideStringBuffer structure, byte[] source, int length) {
+    structure.write();
+    int count = Math.min(Math.min(source.length, length), structure.buffer.length);
+    structure.getPointer().write(0, source, 0, count);
+    structure.read();
+    return count;
+  }
+
+  /**
+   * Consume a structure argument as the native library would
+   *
+   * @param structure The structure argument
+   * @param length    The number of bytes the caller claims to provide
+   *
+   * @return The number of bytes consumed
+   */
+  private static int drain(WideStringBuffer structure, int length) {
+    structure.write();
+    structure.read();
+    return Math.min(length, structure.buffer.length);
+  }
+
+  @Override
+  public void hid_init() {
+  }
+
+  @Override
+  public void hid_exit() {
+  }
+
+  @Override
+  public Pointer hid_open(short vendor_id, short product_id, WString serial_number) {
+    return new Pointer(1);
+  }
+
+  @Override
+  public Pointer hid_open_path(String path) {
+    return new Pointer(1);
+  }
+
+  @Override
+  public void hid_close(Pointer device) {
+  }
+
+  @Override
+  public Pointer hid_error(Pointer device) {
+    return error;
+  }
+
+  @Override
+  public int hid_read(Pointer device, WideStringBuffer.ByReference bytes, int length) {
+    return fill((WideStringBuffer) bytes, inputReport, length);
+  }
+
+  @Override
+  public int hid_read_timeout(Pointer device, WideStringBuffer.ByReference bytes, int length, int timeout) {
+    return fill((WideStringBuffer) bytes, inputReport, length);
+  }
+
+  @Override
+  public int hid_write(Pointer device, WideStringBuffer.ByReference data, int len) {
+    return drain((WideStringBuffer) data, len);
+  }
+
+  @Override
+  public int hid_write(Pointer device, Pointer data, int len) {
+    return len;
+  }
+
+  @Override
+  public int hid_get_feature_report(Pointer device, WideStringBuffer.ByReference data, int length) {
+    // Report ID is preserved in the first byte
+    WideStringBuffer report = (WideStringBuffer) data;
+    report.write();
+    int count = Math.min(length, report.buffer.length);
+    report.getPointer().write(1, inputReport, 0, Math.min(inputReport.length, count - 1));
+    report.read();
+    return count;
+  }
+
+  @Override
+  public int hid_send_feature_report(Pointer device, WideStringBuffer.ByReference data, int length) {
+    return drain((WideStringBuffer) data, length);
+  }
+
+  @Override
+  public int hid_get_indexed_string(Pointer device, int idx, WideStringBuffer.ByReference string, int len) {
+    return fill((WideStringBuffer) string, product, len) > 0 ? 0 : -1;
+  }
+
+  @Override
+  public int hid_get_manufacturer_string(Pointer device, WideStringBuffer.ByReference str, int len) {
+    return fill((WideStringBuffer) str, manufacturer, len) > 0 ? 0 : -1;
+  }
+
+  @Override
+  public int hid_get_product_string(Pointer device, WideStringBuffer.ByReference str, int len) {
+    return fill((WideStringBuffer) str, product, len) > 0 ? 0 : -1;
+  }
+
+  @Override
+  public int hid_get_serial_number_string(Pointer device, WideStringBuffer.ByReference str, int len) {
+    return fill((WideStringBuffer) str, manufacturer, len) > 0 ? 0 : -1;
+  }
+
+  @Override
+  public int hid_set_nonblocking(Pointer device, int nonblock) {
+    return 0;
+  }
+
+  @Override
+  public HidDeviceInfoStructure hid_enumerate(short vendor_id, short product_id) {
+
+    if (enumerationHead == null) {
+      return null;
+    }
+
+    // JNA builds a fresh structure over the returned pointer and reads the whole list
+    HidDeviceInfoStructure root = Structure.newInstance(HidDeviceInfoStructure.class, enumerationHead);
+    root.read();
+    return root;
+  }
+
+  @Override
+  public void hid_free_enumeration(Pointer devs) {
+    // The list is reused by every enumeration
+  }
+
+  @Override
+  public String hid_version_str() {
+    return "0.0.0-stub";
+  }
+
+}
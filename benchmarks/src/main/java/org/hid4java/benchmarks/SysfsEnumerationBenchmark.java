@@ -0,0 +1,154 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014-2020 Gary Rowe
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package org.hid4java.benchmarks;
+
+import org.hid4java.hidraw.SysfsHidrawEnumerator;
+import org.hid4java.jna.HidDeviceInfoStructure;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of a sysfs scan by {@link SysfsHidrawEnumerator} against a fabricated tree of USB HID interfaces
+ *
+ * The cached scan is the steady state of the device manager (nothing attached or detached) while a
+ * cold scan parses every node as the first scan does.
+ *
+ * @since 0.8.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SysfsEnumerationBenchmark {
+
+  @Param({"16", "128"})
+  public int deviceCount;
+
+  @Param({"1", "4"})
+  public int parallelism;
+
+  private Path root;
+  private File deviceRoot;
+  private File sysfsRoot;
+  private SysfsHidrawEnumerator enumerator;
+
+  @Setup(Level.Trial)
+  public void setUp() throws IOException {
+
+    root = Files.createTempDirectory("hid4java-sysfs");
+    deviceRoot = new File(root.toFile(), "dev");
+    sysfsRoot = new File(root.toFile(), "sys");
+    for (int i = 0; i < deviceCount; i++) {
+      File usbDevice = new File(sysfsRoot, "devices/pci0000:00/usb1/1-" + (i + 1));
+      File usbInterface = new File(usbDevice, "1-" + (i + 1) + ":1.0");
+      File hidDevice = new File(usbInterface, String.format("0003:1209:0001.%04X", i + 1));
+      write(new File(usbDevice, "manufacturer"), "hid4java");
+      write(new File(usbDevice, "product"), "Benchmark Device");
+      write(new File(usbDevice, "serial"), "SN" + i);
+      write(new File(usbDevice, "bcdDevice"), "0100");
+      write(new File(usbInterface, "bInterfaceNumber"), "00");
+      write(new File(hidDevice, "uevent"), "HID_ID=0003:00001209:00000001\nHID_NAME=hid4java Benchmark Device\nHID_UNIQ=\n");
+      Files.write(new File(hidDevice, "report_descriptor").toPath(), new byte[]{0x06, (byte) 0xd0, (byte) 0xf1, 0x09, 0x01});
+      File classEntry = new File(sysfsRoot, "class/hidraw/hidraw" + i);
+      classEntry.mkdirs();
+      Files.createSymbolicLink(new File(classEntry, "device").toPath(), hidDevice.toPath());
+    }
+
+    enumerator = new SysfsHidrawEnumerator(deviceRoot, sysfsRoot, parallelism);
+
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws IOException {
+    Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+      @Override
+      public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) throws IOException {
+        Files.delete(file);
+        return FileVisitResult.CONTINUE;
+      }
+
+      @Override
+      public FileVisitResult postVisitDirectory(Path directory, IOException e) throws IOException {
+        Files.delete(directory);
+        return FileVisitResult.CONTINUE;
+      }
+    });
+  }
+
+  /**
+   * @param blackhole Consumes the paths so the walk is not eliminated
+   */
+  @Benchmark
+  public void cached(Blackhole blackhole) {
+    consume(enumerator.enumerate(0, 0), blackhole);
+  }
+
+  /**
+   * @param blackhole Consumes the paths so the walk is not eliminated
+   */
+  @Benchmark
+  public void cold(Blackhole blackhole) {
+    enumerator.invalidate();
+    consume(enumerator.enumerate(0, 0), blackhole);
+  }
+
+  private static void consume(HidDeviceInfoStructure hidDeviceInfoStructure, Blackhole blackhole) {
+    while (hidDeviceInfoStructure != null) {
+      blackhole.consume(hidDeviceInfoStructure.path);
+      hidDeviceInfoStructure = hidDeviceInfoStructure.next();
+    }
+  }
+
+  private static void write(File file, String content) throws IOException {
+    file.getParentFile().mkdirs();
+    Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+  }
+
+}
@@ -0,0 +1,99 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014-2020 Gary Rowe
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package org.hid4java.benchmarks;
+
+import com.sun.jna.Pointer;
+import org.hid4java.jna.HidApi;
+import org.hid4java.jna.HidDeviceStructure;
+import org.hid4java.jna.WideStringBuffer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Wide string decoding cost of {@link WideStringBuffer} alone and through the {@link HidApi} string calls
+ *
+ * @since 0.8.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WideStringBufferBenchmark {
+
+  /**
+   * Number of characters in the decoded string (126 is the USB string descriptor limit)
+   */
+  @Param({"8", "32", "126"})
+  public int characters;
+
+  private WideStringBuffer buffer;
+  private HidDeviceStructure device;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+
+    StringBuilder value = new StringBuilder();
+    for (int i = 0; i < characters; i++) {
+      value.append((char) ('a' + i % 26));
+    }
+    // Same size as the buffers HidApi uses for strings
+    buffer = new WideStringBuffer(512);
+    buffer.setString(value.toString());
+
+    HidApi.init(new StubHidApiLibrary(1, 64));
+    device = new HidDeviceStructure(new Pointer(1), "/dev/hidraw0");
+  }
+
+  @Benchmark
+  public String decode() {
+    return buffer.toString();
+  }
+
+  @Benchmark
+  public String getManufacturer() {
+    return HidApi.getManufacturer(device);
+  }
+
+  @Benchmark
+  public String getLastErrorMessage() {
+    return HidApi.getLastErrorMessage(device);
+  }
+
+}
@@ -0,0 +1,59 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014-2020 Gary Rowe
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package org.hid4java;
+
+/**
+ * Provide a collection of behaviours for when the listener event queue is full
+ *
+ * Only data received events are subject to the policy. Attach, detach and failure
+ * events are always queued, even beyond the capacity, so they are never lost.
+ *
+ * @since 0.8.0
+ */
+public enum EventQueuePolicy {
+
+  /**
+   * Block the thread reading the device until there is room in the queue (the
+   * device buffer then overflows instead, as if the data had not been read). This
+   * is the default so that no data event is dropped unless another policy is chosen.
+   */
+  BLOCK,
+  /**
+   * Drop the oldest queued data event to make room for the new one.
+   */
+  DROP_OLDEST,
+  /**
+   * Drop the new data event.
+   */
+  DROP_NEWEST,
+  /**
+   * Replace a queued data event from the same device with the new one (last
+   * report wins) so at most one data event per device is ever queued. If there is
+   * none to replace and the queue is full the new data event is dropped.
+   */
+  COALESCE,
+
+}
@@ -25,13 +25,22 @@
 
 package org.hid4java;
 
+import com.sun.jna.Memory;
+import org.hid4java.io.HidByteChannel;
+import org.hid4java.io.HidInputStream;
+import org.hid4java.io.HidOutputStream;
+import org.hid4java.io.HidStreamSpecification;
 import org.hid4java.jna.HidApi;
 import org.hid4java.jna.HidDeviceInfoStructure;
 import org.hid4java.jna.HidDeviceStructure;
+import org.hid4java.metrics.HidDeviceMetrics;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.time.Duration;
 import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * High level wrapper to provide the following to API consumers:
@@ -61,6 +70,16 @@ public class HidDevice {
   private final boolean autoDataRead;
   private final int dataReadInterval;
 
+  /**
+   * Paces output reports (null if unlimited)
+   */
+  private volatile WriteRateLimiter writeRateLimiter = null;
+
+  /**
+   * I/O counters and latencies (shared with other wrappers of the same path)
+   */
+  private final HidDeviceMetrics metrics;
+
   /**
    * The data read thread
    * We use a Thread instead of Executor since it may be stopped/paused/restarted frequently
@@ -68,6 +87,21 @@ public class HidDevice {
    */
   private Thread dataReadThread = null;
 
+  /**
+   * Routes input reports to pending transactions (created on first use)
+   */
+  private HidResponseCorrelator responseCorrelator = null;
+
+  /**
+   * Queues asynchronous writes for the writer thread (created on first use)
+   */
+  private HidWriteQueue writeQueue = null;
+
+  /**
+   * The registration with a selector (null if not registered)
+   */
+  private volatile HidSelectionKey selectionKey = null;
+
   /**
    * @param infoStructure            The HID device info structure providing details
    * @param hidDeviceManager         The HID device manager providing access to device enumeration for post IO scanning
@@ -84,6 +118,7 @@ public class HidDevice {
     this.hidDeviceStructure = null;
 
     this.path = infoStructure.path;
+    this.metrics = hidDeviceManager == null ? new HidDeviceMetrics(path) : hidDeviceManager.getDeviceMetrics(path);
 
     // Note that the low-level HidDeviceInfoStructure is directly written to by
     // the JNA library and implies an unsigned short which is not available in Java.
@@ -188,11 +223,20 @@ public class HidDevice {
    *
    * Will fire attach/detach events as appropriate.
    */
-  private synchronized void dataRead() {
+  private void dataRead() {
+
+    byte[] dataRead;
+    synchronized (this) {
+      if (responseCorrelator != null && responseCorrelator.isRunning()) {
+        // The response reader owns the input stream and forwards unmatched reports
+        return;
+      }
 
-    byte[] dataRead = readAll(100);
+      dataRead = readAll(100);
+    }
 
-    // Fire the event on a separate thread
+    // Fire the event on a separate thread outside the device monitor since a
+    // full BLOCK queue waits for listeners that may themselves close this device
     hidDeviceManager.afterDeviceDataRead(this, dataRead);
 
   }
@@ -293,7 +337,8 @@ public class HidDevice {
    * @since 0.1.0
    */
   public boolean open() {
-    hidDeviceStructure = HidApi.open(path);
+    hidDeviceStructure = hidDeviceManager == null ? HidApi.open(path) : hidDeviceManager.open(path);
+    metrics.recordOpen(hidDeviceStructure != null);
 
     // Configure automatic data read
     if (autoDataRead) {
@@ -334,11 +379,29 @@ public class HidDevice {
     // Prevent further automatic data read attempts
     stopDataReadThread();
 
+    // Stop any selector polling this device before the structure is freed
+    HidSelectionKey key = selectionKey;
+    if (key != null) {
+      key.cancel();
+    }
+
+    // Fail any transactions and queued writes still outstanding
+    synchronized (this) {
+      if (responseCorrelator != null) {
+        responseCorrelator.stop();
+      }
+      if (writeQueue != null) {
+        writeQueue.stop();
+        writeQueue = null;
+      }
+    }
+
     // Close the Hidapi reference
     HidApi.close(hidDeviceStructure);
 
     // Ensure structure is removed from memory and prevent further interaction
     hidDeviceStructure = null;
+    metrics.recordClose();
   }
 
   /**
@@ -377,7 +440,10 @@ public class HidDevice {
     if (isClosed()) {
       throw new IllegalStateException("Device has not been opened");
     }
-    return HidApi.read(hidDeviceStructure, data);
+    long start = System.nanoTime();
+    int result = HidApi.read(hidDeviceStructure, data);
+    metrics.recordRead(start, result);
+    return result;
   }
 
   /**
@@ -398,7 +464,7 @@ public class HidDevice {
     }
 
     byte[] bytes = new byte[amountToRead];
-    int read = HidApi.read(hidDeviceStructure, bytes, timeoutMillis);
+    int read = read(bytes, timeoutMillis);
     Byte[] retData = new Byte[read];
     for (int i = 0; i < read; i++) {
       retData[i] = bytes[i];
@@ -422,7 +488,7 @@ public class HidDevice {
     }
 
     byte[] bytes = new byte[amountToRead];
-    int read = HidApi.read(hidDeviceStructure, bytes);
+    int read = read(bytes);
     Byte[] retData = new Byte[read];
     for (int i = 0; i < read; i++) {
       retData[i] = bytes[i];
@@ -457,7 +523,10 @@ public class HidDevice {
     if (isClosed()) {
       throw new IllegalStateException("Device has not been opened");
     }
-    return HidApi.read(hidDeviceStructure, bytes, timeoutMillis);
+    long start = System.nanoTime();
+    int result = HidApi.read(hidDeviceStructure, bytes, timeoutMillis);
+    metrics.recordRead(start, result);
+    return result;
 
   }
 
@@ -518,7 +587,10 @@ public class HidDevice {
     if (isClosed()) {
       throw new IllegalStateException("Device has not been opened");
     }
-    return HidApi.getFeatureReport(hidDeviceStructure, data, reportId);
+    long start = System.nanoTime();
+    int result = HidApi.getFeatureReport(hidDeviceStructure, data, reportId);
+    metrics.recordFeatureReport(start, result);
+    return result;
   }
 
   /**
@@ -549,7 +621,10 @@ public class HidDevice {
     if (isClosed()) {
       throw new IllegalStateException("Device has not been opened");
     }
-    return HidApi.sendFeatureReport(hidDeviceStructure, data, reportId);
+    long start = System.nanoTime();
+    int result = HidApi.sendFeatureReport(hidDeviceStructure, data, reportId);
+    metrics.recordFeatureReport(start, result);
+    return result;
   }
 
   /**
@@ -605,13 +680,292 @@ public class HidDevice {
       message = Arrays.copyOf(message, packetLength + 1);
     }
 
-    int result = HidApi.write(hidDeviceStructure, message, packetLength, reportId);
+    int result = writeReport(message, packetLength, reportId);
     // Update HID manager
     hidDeviceManager.afterDeviceWrite();
     return result;
 
   }
 
+  /**
+   * Write several packets to the HID API back to back without waiting between them.
+   *
+   * This is the equivalent of calling {@link #write(byte[], int, byte, boolean)} for each
+   * packet except that the HID manager is only notified once (so a scan pause after write
+   * is only triggered once per batch). Writing stops at the first packet that fails.
+   *
+   * @param packets      The packets in transmission order
+   * @param packetLength The packet length
+   * @param reportId     The report ID (will be prefixed to each HID packet)
+   * @param applyPadding True if each packet should be filled with zero bytes to the packet length
+   * @return The total number of bytes written (including report IDs), or -1 if an error occurs
+   * @since 0.8.0
+   */
+  public int write(List<byte[]> packets, int packetLength, byte reportId, boolean applyPadding) {
+    if (isClosed()) {
+      throw new IllegalStateException("Device has not been opened");
+    }
+
+    int total = 0;
+    try {
+      for (byte[] packet : packets) {
+        if (applyPadding) {
+          packet = Arrays.copyOf(packet, packetLength + 1);
+        }
+        int result = writeReport(packet, packetLength, reportId);
+        if (result < 0) {
+          return result;
+        }
+        total += result;
+      }
+    } finally {
+      // Update HID manager once for the whole batch
+      hidDeviceManager.afterDeviceWrite();
+    }
+    return total;
+
+  }
+
+  /**
+   * Queue the message for writing by this device's writer thread and return immediately.
+   *
+   * The writer drains everything queued since its last pass as one batch, so the HID manager
+   * is notified once per batch rather than once per write. A coalescing write replaces any
+   * coalescing write with the same report ID that is still queued (last write wins), which
+   * suits state reports such as LED or motor setpoints. The future of a replaced write
+   * completes with the result of the write that replaced it.
+   *
+   * Writes still queued when the device is closed complete exceptionally with a {@link HidException}.
+   *
+   * @param message      The message (copied so the caller may reuse the buffer)
+   * @param packetLength The packet length
+   * @param reportId     The report ID (will be prefixed to the HID packet)
+   * @param coalesce     True if this write may replace, or be replaced by, a queued write with the same report ID
+   * @return The future number of bytes written (including report ID), or -1 if an error occurs
+   * @since 0.8.0
+   */
+  public CompletableFuture<Integer> writeAsync(byte[] message, int packetLength, byte reportId, boolean coalesce) {
+    if (isClosed()) {
+      throw new IllegalStateException("Device has not been opened");
+    }
+
+    final HidWriteQueue queue;
+    synchronized (this) {
+      if (writeQueue == null) {
+        writeQueue = new HidWriteQueue(this);
+      }
+      queue = writeQueue;
+    }
+
+    return queue.enqueue(Arrays.copyOf(message, message.length), packetLength, reportId, coalesce);
+  }
+
+  /**
+   * Pace all output reports written to this device (including batched and asynchronous writes).
+   *
+   * Useful for devices that drop reports or stall when writes arrive faster than their
+   * interrupt OUT endpoint interval.
+   *
+   * @param writeRateLimiter The rate limiter (null to remove)
+   * @since 0.8.0
+   */
+  public void setWriteRateLimiter(WriteRateLimiter writeRateLimiter) {
+    this.writeRateLimiter = writeRateLimiter;
+  }
+
+  /**
+   * @return The rate limiter pacing output reports or null if unlimited
+   * @since 0.8.0
+   */
+  public WriteRateLimiter getWriteRateLimiter() {
+    return writeRateLimiter;
+  }
+
+  /**
+   * @return The I/O counters and latency histograms for this device path
+   * @since 0.8.0
+   */
+  public HidDeviceMetrics getMetrics() {
+    return metrics;
+  }
+
+  /**
+   * Input reports as a byte stream (closing the stream does not close the device).
+   *
+   * @param hidStreamSpecification The report format
+   * @return A new input stream over this device
+   * @since 0.8.0
+   */
+  public HidInputStream newInputStream(HidStreamSpecification hidStreamSpecification) {
+    return new HidInputStream(this, hidStreamSpecification);
+  }
+
+  /**
+   * Output reports from a byte stream (closing the stream does not close the device).
+   *
+   * @param hidStreamSpecification The report format
+   * @return A new output stream over this device
+   * @since 0.8.0
+   */
+  public HidOutputStream newOutputStream(HidStreamSpecification hidStreamSpecification) {
+    return new HidOutputStream(this, hidStreamSpecification);
+  }
+
+  /**
+   * Input and output reports as a byte channel (closing the channel does not close the device).
+   *
+   * @param hidStreamSpecification The report format
+   * @return A new byte channel over this device
+   * @since 0.8.0
+   */
+  public HidByteChannel newByteChannel(HidStreamSpecification hidStreamSpecification) {
+    return new HidByteChannel(this, hidStreamSpecification);
+  }
+
+  /**
+   * @return True if the device is configured for automatic data read
+   */
+  boolean isAutoDataRead() {
+    return autoDataRead;
+  }
+
+  /**
+   * @param selectionKey The registration with a selector (null when cancelled)
+   */
+  void setSelectionKey(HidSelectionKey selectionKey) {
+    this.selectionKey = selectionKey;
+  }
+
+  HidSelectionKey getSelectionKey() {
+    return selectionKey;
+  }
+
+  /**
+   * @return The device structure (null if closed)
+   */
+  HidDeviceStructure getHidDeviceStructure() {
+    return hidDeviceStructure;
+  }
+
+  /**
+   * Read an Input report on behalf of a selector (the device is in non-blocking mode)
+   *
+   * Empty polls are not recorded as read timeouts in the device metrics.
+   *
+   * @param data The buffer to read into
+   * @return The actual number of bytes read, 0 if no report is available or -1 on error (including closed)
+   */
+  int poll(byte[] data) {
+    HidDeviceStructure structure = hidDeviceStructure;
+    if (structure == null) {
+      return -1;
+    }
+    long start = System.nanoTime();
+    int result = HidApi.read(structure, data);
+    if (result != 0) {
+      metrics.recordRead(start, result);
+    }
+    return result;
+  }
+
+  /**
+   * Write a single report (subject to any rate limiter) without notifying the HID manager
+   *
+   * @param message      The message
+   * @param packetLength The packet length
+   * @param reportId     The report ID
+   * @return The number of bytes written (including report ID), zero if dropped by the rate limiter or -1 if an error occurs
+   */
+  int writeReport(byte[] message, int packetLength, byte reportId) {
+    WriteRateLimiter limiter = writeRateLimiter;
+    if (limiter != null && !limiter.acquire()) {
+      return 0;
+    }
+    long start = System.nanoTime();
+    int result = HidApi.write(hidDeviceStructure, message, packetLength, reportId);
+    metrics.recordWrite(start, result);
+    return result;
+  }
+
+  /**
+   * Write a report encoded by {@link HidApi#encodeReport(byte[], int, byte, boolean)} (subject to any rate limiter)
+   * without notifying the HID manager
+   *
+   * @param report The encoded report (may be shared with concurrent writes to other devices)
+   * @return The number of bytes written (including report ID), zero if dropped by the rate limiter or -1 if an error occurs
+   */
+  int writeEncodedReport(Memory report) {
+    WriteRateLimiter limiter = writeRateLimiter;
+    if (limiter != null && !limiter.acquire()) {
+      return 0;
+    }
+    long start = System.nanoTime();
+    int result = HidApi.write(hidDeviceStructure, report);
+    metrics.recordWrite(start, result);
+    return result;
+  }
+
+  /**
+   * @return The HID manager for post IO scanning (null if not managed)
+   */
+  HidDeviceManager getHidDeviceManager() {
+    return hidDeviceManager;
+  }
+
+  /**
+   * Notify the HID manager that a batch of writes has completed
+   */
+  void afterBatchWrite() {
+    if (hidDeviceManager != null) {
+      hidDeviceManager.afterDeviceWrite();
+    }
+  }
+
+  /**
+   * Write a request and asynchronously await the input report that answers it.
+   *
+   * Many requests may be in flight at the same time, from any number of threads. A single
+   * reader thread runs while any request is pending and offers every input report to the
+   * pending requests in the order they were made; the first whose matcher accepts it receives
+   * it. Input reports that match no request are delivered as data received events if automatic
+   * data read is configured (the automatic data read thread defers to the reader) and are
+   * otherwise discarded.
+   *
+   * Do not call {@link #read(byte[], int)} or the other read methods while a request is pending
+   * since they would compete with the reader for input reports. The reader hands the input
+   * stream back within 100ms of the last pending request completing.
+   *
+   * @param request The request with the report ID (or (byte) 0x00) in the first byte followed by the report data
+   * @param matcher The matcher to pick the response out of the input stream (e.g. {@link ResponseMatcher#sequence(int, byte)})
+   * @param timeout The time to wait for a matching response before completing with a {@link java.util.concurrent.TimeoutException}
+   * @return The future response which completes exceptionally with a {@link HidException} if the write fails or the device is closed
+   * @since 0.8.0
+   */
+  public CompletableFuture<byte[]> transact(byte[] request, ResponseMatcher matcher, Duration timeout) {
+    if (isClosed()) {
+      throw new IllegalStateException("Device has not been opened");
+    }
+
+    if (request.length == 0) {
+      throw new IllegalArgumentException("'request' must contain at least the report ID.");
+    }
+
+    final HidResponseCorrelator correlator;
+    final CompletableFuture<byte[]> future;
+    synchronized (this) {
+      if (responseCorrelator == null) {
+        responseCorrelator = new HidResponseCorrelator(this, hidDeviceManager, autoDataRead);
+      }
+      correlator = responseCorrelator;
+      // Register under the device monitor so that an automatic data read in progress
+      // finishes before the reader takes over the input stream
+      future = correlator.register(matcher, timeout);
+    }
+
+    correlator.write(request, future);
+    return future;
+  }
+
   /**
    * @return The last error message from HID API
    * @since 0.1.0
@@ -0,0 +1,365 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014-2020 Gary Rowe
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package org.hid4java;
+
+import com.sun.jna.Memory;
+import org.hid4java.jna.HidApi;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * A group of HID devices to provide the following to API consumers:
+ * <ul>
+ * <li>Parallel fan-out of a single report to many identical devices</li>
+ * <li>Parallel open and close of many devices within an overall deadline</li>
+ * <li>Bounded concurrency so that large groups do not exhaust native resources</li>
+ * <li>Per-device outcomes rather than failing on the first error</li>
+ * </ul>
+ *
+ * The report is encoded into native memory once and shared by every device write.
+ *
+ * @since 0.8.0
+ */
+public class HidDeviceGroup {
+
+  private static final String TIMED_OUT = "Timed out";
+
+  private final List<HidDevice> devices;
+  private final ExecutorService executorService;
+
+  /**
+   * @param devices        The devices in the group (typically identical)
+   * @param maxConcurrency The maximum number of devices operated on at the same time
+   */
+  public HidDeviceGroup(Collection<HidDevice> devices, int maxConcurrency) {
+    if (maxConcurrency < 1) {
+      throw new IllegalArgumentException("'maxConcurrency' must be at least one.");
+    }
+    this.devices = Collections.unmodifiableList(new ArrayList<>(devices));
+    this.executorService = Executors.newFixedThreadPool(
+      Math.min(maxConcurrency, Math.max(1, this.devices.size())), new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable runnable) {
+          Thread thread = Executors.defaultThreadFactory().newThread(runnable);
+          thread.setName("hid4java group worker");
+          thread.setDaemon(true);
+          return thread;
+        }
+      });
+  }
+
+  /**
+   * @return The devices in the group
+   */
+  public List<HidDevice> getDevices() {
+    return devices;
+  }
+
+  /**
+   * Open every closed device in the group.
+   *
+   * Devices still opening when the deadline expires are reported as timed out but may complete
+   * in the background so check {@link HidDevice#isClosed()} before relying on them.
+   *
+   * @param timeoutMillis The overall deadline in milliseconds (zero to wait indefinitely)
+   * @return The outcome for each device in group order
+   */
+  public GroupResult openAll(int timeoutMillis) {
+
+    return execute(new DeviceOperation() {
+      @Override
+      public Outcome apply(HidDevice device) {
+        if (!device.isClosed() || device.open()) {
+          return new Outcome(device, 0, null);
+        }
+        return new Outcome(device, -1, errorMessage(device, "Unable to open device"));
+      }
+    }, timeoutMillis, true);
+  }
+
+  /**
+   * Close every device in the group.
+   *
+   * Devices that have not finished closing when the deadline expires are reported as timed out
+   * so that application shutdown is not held up by unresponsive devices. They carry on closing in
+   * the background, including any that had not started, until the group is shut down and every
+   * close has finished.
+   *
+   * @param timeoutMillis The overall deadline in milliseconds (zero to wait indefinitely)
+   * @return The outcome for each device in group order
+   */
+  public GroupResult closeAll(int timeoutMillis) {
+
+    return execute(new DeviceOperation() {
+      @Override
+      public Outcome apply(HidDevice device) {
+        device.close();
+        return new Outcome(device, 0, null);
+      }
+    }, timeoutMillis, false);
+  }
+
+  /**
+   * Write the message to every device in the group and wait for all writes to finish.
+   *
+   * Note that the report ID will be prefixed to the HID packet as per HID rules.
+   *
+   * @param message      The message
+   * @param packetLength The packet length
+   * @param reportId     The report ID
+   * @param applyPadding True if the message should be filled with zero bytes to the packet length
+   * @return The outcome for each device in group order
+   */
+  public GroupResult write(byte[] message, int packetLength, byte reportId, boolean applyPadding) {
+
+    final Memory report = HidApi.encodeReport(message, packetLength, reportId, applyPadding);
+
+    // No deadline since the shared report must outlive every native write
+    GroupResult result = execute(new DeviceOperation() {
+      @Override
+      public Outcome apply(HidDevice device) {
+        if (device.isClosed()) {
+          return new Outcome(device, -1, "Device has not been opened");
+        }
+        int bytesWritten = device.writeEncodedReport(report);
+        return new Outcome(device, bytesWritten, bytesWritten < 0 ? errorMessage(device, "Unable to write to device") : null);
+      }
+    }, 0, true);
+
+    // Devices may belong to different services so notify each manager once for the batch
+    Set<HidDeviceManager> notified = Collections.newSetFromMap(new IdentityHashMap<HidDeviceManager, Boolean>());
+    for (HidDevice device : devices) {
+      if (notified.add(device.getHidDeviceManager())) {
+        device.afterBatchWrite();
+      }
+    }
+
+    return result;
+  }
+
+  /**
+   * Stop the worker threads once any operations still in progress have finished (the devices are not closed)
+   */
+  public void shutdown() {
+    executorService.shutdown();
+  }
+
+  /**
+   * Wait for the worker threads to finish following {@link #shutdown()}
+   *
+   * @throws InterruptedException If interrupted while waiting
+   */
+  void awaitTermination() throws InterruptedException {
+    while (!executorService.awaitTermination(1, TimeUnit.MINUTES)) {
+      // Keep waiting for the operations still in progress
+    }
+  }
+
+  /**
+   * Apply the operation to every device with bounded concurrency
+   *
+   * @param operation       The operation
+   * @param timeoutMillis   The overall deadline in milliseconds (zero to wait indefinitely)
+   * @param cancelOnTimeout True if operations that have not started by the deadline should be abandoned
+   * @return The outcome for each device in group order
+   */
+  private GroupResult execute(final DeviceOperation operation, int timeoutMillis, boolean cancelOnTimeout) {
+
+    final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+
+    List<Future<Outcome>> futures = new ArrayList<>(devices.size());
+    for (final HidDevice device : devices) {
+      futures.add(executorService.submit(new Callable<Outcome>() {
+        @Override
+        public Outcome call() {
+          try {
+            return operation.apply(device);
+          } catch (HidException e) {
+            return new Outcome(device, -1, e.getMessage());
+          }
+        }
+      }));
+    }
+
+    List<Outcome> outcomes = new ArrayList<>(devices.size());
+    boolean interrupted = false;
+    for (int i = 0; i < futures.size(); i++) {
+      HidDevice device = devices.get(i);
+      Future<Outcome> future = futures.get(i);
+      try {
+        if (timeoutMillis == 0) {
+          outcomes.add(future.get());
+        } else {
+          outcomes.add(future.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS));
+        }
+      } catch (InterruptedException e) {
+        // Keep collecting so that no operation is abandoned part way through
+        interrupted = true;
+        i--;
+      } catch (ExecutionException e) {
+        outcomes.add(new Outcome(device, -1, String.valueOf(e.getCause())));
+      } catch (TimeoutException e) {
+        if (cancelOnTimeout) {
+          // Prevent devices that have not started from holding up the next operation
+          future.cancel(false);
+        }
+        outcomes.add(new Outcome(device, -1, TIMED_OUT, true));
+      }
+    }
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+    }
+
+    return new GroupResult(outcomes);
+  }
+
+  private static String errorMessage(HidDevice device, String defaultMessage) {
+    String message = device.getLastErrorMessage();
+    return message == null ? defaultMessage : message;
+  }
+
+  /**
+   * An operation applied to each device in the group
+   */
+  private interface DeviceOperation {
+
+    Outcome apply(HidDevice device);
+
+  }
+
+  /**
+   * The result of an operation on a single device within the group
+   */
+  public static class Outcome {
+
+    private final HidDevice device;
+    private final int bytesWritten;
+    private final String errorMessage;
+    private final boolean timedOut;
+
+    Outcome(HidDevice device, int bytesWritten, String errorMessage) {
+      this(device, bytesWritten, errorMessage, false);
+    }
+
+    Outcome(HidDevice device, int bytesWritten, String errorMessage, boolean timedOut) {
+      this.device = device;
+      this.bytesWritten = bytesWritten;
+      this.errorMessage = errorMessage;
+      this.timedOut = timedOut;
+    }
+
+    public HidDevice getDevice() {
+      return device;
+    }
+
+    /**
+     * @return The number of bytes written (including report ID), zero if dropped by a rate limiter or for open/close and -1 if an error occurred
+     */
+    public int getBytesWritten() {
+      return bytesWritten;
+    }
+
+    /**
+     * @return The error message or null if the operation succeeded
+     */
+    public String getErrorMessage() {
+      return errorMessage;
+    }
+
+    public boolean isSuccess() {
+      return errorMessage == null;
+    }
+
+    /**
+     * @return True if the operation did not finish before the deadline
+     */
+    public boolean isTimedOut() {
+      return timedOut;
+    }
+
+    @Override
+    public String toString() {
+      return "Outcome [path=" + device.getPath()
+        + ", bytesWritten=" + bytesWritten
+        + (errorMessage == null ? "" : ", errorMessage=" + errorMessage)
+        + "]";
+    }
+  }
+
+  /**
+   * The per-device outcomes of a group operation
+   */
+  public static class GroupResult {
+
+    private final List<Outcome> outcomes;
+
+    GroupResult(List<Outcome> outcomes) {
+      this.outcomes = Collections.unmodifiableList(outcomes);
+    }
+
+    /**
+     * @return The outcome for each device in group order
+     */
+    public List<Outcome> getOutcomes() {
+      return outcomes;
+    }
+
+    /**
+     * @return The outcomes of operations that failed or timed out
+     */
+    public List<Outcome> getFailures() {
+      List<Outcome> failures = new ArrayList<>();
+      for (Outcome outcome : outcomes) {
+        if (!outcome.isSuccess()) {
+          failures.add(outcome);
+        }
+      }
+      return failures;
+    }
+
+    public int getSuccessCount() {
+      return outcomes.size() - getFailures().size();
+    }
+
+    public boolean isAllSuccessful() {
+      return getFailures().isEmpty();
+    }
+  }
+
+}
@@ -27,9 +27,18 @@ package org.hid4java;
 
 import org.hid4java.event.HidServicesListenerList;
 import org.hid4java.jna.HidApi;
+import org.hid4java.jna.HidApiContext;
+import org.hid4java.jna.HidApiLibrary;
 import org.hid4java.jna.HidDeviceInfoStructure;
+import org.hid4java.jna.HidDeviceStructure;
+import org.hid4java.jfr.HidFlightRecorder;
+import org.hid4java.metrics.HidDeviceMetrics;
+import org.hid4java.metrics.HidMetricsRegistry;
+import org.hid4java.metrics.HidServicesMetrics;
 
 import java.util.*;
+import java.util.function.IntSupplier;
+import java.util.function.LongSupplier;
 
 /**
  * Manager to provide the following to HID services:
@@ -66,29 +75,150 @@ class HidDeviceManager {
    */
   private Thread scanThread = null;
 
+  /**
+   * Per device and manager level metrics
+   */
+  private final HidMetricsRegistry metricsRegistry;
+
+  /**
+   * The backend used by this manager and its devices (null until initialised)
+   */
+  private volatile HidApiContext hidApiContext = null;
+
+  /**
+   * Devices whose close did not finish within the close timeout when last stopped
+   */
+  private volatile List<HidDevice> closeTimedOutDevices = Collections.emptyList();
+
+  /**
+   * The group still closing devices in the background (null if every close finished in time)
+   */
+  private volatile HidDeviceGroup closingGroup = null;
+
   /**
    * Constructs a new device manager
    *
+   * Hidapi is not initialised until {@link #initialise()} is called
+   *
    * @param listenerList             The HID services providing access to the event model
    * @param hidServicesSpecification Provides various parameters for configuring HID services
-   *
-   * @throws HidException If USB HID initialization fails
    */
-  HidDeviceManager(HidServicesListenerList listenerList, HidServicesSpecification hidServicesSpecification) throws HidException {
+  HidDeviceManager(HidServicesListenerList listenerList, HidServicesSpecification hidServicesSpecification) {
 
     this.listenerList = listenerList;
     this.hidServicesSpecification = hidServicesSpecification;
 
-    // Attempt to initialise and fail fast
+    HidServicesMetrics servicesMetrics = new HidServicesMetrics(
+      new IntSupplier() {
+        @Override
+        public int getAsInt() {
+          return attachedDevices.size();
+        }
+      },
+      new IntSupplier() {
+        @Override
+        public int getAsInt() {
+          return listenerList.getQueueDepth();
+        }
+      },
+      new LongSupplier() {
+        @Override
+        public long getAsLong() {
+          return listenerList.getDroppedEventCount();
+        }
+      },
+      new LongSupplier() {
+        @Override
+        public long getAsLong() {
+          return listenerList.getCoalescedEventCount();
+        }
+      });
+    this.metricsRegistry = new HidMetricsRegistry(servicesMetrics, hidServicesSpecification.isJmxEnabled());
+
+  }
+
+  /**
+   * Load the configured hidapi library and initialise it in a context belonging to this manager
+   *
+   * The default context of the static {@link HidApi} methods is left alone.
+   *
+   * @throws HidException If USB HID initialization fails
+   */
+  void initialise() throws HidException {
+
+    HidApiLibrary hidApiLibrary = hidServicesSpecification.getHidApiLibrary();
+    if (hidApiLibrary == null && hidServicesSpecification.getBackendName() != null) {
+      hidApiLibrary = HidApi.createLibrary(hidServicesSpecification.getBackendName());
+      if (hidApiLibrary == null) {
+        throw new HidException("Unknown HID API backend: " + hidServicesSpecification.getBackendName());
+      }
+    }
+
+    HidApiContext context;
     try {
-      HidApi.init();
+      if (hidApiLibrary == null) {
+        context = HidApiContext.create();
+      } else {
+        context = new HidApiContext(hidApiLibrary);
+      }
     } catch (Throwable t) {
       // Typically this is a linking issue with the native library
       throw new HidException("Hidapi did not initialise: " + t.getMessage(), t);
     }
+    context.setLogTraffic(hidServicesSpecification.isLogTraffic());
+    hidApiContext = context;
 
   }
 
+  /**
+   * Release the context (the library is finalised once no other context is using it)
+   */
+  void exit() {
+    final HidApiContext context = hidApiContext;
+    if (context == null) {
+      return;
+    }
+    final HidDeviceGroup group = closingGroup;
+    if (group == null) {
+      context.exit();
+      return;
+    }
+
+    // Hidapi must not be finalised under a close in progress so wait for them in the background
+    Thread exitThread = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          group.awaitTermination();
+          context.exit();
+        } catch (InterruptedException e) {
+          // Leave the context alone rather than finalising it under an open device
+          Thread.currentThread().interrupt();
+        }
+      }
+    });
+    exitThread.setDaemon(true);
+    exitThread.setName("hid4java exit");
+    exitThread.start();
+  }
+
+  /**
+   * @return The devices whose close did not finish within the close timeout when last stopped
+   */
+  List<HidDevice> getCloseTimedOutDevices() {
+    return closeTimedOutDevices;
+  }
+
+  /**
+   * @param path The device path
+   *
+   * @return The device structure or null if the device could not be opened
+   */
+  HidDeviceStructure open(String path) {
+    HidApiContext context = hidApiContext;
+    return context == null ? HidApi.open(path) : context.open(path);
+  }
+
   /**
    * Starts the manager
    *
@@ -117,16 +247,40 @@ class HidDeviceManager {
   /**
    * Stop the scan thread and close all attached devices
    *
+   * Devices are closed in parallel within the configured close timeout. Any that take longer
+   * carry on closing in the background and {@link #exit()} waits for them.
+   *
    * This is normally part of a general application shutdown
    */
   public synchronized void stop() {
 
     stopScanThread();
 
-    // Close all attached devices
-    for (HidDevice hidDevice: attachedDevices.values()) {
-        hidDevice.close();
+    // Close all open devices in parallel to avoid a serial delay per device
+    List<HidDevice> openDevices = new ArrayList<>();
+    synchronized (attachedDevices) {
+      for (HidDevice hidDevice : attachedDevices.values()) {
+        if (!hidDevice.isClosed()) {
+          openDevices.add(hidDevice);
+        }
+      }
+    }
+    List<HidDevice> timedOut = new ArrayList<>();
+    if (!openDevices.isEmpty()) {
+      HidDeviceGroup hidDeviceGroup = new HidDeviceGroup(openDevices, hidServicesSpecification.getCloseParallelism());
+      HidDeviceGroup.GroupResult result = hidDeviceGroup.closeAll(hidServicesSpecification.getCloseTimeout());
+      // Closes that timed out carry on until the workers finish
+      hidDeviceGroup.shutdown();
+      for (HidDeviceGroup.Outcome outcome : result.getFailures()) {
+        if (outcome.isTimedOut()) {
+          timedOut.add(outcome.getDevice());
+        }
+      }
+      if (!timedOut.isEmpty()) {
+        closingGroup = hidDeviceGroup;
+      }
     }
+    closeTimedOutDevices = Collections.unmodifiableList(timedOut);
 
   }
 
@@ -138,6 +292,10 @@ class HidDeviceManager {
    */
   public synchronized void scan() {
 
+    long start = System.nanoTime();
+    Object jfr = HidFlightRecorder.beginScan();
+    int attachedCount = 0;
+
     List<String> removeList = new ArrayList<>();
 
     List<HidDevice> attachedHidDeviceList = getAttachedHidDevices();
@@ -148,6 +306,8 @@ class HidDeviceManager {
 
         // Device has become attached so add it but do not open
         attachedDevices.put(attachedDevice.getId(), attachedDevice);
+        metricsRegistry.attached(attachedDevice.getId());
+        attachedCount++;
 
         // Fire the event on a separate thread
         listenerList.fireHidDeviceAttached(attachedDevice);
@@ -164,6 +324,7 @@ class HidDeviceManager {
 
         // Keep track of removals
         removeList.add(deviceId);
+        metricsRegistry.detached(deviceId);
 
         // Fire the event on a separate thread
         listenerList.fireHidDeviceDetached(this.attachedDevices.get(deviceId));
@@ -176,6 +337,25 @@ class HidDeviceManager {
       this.attachedDevices.keySet().removeAll(removeList);
     }
 
+    metricsRegistry.getServicesMetrics().recordScan(start);
+    HidFlightRecorder.endScan(jfr, attachedHidDeviceList.size(), attachedCount, removeList.size());
+
+  }
+
+  /**
+   * @return The per device and manager level metrics
+   * @since 0.8.0
+   */
+  public HidMetricsRegistry getMetricsRegistry() {
+    return metricsRegistry;
+  }
+
+  /**
+   * @param path The device path
+   * @return The metrics shared by every device wrapper with this path
+   */
+  HidDeviceMetrics getDeviceMetrics(String path) {
+    return metricsRegistry.getDeviceMetrics(path);
   }
 
   /**
@@ -196,7 +376,7 @@ class HidDeviceManager {
     try {
       // Use 0,0 to list all attached devices
       // This comes back as a linked list from hidapi
-      root = HidApi.enumerateDevices(0, 0);
+      root = hidApiContext.enumerateDevices(0, 0);
     } catch (Throwable e) {
       // Could not initialise hidapi (possibly an unknown platform)
       // Trigger a general stop as something serious has happened
@@ -219,7 +399,7 @@ class HidDeviceManager {
       } while (hidDeviceInfoStructure != null);
 
       // Dispose of the device list to free memory
-      HidApi.freeEnumeration(root);
+      hidApiContext.freeEnumeration(root);
     }
 
     return hidDeviceList;
@@ -25,10 +25,13 @@
 
 package org.hid4java;
 
+import org.hid4java.jna.HidApi;
+
 /**
  * Factory to provide the following to API consumers:
  * <ul>
  * <li>Access to configured HID services</li>
+ * <li>Independent HID services for sharding devices across isolated threads and backends</li>
  * </ul>
  *
  * @since 0.0.1
@@ -69,6 +72,10 @@ public class HidManager {
 
     synchronized (servicesLock) {
       if (null == hidServices) {
+        if (hidServicesSpecification.getHidApiLibrary() == null && hidServicesSpecification.getBackendName() == null) {
+          // Overlap extracting and loading the native library with constructing the services
+          HidApi.preloadNativeLibrary();
+        }
         hidServices = new HidServices(hidServicesSpecification);
       }
     }
@@ -77,4 +84,25 @@ public class HidManager {
 
   }
 
+  /**
+   * Independent service provider that is not shared with {@link #getHidServices()}
+   *
+   * Each call returns new HID services with their own scanner, data read threads, event dispatcher and
+   * backend so, for example, latency critical devices can be kept away from a busy device class. Use
+   * {@link HidServicesSpecification#setHidApiLibrary(org.hid4java.jna.HidApiLibrary)} or
+   * {@link HidServicesSpecification#setBackendName(String)} to give each a different backend.
+   *
+   * @param hidServicesSpecification Provides various parameters for configuring HID services
+   * @return New HID services using the specified parameters (shut down when no longer required)
+   * @since 0.8.0
+   */
+  public static HidServices createHidServices(HidServicesSpecification hidServicesSpecification) throws HidException {
+
+    if (hidServicesSpecification.getHidApiLibrary() == null && hidServicesSpecification.getBackendName() == null) {
+      HidApi.preloadNativeLibrary();
+    }
+    return new HidServices(hidServicesSpecification);
+
+  }
+
 }
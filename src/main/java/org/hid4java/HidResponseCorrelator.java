@@ -0,0 +1,327 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014-2020 Gary Rowe
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package org.hid4java;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.BiConsumer;
+
+/**
+ * Correlator to provide the following to {@link HidDevice}:
+ * <ul>
+ * <li>Many requests in flight on one device at the same time</li>
+ * <li>Routing of each input report to the oldest pending request whose matcher accepts it</li>
+ * <li>Forwarding of unmatched input reports as data received events (if automatic data read is configured)</li>
+ * </ul>
+ *
+ * A single reader thread owns the input stream while any transaction is pending and stops
+ * once none remain, so that direct reads and the automatic data read can resume.
+ *
+ * @since 0.8.0
+ */
+class HidResponseCorrelator {
+
+  /**
+   * Large enough for any full or high speed interrupt report
+   */
+  private static final int MAX_REPORT_LENGTH = 1024;
+
+  /**
+   * Read timeout used by the reader thread so that it can notice a stop request
+   */
+  private static final int READ_TIMEOUT_MILLIS = 100;
+
+  /**
+   * Read result used internally when the device was closed by another thread
+   */
+  private static final int DEVICE_CLOSED = Integer.MIN_VALUE;
+
+  /**
+   * Shared timer for transaction timeouts
+   */
+  private static final ScheduledThreadPoolExecutor timer = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+    @Override
+    public Thread newThread(Runnable runnable) {
+      Thread thread = Executors.defaultThreadFactory().newThread(runnable);
+      thread.setName("hid4java transaction timer");
+      thread.setDaemon(true);
+      return thread;
+    }
+  });
+
+  static {
+    timer.setRemoveOnCancelPolicy(true);
+  }
+
+  private final HidDevice hidDevice;
+  private final HidDeviceManager hidDeviceManager;
+  private final boolean forwardUnmatched;
+
+  /**
+   * Pending transactions in the order they were made
+   */
+  private final Queue<Pending> pending = new ConcurrentLinkedQueue<>();
+
+  private volatile boolean running = false;
+
+  /**
+   * The response read thread (replaced on restart so a stale reader can detect it should exit)
+   */
+  private volatile Thread readThread = null;
+
+  /**
+   * Held by the reader thread for the duration of each read
+   */
+  private final Object readLock = new Object();
+
+  /**
+   * @param hidDevice        The device
+   * @param hidDeviceManager The device manager for unmatched input reports (may be null)
+   * @param forwardUnmatched True if unmatched input reports should fire data received events
+   */
+  HidResponseCorrelator(HidDevice hidDevice, HidDeviceManager hidDeviceManager, boolean forwardUnmatched) {
+    this.hidDevice = hidDevice;
+    this.hidDeviceManager = hidDeviceManager;
+    this.forwardUnmatched = forwardUnmatched;
+  }
+
+  /**
+   * @return True if the reader thread is running
+   */
+  boolean isRunning() {
+    return running;
+  }
+
+  /**
+   * Register the matcher and start the reader if required
+   *
+   * The caller writes the request afterwards (see {@link #write(byte[], CompletableFuture)}).
+   *
+   * @param matcher The response matcher
+   * @param timeout The time to wait for a matching response
+   * @return The future response
+   */
+  CompletableFuture<byte[]> register(ResponseMatcher matcher, Duration timeout) {
+
+    final CompletableFuture<byte[]> future = new CompletableFuture<>();
+    final Pending transaction = new Pending(matcher, future);
+
+    // Register before writing so that a fast response cannot be missed
+    pending.add(transaction);
+    start();
+
+    final ScheduledFuture<?> timeoutTask = timer.schedule(new Runnable() {
+      @Override
+      public void run() {
+        future.completeExceptionally(new TimeoutException("No matching response from " + hidDevice.getPath()));
+      }
+    }, timeout.toNanos(), TimeUnit.NANOSECONDS);
+
+    // Tidy up however the future completes (including cancellation by the caller)
+    future.whenComplete(new BiConsumer<byte[], Throwable>() {
+      @Override
+      public void accept(byte[] response, Throwable throwable) {
+        timeoutTask.cancel(false);
+        pending.remove(transaction);
+      }
+    });
+
+    return future;
+  }
+
+  /**
+   * Write the request for a registered transaction
+   *
+   * @param request The request with the report ID in the first byte
+   * @param future  The future response from {@link #register(ResponseMatcher, Duration)}
+   */
+  void write(byte[] request, CompletableFuture<byte[]> future) {
+
+    byte[] data = Arrays.copyOfRange(request, 1, request.length);
+    if (hidDevice.write(data, data.length, request[0]) < 0) {
+      future.completeExceptionally(new HidException("Write failed: " + hidDevice.getLastErrorMessage()));
+    }
+
+  }
+
+  /**
+   * Start the reader thread
+   *
+   * If already started it will immediately return without doing anything
+   */
+  synchronized void start() {
+
+    if (running) {
+      return;
+    }
+    running = true;
+
+    readThread = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        readLoop();
+      }
+    });
+    readThread.setDaemon(true);
+    readThread.setName("hid4java response reader");
+    readThread.start();
+
+  }
+
+  /**
+   * Stop the reader thread and fail all pending transactions
+   *
+   * Waits for any read in progress so that the device may be closed safely afterwards.
+   */
+  void stop() {
+
+    synchronized (this) {
+      running = false;
+      readThread = null;
+
+      HidException closed = new HidException("Device closed");
+      for (Pending transaction : pending) {
+        transaction.future.completeExceptionally(closed);
+      }
+    }
+
+    // Wait for any read in progress (the reader checks for the stop before its next read)
+    synchronized (readLock) {
+      readThread = null;
+    }
+
+  }
+
+  private void readLoop() {
+
+    byte[] buffer = new byte[MAX_REPORT_LENGTH];
+
+    while (running && Thread.currentThread() == readThread) {
+
+      int bytesRead;
+      synchronized (readLock) {
+        if (!running || Thread.currentThread() != readThread) {
+          break;
+        }
+        try {
+          bytesRead = hidDevice.read(buffer, READ_TIMEOUT_MILLIS);
+        } catch (IllegalStateException e) {
+          // Device has been closed underneath us
+          bytesRead = DEVICE_CLOSED;
+        }
+      }
+      if (bytesRead == DEVICE_CLOSED) {
+        stop();
+        break;
+      }
+
+      if (bytesRead < 0) {
+        HidException failure = new HidException("Read failed: " + hidDevice.getLastErrorMessage());
+        for (Pending transaction : pending) {
+          transaction.future.completeExceptionally(failure);
+        }
+      } else if (bytesRead > 0) {
+        route(Arrays.copyOf(buffer, bytesRead));
+      }
+
+      if (stopIfIdle()) {
+        break;
+      }
+    }
+
+  }
+
+  /**
+   * Hand the input stream back once no transaction is pending
+   *
+   * Registration adds the transaction before calling {@link #start()} so holding the
+   * lock here means a new transaction either keeps this reader or starts another.
+   *
+   * @return True if the reader should exit
+   */
+  private synchronized boolean stopIfIdle() {
+
+    if (Thread.currentThread() != readThread) {
+      return true;
+    }
+    if (!pending.isEmpty()) {
+      return false;
+    }
+    running = false;
+    readThread = null;
+    return true;
+
+  }
+
+  /**
+   * @param response The input report
+   */
+  private void route(byte[] response) {
+
+    Iterator<Pending> iterator = pending.iterator();
+    while (iterator.hasNext()) {
+      Pending transaction = iterator.next();
+      final boolean matched;
+      try {
+        matched = transaction.matcher.matches(response);
+      } catch (RuntimeException e) {
+        transaction.future.completeExceptionally(e);
+        continue;
+      }
+      // Skip any that completed (e.g. timed out) since iteration began
+      if (matched && transaction.future.complete(response)) {
+        return;
+      }
+    }
+
+    if (forwardUnmatched && hidDeviceManager != null) {
+      hidDeviceManager.afterDeviceDataRead(hidDevice, response);
+    }
+
+  }
+
+  private static final class Pending {
+
+    private final ResponseMatcher matcher;
+    private final CompletableFuture<byte[]> future;
+
+    private Pending(ResponseMatcher matcher, CompletableFuture<byte[]> future) {
+      this.matcher = matcher;
+      this.future = future;
+    }
+  }
+
+}
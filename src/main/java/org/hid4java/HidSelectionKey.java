@@ -0,0 +1,149 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014-2020 Gary Rowe
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package org.hid4java;
+
+import com.sun.jna.Pointer;
+
+import java.util.ArrayDeque;
+
+/**
+ * The registration of a {@link HidDevice} with a {@link HidSelector}
+ *
+ * Input reports read by the selector are buffered here until consumed with
+ * {@link #read()}. If the consumer falls behind, the oldest reports are dropped
+ * once {@link HidSelector#REPORT_CAPACITY} reports are waiting.
+ *
+ * @since 0.8.0
+ */
+public class HidSelectionKey {
+
+  private final HidSelector selector;
+  private final HidDevice hidDevice;
+
+  /**
+   * Owned by the poller thread (guarded by this)
+   */
+  final byte[] buffer;
+
+  /**
+   * The device handle (set on registration)
+   */
+  Pointer handle;
+
+  /**
+   * Reports waiting to be consumed (guarded by the selector lock)
+   */
+  final ArrayDeque<byte[]> reports = new ArrayDeque<>();
+
+  /**
+   * Guarded by the selector lock
+   */
+  long droppedReports = 0;
+
+  private volatile boolean valid = true;
+  private volatile boolean failed = false;
+
+  HidSelectionKey(HidSelector selector, HidDevice hidDevice, int reportLength) {
+    this.selector = selector;
+    this.hidDevice = hidDevice;
+    this.buffer = new byte[reportLength];
+  }
+
+  /**
+   * @return The next input report or null if none are waiting
+   */
+  public byte[] read() {
+    return selector.read(this);
+  }
+
+  /**
+   * @return The number of input reports waiting to be consumed
+   */
+  public int available() {
+    return selector.available(this);
+  }
+
+  /**
+   * @return The number of input reports dropped because the consumer fell behind
+   */
+  public long getDroppedReports() {
+    return selector.droppedReports(this);
+  }
+
+  public HidDevice getHidDevice() {
+    return hidDevice;
+  }
+
+  public HidSelector getSelector() {
+    return selector;
+  }
+
+  /**
+   * @return True until the key is cancelled, the selector closed or a read fails
+   */
+  public boolean isValid() {
+    return valid;
+  }
+
+  /**
+   * @return True if the key was invalidated by a failed read (e.g. the device was detached)
+   */
+  public boolean isFailed() {
+    return failed;
+  }
+
+  /**
+   * Stop polling the device and return it to blocking mode
+   *
+   * Waits for any read in progress so that the device may be closed safely
+   * afterwards. Reports already buffered remain available to {@link #read()}.
+   */
+  public void cancel() {
+    synchronized (this) {
+      if (!valid) {
+        return;
+      }
+      valid = false;
+    }
+    selector.deregister(this);
+    if (!failed && !hidDevice.isClosed()) {
+      hidDevice.setNonBlocking(false);
+    }
+  }
+
+  /**
+   * Invalidate the key following a failed read (called by the poller holding this lock)
+   */
+  void fail() {
+    failed = true;
+    valid = false;
+  }
+
+  @Override
+  public String toString() {
+    return "HidSelectionKey [path=" + hidDevice.getPath() + ", valid=" + valid + ", failed=" + failed + "]";
+  }
+}
@@ -0,0 +1,565 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014-2020 Gary Rowe
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package org.hid4java;
+
+import com.sun.jna.Pointer;
+import org.hid4java.jna.HidApiContext;
+import org.hid4java.jna.HidInputMultiplexer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Multiplexed reader to provide the following to API consumers:
+ * <ul>
+ * <li>Input from many open devices serviced by a small number of poller threads</li>
+ * <li>A {@link #select(int)} call returning the devices with input reports waiting</li>
+ * <li>Adaptive polling that spins while reports are arriving and parks when idle</li>
+ * </ul>
+ *
+ * Registered devices are put into non-blocking mode. Devices opened by different
+ * {@link HidApiContext}s are serviced by separate pollers, started when the first device of a
+ * context is registered. Where the backend offers readiness notification (see
+ * {@link HidApiContext#openInputMultiplexer()}) each poller waits on its devices and reads only
+ * those with input. Otherwise devices are polled round-robin since hidapi offers no readiness
+ * notification. Devices must not also use automatic data read or be
+ * read directly while registered.
+ *
+ * @since 0.8.0
+ */
+public class HidSelector {
+
+  /**
+   * The maximum number of reports buffered per device before the oldest is dropped
+   */
+  public static final int REPORT_CAPACITY = 256;
+
+  /**
+   * The maximum number of ready devices returned by a single wait
+   */
+  private static final int MAX_READY = 256;
+
+  /**
+   * The maximum number of reads from one device before moving to the next
+   */
+  private static final int MAX_READS_PER_PASS = 16;
+
+  /**
+   * Time after the last backlogged pass during which passes yield rather than park
+   */
+  private static final long SPIN_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+
+  private static final long MIN_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+
+  /**
+   * Time to wait for the poller threads to stop during a close
+   */
+  private static final long STOP_TIMEOUT_MILLIS = 1000;
+
+  private final int pollerThreads;
+  private final long maxParkNanos;
+
+  /**
+   * Every poller that has been started
+   */
+  private final List<Poller> pollers = new CopyOnWriteArrayList<>();
+
+  /**
+   * The pollers for the devices of each context, keyed by null for devices without one (guards adding pollers)
+   */
+  private final Map<HidApiContext, List<Poller>> contextPollers = new IdentityHashMap<>();
+
+  /**
+   * Guards the ready set and the buffered reports of every key
+   */
+  private final ReentrantLock lock = new ReentrantLock();
+  private final Condition readyCondition = lock.newCondition();
+  private final Set<HidSelectionKey> ready = new LinkedHashSet<>();
+  private boolean wakeup = false;
+
+  private volatile boolean closed = false;
+
+  /**
+   * Create a selector with a single poller thread
+   */
+  public HidSelector() {
+    this(1);
+  }
+
+  /**
+   * @param pollerThreads The number of threads sharing the polling of the registered devices of each context
+   */
+  public HidSelector(int pollerThreads) {
+    this(pollerThreads, 1000);
+  }
+
+  /**
+   * @param pollerThreads The number of threads sharing the polling of the registered devices of each context
+   * @param maxParkMicros The longest an idle poller sleeps between passes (trades latency for CPU)
+   */
+  public HidSelector(int pollerThreads, int maxParkMicros) {
+    if (pollerThreads < 1) {
+      throw new IllegalArgumentException("'pollerThreads' must be greater than zero.");
+    }
+    if (maxParkMicros < 0) {
+      throw new IllegalArgumentException("'maxParkMicros' must be greater than or equal to zero.");
+    }
+    this.pollerThreads = pollerThreads;
+    this.maxParkNanos = TimeUnit.MICROSECONDS.toNanos(maxParkMicros);
+  }
+
+  /**
+   * Register a device for 64 byte input reports
+   *
+   * @param hidDevice The open device
+   * @return The selection key
+   */
+  public HidSelectionKey register(HidDevice hidDevice) {
+    return register(hidDevice, 64);
+  }
+
+  /**
+   * Register a device putting it into non-blocking mode
+   *
+   * @param hidDevice    The open device (not using automatic data read)
+   * @param reportLength The input report buffer length
+   * @return The selection key
+   * @throws IllegalStateException If the selector is closed, the device is closed or already registered
+   */
+  public HidSelectionKey register(HidDevice hidDevice, int reportLength) {
+
+    if (reportLength < 1) {
+      throw new IllegalArgumentException("'reportLength' must be greater than zero.");
+    }
+    if (hidDevice.isAutoDataRead()) {
+      throw new IllegalArgumentException("'hidDevice' must not use automatic data read.");
+    }
+    if (closed) {
+      throw new IllegalStateException("Selector is closed");
+    }
+
+    HidSelectionKey key = new HidSelectionKey(this, hidDevice, reportLength);
+    HidApiContext context;
+    synchronized (hidDevice) {
+      if (hidDevice.getSelectionKey() != null) {
+        throw new IllegalStateException("Device is already registered with a selector");
+      }
+      // Fails if the device has not been opened
+      hidDevice.setNonBlocking(true);
+      key.handle = hidDevice.getHidDeviceStructure().ptr();
+      context = hidDevice.getHidDeviceStructure().context();
+      hidDevice.setSelectionKey(key);
+    }
+
+    // Balance the devices across the pollers of their context
+    List<Poller> candidates;
+    try {
+      candidates = pollers(context);
+    } catch (IllegalStateException e) {
+      // Closed since the check above
+      hidDevice.setSelectionKey(null);
+      throw e;
+    }
+    Poller target = candidates.get(0);
+    for (Poller poller : candidates) {
+      if (poller.keys.size() < target.keys.size()) {
+        target = poller;
+      }
+    }
+    if (!target.add(key)) {
+      hidDevice.setSelectionKey(null);
+      throw new HidException("Unable to wait for input from device: " + hidDevice.getPath());
+    }
+
+    return key;
+  }
+
+  /**
+   * @param context The context that opened the device (null if not known)
+   * @return The pollers for devices of the context, started on first use
+   * @throws IllegalStateException If the selector is closed
+   */
+  private List<Poller> pollers(HidApiContext context) {
+
+    synchronized (contextPollers) {
+      if (closed) {
+        throw new IllegalStateException("Selector is closed");
+      }
+      List<Poller> started = contextPollers.get(context);
+      if (started == null) {
+        started = new ArrayList<>();
+        for (int i = 0; i < pollerThreads; i++) {
+          // Readiness can only be reported by the backend that opened the device
+          Poller poller = new Poller(context == null ? null : context.openInputMultiplexer());
+          started.add(poller);
+          pollers.add(poller);
+          poller.thread.start();
+        }
+        contextPollers.put(context, started);
+      }
+      return started;
+    }
+
+  }
+
+  /**
+   * Wait for at least one registered device to have input reports waiting
+   *
+   * A key remains selected until its reports have been consumed with
+   * {@link HidSelectionKey#read()}. Keys invalidated by a failed read are
+   * selected once so the failure can be observed.
+   *
+   * @param timeoutMillis The number of milliseconds to wait (0 returns immediately, -1 waits indefinitely)
+   * @return The selected keys (empty on timeout, {@link #wakeup()} or interrupt)
+   */
+  public Set<HidSelectionKey> select(int timeoutMillis) {
+
+    lock.lock();
+    try {
+      long remaining = TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+      while (ready.isEmpty() && !wakeup && !closed) {
+        if (timeoutMillis < 0) {
+          readyCondition.await();
+        } else if (remaining > 0) {
+          remaining = readyCondition.awaitNanos(remaining);
+        } else {
+          break;
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } finally {
+      wakeup = false;
+      lock.unlock();
+    }
+
+    return selectedKeys();
+
+  }
+
+  /**
+   * @return The keys with input reports waiting (or failed) without blocking
+   */
+  public Set<HidSelectionKey> selectedKeys() {
+    lock.lock();
+    try {
+      return new LinkedHashSet<>(ready);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Cause a blocked (or the next) {@link #select(int)} to return immediately
+   */
+  public void wakeup() {
+    lock.lock();
+    try {
+      wakeup = true;
+      readyCondition.signalAll();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * @return The keys currently being polled
+   */
+  public Set<HidSelectionKey> keys() {
+    Set<HidSelectionKey> keys = new LinkedHashSet<>();
+    for (Poller poller : pollers) {
+      keys.addAll(poller.keys);
+    }
+    return Collections.unmodifiableSet(keys);
+  }
+
+  /**
+   * Cancel all keys and stop the poller threads
+   */
+  public void close() {
+
+    synchronized (contextPollers) {
+      if (closed) {
+        return;
+      }
+      closed = true;
+    }
+
+    for (Poller poller : pollers) {
+      for (HidSelectionKey key : poller.keys) {
+        key.cancel();
+      }
+      poller.stop();
+    }
+    wakeup();
+
+  }
+
+  public boolean isClosed() {
+    return closed;
+  }
+
+  void deregister(HidSelectionKey key) {
+    for (Poller poller : pollers) {
+      poller.remove(key);
+    }
+    key.getHidDevice().setSelectionKey(null);
+  }
+
+  byte[] read(HidSelectionKey key) {
+    lock.lock();
+    try {
+      byte[] report = key.reports.poll();
+      if (key.reports.isEmpty()) {
+        ready.remove(key);
+      }
+      return report;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  int available(HidSelectionKey key) {
+    lock.lock();
+    try {
+      return key.reports.size();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  long droppedReports(HidSelectionKey key) {
+    lock.lock();
+    try {
+      return key.droppedReports;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Buffer a report and select the key
+   *
+   * @param key    The key
+   * @param report The report (null if the key has failed)
+   */
+  private void offer(HidSelectionKey key, byte[] report) {
+    lock.lock();
+    try {
+      if (report != null) {
+        if (key.reports.size() >= REPORT_CAPACITY) {
+          key.reports.poll();
+          key.droppedReports++;
+        }
+        key.reports.add(report);
+      }
+      if (ready.add(key)) {
+        readyCondition.signalAll();
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * A poller thread servicing a share of the registered devices
+   */
+  private final class Poller implements Runnable {
+
+    private final List<HidSelectionKey> keys = new CopyOnWriteArrayList<>();
+    private final Thread thread;
+
+    /**
+     * Readiness notification (null to poll round-robin)
+     */
+    private final HidInputMultiplexer multiplexer;
+    private final Map<Long, HidSelectionKey> handles = new ConcurrentHashMap<>();
+
+    private Poller(HidInputMultiplexer multiplexer) {
+      this.multiplexer = multiplexer;
+      thread = new Thread(this);
+      thread.setDaemon(true);
+      thread.setName("hid4java selector");
+    }
+
+    /**
+     * @return True if the key will be polled
+     */
+    private boolean add(HidSelectionKey key) {
+      keys.add(key);
+      if (multiplexer == null) {
+        LockSupport.unpark(thread);
+        return true;
+      }
+      handles.put(Pointer.nativeValue(key.handle), key);
+      if (!multiplexer.register(key.handle)) {
+        keys.remove(key);
+        handles.remove(Pointer.nativeValue(key.handle));
+        return false;
+      }
+      return true;
+    }
+
+    private void remove(HidSelectionKey key) {
+      if (keys.remove(key) && multiplexer != null) {
+        multiplexer.deregister(key.handle);
+        handles.remove(Pointer.nativeValue(key.handle));
+      }
+    }
+
+    private void stop() {
+      thread.interrupt();
+      if (multiplexer != null) {
+        multiplexer.wakeup();
+        if (Thread.currentThread() != thread) {
+          try {
+            thread.join(STOP_TIMEOUT_MILLIS);
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          }
+        }
+        multiplexer.close();
+      }
+    }
+
+    @Override
+    public void run() {
+      if (multiplexer == null) {
+        pollLoop();
+      } else {
+        awaitLoop();
+      }
+    }
+
+    /**
+     * Read only the devices reported ready by the multiplexer
+     */
+    private void awaitLoop() {
+
+      Pointer[] ready = new Pointer[MAX_READY];
+      while (!closed && !Thread.currentThread().isInterrupted()) {
+        int count = multiplexer.await(ready, -1);
+        if (count < 0) {
+          // Avoid spinning on a persistent failure
+          LockSupport.parkNanos(this, maxParkNanos);
+          continue;
+        }
+        for (int i = 0; i < count; i++) {
+          HidSelectionKey key = handles.get(Pointer.nativeValue(ready[i]));
+          if (key != null) {
+            poll(key);
+          }
+        }
+      }
+
+    }
+
+    /**
+     * Read every device in turn with adaptive spin then park
+     */
+    private void pollLoop() {
+
+      long lastBacklog = System.nanoTime();
+      long parkNanos = MIN_PARK_NANOS;
+      while (!closed && !Thread.currentThread().isInterrupted()) {
+
+        if (keys.isEmpty()) {
+          // Nothing to poll until a device is registered
+          LockSupport.park(this);
+          continue;
+        }
+
+        boolean found = false;
+        boolean backlog = false;
+        for (HidSelectionKey key : keys) {
+          int reports = poll(key);
+          found |= reports > 0;
+          backlog |= reports == MAX_READS_PER_PASS;
+        }
+
+        if (backlog) {
+          // Reports are arriving faster than a pass so keep going
+          lastBacklog = System.nanoTime();
+          parkNanos = MIN_PARK_NANOS;
+        } else if (System.nanoTime() - lastBacklog < SPIN_NANOS) {
+          Thread.yield();
+        } else {
+          // Park for less while reports are found and back off exponentially while idle
+          parkNanos = found ? Math.max(MIN_PARK_NANOS, parkNanos >> 1) : Math.min(parkNanos << 1, maxParkNanos);
+          LockSupport.parkNanos(this, Math.min(parkNanos, maxParkNanos));
+        }
+      }
+
+    }
+
+    /**
+     * @return The number of reports read (at most {@link #MAX_READS_PER_PASS})
+     */
+    private int poll(HidSelectionKey key) {
+
+      int reports = 0;
+      boolean failed = false;
+      synchronized (key) {
+        if (!key.isValid()) {
+          return 0;
+        }
+        for (int i = 0; i < MAX_READS_PER_PASS; i++) {
+          int bytesRead = key.getHidDevice().poll(key.buffer);
+          if (bytesRead == 0) {
+            break;
+          }
+          if (bytesRead < 0) {
+            key.fail();
+            failed = true;
+            break;
+          }
+          offer(key, Arrays.copyOf(key.buffer, bytesRead));
+          reports++;
+        }
+      }
+
+      if (failed) {
+        deregister(key);
+        offer(key, null);
+      }
+      return reports;
+
+    }
+  }
+
+}
@@ -27,10 +27,18 @@ package org.hid4java;
 
 import org.hid4java.event.HidServicesListenerList;
 import org.hid4java.jna.HidApi;
+import org.hid4java.metrics.HidServicesMetrics;
 
 import java.io.IOException;
 import java.net.URL;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
 import java.util.jar.Attributes;
 import java.util.jar.Manifest;
 
@@ -48,13 +56,23 @@ public class HidServices {
   /**
    * The HID services listeners for receiving attach/detach events etc
    */
-  private final HidServicesListenerList listeners = new HidServicesListenerList();
+  private final HidServicesListenerList listeners;
 
   /**
    * The HID device manager handles scanning operations
    */
   private final HidDeviceManager hidDeviceManager;
 
+  /**
+   * Completes when hidapi has initialised and any automatic start (including the first scan) has finished
+   */
+  private final CompletableFuture<HidServices> ready = new CompletableFuture<>();
+
+  /**
+   * The time in milliseconds that stopping waits for initialisation (zero to wait indefinitely)
+   */
+  private final int stopTimeout;
+
   /**
    * Jar entry point to allow for version interrogation
    *
@@ -67,24 +85,45 @@ public class HidServices {
   /**
    * Initialise with a default HID specification
    *
-   * @throws HidException If something goes wrong (see {@link HidDeviceManager#HidDeviceManager(HidServicesListenerList, HidServicesSpecification)}
+   * @throws HidException If something goes wrong (see {@link HidDeviceManager#initialise()}
    */
   public HidServices() throws HidException {
     this(new HidServicesSpecification());
   }
 
   /**
+   * If asynchronous initialisation is configured this returns immediately and any failure
+   * is reported through {@link #getReady()} instead
+   *
    * @param hidServicesSpecification Provides various parameters for configuring HID services
-   * @throws HidException If something goes wrong (see {@link HidDeviceManager#HidDeviceManager(HidServicesListenerList, HidServicesSpecification)}
+   * @throws HidException If something goes wrong (see {@link HidDeviceManager#initialise()}
    */
   public HidServices(HidServicesSpecification hidServicesSpecification) {
+    listeners = new HidServicesListenerList(hidServicesSpecification.getEventQueueCapacity(), hidServicesSpecification.getEventQueuePolicy());
     hidDeviceManager = new HidDeviceManager(listeners, hidServicesSpecification);
+    stopTimeout = hidServicesSpecification.getCloseTimeout();
 
-    // Check for automatic start (default behaviour for 0.6.0 and below)
-    // which will prevent an attachment event firing if the device is already
-    // attached since listeners will not have been registered at this point
-    if (hidServicesSpecification.isAutoStart()) {
-      hidDeviceManager.start();
+    final boolean autoStart = hidServicesSpecification.isAutoStart();
+    if (hidServicesSpecification.isAsyncInitialisation()) {
+      // Keep native library loading and USB enumeration off the caller's thread
+      // Listeners registered straight after construction will see attachment events from the first scan
+      Thread initialisationThread = new Thread(new Runnable() {
+        @Override
+        public void run() {
+          try {
+            initialise(autoStart);
+            ready.complete(HidServices.this);
+          } catch (Throwable t) {
+            ready.completeExceptionally(t);
+          }
+        }
+      });
+      initialisationThread.setDaemon(true);
+      initialisationThread.setName("hid4java initialisation");
+      initialisationThread.start();
+    } else {
+      initialise(autoStart);
+      ready.complete(this);
     }
 
     if (hidServicesSpecification.isAutoShutdown()) {
@@ -101,12 +140,79 @@ public class HidServices {
   }
 
   /**
-   * Stop all device threads and shut down the {@link HidApi}
+   * @param autoStart True if the device manager should start (including a one-off scan) once hidapi is available
+   */
+  private void initialise(boolean autoStart) {
+
+    hidDeviceManager.initialise();
+
+    // Check for automatic start (default behaviour for 0.6.0 and below)
+    // which will prevent an attachment event firing if the device is already
+    // attached since listeners will not have been registered at this point
+    if (autoStart) {
+      hidDeviceManager.start();
+    }
+
+  }
+
+  /**
+   * Provides a way to wait for, or be notified of, the end of initialisation without blocking
+   * application startup. Cancelling the returned future has no effect on initialisation.
+   *
+   * @return A future that completes with these services once hidapi has initialised and any automatic start
+   * (including the first scan) has finished, or exceptionally if initialisation failed
+   * @since 0.8.0
+   */
+  public CompletableFuture<HidServices> getReady() {
+    return ready.thenApply(Function.<HidServices>identity());
+  }
+
+  /**
+   * Wait for initialisation to finish
+   *
+   * @throws HidException If initialisation failed
+   */
+  private void awaitReady() {
+    try {
+      ready.join();
+    } catch (CompletionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof HidException) {
+        throw (HidException) cause;
+      }
+      throw new HidException("Hidapi did not initialise: " + cause.getMessage(), cause);
+    }
+  }
+
+  /**
+   * Stop all device and event threads and release the {@link HidApi} context of these services
+   *
+   * If initialisation is still running after the close timeout this returns and the device threads are
+   * stopped and the context released once it finishes
    */
   public void shutdown() {
+    if (!awaitInitialisation()) {
+      this.listeners.clear();
+      this.listeners.shutdown();
+      hidDeviceManager.getMetricsRegistry().close();
+      whenInitialised(new Runnable() {
+        @Override
+        public void run() {
+          hidDeviceManager.stop();
+          exit();
+        }
+      });
+      return;
+    }
     stop();
+    this.listeners.shutdown();
+    hidDeviceManager.getMetricsRegistry().close();
+    exit();
+  }
+
+  private void exit() {
     try {
-      HidApi.exit();
+      hidDeviceManager.exit();
     } catch (Throwable e) {
       // Silently fail (user will already have been given an exception)
     }
@@ -116,17 +222,75 @@ public class HidServices {
    * Stop all threads (enumeration, data read etc), close all devices
    * and clear all listeners
    *
-   * Normally part of an application shutdown
+   * Normally part of an application shutdown. If initialisation is still running after the close
+   * timeout this returns and the device threads are stopped once it finishes.
    */
   public void stop() {
-    hidDeviceManager.stop();
+    // Avoid racing an asynchronous start that would otherwise begin scanning after this
+    if (awaitInitialisation()) {
+      hidDeviceManager.stop();
+    } else {
+      whenInitialised(new Runnable() {
+        @Override
+        public void run() {
+          hidDeviceManager.stop();
+        }
+      });
+    }
     this.listeners.clear();
   }
 
+  /**
+   * Wait for initialisation for at most the close timeout (stopping may be running in a shutdown hook)
+   *
+   * @return True if initialisation has finished (successfully or not)
+   */
+  private boolean awaitInitialisation() {
+    try {
+      if (stopTimeout == 0) {
+        ready.join();
+      } else {
+        ready.get(stopTimeout, TimeUnit.MILLISECONDS);
+      }
+    } catch (CompletionException | ExecutionException e) {
+      // Initialisation failed so nothing was started
+    } catch (TimeoutException e) {
+      return false;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return false;
+    }
+    return true;
+  }
+
+  /**
+   * @param task The task to run on the initialisation thread once it finishes (or now if it has)
+   */
+  private void whenInitialised(final Runnable task) {
+    ready.whenComplete(new BiConsumer<HidServices, Throwable>() {
+      @Override
+      public void accept(HidServices hidServices, Throwable throwable) {
+        task.run();
+      }
+    });
+  }
+
+  /**
+   * Devices that take longer to close than the close timeout carry on closing in the background and
+   * hidapi is only finalised by {@link #shutdown()} once they have all closed.
+   *
+   * @return The devices whose close did not finish within the close timeout when these services last stopped
+   * @since 0.8.0
+   */
+  public List<HidDevice> getCloseTimedOutDevices() {
+    return hidDeviceManager.getCloseTimedOutDevices();
+  }
+
   /**
    * Start all threads (enumeration, data read etc) as configured
    */
   public void start() {
+    awaitReady();
     hidDeviceManager.start();
   }
 
@@ -148,13 +312,17 @@ public class HidServices {
    * Manually scans for HID device connection changes and triggers listener events as required
    */
   public void scan() {
+    awaitReady();
     this.hidDeviceManager.scan();
   }
 
   /**
+   * Waits for asynchronous initialisation to finish if necessary
+   *
    * @return A list of all attached HID devices
    */
   public List<HidDevice> getAttachedHidDevices() {
+    awaitReady();
     return hidDeviceManager.getAttachedHidDevices();
   }
 
@@ -166,6 +334,8 @@ public class HidServices {
    */
   public HidDevice getHidDevice(int vendorId, int productId, String serialNumber) {
 
+    awaitReady();
+
     List<HidDevice> devices = hidDeviceManager.getAttachedHidDevices();
     for (HidDevice device : devices) {
       if (device.isVidPidSerial(vendorId, productId, serialNumber)) {
@@ -177,6 +347,14 @@ public class HidServices {
     return null;
   }
 
+  /**
+   * @return The manager level metrics (see {@link HidDevice#getMetrics()} for per device metrics)
+   * @since 0.8.0
+   */
+  public HidServicesMetrics getMetrics() {
+    return hidDeviceManager.getMetricsRegistry().getServicesMetrics();
+  }
+
   /**
    * @return The current library version from the manifest or 0.0.x if an error occurs
    */
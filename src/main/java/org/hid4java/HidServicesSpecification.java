@@ -25,6 +25,8 @@
 
 package org.hid4java;
 
+import org.hid4java.jna.HidApiLibrary;
+
 /**
  * Specification to provide the following to API consumers:
  * <ul>
@@ -42,6 +44,15 @@ public class HidServicesSpecification {
   private boolean autoStart = true;
   private boolean autoDataRead = false;
   private int dataReadInterval = 500;
+  private int closeParallelism = 8;
+  private int closeTimeout = 5000;
+  private HidApiLibrary hidApiLibrary = null;
+  private String backendName = null;
+  private boolean jmxEnabled = false;
+  private int eventQueueCapacity = 4096;
+  private EventQueuePolicy eventQueuePolicy = EventQueuePolicy.BLOCK;
+  private boolean asyncInitialisation = false;
+  private boolean logTraffic = false;
 
   public ScanMode getScanMode() {
     return scanMode;
@@ -132,4 +143,125 @@ public class HidServicesSpecification {
   public void setDataReadInterval(int dataReadInterval) {
     this.dataReadInterval = dataReadInterval;
   }
+
+  public int getCloseParallelism() {
+    return closeParallelism;
+  }
+
+  /**
+   * @param closeParallelism The maximum number of devices closed at the same time when HID services stop
+   * @since 0.8.0
+   */
+  public void setCloseParallelism(int closeParallelism) {
+    if (closeParallelism < 1) {
+      throw new IllegalArgumentException("'closeParallelism' must be greater than zero.");
+    }
+    this.closeParallelism = closeParallelism;
+  }
+
+  public int getCloseTimeout() {
+    return closeTimeout;
+  }
+
+  /**
+   * @param closeTimeout The overall time in milliseconds allowed for closing devices when HID services stop, and for
+   *                     waiting for an asynchronous initialisation that is still running (zero to wait indefinitely)
+   * @since 0.8.0
+   */
+  public void setCloseTimeout(int closeTimeout) {
+    if (closeTimeout < 0) {
+      throw new IllegalArgumentException("'closeTimeout' must be greater than or equal to zero.");
+    }
+    this.closeTimeout = closeTimeout;
+  }
+
+  public HidApiLibrary getHidApiLibrary() {
+    return hidApiLibrary;
+  }
+
+  /**
+   * @param hidApiLibrary The HID API library to use instead of the native library for this platform (e.g. a capture replay), null for native
+   * @since 0.8.0
+   */
+  public void setHidApiLibrary(HidApiLibrary hidApiLibrary) {
+    this.hidApiLibrary = hidApiLibrary;
+  }
+
+  public String getBackendName() {
+    return backendName;
+  }
+
+  /**
+   * @param backendName The name of a registered {@link org.hid4java.jna.HidApiLibraryProvider} (e.g. "simulated") to use instead of the native library (ignored if a HID API library is set), null for native
+   * @since 0.8.0
+   */
+  public void setBackendName(String backendName) {
+    this.backendName = backendName;
+  }
+
+  public boolean isJmxEnabled() {
+    return jmxEnabled;
+  }
+
+  /**
+   * @param jmxEnabled True if the services and device metrics should be registered as platform MBeans
+   * @since 0.8.0
+   */
+  public void setJmxEnabled(boolean jmxEnabled) {
+    this.jmxEnabled = jmxEnabled;
+  }
+
+  public int getEventQueueCapacity() {
+    return eventQueueCapacity;
+  }
+
+  /**
+   * @param eventQueueCapacity The maximum number of data received events waiting for delivery to listeners
+   * @since 0.8.0
+   */
+  public void setEventQueueCapacity(int eventQueueCapacity) {
+    if (eventQueueCapacity < 1) {
+      throw new IllegalArgumentException("'eventQueueCapacity' must be greater than zero.");
+    }
+    this.eventQueueCapacity = eventQueueCapacity;
+  }
+
+  public EventQueuePolicy getEventQueuePolicy() {
+    return eventQueuePolicy;
+  }
+
+  /**
+   * @param eventQueuePolicy The behaviour when the event queue is full (default {@link EventQueuePolicy#BLOCK} so no
+   *                         data events are dropped, attach and detach events are never dropped)
+   * @since 0.8.0
+   */
+  public void setEventQueuePolicy(EventQueuePolicy eventQueuePolicy) {
+    this.eventQueuePolicy = eventQueuePolicy;
+  }
+
+  public boolean isAsyncInitialisation() {
+    return asyncInitialisation;
+  }
+
+  /**
+   * @param asyncInitialisation True if hidapi initialisation and the first scan should run on a background thread
+   *                            (see {@link HidServices#getReady()})
+   * @since 0.8.0
+   */
+  public void setAsyncInitialisation(boolean asyncInitialisation) {
+    this.asyncInitialisation = asyncInitialisation;
+  }
+
+  public boolean isLogTraffic() {
+    return logTraffic;
+  }
+
+  /**
+   * @param logTraffic True if traffic for devices of these services should be logged (see {@link org.hid4java.jna.HidApi#logTraffic}
+   *                   to log every device)
+   * @since 0.8.0
+   */
+  public void setLogTraffic(boolean logTraffic) {
+    this.logTraffic = logTraffic;
+  }
 }
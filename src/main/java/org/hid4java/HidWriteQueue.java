@@ -0,0 +1,230 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014-2020 Gary Rowe
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package org.hid4java;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Write queue to provide the following to {@link HidDevice}:
+ * <ul>
+ * <li>Asynchronous writes drained by a dedicated writer thread</li>
+ * <li>Last-write-wins coalescing of queued writes sharing a report ID</li>
+ * <li>A single HID manager notification per batch of writes</li>
+ * </ul>
+ *
+ * @since 0.8.0
+ */
+class HidWriteQueue {
+
+  /**
+   * Time to wait for the writer to finish its current write during a stop
+   */
+  private static final long STOP_TIMEOUT_MILLIS = 1000;
+
+  private final HidDevice hidDevice;
+
+  /**
+   * Writes in arrival order (guarded by this)
+   */
+  private List<Entry> queue = new ArrayList<>();
+
+  /**
+   * Queued coalescing writes keyed on report ID (guarded by this)
+   */
+  private final Map<Byte, Entry> coalescing = new HashMap<>();
+
+  private boolean running = true;
+
+  /**
+   * The data write thread
+   */
+  private final Thread writeThread;
+
+  HidWriteQueue(HidDevice hidDevice) {
+    this.hidDevice = hidDevice;
+
+    writeThread = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        writeLoop();
+      }
+    });
+    writeThread.setDaemon(true);
+    writeThread.setName("hid4java data writer");
+    writeThread.start();
+  }
+
+  /**
+   * @param message      The message (already copied)
+   * @param packetLength The packet length
+   * @param reportId     The report ID
+   * @param coalesce     True if the write may replace a queued write with the same report ID
+   * @return The future number of bytes written
+   */
+  synchronized CompletableFuture<Integer> enqueue(byte[] message, int packetLength, byte reportId, boolean coalesce) {
+
+    CompletableFuture<Integer> future = new CompletableFuture<>();
+
+    if (!running) {
+      future.completeExceptionally(new HidException("Device closed"));
+      return future;
+    }
+
+    if (coalesce) {
+      Entry queued = coalescing.get(reportId);
+      if (queued != null) {
+        // Last write wins but keeps the queue position of the first
+        queued.message = message;
+        queued.packetLength = packetLength;
+        queued.futures.add(future);
+        return future;
+      }
+    }
+
+    Entry entry = new Entry(message, packetLength, reportId, future);
+    queue.add(entry);
+    if (coalesce) {
+      coalescing.put(reportId, entry);
+    }
+    notifyAll();
+
+    return future;
+  }
+
+  /**
+   * Stop the writer thread and fail all queued writes
+   */
+  void stop() {
+
+    List<Entry> abandoned;
+    synchronized (this) {
+      running = false;
+      abandoned = queue;
+      queue = new ArrayList<>();
+      coalescing.clear();
+      notifyAll();
+    }
+
+    fail(abandoned);
+
+    // Avoid closing the device while a native write is in progress
+    if (Thread.currentThread() != writeThread) {
+      try {
+        writeThread.join(STOP_TIMEOUT_MILLIS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  private void writeLoop() {
+
+    while (true) {
+
+      List<Entry> batch;
+      synchronized (this) {
+        while (running && queue.isEmpty()) {
+          try {
+            wait();
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+          }
+        }
+        if (!running) {
+          return;
+        }
+        // Take everything queued so far as one batch
+        batch = queue;
+        queue = new ArrayList<>();
+        coalescing.clear();
+      }
+
+      int index = 0;
+      try {
+        for (; index < batch.size() && isRunning(); index++) {
+          Entry entry = batch.get(index);
+          int result;
+          try {
+            result = hidDevice.writeReport(entry.message, entry.packetLength, entry.reportId);
+          } catch (RuntimeException e) {
+            // Only this write failed (e.g. rejected by the rate limiter) so carry on with the rest
+            entry.fail(e);
+            continue;
+          }
+          for (CompletableFuture<Integer> future : entry.futures) {
+            future.complete(result);
+          }
+        }
+      } finally {
+        // Anything left was abandoned by a stop
+        fail(batch.subList(index, batch.size()));
+        hidDevice.afterBatchWrite();
+      }
+    }
+
+  }
+
+  private synchronized boolean isRunning() {
+    return running;
+  }
+
+  private static void fail(List<Entry> entries) {
+    if (entries.isEmpty()) {
+      return;
+    }
+    HidException closed = new HidException("Device closed");
+    for (Entry entry : entries) {
+      entry.fail(closed);
+    }
+  }
+
+  private static final class Entry {
+
+    private byte[] message;
+    private int packetLength;
+    private final byte reportId;
+    private final List<CompletableFuture<Integer>> futures = new ArrayList<>(1);
+
+    private Entry(byte[] message, int packetLength, byte reportId, CompletableFuture<Integer> future) {
+      this.message = message;
+      this.packetLength = packetLength;
+      this.reportId = reportId;
+      this.futures.add(future);
+    }
+
+    private void fail(Throwable throwable) {
+      for (CompletableFuture<Integer> future : futures) {
+        future.completeExceptionally(throwable);
+      }
+    }
+  }
+
+}
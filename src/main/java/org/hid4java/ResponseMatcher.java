@@ -0,0 +1,87 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014-2020 Gary Rowe
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package org.hid4java;
+
+/**
+ * Interface to provide the following to API consumers:
+ * <ul>
+ * <li>Selection of the input report that answers a request made through
+ * {@link HidDevice#transact(byte[], ResponseMatcher, java.time.Duration)}</li>
+ * </ul>
+ *
+ * Input reports are offered to pending transactions in the order the transactions
+ * were made so the oldest matching request receives the report.
+ *
+ * @since 0.8.0
+ */
+public interface ResponseMatcher {
+
+  /**
+   * @param response The input report as read from the device (starting with the report ID for numbered reports)
+   * @return True if the input report is the response to the request
+   */
+  boolean matches(byte[] response);
+
+  /**
+   * @param reportId The report ID expected in the first byte of the response (numbered reports only)
+   * @return A matcher that accepts the first input report with the given report ID
+   */
+  static ResponseMatcher reportId(final byte reportId) {
+    return new ResponseMatcher() {
+      @Override
+      public boolean matches(byte[] response) {
+        return response.length > 0 && response[0] == reportId;
+      }
+    };
+  }
+
+  /**
+   * @param offset   The position of the sequence byte within the input report
+   * @param sequence The sequence byte copied from the request
+   * @return A matcher that accepts the first input report carrying the given sequence byte
+   */
+  static ResponseMatcher sequence(final int offset, final byte sequence) {
+    return new ResponseMatcher() {
+      @Override
+      public boolean matches(byte[] response) {
+        return response.length > offset && response[offset] == sequence;
+      }
+    };
+  }
+
+  /**
+   * @return A matcher that accepts the next input report
+   */
+  static ResponseMatcher any() {
+    return new ResponseMatcher() {
+      @Override
+      public boolean matches(byte[] response) {
+        return true;
+      }
+    };
+  }
+
+}
@@ -0,0 +1,188 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014-2020 Gary Rowe
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package org.hid4java;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Rate limiter to provide the following to {@link HidDevice} writes:
+ * <ul>
+ * <li>Token bucket pacing with a configurable burst</li>
+ * <li>Minimum gap between consecutive output reports</li>
+ * <li>A choice of waiting, rejecting or dropping writes that exceed the limit</li>
+ * </ul>
+ *
+ * Waiting writes are parked against {@link System#nanoTime()} deadlines and spin for the
+ * final few microseconds rather than relying on the coarse granularity of {@code Thread.sleep}.
+ *
+ * The token bucket is implemented as a generic cell rate algorithm so its state is a single
+ * theoretical arrival time.
+ *
+ * @since 0.8.0
+ */
+public class WriteRateLimiter {
+
+  /**
+   * The action to take when a write arrives before it is permitted
+   */
+  public enum OverLimitPolicy {
+
+    /**
+     * Block the writing thread until the write is permitted
+     */
+    WAIT,
+    /**
+     * Throw a {@link HidException} without writing
+     */
+    REJECT,
+    /**
+     * Silently discard the write (the write returns zero bytes written)
+     */
+    DROP,
+
+  }
+
+  /**
+   * Remaining wait below which the limiter spins instead of parking
+   */
+  private static final long SPIN_THRESHOLD_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+
+  private final long intervalNanos;
+  private final long burstToleranceNanos;
+  private final OverLimitPolicy overLimitPolicy;
+
+  /**
+   * The earliest time at which the bucket would be full again (guarded by this)
+   */
+  private long theoreticalArrivalNanos;
+
+  private final AtomicLong deniedCount = new AtomicLong();
+
+  /**
+   * @param intervalNanos   The time taken to earn one write
+   * @param burst           The number of writes that may be sent back to back when the bucket is full
+   * @param overLimitPolicy The action to take when a write exceeds the limit
+   */
+  private WriteRateLimiter(long intervalNanos, int burst, OverLimitPolicy overLimitPolicy) {
+    if (intervalNanos <= 0) {
+      throw new IllegalArgumentException("'intervalNanos' must be greater than zero.");
+    }
+    if (burst < 1) {
+      throw new IllegalArgumentException("'burst' must be at least one.");
+    }
+    this.intervalNanos = intervalNanos;
+    this.burstToleranceNanos = intervalNanos * (burst - 1);
+    this.overLimitPolicy = overLimitPolicy;
+    this.theoreticalArrivalNanos = System.nanoTime();
+  }
+
+  /**
+   * @param reportsPerSecond The sustained write rate
+   * @param burst            The number of writes that may be sent back to back after an idle period
+   * @param overLimitPolicy  The action to take when a write exceeds the limit
+   * @return A token bucket rate limiter
+   */
+  public static WriteRateLimiter tokenBucket(double reportsPerSecond, int burst, OverLimitPolicy overLimitPolicy) {
+    if (reportsPerSecond <= 0) {
+      throw new IllegalArgumentException("'reportsPerSecond' must be greater than zero.");
+    }
+    return new WriteRateLimiter((long) (TimeUnit.SECONDS.toNanos(1) / reportsPerSecond), burst, overLimitPolicy);
+  }
+
+  /**
+   * @param gap             The minimum time between consecutive writes (e.g. the interrupt OUT endpoint interval)
+   * @param unit            The unit of the gap
+   * @param overLimitPolicy The action to take when a write exceeds the limit
+   * @return A rate limiter enforcing a minimum inter-report gap
+   */
+  public static WriteRateLimiter minimumGap(long gap, TimeUnit unit, OverLimitPolicy overLimitPolicy) {
+    return new WriteRateLimiter(unit.toNanos(gap), 1, overLimitPolicy);
+  }
+
+  /**
+   * Obtain permission for one write, waiting if the policy requires it
+   *
+   * @return True if the write may proceed, false if it should be dropped
+   * @throws HidException If the write is rejected or the wait is interrupted
+   */
+  public boolean acquire() {
+
+    final long deadline;
+    synchronized (this) {
+      long now = System.nanoTime();
+      long arrival = Math.max(theoreticalArrivalNanos, now);
+      long permittedAt = arrival - burstToleranceNanos;
+      if (permittedAt - now > 0 && overLimitPolicy != OverLimitPolicy.WAIT) {
+        deniedCount.incrementAndGet();
+        if (overLimitPolicy == OverLimitPolicy.REJECT) {
+          throw new HidException("Write rate limit exceeded");
+        }
+        return false;
+      }
+      // Reserve the slot before waiting so concurrent writers queue up behind it
+      theoreticalArrivalNanos = arrival + intervalNanos;
+      deadline = permittedAt;
+    }
+
+    awaitDeadline(deadline);
+    return true;
+  }
+
+  /**
+   * @return The number of writes rejected or dropped since creation
+   */
+  public long getDeniedCount() {
+    return deniedCount.get();
+  }
+
+  public OverLimitPolicy getOverLimitPolicy() {
+    return overLimitPolicy;
+  }
+
+  /**
+   * @param deadline The {@link System#nanoTime()} at which to return
+   */
+  private static void awaitDeadline(long deadline) {
+
+    long remaining;
+    while ((remaining = deadline - System.nanoTime()) > 0) {
+      if (Thread.interrupted()) {
+        Thread.currentThread().interrupt();
+        throw new HidException("Interrupted while pacing write");
+      }
+      if (remaining > SPIN_THRESHOLD_NANOS) {
+        // Wake early to absorb scheduler latency
+        LockSupport.parkNanos(remaining - SPIN_THRESHOLD_NANOS);
+      } else {
+        Thread.yield();
+      }
+    }
+
+  }
+
+}
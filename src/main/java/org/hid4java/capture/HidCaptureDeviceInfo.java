@@ -0,0 +1,112 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014-2020 Gary Rowe
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package org.hid4java.capture;
+
+/**
+ * Enumeration details of a device recorded when it attaches
+ *
+ * @since 0.8.0
+ */
+public class HidCaptureDeviceInfo {
+
+  private final int vendorId;
+  private final int productId;
+  private final String serialNumber;
+  private final int releaseNumber;
+  private final String manufacturer;
+  private final String product;
+  private final int usagePage;
+  private final int usage;
+  private final int interfaceNumber;
+
+  /**
+   * @param vendorId        The vendor ID
+   * @param productId       The product ID
+   * @param serialNumber    The serial number (may be null)
+   * @param releaseNumber   The release number
+   * @param manufacturer    The manufacturer string (may be null)
+   * @param product         The product string (may be null)
+   * @param usagePage       The usage page
+   * @param usage           The usage
+   * @param interfaceNumber The interface number
+   */
+  public HidCaptureDeviceInfo(int vendorId, int productId, String serialNumber, int releaseNumber, String manufacturer, String product, int usagePage, int usage, int interfaceNumber) {
+    this.vendorId = vendorId & 0xffff;
+    this.productId = productId & 0xffff;
+    this.serialNumber = serialNumber;
+    this.releaseNumber = releaseNumber & 0xffff;
+    this.manufacturer = manufacturer;
+    this.product = product;
+    this.usagePage = usagePage & 0xffff;
+    this.usage = usage & 0xffff;
+    this.interfaceNumber = interfaceNumber;
+  }
+
+  public int getVendorId() {
+    return vendorId;
+  }
+
+  public int getProductId() {
+    return productId;
+  }
+
+  public String getSerialNumber() {
+    return serialNumber;
+  }
+
+  public int getReleaseNumber() {
+    return releaseNumber;
+  }
+
+  public String getManufacturer() {
+    return manufacturer;
+  }
+
+  public String getProduct() {
+    return product;
+  }
+
+  public int getUsagePage() {
+    return usagePage;
+  }
+
+  public int getUsage() {
+    return usage;
+  }
+
+  public int getInterfaceNumber() {
+    return interfaceNumber;
+  }
+
+  @Override
+  public String toString() {
+    return "HidCaptureDeviceInfo [vendorId=0x" + Integer.toHexString(vendorId)
+      + ", productId=0x" + Integer.toHexString(productId)
+      + ", serialNumber=" + serialNumber
+      + ", product=" + product
+      + "]";
+  }
+}
@@ -0,0 +1,539 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014-2020 Gary Rowe
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package org.hid4java.capture;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+
+/**
+ * Capture journal to provide the following to HID traffic diagnostics:
+ * <ul>
+ * <li>Always-on recording of input, output and feature reports</li>
+ * <li>Memory-mapped journal files so a record costs a copy rather than a system call</li>
+ * <li>Size based rotation with a bounded number of retained files</li>
+ * </ul>
+ *
+ * Each journal file starts with a {@value #HEADER_LENGTH} byte header: magic (4 bytes), version (2 bytes),
+ * reserved (2 bytes), creation time in milliseconds since the epoch (8 bytes) and the matching
+ * {@link System#nanoTime()} (8 bytes).
+ *
+ * Records follow the header, each starting with a type byte:
+ * <ul>
+ * <li>Device (type 1): device ID (2 bytes), path length (2 bytes), UTF-8 path</li>
+ * <li>Report (types 2 to 5, see {@link HidCaptureRecord.Type}): timestamp nanos (8 bytes), device ID (2 bytes),
+ * length (2 bytes), report bytes</li>
+ * <li>Attach (type 6): timestamp nanos (8 bytes), device ID (2 bytes), vendor ID, product ID, release number,
+ * usage page and usage (2 bytes each), interface number (4 bytes) then serial number, manufacturer and product
+ * strings (each a 2 byte length, 0xffff for null, followed by UTF-8)</li>
+ * <li>Detach (type 7): timestamp nanos (8 bytes), device ID (2 bytes)</li>
+ * <li>End (type 0): the remainder of the file is unused</li>
+ * </ul>
+ *
+ * Device IDs are assigned per file so that every file can be read on its own. All values are big endian.
+ *
+ * The type byte is written last so that a record interrupted by a crash reads as the end of the journal.
+ *
+ * @since 0.8.0
+ */
+public class HidCaptureJournal implements Closeable {
+
+  public static final String FILE_SUFFIX = ".hidcap";
+
+  static final int MAGIC = 0x48344a43;
+  static final short VERSION = 1;
+  static final int HEADER_LENGTH = 24;
+
+  static final byte TYPE_END = 0;
+  static final byte TYPE_DEVICE = 1;
+
+  static final int DEVICE_HEADER_LENGTH = 5;
+  static final int REPORT_HEADER_LENGTH = 13;
+  static final int ATTACH_HEADER_LENGTH = 25;
+  static final int DETACH_LENGTH = 11;
+
+  /**
+   * String length marking a null string in attach records
+   */
+  static final int NULL_STRING = 0xffff;
+
+  private static final int MIN_FILE_SIZE = 64 * 1024;
+
+  /**
+   * Attempts to place a report before giving up (other threads may fill a new file first)
+   */
+  private static final int MAX_ATTEMPTS = 3;
+
+  private final Path directory;
+  private final String prefix;
+  private final int fileSize;
+  private final int maxFiles;
+
+  /**
+   * Held shared while appending reports and exclusively while the mapping changes
+   * (rotation and close) or for the rare attach and detach records
+   */
+  private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+  /**
+   * Devices currently attached keyed on path (repeated in every new file, guarded by the exclusive lock)
+   */
+  private final Map<String, HidCaptureDeviceInfo> attached = new LinkedHashMap<>();
+
+  private long fileSequence;
+  private volatile Segment segment = null;
+  private volatile boolean closed = false;
+  private volatile IOException failure = null;
+
+  /**
+   * @param directory The directory to hold the journal files (created if necessary)
+   * @param prefix    The journal file name prefix
+   * @param fileSize  The size in bytes of each journal file before rotation (at least 64KiB)
+   * @param maxFiles  The number of journal files to retain (oldest are deleted first)
+   * @throws IOException If the first journal file cannot be created
+   */
+  public HidCaptureJournal(Path directory, String prefix, int fileSize, int maxFiles) throws IOException {
+    if (fileSize < MIN_FILE_SIZE) {
+      throw new IllegalArgumentException("'fileSize' must be at least " + MIN_FILE_SIZE + ".");
+    }
+    if (maxFiles < 1) {
+      throw new IllegalArgumentException("'maxFiles' must be greater than zero.");
+    }
+    this.directory = directory;
+    this.prefix = prefix;
+    this.fileSize = fileSize;
+    this.maxFiles = maxFiles;
+
+    Files.createDirectories(directory);
+
+    // Continue numbering after any existing journal
+    List<Path> existing = listJournalFiles(directory, prefix);
+    fileSequence = existing.isEmpty() ? 0 : sequenceOf(existing.get(existing.size() - 1), prefix) + 1;
+
+    startFile();
+  }
+
+  /**
+   * @param directory The directory holding the journal files
+   * @param prefix    The journal file name prefix
+   * @return The journal files in the order they were written
+   * @throws IOException If the directory cannot be read
+   */
+  public static List<Path> listJournalFiles(Path directory, String prefix) throws IOException {
+    List<Path> files = new ArrayList<>();
+    try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, prefix + "-*" + FILE_SUFFIX)) {
+      for (Path file : stream) {
+        files.add(file);
+      }
+    }
+    // Sequence numbers are zero padded so name order is write order
+    Collections.sort(files);
+    return files;
+  }
+
+  /**
+   * Record a report
+   *
+   * Threads record concurrently, each claiming its own region of the journal file.
+   *
+   * @param type   The report type
+   * @param path   The device path (null if not known)
+   * @param bytes  The report bytes (including report ID)
+   * @param length The number of bytes transferred
+   */
+  public void record(HidCaptureRecord.Type type, String path, byte[] bytes, int length) {
+
+    if (closed) {
+      return;
+    }
+    String key = path == null ? "" : path;
+    length = Math.min(length, Math.min(bytes.length, 0xffff));
+    if (HEADER_LENGTH + deviceRecordLength(key) + REPORT_HEADER_LENGTH + length > fileSize) {
+      // Cannot fit even in an empty file
+      return;
+    }
+
+    for (int attempt = 0; attempt < MAX_ATTEMPTS; attempt++) {
+      Segment full;
+      lock.readLock().lock();
+      try {
+        if (closed) {
+          return;
+        }
+        full = segment;
+        int deviceId = full.deviceId(key);
+        int position = deviceId < 0 ? -1 : full.reserve(REPORT_HEADER_LENGTH + length);
+        if (position >= 0) {
+          MappedByteBuffer buffer = full.buffer;
+          buffer.putLong(position + 1, System.nanoTime());
+          buffer.putShort(position + 9, (short) deviceId);
+          buffer.putShort(position + 11, (short) length);
+          ByteBuffer data = buffer.duplicate();
+          data.position(position + REPORT_HEADER_LENGTH);
+          data.put(bytes, 0, length);
+          buffer.put(position, type.getCode());
+          return;
+        }
+      } finally {
+        lock.readLock().unlock();
+      }
+      if (!rotate(full)) {
+        return;
+      }
+    }
+  }
+
+  /**
+   * Record a device attaching
+   *
+   * The attach is repeated at the start of every later journal file until the device detaches
+   * so that each file describes the devices present.
+   *
+   * @param path The device path
+   * @param info The enumeration details
+   */
+  public void recordAttach(String path, HidCaptureDeviceInfo info) {
+
+    String key = path == null ? "" : path;
+    lock.writeLock().lock();
+    try {
+      if (closed) {
+        return;
+      }
+      attached.put(key, info);
+      if (!writeAttach(segment, key, info)) {
+        startFile();
+        writeAttach(segment, key, info);
+      }
+    } catch (IOException e) {
+      fail(e);
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Record a device detaching
+   *
+   * @param path The device path
+   */
+  public void recordDetach(String path) {
+
+    String key = path == null ? "" : path;
+    lock.writeLock().lock();
+    try {
+      if (closed) {
+        return;
+      }
+      attached.remove(key);
+      if (!writeDetach(segment, key)) {
+        startFile();
+        writeDetach(segment, key);
+      }
+    } catch (IOException e) {
+      fail(e);
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * @return The failure that stopped capture or null if none
+   */
+  public IOException getFailure() {
+    return failure;
+  }
+
+  /**
+   * Flush the current journal file to storage and stop capturing
+   */
+  @Override
+  public void close() {
+    lock.writeLock().lock();
+    try {
+      if (closed) {
+        return;
+      }
+      closed = true;
+      release(segment);
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Start a new journal file unless another thread already has
+   *
+   * @param full The segment that had no room
+   * @return False if capture has stopped
+   */
+  private boolean rotate(Segment full) {
+    lock.writeLock().lock();
+    try {
+      if (closed) {
+        return false;
+      }
+      if (segment == full) {
+        startFile();
+      }
+      return true;
+    } catch (IOException e) {
+      fail(e);
+      return false;
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Start a new journal file and delete the oldest beyond the retained count (called holding the exclusive lock)
+   *
+   * @throws IOException If the file cannot be created
+   */
+  private void startFile() throws IOException {
+
+    // No writer can be using the old mapping
+    release(segment);
+
+    Path file = directory.resolve(String.format("%s-%010d%s", prefix, fileSequence++, FILE_SUFFIX));
+    MappedByteBuffer buffer;
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+      // The mapping remains valid after the channel is closed
+      buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, fileSize);
+    }
+    buffer.order(ByteOrder.BIG_ENDIAN);
+    buffer.putInt(MAGIC);
+    buffer.putShort(VERSION);
+    buffer.putShort((short) 0);
+    buffer.putLong(System.currentTimeMillis());
+    buffer.putLong(System.nanoTime());
+    Segment next = new Segment(buffer);
+    segment = next;
+
+    // Make the new file self-contained
+    for (Map.Entry<String, HidCaptureDeviceInfo> entry : attached.entrySet()) {
+      if (!writeAttach(next, entry.getKey(), entry.getValue())) {
+        break;
+      }
+    }
+
+    // Only the current file is mapped so the others can be deleted on every platform
+    List<Path> files = listJournalFiles(directory, prefix);
+    for (int i = 0; i < files.size() - maxFiles; i++) {
+      Files.deleteIfExists(files.get(i));
+    }
+  }
+
+  /**
+   * Flush and unmap a segment (called holding the exclusive lock)
+   */
+  private void release(Segment released) {
+    if (released != null) {
+      released.buffer.force();
+      MappedBuffers.unmap(released.buffer);
+    }
+  }
+
+  private static int deviceRecordLength(String path) {
+    return DEVICE_HEADER_LENGTH + path.getBytes(StandardCharsets.UTF_8).length;
+  }
+
+  /**
+   * @return True if the attach was written
+   */
+  private static boolean writeAttach(Segment target, String path, HidCaptureDeviceInfo info) {
+
+    byte[] serialNumber = encodeString(info.getSerialNumber());
+    byte[] manufacturer = encodeString(info.getManufacturer());
+    byte[] product = encodeString(info.getProduct());
+    int length = ATTACH_HEADER_LENGTH + 6 + length(serialNumber) + length(manufacturer) + length(product);
+
+    int deviceId = target.deviceId(path);
+    int position = deviceId < 0 ? -1 : target.reserve(length);
+    if (position < 0) {
+      return false;
+    }
+
+    ByteBuffer buffer = target.buffer.duplicate();
+    buffer.position(position + 1);
+    buffer.putLong(System.nanoTime());
+    buffer.putShort((short) deviceId);
+    buffer.putShort((short) info.getVendorId());
+    buffer.putShort((short) info.getProductId());
+    buffer.putShort((short) info.getReleaseNumber());
+    buffer.putShort((short) info.getUsagePage());
+    buffer.putShort((short) info.getUsage());
+    buffer.putInt(info.getInterfaceNumber());
+    putString(buffer, serialNumber);
+    putString(buffer, manufacturer);
+    putString(buffer, product);
+    target.buffer.put(position, HidCaptureRecord.Type.ATTACH.getCode());
+    return true;
+  }
+
+  /**
+   * @return True if the detach was written
+   */
+  private static boolean writeDetach(Segment target, String path) {
+
+    int deviceId = target.deviceId(path);
+    int position = deviceId < 0 ? -1 : target.reserve(DETACH_LENGTH);
+    if (position < 0) {
+      return false;
+    }
+
+    MappedByteBuffer buffer = target.buffer;
+    buffer.putLong(position + 1, System.nanoTime());
+    buffer.putShort(position + 9, (short) deviceId);
+    buffer.put(position, HidCaptureRecord.Type.DETACH.getCode());
+    return true;
+  }
+
+  private static byte[] encodeString(String value) {
+    if (value == null) {
+      return null;
+    }
+    byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+    return bytes.length < NULL_STRING ? bytes : Arrays.copyOf(bytes, NULL_STRING - 1);
+  }
+
+  private static int length(byte[] bytes) {
+    return bytes == null ? 0 : bytes.length;
+  }
+
+  private static void putString(ByteBuffer buffer, byte[] bytes) {
+    if (bytes == null) {
+      buffer.putShort((short) NULL_STRING);
+    } else {
+      buffer.putShort((short) bytes.length);
+      buffer.put(bytes);
+    }
+  }
+
+  private void fail(IOException e) {
+    // Stop capturing rather than affect device I/O
+    failure = e;
+    closed = true;
+  }
+
+  private static long sequenceOf(Path file, String prefix) {
+    String name = file.getFileName().toString();
+    try {
+      return Long.parseLong(name.substring(prefix.length() + 1, name.length() - FILE_SUFFIX.length()));
+    } catch (NumberFormatException e) {
+      return -1;
+    }
+  }
+
+  /**
+   * One mapped journal file with space claimed by atomically advancing the write position
+   *
+   * Each record is written into its claimed region with absolute puts and published by its type byte.
+   */
+  private static final class Segment {
+
+    private final MappedByteBuffer buffer;
+    private final AtomicInteger position = new AtomicInteger(HEADER_LENGTH);
+
+    /**
+     * Device IDs in this file keyed on path
+     */
+    private final ConcurrentMap<String, Short> deviceIds = new ConcurrentHashMap<>();
+    private final AtomicInteger nextDeviceId = new AtomicInteger();
+
+    private Segment(MappedByteBuffer buffer) {
+      this.buffer = buffer;
+    }
+
+    /**
+     * @param length The record length
+     * @return The position of the claimed region or -1 if the file is full
+     */
+    private int reserve(int length) {
+      while (true) {
+        int current = position.get();
+        if (current + length > buffer.capacity()) {
+          return -1;
+        }
+        if (position.compareAndSet(current, current + length)) {
+          return current;
+        }
+      }
+    }
+
+    /**
+     * The device record is written and published before the ID becomes visible to other threads,
+     * so it always precedes the records that refer to it.
+     *
+     * @param path The device path
+     * @return The device ID in this file, writing a device record on first appearance, or -1 if the file is full
+     */
+    private int deviceId(final String path) {
+      Short deviceId = deviceIds.get(path);
+      if (deviceId == null) {
+        deviceId = deviceIds.computeIfAbsent(path, new Function<String, Short>() {
+          @Override
+          public Short apply(String key) {
+            byte[] pathBytes = key.getBytes(StandardCharsets.UTF_8);
+            int position = reserve(DEVICE_HEADER_LENGTH + pathBytes.length);
+            if (position < 0) {
+              return null;
+            }
+            short assigned = (short) nextDeviceId.getAndIncrement();
+            buffer.putShort(position + 1, assigned);
+            buffer.putShort(position + 3, (short) pathBytes.length);
+            ByteBuffer data = buffer.duplicate();
+            data.position(position + DEVICE_HEADER_LENGTH);
+            data.put(pathBytes);
+            buffer.put(position, TYPE_DEVICE);
+            return assigned;
+          }
+        });
+      }
+      return deviceId == null ? -1 : deviceId;
+    }
+  }
+
+}
@@ -0,0 +1,157 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014-2020 Gary Rowe
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package org.hid4java.capture;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reader for a single journal file written by {@link HidCaptureJournal}
+ *
+ * Use {@link HidCaptureJournal#listJournalFiles(Path, String)} to read a complete capture in order.
+ *
+ * @since 0.8.0
+ */
+public class HidCaptureReader implements Closeable {
+
+  private MappedByteBuffer buffer;
+  private final long createdEpochMillis;
+  private final long createdNanos;
+  private final Map<Short, String> devicePaths = new HashMap<>();
+
+  /**
+   * @param file The journal file
+   * @throws IOException If the file cannot be read or is not a capture journal
+   */
+  public HidCaptureReader(Path file) throws IOException {
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+    }
+    buffer.order(ByteOrder.BIG_ENDIAN);
+    if (buffer.remaining() < HidCaptureJournal.HEADER_LENGTH || buffer.getInt() != HidCaptureJournal.MAGIC) {
+      throw new IOException("Not a capture journal: " + file);
+    }
+    short version = buffer.getShort();
+    if (version != HidCaptureJournal.VERSION) {
+      throw new IOException("Unsupported capture journal version " + version + ": " + file);
+    }
+    buffer.getShort();
+    createdEpochMillis = buffer.getLong();
+    createdNanos = buffer.getLong();
+  }
+
+  /**
+   * @return The time the journal file was created in milliseconds since the epoch
+   */
+  public long getCreatedEpochMillis() {
+    return createdEpochMillis;
+  }
+
+  /**
+   * @return The next record or null at the end of the journal
+   * @throws IOException If the journal is corrupt
+   */
+  public HidCaptureRecord next() throws IOException {
+
+    if (buffer == null) {
+      throw new IOException("Reader closed");
+    }
+    while (buffer.hasRemaining()) {
+      byte code = buffer.get();
+      if (code == HidCaptureJournal.TYPE_END) {
+        buffer.position(buffer.limit());
+        return null;
+      }
+      if (code == HidCaptureJournal.TYPE_DEVICE) {
+        short deviceId = buffer.getShort();
+        byte[] path = new byte[buffer.getShort() & 0xffff];
+        buffer.get(path);
+        devicePaths.put(deviceId, new String(path, StandardCharsets.UTF_8));
+        continue;
+      }
+      HidCaptureRecord.Type type = HidCaptureRecord.Type.fromCode(code);
+      if (type == null) {
+        throw new IOException("Unknown record type " + code + " at position " + (buffer.position() - 1));
+      }
+      long timestampNanos = buffer.getLong();
+      long epochNanos = TimeUnit.MILLISECONDS.toNanos(createdEpochMillis) + (timestampNanos - createdNanos);
+      String path = devicePaths.get(buffer.getShort());
+      switch (type) {
+        case ATTACH:
+          int vendorId = buffer.getShort();
+          int productId = buffer.getShort();
+          int releaseNumber = buffer.getShort();
+          int usagePage = buffer.getShort();
+          int usage = buffer.getShort();
+          int interfaceNumber = buffer.getInt();
+          String serialNumber = getString();
+          String manufacturer = getString();
+          String product = getString();
+          HidCaptureDeviceInfo info = new HidCaptureDeviceInfo(vendorId, productId, serialNumber, releaseNumber, manufacturer, product, usagePage, usage, interfaceNumber);
+          return new HidCaptureRecord(type, timestampNanos, epochNanos, path, new byte[0], info);
+        case DETACH:
+          return new HidCaptureRecord(type, timestampNanos, epochNanos, path, new byte[0], null);
+        default:
+          byte[] data = new byte[buffer.getShort() & 0xffff];
+          buffer.get(data);
+          return new HidCaptureRecord(type, timestampNanos, epochNanos, path, data, null);
+      }
+    }
+
+    return null;
+  }
+
+  private String getString() {
+    int length = buffer.getShort() & 0xffff;
+    if (length == HidCaptureJournal.NULL_STRING) {
+      return null;
+    }
+    byte[] bytes = new byte[length];
+    buffer.get(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Release the mapping so that the file can be deleted straight away
+   */
+  @Override
+  public void close() {
+    if (buffer != null) {
+      MappedBuffers.unmap(buffer);
+      buffer = null;
+    }
+  }
+
+}
@@ -0,0 +1,154 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014-2020 Gary Rowe
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package org.hid4java.capture;
+
+/**
+ * A single report or hotplug event read from a capture journal by {@link HidCaptureReader}
+ *
+ * @since 0.8.0
+ */
+public class HidCaptureRecord {
+
+  /**
+   * The kind of report captured (the code is the record type in the journal)
+   */
+  public enum Type {
+
+    /**
+     * Input report read from the device
+     */
+    INPUT(2),
+    /**
+     * Output report written to the device
+     */
+    OUTPUT(3),
+    /**
+     * Feature report read from the device
+     */
+    GET_FEATURE(4),
+    /**
+     * Feature report sent to the device
+     */
+    SEND_FEATURE(5),
+    /**
+     * Device attached (see {@link HidCaptureRecord#getDeviceInfo()})
+     */
+    ATTACH(6),
+    /**
+     * Device detached
+     */
+    DETACH(7),
+
+    ;
+
+    private final byte code;
+
+    Type(int code) {
+      this.code = (byte) code;
+    }
+
+    byte getCode() {
+      return code;
+    }
+
+    /**
+     * @param code The record type from the journal
+     * @return The matching type or null if the code is not a report
+     */
+    static Type fromCode(byte code) {
+      for (Type type : values()) {
+        if (type.code == code) {
+          return type;
+        }
+      }
+      return null;
+    }
+  }
+
+  private final Type type;
+  private final long timestampNanos;
+  private final long epochNanos;
+  private final String path;
+  private final byte[] data;
+  private final HidCaptureDeviceInfo deviceInfo;
+
+  HidCaptureRecord(Type type, long timestampNanos, long epochNanos, String path, byte[] data, HidCaptureDeviceInfo deviceInfo) {
+    this.type = type;
+    this.timestampNanos = timestampNanos;
+    this.epochNanos = epochNanos;
+    this.path = path;
+    this.data = data;
+    this.deviceInfo = deviceInfo;
+  }
+
+  public Type getType() {
+    return type;
+  }
+
+  /**
+   * @return The {@link System#nanoTime()} at which the report was captured (comparable within a single process only)
+   */
+  public long getTimestampNanos() {
+    return timestampNanos;
+  }
+
+  /**
+   * @return The capture time in nanoseconds since the epoch (derived from the journal file header)
+   */
+  public long getEpochNanos() {
+    return epochNanos;
+  }
+
+  /**
+   * @return The device path
+   */
+  public String getPath() {
+    return path;
+  }
+
+  /**
+   * @return The report bytes (including report ID) or an empty array for attach and detach
+   */
+  public byte[] getData() {
+    return data;
+  }
+
+  /**
+   * @return The enumeration details for an attach or null for other types
+   */
+  public HidCaptureDeviceInfo getDeviceInfo() {
+    return deviceInfo;
+  }
+
+  @Override
+  public String toString() {
+    return "HidCaptureRecord [type=" + type
+      + ", timestampNanos=" + timestampNanos
+      + ", path=" + path
+      + ", length=" + data.length
+      + "]";
+  }
+}
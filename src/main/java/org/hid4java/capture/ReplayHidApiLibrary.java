@@ -0,0 +1,572 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014-2020 Gary Rowe
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package org.hid4java.capture;
+
+import com.sun.jna.Pointer;
+import com.sun.jna.WString;
+import org.hid4java.jna.HidApiLibrary;
+import org.hid4java.jna.HidDeviceInfoStructure;
+import org.hid4java.jna.JavaHidApiSupport;
+import org.hid4java.jna.WideStringBuffer;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Replay backend to provide the following to {@link org.hid4java.jna.HidApi}:
+ * <ul>
+ * <li>Virtual devices reproduced from a capture journal (see {@link HidCaptureJournal})</li>
+ * <li>Enumeration, attach and detach following the captured hotplug events</li>
+ * <li>Input and feature reports delivered in real time, scaled time or as fast as possible</li>
+ * </ul>
+ *
+ * Install with {@link org.hid4java.HidServicesSpecification#setHidApiLibrary(HidApiLibrary)}.
+ *
+ * Replay time starts at {@code hid_init()}. An opened device delivers the captured input reports that
+ * follow the open until the device detaches, after which reads and writes fail. Output reports are accepted
+ * but not compared against the capture. Feature report requests are answered with the captured feature
+ * reports for the same report ID in order (repeating the last when exhausted).
+ *
+ * When replaying as fast as possible input reports are delivered without delay and replay time advances
+ * as they are read. An enumeration also advances replay time to the next captured attach or detach once
+ * no attached device has captured input before it.
+ *
+ * Devices without a captured attach (e.g. the attach was in a deleted journal file) are enumerated
+ * with their path only.
+ *
+ * @since 0.8.0
+ */
+public class ReplayHidApiLibrary implements HidApiLibrary {
+
+  /**
+   * Replay at the captured rate
+   */
+  public static final double REAL_TIME = 1.0;
+
+  /**
+   * Replay without any delays
+   */
+  public static final double AS_FAST_AS_POSSIBLE = Double.POSITIVE_INFINITY;
+
+  private final double speed;
+  private final boolean asFastAsPossible;
+
+  /**
+   * Replayed devices keyed on path in order of first appearance
+   */
+  private final Map<String, ReplayDevice> devices = new LinkedHashMap<>();
+
+  /**
+   * Offsets of every captured attach and detach in ascending order
+   */
+  private final long[] hotplugOffsets;
+
+  private final JavaHidApiSupport<Handle> handles = new JavaHidApiSupport<>();
+
+  /**
+   * Replay time when replaying as fast as possible
+   */
+  private final AtomicLong fastOffset = new AtomicLong();
+
+  private volatile long startNanos = System.nanoTime();
+
+  /**
+   * @param records The captured records (see {@link HidCaptureReader})
+   * @param speed   The replay speed relative to the capture (e.g. {@link #REAL_TIME}, 10 for ten times faster or {@link #AS_FAST_AS_POSSIBLE})
+   */
+  public ReplayHidApiLibrary(List<HidCaptureRecord> records, double speed) {
+    if (!(speed > 0)) {
+      throw new IllegalArgumentException("'speed' must be greater than zero.");
+    }
+    this.speed = speed;
+    this.asFastAsPossible = Double.isInfinite(speed);
+
+    // Stable sort preserves capture order for equal timestamps
+    List<HidCaptureRecord> sorted = new ArrayList<>(records);
+    Collections.sort(sorted, new Comparator<HidCaptureRecord>() {
+      @Override
+      public int compare(HidCaptureRecord first, HidCaptureRecord second) {
+        return Long.signum(first.getTimestampNanos() - second.getTimestampNanos());
+      }
+    });
+    long origin = sorted.isEmpty() ? 0 : sorted.get(0).getTimestampNanos();
+
+    List<Long> hotplug = new ArrayList<>();
+    for (HidCaptureRecord record : sorted) {
+      long offset = record.getTimestampNanos() - origin;
+      ReplayDevice device = devices.get(record.getPath());
+      if (device == null) {
+        device = new ReplayDevice(record.getPath());
+        devices.put(record.getPath(), device);
+      }
+      switch (record.getType()) {
+        case ATTACH:
+          if (device.info == null) {
+            device.info = record.getDeviceInfo();
+          }
+          device.addHotplug(offset, true);
+          hotplug.add(offset);
+          break;
+        case DETACH:
+          device.addHotplug(offset, false);
+          hotplug.add(offset);
+          break;
+        case INPUT:
+          device.inputs.add(record);
+          device.inputOffsets.add(offset);
+          break;
+        case GET_FEATURE:
+          device.features.add(record);
+          break;
+        default:
+          // Output reports are not replayed
+      }
+    }
+
+    hotplugOffsets = new long[hotplug.size()];
+    for (int i = 0; i < hotplugOffsets.length; i++) {
+      hotplugOffsets[i] = hotplug.get(i);
+    }
+  }
+
+  /**
+   * @param directory The directory holding the journal files
+   * @param prefix    The journal file name prefix
+   * @param speed     The replay speed (see {@link #ReplayHidApiLibrary(List, double)})
+   * @return A replay of every journal file in the directory
+   * @throws IOException If a journal file cannot be read
+   */
+  public static ReplayHidApiLibrary load(Path directory, String prefix, double speed) throws IOException {
+    List<HidCaptureRecord> records = new ArrayList<>();
+    for (Path file : HidCaptureJournal.listJournalFiles(directory, prefix)) {
+      try (HidCaptureReader reader = new HidCaptureReader(file)) {
+        HidCaptureRecord record;
+        while ((record = reader.next()) != null) {
+          records.add(record);
+        }
+      }
+    }
+    return new ReplayHidApiLibrary(records, speed);
+  }
+
+  @Override
+  public void hid_init() {
+    startNanos = System.nanoTime();
+    fastOffset.set(0);
+  }
+
+  @Override
+  public void hid_exit() {
+    handles.removeAll();
+  }
+
+  @Override
+  public Pointer hid_open(short vendor_id, short product_id, WString serial_number) {
+    long offset = now();
+    for (ReplayDevice device : devices.values()) {
+      if (device.isPresent(offset) && device.matches(vendor_id, product_id)
+        && (serial_number == null || (device.info != null && serial_number.toString().equals(device.info.getSerialNumber())))) {
+        return open(device, offset);
+      }
+    }
+    return null;
+  }
+
+  @Override
+  public Pointer hid_open_path(String path) {
+    ReplayDevice device = devices.get(path);
+    long offset = now();
+    if (device == null || !device.isPresent(offset)) {
+      return null;
+    }
+    return open(device, offset);
+  }
+
+  @Override
+  public void hid_close(Pointer device) {
+    handles.remove(device);
+  }
+
+  @Override
+  public Pointer hid_error(Pointer device) {
+    Handle handle = handles.get(device);
+    String message = handle == null ? "Device not open" : handle.error;
+    return JavaHidApiSupport.errorString(message);
+  }
+
+  @Override
+  public int hid_read(Pointer device, WideStringBuffer.ByReference bytes, int length) {
+    Handle handle = handles.get(device);
+    return handle == null ? -1 : read(handle, (WideStringBuffer) bytes, length, handle.nonBlocking ? 0 : -1);
+  }
+
+  @Override
+  public int hid_read_timeout(Pointer device, WideStringBuffer.ByReference bytes, int length, int timeout) {
+    Handle handle = handles.get(device);
+    return handle == null ? -1 : read(handle, (WideStringBuffer) bytes, length, timeout);
+  }
+
+  @Override
+  public int hid_write(Pointer device, WideStringBuffer.ByReference data, int len) {
+    return accept(device, len);
+  }
+
+  @Override
+  public int hid_write(Pointer device, Pointer data, int len) {
+    return accept(device, len);
+  }
+
+  @Override
+  public int hid_get_feature_report(Pointer device, WideStringBuffer.ByReference data, int length) {
+
+    Handle handle = handles.get(device);
+    if (handle == null) {
+      return -1;
+    }
+    byte[] buffer = ((WideStringBuffer) data).buffer;
+    List<HidCaptureRecord> features = handle.device.features;
+
+    synchronized (handle) {
+      Integer cursor = handle.featureCursors.get(buffer[0]);
+      int match = -1;
+      for (int i = cursor == null ? 0 : cursor; i < features.size() && match < 0; i++) {
+        if (features.get(i).getData()[0] == buffer[0]) {
+          match = i;
+        }
+      }
+      if (match >= 0) {
+        handle.featureCursors.put(buffer[0], match + 1);
+      } else {
+        // Exhausted so repeat the last captured report
+        for (int i = features.size() - 1; i >= 0 && match < 0; i--) {
+          if (features.get(i).getData()[0] == buffer[0]) {
+            match = i;
+          }
+        }
+      }
+      if (match >= 0) {
+        byte[] report = features.get(match).getData();
+        int count = Math.min(report.length, Math.min(length, buffer.length));
+        System.arraycopy(report, 0, buffer, 0, count);
+        return count;
+      }
+    }
+    handle.error = "No captured feature report with ID " + buffer[0];
+    return -1;
+  }
+
+  @Override
+  public int hid_send_feature_report(Pointer device, WideStringBuffer.ByReference data, int length) {
+    return accept(device, length);
+  }
+
+  @Override
+  public int hid_get_indexed_string(Pointer device, int idx, WideStringBuffer.ByReference string, int len) {
+    Handle handle = handles.get(device);
+    if (handle != null) {
+      handle.error = "Indexed strings are not captured";
+    }
+    return -1;
+  }
+
+  @Override
+  public int hid_get_manufacturer_string(Pointer device, WideStringBuffer.ByReference str, int len) {
+    Handle handle = handles.get(device);
+    return handle == null ? -1 : putString((WideStringBuffer) str, handle.device.info == null ? null : handle.device.info.getManufacturer());
+  }
+
+  @Override
+  public int hid_get_product_string(Pointer device, WideStringBuffer.ByReference str, int len) {
+    Handle handle = handles.get(device);
+    return handle == null ? -1 : putString((WideStringBuffer) str, handle.device.info == null ? null : handle.device.info.getProduct());
+  }
+
+  @Override
+  public int hid_get_serial_number_string(Pointer device, WideStringBuffer.ByReference str, int len) {
+    Handle handle = handles.get(device);
+    return handle == null ? -1 : putString((WideStringBuffer) str, handle.device.info == null ? null : handle.device.info.getSerialNumber());
+  }
+
+  @Override
+  public int hid_set_nonblocking(Pointer device, int nonblock) {
+    Handle handle = handles.get(device);
+    if (handle == null) {
+      return -1;
+    }
+    handle.nonBlocking = nonblock != 0;
+    return 0;
+  }
+
+  @Override
+  public HidDeviceInfoStructure hid_enumerate(short vendor_id, short product_id) {
+
+    long offset = now();
+    HidDeviceInfoStructure root = null;
+    HidDeviceInfoStructure last = null;
+    for (ReplayDevice device : devices.values()) {
+      if (device.isPresent(offset) && device.matches(vendor_id, product_id)) {
+        HidDeviceInfoStructure structure = device.toStructure();
+        if (root == null) {
+          root = structure;
+        } else {
+          last.next = structure;
+        }
+        last = structure;
+      }
+    }
+
+    // Move on to the next hotplug event once no attached device has input to deliver before it
+    if (asFastAsPossible) {
+      for (long hotplugOffset : hotplugOffsets) {
+        if (hotplugOffset > offset) {
+          if (!hasInputBetween(offset, hotplugOffset)) {
+            advance(hotplugOffset);
+          }
+          break;
+        }
+      }
+    }
+
+    return root;
+  }
+
+  @Override
+  public void hid_free_enumeration(Pointer devs) {
+    // Nothing to free
+  }
+
+  @Override
+  public String hid_version_str() {
+    return "replay";
+  }
+
+  /**
+   * @return The current replay time in nanoseconds from the start of the capture
+   */
+  long now() {
+    if (asFastAsPossible) {
+      return fastOffset.get();
+    }
+    return (long) ((System.nanoTime() - startNanos) * speed);
+  }
+
+  /**
+   * @return True if any device attached at the start has input captured after it and before the end
+   */
+  private boolean hasInputBetween(long start, long end) {
+    for (ReplayDevice device : devices.values()) {
+      if (device.isPresent(start)) {
+        for (long inputOffset : device.inputOffsets) {
+          if (inputOffset > start && inputOffset < end) {
+            return true;
+          }
+        }
+      }
+    }
+    return false;
+  }
+
+  private void advance(long offset) {
+    long current;
+    do {
+      current = fastOffset.get();
+    } while (offset > current && !fastOffset.compareAndSet(current, offset));
+  }
+
+  /**
+   * @param offset The replay time
+   * @return The {@link System#nanoTime()} at which the replay time is reached
+   */
+  private long wallNanos(long offset) {
+    return startNanos + (long) (offset / speed);
+  }
+
+  private Pointer open(ReplayDevice device, long offset) {
+    return handles.add(new Handle(device, offset));
+  }
+
+  private int accept(Pointer device, int length) {
+    Handle handle = handles.get(device);
+    if (handle == null) {
+      return -1;
+    }
+    if (now() >= handle.endOffset) {
+      handle.error = "Device detached";
+      return -1;
+    }
+    return length;
+  }
+
+  private int read(Handle handle, WideStringBuffer bytes, int length, int timeoutMillis) {
+
+    long deadline = timeoutMillis < 0 ? Long.MAX_VALUE : System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+    ReplayDevice device = handle.device;
+
+    synchronized (handle) {
+      if (handle.cursor < device.inputs.size() && device.inputOffsets.get(handle.cursor) < handle.endOffset) {
+        long offset = device.inputOffsets.get(handle.cursor);
+        if (asFastAsPossible) {
+          advance(offset);
+        } else if (!JavaHidApiSupport.await(wallNanos(offset), deadline)) {
+          return 0;
+        }
+        byte[] report = device.inputs.get(handle.cursor++).getData();
+        int count = Math.min(report.length, Math.min(length, bytes.buffer.length));
+        System.arraycopy(report, 0, bytes.buffer, 0, count);
+        return count;
+      }
+
+      // No more input before the device detaches
+      if (handle.endOffset == Long.MAX_VALUE) {
+        if (!asFastAsPossible) {
+          JavaHidApiSupport.await(Long.MAX_VALUE, deadline);
+        }
+        return 0;
+      }
+      if (asFastAsPossible) {
+        advance(handle.endOffset);
+      } else if (!JavaHidApiSupport.await(wallNanos(handle.endOffset), deadline)) {
+        return 0;
+      }
+      handle.error = "Device detached";
+      return -1;
+    }
+  }
+
+  /**
+   * @return Zero (the string is always available)
+   */
+  private static int putString(WideStringBuffer buffer, String value) {
+    buffer.setString(value);
+    return 0;
+  }
+
+  /**
+   * A device reproduced from the capture
+   */
+  private static class ReplayDevice {
+
+    private final String path;
+    private HidCaptureDeviceInfo info = null;
+    private final List<Long> hotplugOffsets = new ArrayList<>();
+    private final List<Boolean> hotplugAttached = new ArrayList<>();
+    private final List<HidCaptureRecord> inputs = new ArrayList<>();
+    private final List<Long> inputOffsets = new ArrayList<>();
+    private final List<HidCaptureRecord> features = new ArrayList<>();
+
+    private ReplayDevice(String path) {
+      this.path = path;
+    }
+
+    private void addHotplug(long offset, boolean attached) {
+      hotplugOffsets.add(offset);
+      hotplugAttached.add(attached);
+    }
+
+    /**
+     * @param offset The replay time
+     * @return True if attached at the replay time
+     */
+    private boolean isPresent(long offset) {
+      // Present from the start unless the first event is an attach
+      boolean present = hotplugAttached.isEmpty() || !hotplugAttached.get(0);
+      for (int i = 0; i < hotplugOffsets.size() && hotplugOffsets.get(i) <= offset; i++) {
+        present = hotplugAttached.get(i);
+      }
+      return present;
+    }
+
+    /**
+     * @param offset The replay time
+     * @return The replay time of the next detach or {@link Long#MAX_VALUE} if none
+     */
+    private long nextDetach(long offset) {
+      for (int i = 0; i < hotplugOffsets.size(); i++) {
+        if (hotplugOffsets.get(i) > offset && !hotplugAttached.get(i)) {
+          return hotplugOffsets.get(i);
+        }
+      }
+      return Long.MAX_VALUE;
+    }
+
+    private boolean matches(short vendorId, short productId) {
+      int vendor = vendorId & 0xffff;
+      int product = productId & 0xffff;
+      int deviceVendor = info == null ? 0 : info.getVendorId();
+      int deviceProduct = info == null ? 0 : info.getProductId();
+      return (vendor == 0 || vendor == deviceVendor) && (product == 0 || product == deviceProduct);
+    }
+
+    private HidDeviceInfoStructure toStructure() {
+      HidDeviceInfoStructure structure = new HidDeviceInfoStructure();
+      structure.path = path;
+      if (info != null) {
+        structure.vendor_id = (short) info.getVendorId();
+        structure.product_id = (short) info.getProductId();
+        structure.serial_number = info.getSerialNumber() == null ? null : new WString(info.getSerialNumber());
+        structure.release_number = (short) info.getReleaseNumber();
+        structure.manufacturer_string = info.getManufacturer() == null ? null : new WString(info.getManufacturer());
+        structure.product_string = info.getProduct() == null ? null : new WString(info.getProduct());
+        structure.usage_page = (short) info.getUsagePage();
+        structure.usage = (short) info.getUsage();
+        structure.interface_number = info.getInterfaceNumber();
+      }
+      return structure;
+    }
+  }
+
+  /**
+   * An open device
+   */
+  private static class Handle {
+
+    private final ReplayDevice device;
+    private final long endOffset;
+    private int cursor = 0;
+    private final Map<Byte, Integer> featureCursors = new HashMap<>();
+    private volatile boolean nonBlocking = false;
+    private volatile String error = null;
+
+    private Handle(ReplayDevice device, long openOffset) {
+      this.device = device;
+      this.endOffset = device.nextDetach(openOffset);
+      // Skip input captured before the open
+      while (cursor < device.inputOffsets.size() && device.inputOffsets.get(cursor) < openOffset) {
+        cursor++;
+      }
+    }
+  }
+
+}
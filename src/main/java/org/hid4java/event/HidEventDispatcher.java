@@ -0,0 +1,334 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014-2020 Gary Rowe
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package org.hid4java.event;
+
+import org.hid4java.EventQueuePolicy;
+import org.hid4java.HidDevice;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Bounded event queue and worker threads to provide the following to listener dispatch:
+ * <ul>
+ * <li>A capacity on queued data received events with a {@link EventQueuePolicy} when full</li>
+ * <li>Attach, detach and failure events that are never dropped</li>
+ * <li>Counts of dropped and coalesced data events</li>
+ * </ul>
+ *
+ * @since 0.8.0
+ */
+class HidEventDispatcher {
+
+  /**
+   * A queued attach, detach or failure event (never dropped)
+   */
+  abstract static class Task implements Runnable {
+
+    final HidDevice hidDevice;
+
+    /**
+     * @param hidDevice The device the event relates to (may be null for failures)
+     */
+    Task(HidDevice hidDevice) {
+      this.hidDevice = hidDevice;
+    }
+  }
+
+  /**
+   * A queued data received event (subject to the queue policy)
+   */
+  abstract static class DataTask extends Task {
+
+    /**
+     * @param hidDevice The device the data was received from
+     */
+    DataTask(HidDevice hidDevice) {
+      super(hidDevice);
+    }
+
+    /**
+     * Take over the content of a newer data event from the same device while still queued
+     *
+     * @param newer The newer event
+     */
+    abstract void replaceWith(DataTask newer);
+  }
+
+  /**
+   * Time to wait for each worker to finish during a shutdown
+   */
+  private static final long STOP_TIMEOUT_MILLIS = 1000;
+
+  private final int capacity;
+  private final EventQueuePolicy policy;
+
+  private final ReentrantLock lock = new ReentrantLock();
+  private final Condition notEmpty = lock.newCondition();
+  private final Condition notFull = lock.newCondition();
+  private final ArrayDeque<Task> queue = new ArrayDeque<>();
+
+  /**
+   * The number of data events in the queue (guarded by lock)
+   */
+  private int dataCount = 0;
+
+  /**
+   * The queued data event for each device path when coalescing (guarded by lock)
+   */
+  private final Map<String, DataTask> coalescing = new HashMap<>();
+
+  private final AtomicLong droppedCount = new AtomicLong();
+  private final AtomicLong coalescedCount = new AtomicLong();
+
+  private final List<Thread> workerThreads = new ArrayList<>();
+
+  /**
+   * True once the workers have been told to stop (guarded by lock)
+   */
+  private boolean shutdown = false;
+
+  /**
+   * @param workers       The number of worker threads
+   * @param capacity      The maximum number of queued data events
+   * @param policy        The behaviour when the queue is full
+   * @param threadFactory The worker thread factory
+   */
+  HidEventDispatcher(int workers, int capacity, EventQueuePolicy policy, ThreadFactory threadFactory) {
+
+    if (capacity < 1) {
+      throw new IllegalArgumentException("'capacity' must be greater than zero.");
+    }
+    this.capacity = capacity;
+    this.policy = policy;
+
+    for (int i = 0; i < workers; i++) {
+      Thread workerThread = threadFactory.newThread(new Runnable() {
+        @Override
+        public void run() {
+          while (true) {
+            Task task;
+            try {
+              task = take();
+            } catch (InterruptedException e) {
+              Thread.currentThread().interrupt();
+              break;
+            }
+            try {
+              task.run();
+            } catch (RuntimeException e) {
+              // Listener failures have never been reported so keep the worker alive
+            }
+          }
+        }
+      });
+      workerThreads.add(workerThread);
+      workerThread.start();
+    }
+
+  }
+
+  /**
+   * Queue an attach, detach or failure event ignoring the capacity
+   *
+   * @param task The event
+   */
+  void submit(Task task) {
+
+    lock.lock();
+    try {
+      if (shutdown) {
+        return;
+      }
+      queue.add(task);
+      notEmpty.signal();
+    } finally {
+      lock.unlock();
+    }
+
+  }
+
+  /**
+   * Queue a data event applying the policy if the queue is full
+   *
+   * @param task The event
+   */
+  void submitData(DataTask task) {
+
+    lock.lock();
+    try {
+
+      if (policy == EventQueuePolicy.COALESCE) {
+        DataTask queued = coalescing.get(path(task.hidDevice));
+        if (queued != null) {
+          queued.replaceWith(task);
+          coalescedCount.incrementAndGet();
+          return;
+        }
+      }
+
+      while (dataCount >= capacity && !shutdown) {
+        switch (policy) {
+          case BLOCK:
+            try {
+              notFull.await();
+            } catch (InterruptedException e) {
+              Thread.currentThread().interrupt();
+              droppedCount.incrementAndGet();
+              return;
+            }
+            break;
+          case DROP_OLDEST:
+            removeOldestData();
+            droppedCount.incrementAndGet();
+            break;
+          default:
+            droppedCount.incrementAndGet();
+            return;
+        }
+      }
+
+      if (shutdown) {
+        droppedCount.incrementAndGet();
+        return;
+      }
+      queue.add(task);
+      dataCount++;
+      if (policy == EventQueuePolicy.COALESCE) {
+        coalescing.put(path(task.hidDevice), task);
+      }
+      notEmpty.signal();
+
+    } finally {
+      lock.unlock();
+    }
+
+  }
+
+  /**
+   * Discard queued events and stop the workers, waiting briefly for any running a listener
+   *
+   * Events submitted afterwards are ignored.
+   */
+  void shutdown() {
+
+    lock.lock();
+    try {
+      shutdown = true;
+      queue.clear();
+      coalescing.clear();
+      dataCount = 0;
+      // Release any reader blocked on a full queue
+      notFull.signalAll();
+    } finally {
+      lock.unlock();
+    }
+
+    for (Thread workerThread : workerThreads) {
+      workerThread.interrupt();
+    }
+    for (Thread workerThread : workerThreads) {
+      if (workerThread == Thread.currentThread()) {
+        // Shut down by a listener so this worker stops once the listener returns
+        continue;
+      }
+      try {
+        workerThread.join(STOP_TIMEOUT_MILLIS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return;
+      }
+    }
+
+  }
+
+  private Task take() throws InterruptedException {
+    lock.lock();
+    try {
+      while (queue.isEmpty()) {
+        if (shutdown) {
+          throw new InterruptedException();
+        }
+        notEmpty.await();
+      }
+      Task task = queue.poll();
+      if (task instanceof DataTask) {
+        dataCount--;
+        if (policy == EventQueuePolicy.COALESCE) {
+          coalescing.remove(path(task.hidDevice));
+        }
+        notFull.signal();
+      }
+      return task;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private void removeOldestData() {
+    Iterator<Task> iterator = queue.iterator();
+    while (iterator.hasNext()) {
+      if (iterator.next() instanceof DataTask) {
+        iterator.remove();
+        dataCount--;
+        return;
+      }
+    }
+  }
+
+  private static String path(HidDevice hidDevice) {
+    return hidDevice == null ? null : hidDevice.getPath();
+  }
+
+  /**
+   * @return The number of events waiting for a worker
+   */
+  int getQueueDepth() {
+    lock.lock();
+    try {
+      return queue.size();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  long getDroppedCount() {
+    return droppedCount.get();
+  }
+
+  long getCoalescedCount() {
+    return coalescedCount.get();
+  }
+
+}
@@ -25,13 +25,14 @@
 
 package org.hid4java.event;
 
+import org.hid4java.EventQueuePolicy;
 import org.hid4java.HidDevice;
 import org.hid4java.HidServicesListener;
+import org.hid4java.jfr.HidFlightRecorder;
 
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
-import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ThreadFactory;
 
@@ -47,8 +48,23 @@ public class HidServicesListenerList {
    */
   private final List<HidServicesListener> listeners = Collections.synchronizedList(new ArrayList<HidServicesListener>());
 
-  private final ExecutorService executorService = Executors.newFixedThreadPool(
-    3, new ThreadFactory() {
+  private final HidEventDispatcher dispatcher;
+
+  /**
+   * Create a listener list with an unbounded event queue
+   */
+  public HidServicesListenerList() {
+    this(Integer.MAX_VALUE, EventQueuePolicy.BLOCK);
+  }
+
+  /**
+   * @param eventQueueCapacity The maximum number of queued data received events
+   * @param eventQueuePolicy   The behaviour when the event queue is full
+   * @since 0.8.0
+   */
+  public HidServicesListenerList(int eventQueueCapacity, EventQueuePolicy eventQueuePolicy) {
+    this.dispatcher = new HidEventDispatcher(
+      3, eventQueueCapacity, eventQueuePolicy, new ThreadFactory() {
       @Override
       public Thread newThread(Runnable runnable) {
         Thread thread = Executors.defaultThreadFactory().newThread(runnable);
@@ -57,6 +73,7 @@ public class HidServicesListenerList {
         return thread;
       }
     });
+  }
 
   /**
    * @param listener The listener to add
@@ -82,6 +99,15 @@ public class HidServicesListenerList {
     this.listeners.clear();
   }
 
+  /**
+   * Discard undelivered events and stop the event worker threads (events fired afterwards are ignored)
+   *
+   * @since 0.8.0
+   */
+  public void shutdown() {
+    dispatcher.shutdown();
+  }
+
   /**
    * @return The listeners list
    */
@@ -106,18 +132,24 @@ public class HidServicesListenerList {
    */
   public void fireHidDeviceAttached(final HidDevice hidDevice) {
 
+    final long queuedNanos = dispatchQueued("DEVICE_ATTACHED", hidDevice, 0);
+
     // Broadcast on a different thread
-    executorService.submit(
-      new Runnable() {
+    dispatcher.submit(
+      new HidEventDispatcher.Task(hidDevice) {
         @Override
         public void run() {
 
+          Object jfr = HidFlightRecorder.beginDispatch();
           HidServicesEvent event = new HidServicesEvent(hidDevice);
 
-          for (final HidServicesListener listener : toArray()) {
+          HidServicesListener[] listeners = toArray();
+          for (final HidServicesListener listener : listeners) {
             listener.hidDeviceAttached(event);
           }
 
+          HidFlightRecorder.endDispatch(jfr, "DEVICE_ATTACHED", path(hidDevice), 0, listeners.length, queuedNanos);
+
         }
       });
 
@@ -130,18 +162,24 @@ public class HidServicesListenerList {
    */
   public void fireHidDeviceDetached(final HidDevice hidDevice) {
 
+    final long queuedNanos = dispatchQueued("DEVICE_DETACHED", hidDevice, 0);
+
     // Broadcast on a different thread
-    executorService.submit(
-      new Runnable() {
+    dispatcher.submit(
+      new HidEventDispatcher.Task(hidDevice) {
         @Override
         public void run() {
 
+          Object jfr = HidFlightRecorder.beginDispatch();
           HidServicesEvent event = new HidServicesEvent(hidDevice);
 
-          for (final HidServicesListener listener : toArray()) {
+          HidServicesListener[] listeners = toArray();
+          for (final HidServicesListener listener : listeners) {
             listener.hidDeviceDetached(event);
           }
 
+          HidFlightRecorder.endDispatch(jfr, "DEVICE_DETACHED", path(hidDevice), 0, listeners.length, queuedNanos);
+
         }
       });
 
@@ -154,18 +192,24 @@ public class HidServicesListenerList {
    */
   public void fireHidFailure(final HidDevice hidDevice) {
 
+    final long queuedNanos = dispatchQueued("FAILURE", hidDevice, 0);
+
     // Broadcast on a different thread
-    executorService.submit(
-      new Runnable() {
+    dispatcher.submit(
+      new HidEventDispatcher.Task(hidDevice) {
         @Override
         public void run() {
 
+          Object jfr = HidFlightRecorder.beginDispatch();
           HidServicesEvent event = new HidServicesEvent(hidDevice);
 
-          for (final HidServicesListener listener : toArray()) {
+          HidServicesListener[] listeners = toArray();
+          for (final HidServicesListener listener : listeners) {
             listener.hidFailure(event);
           }
 
+          HidFlightRecorder.endDispatch(jfr, "FAILURE", path(hidDevice), 0, listeners.length, queuedNanos);
+
         }
       });
 
@@ -179,22 +223,87 @@ public class HidServicesListenerList {
    */
   public void fireHidDataReceived(final HidDevice hidDevice, final byte[] dataReceived) {
 
-    // Broadcast on a different thread
-    executorService.submit(
-      new Runnable() {
-        @Override
-        public void run() {
+    long queuedNanos = dispatchQueued("DATA_RECEIVED", hidDevice, dataReceived.length);
 
-          HidServicesEvent event = new HidServicesEvent(hidDevice, dataReceived);
+    // Broadcast on a different thread (subject to the event queue policy)
+    dispatcher.submitData(new DataReceivedTask(hidDevice, dataReceived, queuedNanos));
 
-          for (final HidServicesListener listener : toArray()) {
-            listener.hidDataReceived(event);
-          }
+  }
 
-        }
-      });
+  /**
+   * A data received event which may be replaced by a newer one while queued
+   */
+  private final class DataReceivedTask extends HidEventDispatcher.DataTask {
+
+    // Guarded by the dispatcher lock until taken from the queue
+    private byte[] dataReceived;
+    private long queuedNanos;
 
+    private DataReceivedTask(HidDevice hidDevice, byte[] dataReceived, long queuedNanos) {
+      super(hidDevice);
+      this.dataReceived = dataReceived;
+      this.queuedNanos = queuedNanos;
+    }
+
+    @Override
+    void replaceWith(HidEventDispatcher.DataTask newer) {
+      DataReceivedTask task = (DataReceivedTask) newer;
+      this.dataReceived = task.dataReceived;
+      this.queuedNanos = task.queuedNanos;
+    }
+
+    @Override
+    public void run() {
+
+      Object jfr = HidFlightRecorder.beginDispatch();
+      HidServicesEvent event = new HidServicesEvent(hidDevice, dataReceived);
+
+      HidServicesListener[] listeners = toArray();
+      for (final HidServicesListener listener : listeners) {
+        listener.hidDataReceived(event);
+      }
+
+      HidFlightRecorder.endDispatch(jfr, "DATA_RECEIVED", path(hidDevice), dataReceived.length, listeners.length, queuedNanos);
+
+    }
   }
 
-}
+  /**
+   * @return The {@link System#nanoTime()} of queueing if dispatch is being recorded, otherwise zero
+   */
+  private long dispatchQueued(String eventType, HidDevice hidDevice, int bytes) {
+    if (!HidFlightRecorder.isDispatchQueuedEnabled()) {
+      return 0;
+    }
+    return HidFlightRecorder.dispatchQueued(eventType, path(hidDevice), bytes, getQueueDepth());
+  }
 
+  private static String path(HidDevice hidDevice) {
+    return hidDevice == null ? null : hidDevice.getPath();
+  }
+
+  /**
+   * @return The number of events waiting for an event worker
+   * @since 0.8.0
+   */
+  public int getQueueDepth() {
+    return dispatcher.getQueueDepth();
+  }
+
+  /**
+   * @return The number of data received events dropped because the event queue was full
+   * @since 0.8.0
+   */
+  public long getDroppedEventCount() {
+    return dispatcher.getDroppedCount();
+  }
+
+  /**
+   * @return The number of data received events replaced by a newer one from the same device
+   * @since 0.8.0
+   */
+  public long getCoalescedEventCount() {
+    return dispatcher.getCoalescedCount();
+  }
+
+}
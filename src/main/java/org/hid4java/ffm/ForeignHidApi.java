@@ -0,0 +1,64 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014-2020 Gary Rowe
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package org.hid4java.ffm;
+
+import org.hid4java.jna.HidApiLibrary;
+
+/**
+ * Foreign function bindings to provide the following to {@link org.hid4java.jna.HidApi}:
+ * <ul>
+ * <li>Report transfers through java.lang.foreign downcall handles rather than JNA</li>
+ * <li>Native report buffers allocated once per device and reused until it is closed</li>
+ * </ul>
+ *
+ * This is the Java 8 version where the JNA binding is always used. On Java 22 and later the multi-release
+ * JAR supplies a version that binds the report calls of the already loaded hidapi library with downcall
+ * handles (see {@link org.hid4java.jna.HidApi#useForeignFunctionApi}).
+ *
+ * @since 0.8.0
+ */
+public final class ForeignHidApi {
+
+  private ForeignHidApi() {
+  }
+
+  /**
+   * @return True if this runtime supports the foreign function bindings
+   */
+  public static boolean isSupported() {
+    return false;
+  }
+
+  /**
+   * @param library The JNA binding of a hidapi native library (used for everything other than reports)
+   *
+   * @return A library making report calls through downcall handles (the JNA binding if not supported)
+   */
+  public static HidApiLibrary wrap(HidApiLibrary library) {
+    return library;
+  }
+
+}
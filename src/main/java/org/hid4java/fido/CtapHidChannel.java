@@ -0,0 +1,181 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014-2020 Gary Rowe
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package org.hid4java.fido;
+
+/**
+ * A CTAPHID channel allocated by {@link CtapHidTransport#allocateChannel(int)}
+ *
+ * Only one transaction may be in progress on a channel at any time so callers
+ * wishing to work concurrently should allocate a channel each.
+ *
+ * @since 0.8.0
+ */
+public class CtapHidChannel {
+
+  // CTAP capability bits (set means supported)
+  public static final int CAPABILITY_WINK = 0x01;
+  public static final int CAPABILITY_CBOR = 0x04;
+  public static final int CAPABILITY_NMSG = 0x08;
+
+  /**
+   * Receives CTAPHID_KEEPALIVE notifications while a transaction is in progress
+   */
+  public interface KeepAliveListener {
+
+    /**
+     * @param status The keepalive status (e.g. {@link CtapHidTransport#KEEPALIVE_UPNEEDED})
+     */
+    void keepAlive(int status);
+
+  }
+
+  private final CtapHidTransport transport;
+  private final int channelId;
+  private final int protocolVersion;
+  private final int majorVersion;
+  private final int minorVersion;
+  private final int buildVersion;
+  private final int capabilities;
+
+  private volatile KeepAliveListener keepAliveListener = null;
+
+  CtapHidChannel(CtapHidTransport transport, int channelId, int protocolVersion, int majorVersion, int minorVersion, int buildVersion, int capabilities) {
+    this.transport = transport;
+    this.channelId = channelId;
+    this.protocolVersion = protocolVersion;
+    this.majorVersion = majorVersion;
+    this.minorVersion = minorVersion;
+    this.buildVersion = buildVersion;
+    this.capabilities = capabilities;
+  }
+
+  /**
+   * Send a request on this channel and wait for the response
+   *
+   * @param command       The CTAPHID command (e.g. {@link CtapHidTransport#CTAPHID_CBOR})
+   * @param payload       The request payload (up to {@link CtapHidTransport#FIDO_MAXMSG} bytes)
+   * @param timeoutMillis The number of milliseconds to wait (restarted on every keepalive)
+   * @return The response payload
+   * @throws CtapHidException If the authenticator reports an error or the timeout expires
+   */
+  public synchronized byte[] transact(byte command, byte[] payload, int timeoutMillis) {
+    return transport.transact(channelId, command, payload, timeoutMillis, keepAliveListener);
+  }
+
+  /**
+   * @param data          The data to echo
+   * @param timeoutMillis The number of milliseconds to wait
+   * @return The echoed data
+   */
+  public byte[] ping(byte[] data, int timeoutMillis) {
+    return transact(CtapHidTransport.CTAPHID_PING, data, timeoutMillis);
+  }
+
+  /**
+   * @param request       The U2F/CTAP1 APDU
+   * @param timeoutMillis The number of milliseconds to wait
+   * @return The response APDU
+   */
+  public byte[] msg(byte[] request, int timeoutMillis) {
+    return transact(CtapHidTransport.CTAPHID_MSG, request, timeoutMillis);
+  }
+
+  /**
+   * @param request       The CTAP2 command byte followed by CBOR encoded parameters
+   * @param timeoutMillis The number of milliseconds to wait (restarted on every keepalive)
+   * @return The CTAP2 status byte followed by the CBOR encoded response
+   */
+  public byte[] cbor(byte[] request, int timeoutMillis) {
+    return transact(CtapHidTransport.CTAPHID_CBOR, request, timeoutMillis);
+  }
+
+  /**
+   * Ask the authenticator to identify itself (e.g. flash an LED)
+   *
+   * @param timeoutMillis The number of milliseconds to wait
+   */
+  public void wink(int timeoutMillis) {
+    transact(CtapHidTransport.CTAPHID_WINK, new byte[0], timeoutMillis);
+  }
+
+  /**
+   * Cancel the transaction in progress on this channel
+   *
+   * May be called from any thread. The authenticator will complete the pending
+   * CTAPHID_CBOR request with CTAP2_ERR_KEEPALIVE_CANCEL.
+   */
+  public void cancel() {
+    transport.send(channelId, CtapHidTransport.CTAPHID_CANCEL, new byte[0]);
+  }
+
+  /**
+   * @param keepAliveListener The listener for keepalive notifications (null to remove)
+   */
+  public void setKeepAliveListener(KeepAliveListener keepAliveListener) {
+    this.keepAliveListener = keepAliveListener;
+  }
+
+  public int getChannelId() {
+    return channelId;
+  }
+
+  public int getProtocolVersion() {
+    return protocolVersion;
+  }
+
+  public int getMajorVersion() {
+    return majorVersion;
+  }
+
+  public int getMinorVersion() {
+    return minorVersion;
+  }
+
+  public int getBuildVersion() {
+    return buildVersion;
+  }
+
+  public int getCapabilities() {
+    return capabilities;
+  }
+
+  /**
+   * @param capability The capability bit (e.g. {@link #CAPABILITY_CBOR})
+   * @return True if the authenticator declared the capability
+   */
+  public boolean hasCapability(int capability) {
+    return (capabilities & capability) != 0;
+  }
+
+  @Override
+  public String toString() {
+    return "CtapHidChannel [channelId=0x" + Integer.toHexString(channelId)
+      + ", protocolVersion=" + protocolVersion
+      + ", version=" + majorVersion + "." + minorVersion + "." + buildVersion
+      + ", capabilities=0x" + Integer.toHexString(capabilities)
+      + "]";
+  }
+}
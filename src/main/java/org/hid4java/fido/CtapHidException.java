@@ -0,0 +1,63 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014-2020 Gary Rowe
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package org.hid4java.fido;
+
+import org.hid4java.HidException;
+
+/**
+ * Exception to provide the following to API consumers:
+ * <ul>
+ * <li>Notification of a CTAPHID transport failure</li>
+ * <li>Access to the CTAPHID error code reported by the authenticator (if any)</li>
+ * </ul>
+ *
+ * @since 0.8.0
+ */
+public class CtapHidException extends HidException {
+
+  /**
+   * Indicates that the failure did not originate from a CTAPHID_ERROR response
+   */
+  public static final int NO_ERROR_CODE = -1;
+
+  private final int errorCode;
+
+  public CtapHidException(String message) {
+    this(message, NO_ERROR_CODE);
+  }
+
+  public CtapHidException(String message, int errorCode) {
+    super(message);
+    this.errorCode = errorCode;
+  }
+
+  /**
+   * @return The CTAPHID_ERROR code sent by the authenticator or {@link #NO_ERROR_CODE}
+   */
+  public int getErrorCode() {
+    return errorCode;
+  }
+}
@@ -0,0 +1,616 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014-2020 Gary Rowe
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package org.hid4java.fido;
+
+import org.hid4java.HidDevice;
+
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * CTAPHID transport to provide the following to FIDO applications:
+ * <ul>
+ * <li>Channel allocation through CTAPHID_INIT on the broadcast channel</li>
+ * <li>Fragmentation of outgoing messages into initialization and continuation packets</li>
+ * <li>Reassembly of incoming messages up to {@link #FIDO_MAXMSG}</li>
+ * <li>CTAPHID_KEEPALIVE and CTAPHID_CANCEL handling</li>
+ * <li>Concurrent transactions on separate channels over a single device</li>
+ * </ul>
+ *
+ * A single daemon thread reads all input reports from the device and routes each
+ * reassembled message to the transaction waiting on its channel. The transport
+ * therefore requires exclusive read access to the device so automatic data read
+ * must not be enabled in the {@link org.hid4java.HidServicesSpecification}.
+ *
+ * An authenticator will only process one transaction at a time and replies with
+ * {@link #ERR_CHANNEL_BUSY} to the others. These are transparently retried until
+ * the transaction timeout expires.
+ *
+ * @since 0.8.0
+ */
+public class CtapHidTransport {
+
+  // CTAPHID command opcodes
+  public static final byte CTAPHID_PING = 0x01;
+  public static final byte CTAPHID_MSG = 0x03;
+  public static final byte CTAPHID_LOCK = 0x04;
+  public static final byte CTAPHID_INIT = 0x06;
+  public static final byte CTAPHID_WINK = 0x08;
+  public static final byte CTAPHID_CBOR = 0x10;
+  public static final byte CTAPHID_CANCEL = 0x11;
+  public static final byte CTAPHID_KEEPALIVE = 0x3b;
+  public static final byte CTAPHID_ERROR = 0x3f;
+
+  // CTAPHID error codes
+  public static final int ERR_INVALID_CMD = 0x01;
+  public static final int ERR_INVALID_PAR = 0x02;
+  public static final int ERR_INVALID_LEN = 0x03;
+  public static final int ERR_INVALID_SEQ = 0x04;
+  public static final int ERR_MSG_TIMEOUT = 0x05;
+  public static final int ERR_CHANNEL_BUSY = 0x06;
+  public static final int ERR_LOCK_REQUIRED = 0x0a;
+  public static final int ERR_INVALID_CHANNEL = 0x0b;
+  public static final int ERR_OTHER = 0x7f;
+
+  // CTAPHID_KEEPALIVE status codes
+  public static final int KEEPALIVE_PROCESSING = 0x01;
+  public static final int KEEPALIVE_UPNEEDED = 0x02;
+
+  // HID broadcast channel ID
+  public static final int CID_BROADCAST = 0xffffffff;
+
+  // Maximum message size in bytes
+  public static final int FIDO_MAXMSG = 2048;
+
+  // Maximum length of a CTAPHID report in bytes
+  public static final int DEFAULT_REPORT_LENGTH = 64;
+
+  static final int INIT_HEADER_LEN = 7;
+  static final int CONT_HEADER_LEN = 5;
+
+  private static final byte FRAME_INIT = (byte) 0x80;
+  private static final int MAX_SEQUENCE = 0x7f;
+  private static final int NONCE_LENGTH = 8;
+  private static final int INIT_RESPONSE_LENGTH = 17;
+
+  /**
+   * Read timeout used by the reader thread so that it can notice a stop request
+   */
+  private static final int READ_TIMEOUT_MILLIS = 50;
+
+  /**
+   * Pause before resending a transaction rejected with ERR_CHANNEL_BUSY
+   */
+  private static final long BUSY_RETRY_NANOS = TimeUnit.MILLISECONDS.toNanos(5);
+
+  private final HidDevice hidDevice;
+  private final int reportLength;
+
+  /**
+   * Ensures the packets of one message are not interleaved with another
+   */
+  private final Object writeLock = new Object();
+
+  /**
+   * Pending transactions keyed on channel ID
+   */
+  private final Map<Integer, Transaction> transactions = new ConcurrentHashMap<>();
+
+  /**
+   * Pending CTAPHID_INIT transactions keyed on nonce
+   */
+  private final Map<Long, Transaction> initTransactions = new ConcurrentHashMap<>();
+
+  /**
+   * Partially received messages keyed on channel ID (only touched by the reader thread)
+   */
+  private final Map<Integer, Reassembly> reassemblies = new HashMap<>();
+
+  private final SecureRandom secureRandom = new SecureRandom();
+
+  private volatile boolean running = false;
+
+  /**
+   * The data read thread
+   */
+  private Thread readThread = null;
+
+  /**
+   * @param hidDevice The FIDO device (usage page 0xf1d0)
+   */
+  public CtapHidTransport(HidDevice hidDevice) {
+    this(hidDevice, DEFAULT_REPORT_LENGTH);
+  }
+
+  /**
+   * @param hidDevice    The FIDO device (usage page 0xf1d0)
+   * @param reportLength The input and output report length declared by the device
+   */
+  public CtapHidTransport(HidDevice hidDevice, int reportLength) {
+    if (reportLength <= INIT_HEADER_LEN) {
+      throw new IllegalArgumentException("'reportLength' must be greater than " + INIT_HEADER_LEN + ".");
+    }
+    this.hidDevice = hidDevice;
+    this.reportLength = reportLength;
+  }
+
+  /**
+   * Open the device (if required) and start the reader thread
+   *
+   * If already started it will immediately return without doing anything
+   */
+  public synchronized void start() {
+
+    if (running) {
+      return;
+    }
+
+    if (hidDevice.isClosed() && !hidDevice.open()) {
+      throw new CtapHidException("Unable to open device: " + hidDevice.getPath());
+    }
+
+    running = true;
+
+    readThread = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        readLoop();
+      }
+    });
+    readThread.setDaemon(true);
+    readThread.setName("hid4java CTAPHID reader");
+    readThread.start();
+
+  }
+
+  /**
+   * Stop the reader thread and fail all pending transactions
+   *
+   * The device is left open so that it can be closed by its owner
+   */
+  public synchronized void stop() {
+
+    if (!running) {
+      return;
+    }
+
+    running = false;
+
+    try {
+      // The reader will notice within one read timeout
+      readThread.join(READ_TIMEOUT_MILLIS * 4L);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    readThread = null;
+
+    failAll(new CtapHidException("Transport stopped"));
+
+  }
+
+  /**
+   * @return True if the reader thread is running
+   */
+  public boolean isRunning() {
+    return running;
+  }
+
+  /**
+   * @return The underlying device
+   */
+  public HidDevice getHidDevice() {
+    return hidDevice;
+  }
+
+  /**
+   * Allocate a new channel using CTAPHID_INIT on the broadcast channel
+   *
+   * Each caller that wishes to run transactions concurrently should allocate its own channel.
+   *
+   * @param timeoutMillis The number of milliseconds to wait for the authenticator
+   * @return The allocated channel
+   * @throws CtapHidException If the authenticator does not respond correctly
+   */
+  public CtapHidChannel allocateChannel(int timeoutMillis) {
+
+    byte[] nonce = new byte[NONCE_LENGTH];
+    secureRandom.nextBytes(nonce);
+    long key = readLong(nonce, 0);
+
+    Transaction transaction = new Transaction(CTAPHID_INIT, null, TimeUnit.MILLISECONDS.toNanos(timeoutMillis));
+    initTransactions.put(key, transaction);
+    try {
+      send(CID_BROADCAST, CTAPHID_INIT, nonce);
+      byte[] response = transaction.await();
+      if (response.length < INIT_RESPONSE_LENGTH) {
+        throw new CtapHidException("CTAPHID_INIT response too short: " + response.length, ERR_INVALID_LEN);
+      }
+      return new CtapHidChannel(
+        this,
+        readInt(response, 8),
+        response[12] & 0xff,
+        response[13] & 0xff,
+        response[14] & 0xff,
+        response[15] & 0xff,
+        response[16] & 0xff
+      );
+    } finally {
+      initTransactions.remove(key);
+    }
+
+  }
+
+  /**
+   * Send a request on a channel and wait for the matching response
+   *
+   * @param channelId         The channel ID
+   * @param command           The CTAPHID command (without the frame bit)
+   * @param payload           The request payload
+   * @param timeoutMillis     The number of milliseconds to wait (restarted on every keepalive)
+   * @param keepAliveListener The listener for keepalive notifications (may be null)
+   * @return The response payload
+   */
+  byte[] transact(int channelId, byte command, byte[] payload, int timeoutMillis, CtapHidChannel.KeepAliveListener keepAliveListener) {
+
+    long timeoutNanos = TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+    long deadline = System.nanoTime() + timeoutNanos;
+
+    while (true) {
+      Transaction transaction = new Transaction(command, keepAliveListener, timeoutNanos);
+      if (transactions.putIfAbsent(channelId, transaction) != null) {
+        throw new CtapHidException("Channel " + Integer.toHexString(channelId) + " already has a transaction in progress");
+      }
+      try {
+        send(channelId, command, payload);
+        return transaction.await();
+      } catch (CtapHidException e) {
+        if (e.getErrorCode() != ERR_CHANNEL_BUSY || System.nanoTime() + BUSY_RETRY_NANOS >= deadline) {
+          throw e;
+        }
+      } finally {
+        transactions.remove(channelId, transaction);
+      }
+      // Another channel owns the authenticator so wait before trying again
+      LockSupport.parkNanos(BUSY_RETRY_NANOS);
+      timeoutNanos = deadline - System.nanoTime();
+    }
+
+  }
+
+  /**
+   * Fragment and write a message without waiting for a response
+   *
+   * @param channelId The channel ID
+   * @param command   The CTAPHID command (without the frame bit)
+   * @param payload   The payload
+   */
+  void send(int channelId, byte command, byte[] payload) {
+
+    if (!running) {
+      throw new CtapHidException("Transport has not been started");
+    }
+
+    List<byte[]> packets = fragment(channelId, command, payload, reportLength);
+
+    synchronized (writeLock) {
+      for (byte[] packet : packets) {
+        if (hidDevice.write(packet, reportLength, (byte) 0x00) < 0) {
+          throw new CtapHidException("Write failed: " + hidDevice.getLastErrorMessage());
+        }
+      }
+    }
+
+  }
+
+  /**
+   * Split a message into one initialization packet and as many continuation packets as required
+   *
+   * @param channelId    The channel ID
+   * @param command      The CTAPHID command (without the frame bit)
+   * @param payload      The payload
+   * @param reportLength The report length
+   * @return The packets in transmission order, each of the report length
+   */
+  static List<byte[]> fragment(int channelId, byte command, byte[] payload, int reportLength) {
+
+    if (payload.length > FIDO_MAXMSG) {
+      throw new CtapHidException("Message length " + payload.length + " exceeds FIDO_MAXMSG", ERR_INVALID_LEN);
+    }
+
+    List<byte[]> packets = new ArrayList<>();
+
+    byte[] packet = new byte[reportLength];
+    writeInt(packet, 0, channelId);
+    packet[4] = (byte) (FRAME_INIT | command);
+    packet[5] = (byte) (payload.length >> 8);
+    packet[6] = (byte) payload.length;
+    int offset = Math.min(reportLength - INIT_HEADER_LEN, payload.length);
+    System.arraycopy(payload, 0, packet, INIT_HEADER_LEN, offset);
+    packets.add(packet);
+
+    int sequence = 0;
+    while (offset < payload.length) {
+      if (sequence > MAX_SEQUENCE) {
+        throw new CtapHidException("Message length " + payload.length + " exceeds sequence space", ERR_INVALID_LEN);
+      }
+      packet = new byte[reportLength];
+      writeInt(packet, 0, channelId);
+      packet[4] = (byte) sequence++;
+      int chunk = Math.min(reportLength - CONT_HEADER_LEN, payload.length - offset);
+      System.arraycopy(payload, offset, packet, CONT_HEADER_LEN, chunk);
+      offset += chunk;
+      packets.add(packet);
+    }
+
+    return packets;
+  }
+
+  /**
+   * Read input reports until stopped
+   */
+  private void readLoop() {
+
+    byte[] packet = new byte[reportLength];
+
+    while (running) {
+
+      final int bytesRead;
+      try {
+        bytesRead = hidDevice.read(packet, READ_TIMEOUT_MILLIS);
+      } catch (IllegalStateException e) {
+        // Device has been closed underneath us
+        running = false;
+        failAll(new CtapHidException("Device closed"));
+        break;
+      }
+
+      if (bytesRead < 0) {
+        failAll(new CtapHidException("Read failed: " + hidDevice.getLastErrorMessage()));
+        LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(READ_TIMEOUT_MILLIS));
+      } else if (bytesRead > 0) {
+        dispatch(packet, bytesRead);
+      }
+    }
+
+  }
+
+  /**
+   * Add a packet to the reassembly for its channel and deliver the message when complete
+   *
+   * @param packet The packet
+   * @param length The number of valid bytes in the packet
+   */
+  private void dispatch(byte[] packet, int length) {
+
+    if (length < CONT_HEADER_LEN) {
+      // Runt packet
+      return;
+    }
+
+    int channelId = readInt(packet, 0);
+    byte commandOrSequence = packet[4];
+
+    Reassembly reassembly;
+    if ((commandOrSequence & FRAME_INIT) != 0) {
+      if (length < INIT_HEADER_LEN) {
+        return;
+      }
+      int byteCount = ((packet[5] & 0xff) << 8) | (packet[6] & 0xff);
+      if (byteCount > FIDO_MAXMSG) {
+        reassemblies.remove(channelId);
+        fail(channelId, new CtapHidException("Response length " + byteCount + " exceeds FIDO_MAXMSG", ERR_INVALID_LEN));
+        return;
+      }
+      reassembly = new Reassembly((byte) (commandOrSequence & ~FRAME_INIT), byteCount);
+      reassembly.append(packet, INIT_HEADER_LEN, length - INIT_HEADER_LEN);
+    } else {
+      reassembly = reassemblies.get(channelId);
+      if (reassembly == null) {
+        // Continuation without initialization (probably for a timed out transaction)
+        return;
+      }
+      if (commandOrSequence != reassembly.nextSequence) {
+        reassemblies.remove(channelId);
+        fail(channelId, new CtapHidException("Unexpected sequence " + commandOrSequence, ERR_INVALID_SEQ));
+        return;
+      }
+      reassembly.nextSequence++;
+      reassembly.append(packet, CONT_HEADER_LEN, length - CONT_HEADER_LEN);
+    }
+
+    if (reassembly.isComplete()) {
+      reassemblies.remove(channelId);
+      deliver(channelId, reassembly.command, reassembly.payload);
+    } else {
+      reassemblies.put(channelId, reassembly);
+    }
+
+  }
+
+  /**
+   * Route a complete message to the transaction waiting for it
+   *
+   * @param channelId The channel ID
+   * @param command   The command (without the frame bit)
+   * @param payload   The payload
+   */
+  private void deliver(int channelId, byte command, byte[] payload) {
+
+    if (channelId == CID_BROADCAST) {
+      if (command == CTAPHID_INIT && payload.length >= NONCE_LENGTH) {
+        Transaction transaction = initTransactions.get(readLong(payload, 0));
+        if (transaction != null) {
+          transaction.complete(payload);
+        }
+      }
+      return;
+    }
+
+    Transaction transaction = transactions.get(channelId);
+    if (transaction == null) {
+      return;
+    }
+
+    if (command == CTAPHID_KEEPALIVE) {
+      transaction.keepAlive(payload.length > 0 ? payload[0] & 0xff : 0);
+    } else if (command == CTAPHID_ERROR) {
+      int errorCode = payload.length > 0 ? payload[0] & 0xff : ERR_OTHER;
+      transaction.fail(new CtapHidException("CTAPHID_ERROR 0x" + Integer.toHexString(errorCode), errorCode));
+    } else if (command == transaction.command) {
+      transaction.complete(payload);
+    } else {
+      transaction.fail(new CtapHidException("Unexpected response command 0x" + Integer.toHexString(command & 0xff)));
+    }
+
+  }
+
+  private void fail(int channelId, CtapHidException e) {
+    Transaction transaction = transactions.get(channelId);
+    if (transaction != null) {
+      transaction.fail(e);
+    }
+  }
+
+  private void failAll(CtapHidException e) {
+    for (Transaction transaction : transactions.values()) {
+      transaction.fail(e);
+    }
+    for (Transaction transaction : initTransactions.values()) {
+      transaction.fail(e);
+    }
+  }
+
+  static int readInt(byte[] bytes, int offset) {
+    return ((bytes[offset] & 0xff) << 24)
+      | ((bytes[offset + 1] & 0xff) << 16)
+      | ((bytes[offset + 2] & 0xff) << 8)
+      | (bytes[offset + 3] & 0xff);
+  }
+
+  static void writeInt(byte[] bytes, int offset, int value) {
+    bytes[offset] = (byte) (value >> 24);
+    bytes[offset + 1] = (byte) (value >> 16);
+    bytes[offset + 2] = (byte) (value >> 8);
+    bytes[offset + 3] = (byte) value;
+  }
+
+  private static long readLong(byte[] bytes, int offset) {
+    return ((long) readInt(bytes, offset) << 32) | (readInt(bytes, offset + 4) & 0xffffffffL);
+  }
+
+  /**
+   * A message under reassembly
+   */
+  private static final class Reassembly {
+
+    private final byte command;
+    private final byte[] payload;
+    private int received = 0;
+    private byte nextSequence = 0;
+
+    private Reassembly(byte command, int byteCount) {
+      this.command = command;
+      this.payload = new byte[byteCount];
+    }
+
+    private void append(byte[] packet, int offset, int length) {
+      int chunk = Math.min(length, payload.length - received);
+      System.arraycopy(packet, offset, payload, received, chunk);
+      received += chunk;
+    }
+
+    private boolean isComplete() {
+      return received == payload.length;
+    }
+  }
+
+  /**
+   * A request awaiting its response
+   */
+  private static final class Transaction {
+
+    private final byte command;
+    private final CtapHidChannel.KeepAliveListener keepAliveListener;
+    private final long timeoutNanos;
+    private final CountDownLatch latch = new CountDownLatch(1);
+
+    private volatile long deadline;
+    private volatile byte[] response;
+    private volatile CtapHidException failure;
+
+    private Transaction(byte command, CtapHidChannel.KeepAliveListener keepAliveListener, long timeoutNanos) {
+      this.command = command;
+      this.keepAliveListener = keepAliveListener;
+      this.timeoutNanos = timeoutNanos;
+      this.deadline = System.nanoTime() + timeoutNanos;
+    }
+
+    private void complete(byte[] response) {
+      this.response = response;
+      latch.countDown();
+    }
+
+    private void fail(CtapHidException failure) {
+      this.failure = failure;
+      latch.countDown();
+    }
+
+    private void keepAlive(int status) {
+      // The authenticator is still working so restart the timeout
+      deadline = System.nanoTime() + timeoutNanos;
+      if (keepAliveListener != null) {
+        keepAliveListener.keepAlive(status);
+      }
+    }
+
+    private byte[] await() {
+      try {
+        while (latch.getCount() > 0) {
+          long remaining = deadline - System.nanoTime();
+          if (remaining <= 0) {
+            throw new CtapHidException("Transaction timed out");
+          }
+          latch.await(remaining, TimeUnit.NANOSECONDS);
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new CtapHidException("Interrupted while awaiting response");
+      }
+      if (failure != null) {
+        throw failure;
+      }
+      return response;
+    }
+  }
+
+}
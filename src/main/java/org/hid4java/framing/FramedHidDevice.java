@@ -0,0 +1,145 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014-2020 Gary Rowe
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package org.hid4java.framing;
+
+import org.hid4java.HidDevice;
+import org.hid4java.HidException;
+
+import java.util.List;
+
+/**
+ * Message level wrapper to provide the following to API consumers:
+ * <ul>
+ * <li>Segmentation of large messages using a pluggable {@link HidMessageCodec}</li>
+ * <li>Pipelined transmission of all packets of a message without a round trip per packet</li>
+ * <li>Reassembly of multi-packet messages from the input report stream</li>
+ * </ul>
+ *
+ * Writers and readers are independently serialised so one thread can stream messages
+ * out while another collects the replies.
+ *
+ * @since 0.8.0
+ */
+public class FramedHidDevice {
+
+  private final HidDevice hidDevice;
+  private final HidMessageCodec codec;
+  private final int packetLength;
+  private final byte reportId;
+
+  private final Object writeLock = new Object();
+  private final Object readLock = new Object();
+
+  private final HidMessageDecoder decoder;
+  private final byte[] readBuffer;
+
+  /**
+   * @param hidDevice    The open device
+   * @param codec        The framing codec
+   * @param packetLength The report length (excluding the report ID)
+   * @param reportId     The report ID used for output reports (or (byte) 0x00). If non-zero then
+   *                     input reports are expected to start with their report ID.
+   */
+  public FramedHidDevice(HidDevice hidDevice, HidMessageCodec codec, int packetLength, byte reportId) {
+    this.hidDevice = hidDevice;
+    this.codec = codec;
+    this.packetLength = packetLength;
+    this.reportId = reportId;
+    this.decoder = codec.newDecoder();
+    this.readBuffer = new byte[packetLength + 1];
+  }
+
+  /**
+   * Segment the message and write all packets back to back
+   *
+   * @param message The message
+   * @return The total number of bytes written (including report IDs), or -1 if an error occurs
+   */
+  public int writeMessage(byte[] message) {
+
+    List<byte[]> packets = codec.encode(message, packetLength);
+
+    synchronized (writeLock) {
+      return hidDevice.write(packets, packetLength, reportId, false);
+    }
+
+  }
+
+  /**
+   * Read input reports until a complete message has been reassembled
+   *
+   * A partially received message is retained if the timeout expires so that a
+   * subsequent call can complete it.
+   *
+   * @param timeoutMillis The number of milliseconds to wait for the complete message
+   * @return The message or null if the timeout expired first
+   * @throws HidException If a read fails or the framing is violated
+   */
+  public byte[] readMessage(int timeoutMillis) {
+
+    synchronized (readLock) {
+
+      long deadline = System.currentTimeMillis() + timeoutMillis;
+      int headerLength = reportId == 0 ? 0 : 1;
+
+      while (true) {
+        int remaining = (int) (deadline - System.currentTimeMillis());
+        if (remaining <= 0) {
+          return null;
+        }
+
+        int bytesRead = hidDevice.read(readBuffer, remaining);
+        if (bytesRead < 0) {
+          throw new HidException("Read failed: " + hidDevice.getLastErrorMessage());
+        }
+        if (bytesRead > headerLength) {
+          byte[] message = decoder.decode(readBuffer, headerLength, bytesRead - headerLength);
+          if (message != null) {
+            return message;
+          }
+        }
+      }
+    }
+
+  }
+
+  /**
+   * Discard any partially reassembled input message
+   */
+  public void resetDecoder() {
+    synchronized (readLock) {
+      decoder.reset();
+    }
+  }
+
+  /**
+   * @return The underlying device
+   */
+  public HidDevice getHidDevice() {
+    return hidDevice;
+  }
+
+}
@@ -0,0 +1,55 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014-2020 Gary Rowe
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package org.hid4java.framing;
+
+import java.util.List;
+
+/**
+ * Interface to provide the following to framing implementations:
+ * <ul>
+ * <li>Segmentation of a message into fixed length HID packets</li>
+ * <li>Creation of a decoder to reassemble messages from an input report stream</li>
+ * </ul>
+ *
+ * Packets never include the report ID since that is prefixed by {@link org.hid4java.HidDevice}.
+ *
+ * @since 0.8.0
+ */
+public interface HidMessageCodec {
+
+  /**
+   * @param message      The message to send
+   * @param packetLength The packet length (excluding the report ID)
+   * @return The packets in transmission order, each of the packet length
+   */
+  List<byte[]> encode(byte[] message, int packetLength);
+
+  /**
+   * @return A new decoder with its own reassembly state
+   */
+  HidMessageDecoder newDecoder();
+
+}
@@ -0,0 +1,56 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014-2020 Gary Rowe
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package org.hid4java.framing;
+
+/**
+ * Interface to provide the following to framing implementations:
+ * <ul>
+ * <li>Stateful reassembly of messages from consecutive input reports</li>
+ * </ul>
+ *
+ * A decoder is not thread safe and should be fed by a single reader.
+ *
+ * @since 0.8.0
+ */
+public interface HidMessageDecoder {
+
+  /**
+   * Add the next input report to the message under reassembly
+   *
+   * @param packet The packet bytes (excluding any report ID)
+   * @param offset The offset of the first packet byte
+   * @param length The number of packet bytes
+   * @return The complete message if this packet finished it, otherwise null
+   * @throws org.hid4java.HidException If the packet violates the framing (the partial message is discarded)
+   */
+  byte[] decode(byte[] packet, int offset, int length);
+
+  /**
+   * Discard any partially reassembled message
+   */
+  void reset();
+
+}
@@ -0,0 +1,150 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014-2020 Gary Rowe
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package org.hid4java.framing;
+
+import org.hid4java.HidException;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Codec to provide the following to vendor protocols:
+ * <ul>
+ * <li>Messages prefixed with a big-endian length field in the first packet</li>
+ * <li>Continuation packets carrying raw message bytes</li>
+ * </ul>
+ *
+ * The final packet is padded with zero bytes.
+ *
+ * @since 0.8.0
+ */
+public class LengthPrefixedCodec implements HidMessageCodec {
+
+  private final int lengthFieldSize;
+  private final int maxMessageLength;
+
+  /**
+   * Use a 2 byte length field (messages up to 65535 bytes)
+   */
+  public LengthPrefixedCodec() {
+    this(2, 0xffff);
+  }
+
+  /**
+   * @param lengthFieldSize  The size of the length field in bytes (1, 2 or 4)
+   * @param maxMessageLength The largest message that will be accepted by a decoder
+   */
+  public LengthPrefixedCodec(int lengthFieldSize, int maxMessageLength) {
+    if (lengthFieldSize != 1 && lengthFieldSize != 2 && lengthFieldSize != 4) {
+      throw new IllegalArgumentException("'lengthFieldSize' must be 1, 2 or 4.");
+    }
+    if (maxMessageLength < 0 || (lengthFieldSize < 4 && maxMessageLength >= 1 << (8 * lengthFieldSize))) {
+      throw new IllegalArgumentException("'maxMessageLength' must fit in the length field.");
+    }
+    this.lengthFieldSize = lengthFieldSize;
+    this.maxMessageLength = maxMessageLength;
+  }
+
+  @Override
+  public List<byte[]> encode(byte[] message, int packetLength) {
+
+    if (message.length > maxMessageLength) {
+      throw new IllegalArgumentException("Message length " + message.length + " exceeds " + maxMessageLength);
+    }
+    if (packetLength <= lengthFieldSize) {
+      throw new IllegalArgumentException("'packetLength' must be greater than the length field.");
+    }
+
+    List<byte[]> packets = new ArrayList<>();
+
+    byte[] packet = new byte[packetLength];
+    for (int i = 0; i < lengthFieldSize; i++) {
+      packet[i] = (byte) (message.length >> (8 * (lengthFieldSize - 1 - i)));
+    }
+    int offset = Math.min(packetLength - lengthFieldSize, message.length);
+    System.arraycopy(message, 0, packet, lengthFieldSize, offset);
+    packets.add(packet);
+
+    while (offset < message.length) {
+      packet = new byte[packetLength];
+      int chunk = Math.min(packetLength, message.length - offset);
+      System.arraycopy(message, offset, packet, 0, chunk);
+      offset += chunk;
+      packets.add(packet);
+    }
+
+    return packets;
+  }
+
+  @Override
+  public HidMessageDecoder newDecoder() {
+
+    return new HidMessageDecoder() {
+
+      private byte[] message = null;
+      private int received = 0;
+
+      @Override
+      public byte[] decode(byte[] packet, int offset, int length) {
+
+        if (message == null) {
+          if (length < lengthFieldSize) {
+            throw new HidException("Packet too short for length field: " + length);
+          }
+          long messageLength = 0;
+          for (int i = 0; i < lengthFieldSize; i++) {
+            messageLength = (messageLength << 8) | (packet[offset + i] & 0xff);
+          }
+          if (messageLength > maxMessageLength) {
+            throw new HidException("Message length " + messageLength + " exceeds " + maxMessageLength);
+          }
+          message = new byte[(int) messageLength];
+          offset += lengthFieldSize;
+          length -= lengthFieldSize;
+        }
+
+        int chunk = Math.min(length, message.length - received);
+        System.arraycopy(packet, offset, message, received, chunk);
+        received += chunk;
+
+        if (received < message.length) {
+          return null;
+        }
+
+        byte[] complete = message;
+        reset();
+        return complete;
+      }
+
+      @Override
+      public void reset() {
+        message = null;
+        received = 0;
+      }
+    };
+  }
+
+}
@@ -0,0 +1,151 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014-2020 Gary Rowe
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package org.hid4java.framing;
+
+import org.hid4java.HidException;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Codec to provide the following to vendor protocols:
+ * <ul>
+ * <li>A sequence number at the start of every packet (0 for the first packet of a message)</li>
+ * <li>A 2 byte big-endian message length after the sequence number of the first packet</li>
+ * </ul>
+ *
+ * Continuation packets are numbered 1 to 255 and then wrap back to 1 so that a sequence
+ * number of 0 always marks the start of a new message. A decoder rejects any gap in the
+ * sequence, which detects dropped input reports.
+ *
+ * @since 0.8.0
+ */
+public class SequenceNumberedCodec implements HidMessageCodec {
+
+  private static final int HEADER_LENGTH = 1;
+  private static final int LENGTH_FIELD_SIZE = 2;
+  private static final int MAX_MESSAGE_LENGTH = 0xffff;
+
+  @Override
+  public List<byte[]> encode(byte[] message, int packetLength) {
+
+    if (message.length > MAX_MESSAGE_LENGTH) {
+      throw new IllegalArgumentException("Message length " + message.length + " exceeds " + MAX_MESSAGE_LENGTH);
+    }
+    if (packetLength <= HEADER_LENGTH + LENGTH_FIELD_SIZE) {
+      throw new IllegalArgumentException("'packetLength' must be greater than the packet header.");
+    }
+
+    List<byte[]> packets = new ArrayList<>();
+
+    byte[] packet = new byte[packetLength];
+    packet[0] = 0;
+    packet[1] = (byte) (message.length >> 8);
+    packet[2] = (byte) message.length;
+    int offset = Math.min(packetLength - HEADER_LENGTH - LENGTH_FIELD_SIZE, message.length);
+    System.arraycopy(message, 0, packet, HEADER_LENGTH + LENGTH_FIELD_SIZE, offset);
+    packets.add(packet);
+
+    int sequence = 1;
+    while (offset < message.length) {
+      packet = new byte[packetLength];
+      packet[0] = (byte) sequence;
+      int chunk = Math.min(packetLength - HEADER_LENGTH, message.length - offset);
+      System.arraycopy(message, offset, packet, HEADER_LENGTH, chunk);
+      offset += chunk;
+      packets.add(packet);
+      sequence = nextSequence(sequence);
+    }
+
+    return packets;
+  }
+
+  @Override
+  public HidMessageDecoder newDecoder() {
+
+    return new HidMessageDecoder() {
+
+      private byte[] message = null;
+      private int received = 0;
+      private int expectedSequence = 0;
+
+      @Override
+      public byte[] decode(byte[] packet, int offset, int length) {
+
+        if (length < HEADER_LENGTH) {
+          throw new HidException("Empty packet");
+        }
+
+        int sequence = packet[offset] & 0xff;
+
+        if (sequence == 0) {
+          // Always start again on a first packet
+          if (length < HEADER_LENGTH + LENGTH_FIELD_SIZE) {
+            reset();
+            throw new HidException("Packet too short for length field: " + length);
+          }
+          message = new byte[((packet[offset + 1] & 0xff) << 8) | (packet[offset + 2] & 0xff)];
+          received = 0;
+          expectedSequence = 1;
+          offset += HEADER_LENGTH + LENGTH_FIELD_SIZE;
+          length -= HEADER_LENGTH + LENGTH_FIELD_SIZE;
+        } else if (message == null || sequence != expectedSequence) {
+          int expected = expectedSequence;
+          reset();
+          throw new HidException("Unexpected sequence " + sequence + " (expected " + expected + ")");
+        } else {
+          expectedSequence = nextSequence(expectedSequence);
+          offset += HEADER_LENGTH;
+          length -= HEADER_LENGTH;
+        }
+
+        int chunk = Math.min(length, message.length - received);
+        System.arraycopy(packet, offset, message, received, chunk);
+        received += chunk;
+
+        if (received < message.length) {
+          return null;
+        }
+
+        byte[] complete = message;
+        reset();
+        return complete;
+      }
+
+      @Override
+      public void reset() {
+        message = null;
+        received = 0;
+        expectedSequence = 0;
+      }
+    };
+  }
+
+  private static int nextSequence(int sequence) {
+    return sequence == 0xff ? 1 : sequence + 1;
+  }
+
+}
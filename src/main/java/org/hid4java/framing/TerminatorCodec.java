@@ -0,0 +1,138 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014-2020 Gary Rowe
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package org.hid4java.framing;
+
+import org.hid4java.HidException;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Codec to provide the following to vendor protocols:
+ * <ul>
+ * <li>Messages ended by a terminator byte (e.g. '\n' or ETX)</li>
+ * <li>Padding after the terminator in the final packet</li>
+ * </ul>
+ *
+ * The terminator must not appear within a message since no escaping is performed.
+ *
+ * @since 0.8.0
+ */
+public class TerminatorCodec implements HidMessageCodec {
+
+  private final byte terminator;
+  private final byte padding;
+  private final int maxMessageLength;
+
+  /**
+   * @param terminator The byte marking the end of a message
+   */
+  public TerminatorCodec(byte terminator) {
+    this(terminator, (byte) 0x00, 0xffff);
+  }
+
+  /**
+   * @param terminator       The byte marking the end of a message
+   * @param padding          The byte used to fill the remainder of the final packet
+   * @param maxMessageLength The largest message that will be accepted by a decoder
+   */
+  public TerminatorCodec(byte terminator, byte padding, int maxMessageLength) {
+    this.terminator = terminator;
+    this.padding = padding;
+    this.maxMessageLength = maxMessageLength;
+  }
+
+  @Override
+  public List<byte[]> encode(byte[] message, int packetLength) {
+
+    if (message.length > maxMessageLength) {
+      throw new IllegalArgumentException("Message length " + message.length + " exceeds " + maxMessageLength);
+    }
+    for (byte b : message) {
+      if (b == terminator) {
+        throw new IllegalArgumentException("Message contains the terminator byte");
+      }
+    }
+
+    List<byte[]> packets = new ArrayList<>();
+
+    int offset = 0;
+    boolean terminated = false;
+    while (!terminated) {
+      byte[] packet = new byte[packetLength];
+      int chunk = Math.min(packetLength, message.length - offset);
+      System.arraycopy(message, offset, packet, 0, chunk);
+      offset += chunk;
+      if (chunk < packetLength) {
+        packet[chunk] = terminator;
+        for (int i = chunk + 1; i < packetLength; i++) {
+          packet[i] = padding;
+        }
+        terminated = true;
+      }
+      packets.add(packet);
+    }
+
+    return packets;
+  }
+
+  @Override
+  public HidMessageDecoder newDecoder() {
+
+    return new HidMessageDecoder() {
+
+      private final ByteArrayOutputStream message = new ByteArrayOutputStream();
+
+      @Override
+      public byte[] decode(byte[] packet, int offset, int length) {
+
+        for (int i = offset; i < offset + length; i++) {
+          if (packet[i] == terminator) {
+            // Anything after the terminator is padding
+            message.write(packet, offset, i - offset);
+            byte[] complete = message.toByteArray();
+            reset();
+            return complete;
+          }
+        }
+
+        if (message.size() + length > maxMessageLength) {
+          reset();
+          throw new HidException("Message length exceeds " + maxMessageLength);
+        }
+        message.write(packet, offset, length);
+        return null;
+      }
+
+      @Override
+      public void reset() {
+        message.reset();
+      }
+    };
+  }
+
+}
@@ -0,0 +1,151 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014-2020 Gary Rowe
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package org.hid4java.hidraw;
+
+import com.sun.jna.Memory;
+import com.sun.jna.Native;
+import com.sun.jna.NativeLong;
+import com.sun.jna.Platform;
+import com.sun.jna.Pointer;
+import org.hid4java.HidException;
+import org.hid4java.jna.HidInputMultiplexer;
+
+/**
+ * A single epoll instance to provide the following to {@link org.hid4java.HidSelector}:
+ * <ul>
+ * <li>Level triggered input readiness across any number of hidraw devices</li>
+ * <li>An eventfd so that a blocked wait can be woken from another thread</li>
+ * </ul>
+ *
+ * The device handle is carried in the epoll event data so no lookup is needed on wake.
+ *
+ * @since 0.8.0
+ */
+class HidrawEpoll implements HidInputMultiplexer {
+
+  /**
+   * struct epoll_event is packed on x86_64 (uint32_t events then uint64_t data) and i386 aligns uint64_t to 4 bytes
+   * so both have the 12 byte layout
+   */
+  private static final boolean PACKED = Platform.isIntel();
+  private static final int EVENT_SIZE = PACKED ? 12 : 16;
+  private static final int DATA_OFFSET = PACKED ? 4 : 8;
+
+  /**
+   * Event data identifying the wakeup eventfd (device handles start at 1)
+   */
+  private static final long WAKEUP = 0;
+
+  private final LibC libc = LibC.INSTANCE;
+  private final PureJavaHidApiLibrary library;
+  private final int epollFd;
+  private final int wakeupFd;
+
+  /**
+   * Used only by the waiting thread
+   */
+  private Memory events = new Memory(EVENT_SIZE);
+
+  HidrawEpoll(PureJavaHidApiLibrary library) {
+    this.library = library;
+    epollFd = libc.epoll_create1(LibC.O_CLOEXEC);
+    if (epollFd < 0) {
+      throw new HidException("Unable to create epoll instance: " + libc.strerror(Native.getLastError()));
+    }
+    wakeupFd = libc.eventfd(0, LibC.O_NONBLOCK | LibC.O_CLOEXEC);
+    if (wakeupFd < 0 || control(LibC.EPOLL_CTL_ADD, wakeupFd, WAKEUP) < 0) {
+      String message = libc.strerror(Native.getLastError());
+      close();
+      throw new HidException("Unable to create epoll wakeup: " + message);
+    }
+  }
+
+  @Override
+  public boolean register(Pointer device) {
+    int fd = library.fd(device);
+    return fd >= 0 && control(LibC.EPOLL_CTL_ADD, fd, Pointer.nativeValue(device)) == 0;
+  }
+
+  @Override
+  public void deregister(Pointer device) {
+    int fd = library.fd(device);
+    if (fd >= 0) {
+      control(LibC.EPOLL_CTL_DEL, fd, Pointer.nativeValue(device));
+    }
+  }
+
+  @Override
+  public int await(Pointer[] ready, int timeoutMillis) {
+
+    // A wakeup occupies a slot but is not returned
+    int maxEvents = ready.length;
+    if (events.size() < (long) maxEvents * EVENT_SIZE) {
+      events = new Memory((long) maxEvents * EVENT_SIZE);
+    }
+
+    int count = libc.epoll_wait(epollFd, events, maxEvents, timeoutMillis);
+    if (count < 0) {
+      return Native.getLastError() == LibC.EINTR ? 0 : -1;
+    }
+
+    int readyCount = 0;
+    for (int i = 0; i < count; i++) {
+      long data = events.getLong((long) i * EVENT_SIZE + DATA_OFFSET);
+      if (data == WAKEUP) {
+        // Reset the eventfd counter
+        libc.read(wakeupFd, new byte[8], new NativeLong(8));
+      } else {
+        ready[readyCount++] = new Pointer(data);
+      }
+    }
+    return readyCount;
+
+  }
+
+  @Override
+  public void wakeup() {
+    Memory one = new Memory(8);
+    one.setLong(0, 1);
+    libc.write(wakeupFd, one, new NativeLong(8));
+  }
+
+  @Override
+  public void close() {
+    if (wakeupFd >= 0) {
+      libc.close(wakeupFd);
+    }
+    libc.close(epollFd);
+  }
+
+  private int control(int operation, int fd, long data) {
+    Memory event = new Memory(EVENT_SIZE);
+    event.clear();
+    event.setInt(0, LibC.EPOLLIN);
+    event.setLong(DATA_OFFSET, data);
+    return libc.epoll_ctl(epollFd, operation, fd, event);
+  }
+
+}
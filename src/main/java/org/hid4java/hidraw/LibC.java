@@ -0,0 +1,92 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014-2020 Gary Rowe
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package org.hid4java.hidraw;
+
+import com.sun.jna.Library;
+import com.sun.jna.Native;
+import com.sun.jna.NativeLong;
+import com.sun.jna.Pointer;
+
+/**
+ * JNA mapping of the Linux C library calls needed to drive hidraw device nodes
+ *
+ * Call {@link Native#getLastError()} immediately after a failed call for errno.
+ *
+ * @since 0.8.0
+ */
+interface LibC extends Library {
+
+  LibC INSTANCE = Native.load("c", LibC.class);
+
+  // Values below are from the generic Linux ABI used by x86, ARM and RISC-V (others such as
+  // MIPS differ, e.g. O_NONBLOCK is 0x0080 there) so see PureJavaHidApiLibrary#isSupported()
+
+  // open(2) flags
+  int O_RDWR = 0x0002;
+  int O_NONBLOCK = 0x0800;
+  int O_CLOEXEC = 0x80000;
+
+  // poll(2) events
+  short POLLIN = 0x0001;
+  short POLLERR = 0x0008;
+  short POLLHUP = 0x0010;
+  short POLLNVAL = 0x0020;
+
+  // epoll(7)
+  int EPOLLIN = 0x001;
+  int EPOLL_CTL_ADD = 1;
+  int EPOLL_CTL_DEL = 2;
+
+  // errno values
+  int EINTR = 4;
+  int EAGAIN = 11;
+  int EINPROGRESS = 115;
+
+  int open(String path, int flags);
+
+  int close(int fd);
+
+  NativeLong read(int fd, byte[] buffer, NativeLong count);
+
+  NativeLong write(int fd, byte[] buffer, NativeLong count);
+
+  NativeLong write(int fd, Pointer buffer, NativeLong count);
+
+  int ioctl(int fd, NativeLong request, byte[] argument);
+
+  int poll(Pointer fds, NativeLong nfds, int timeout);
+
+  int epoll_create1(int flags);
+
+  int epoll_ctl(int epfd, int op, int fd, Pointer event);
+
+  int epoll_wait(int epfd, Pointer events, int maxEvents, int timeout);
+
+  int eventfd(int initialValue, int flags);
+
+  String strerror(int errnum);
+
+}
@@ -0,0 +1,343 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014-2020 Gary Rowe
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package org.hid4java.hidraw;
+
+import com.sun.jna.Memory;
+import com.sun.jna.Native;
+import com.sun.jna.NativeLong;
+import com.sun.jna.Platform;
+import com.sun.jna.Pointer;
+import com.sun.jna.WString;
+import org.hid4java.HidException;
+import org.hid4java.jna.HidApiLibrary;
+import org.hid4java.jna.HidDeviceInfoStructure;
+import org.hid4java.jna.HidInputMultiplexer;
+import org.hid4java.jna.JavaHidApiSupport;
+import org.hid4java.jna.WideStringBuffer;
+
+import java.io.File;
+
+/**
+ * Linux backend to provide the following to {@link org.hid4java.jna.HidApi} without hidapi:
+ * <ul>
+ * <li>Report and feature I/O on <code>/dev/hidrawN</code> through <code>read</code>, <code>write</code> and <code>ioctl</code></li>
+ * <li>Enumeration from sysfs</li>
+ * <li>Readiness notification for many devices through a single <code>epoll</code> instance (see {@link #openInputMultiplexer()})</li>
+ * </ul>
+ *
+ * Select with {@link org.hid4java.jna.HidApi#usePureJavaHidraw}, install with
+ * {@link org.hid4java.HidServicesSpecification#setHidApiLibrary(HidApiLibrary)} or by name
+ * ({@value PureJavaHidApiLibraryProvider#NAME}) with {@link org.hid4java.HidServicesSpecification#setBackendName(String)}.
+ *
+ * The device and sysfs roots are configurable so that the backend can be exercised against
+ * FIFOs and a fabricated sysfs tree. Feature reports need a real hidraw node.
+ *
+ * Only Linux on x86, ARM and RISC-V is supported (see {@link #isSupported()}).
+ *
+ * @since 0.8.0
+ */
+public class PureJavaHidApiLibrary implements HidApiLibrary {
+
+  public static final String DEFAULT_DEVICE_ROOT = SysfsHidrawEnumerator.DEFAULT_DEVICE_ROOT;
+  public static final String DEFAULT_SYSFS_ROOT = SysfsHidrawEnumerator.DEFAULT_SYSFS_ROOT;
+
+  // ioctl(2) direction bits in the generic _IOC layout (PowerPC, MIPS and SPARC differ)
+  private static final int IOC_WRITE = 1;
+  private static final int IOC_READ = 2;
+
+  private final LibC libc;
+  private final SysfsHidrawEnumerator enumerator;
+
+  private final JavaHidApiSupport<Handle> handles = new JavaHidApiSupport<>();
+
+  private volatile String lastError = null;
+
+  /**
+   * Use /dev and /sys
+   */
+  public PureJavaHidApiLibrary() {
+    this(new File(DEFAULT_DEVICE_ROOT), new File(DEFAULT_SYSFS_ROOT));
+  }
+
+  /**
+   * @param deviceRoot The directory containing the hidraw device nodes
+   * @param sysfsRoot  The sysfs mount point describing them
+   */
+  public PureJavaHidApiLibrary(File deviceRoot, File sysfsRoot) {
+    if (!isSupported()) {
+      throw new HidException("The pure Java hidraw backend does not support " + System.getProperty("os.name") + " on " + Platform.ARCH);
+    }
+    this.libc = LibC.INSTANCE;
+    this.enumerator = new SysfsHidrawEnumerator(deviceRoot, sysfsRoot);
+  }
+
+  /**
+   * The open(2) flags, errno values and ioctl(2) encodings used here are those of the generic
+   * Linux ABI which some architectures (e.g. PowerPC, MIPS and SPARC) do not follow
+   *
+   * @return True if running on Linux with an x86, ARM or RISC-V processor
+   */
+  public static boolean isSupported() {
+    return Platform.isLinux() && (Platform.isIntel() || Platform.isARM() || Platform.ARCH.startsWith("riscv"));
+  }
+
+  /**
+   * @return A new epoll instance for waiting on devices opened by this library
+   */
+  public HidInputMultiplexer openInputMultiplexer() {
+    return new HidrawEpoll(this);
+  }
+
+  @Override
+  public void hid_init() {
+    // Nothing to initialise
+  }
+
+  @Override
+  public void hid_exit() {
+    for (Handle handle : handles.removeAll()) {
+      libc.close(handle.fd);
+    }
+  }
+
+  @Override
+  public Pointer hid_open(short vendor_id, short product_id, WString serial_number) {
+    HidDeviceInfoStructure structure = enumerator.enumerate(vendor_id & 0xffff, product_id & 0xffff);
+    for (; structure != null; structure = structure.next()) {
+      if (serial_number == null || serial_number.toString().equals(String.valueOf(structure.serial_number))) {
+        return hid_open_path(structure.path);
+      }
+    }
+    lastError = "Device not found";
+    return null;
+  }
+
+  @Override
+  public Pointer hid_open_path(String path) {
+    // Always non-blocking so that blocking reads can wait in poll(2) with a timeout
+    int fd = libc.open(path, LibC.O_RDWR | LibC.O_NONBLOCK | LibC.O_CLOEXEC);
+    if (fd < 0) {
+      lastError = path + ": " + libc.strerror(Native.getLastError());
+      return null;
+    }
+    return handles.add(new Handle(fd, enumerator.describe(new File(path).getName())));
+  }
+
+  @Override
+  public void hid_close(Pointer device) {
+    Handle handle = handles.remove(device);
+    if (handle != null) {
+      libc.close(handle.fd);
+    }
+  }
+
+  @Override
+  public Pointer hid_error(Pointer device) {
+    Handle handle = handles.get(device);
+    String message = handle == null ? lastError : handle.error;
+    return JavaHidApiSupport.errorString(message);
+  }
+
+  @Override
+  public int hid_read(Pointer device, WideStringBuffer.ByReference bytes, int length) {
+    Handle handle = handles.get(device);
+    return handle == null ? -1 : read(handle, (WideStringBuffer) bytes, length, handle.nonBlocking ? 0 : -1);
+  }
+
+  @Override
+  public int hid_read_timeout(Pointer device, WideStringBuffer.ByReference bytes, int length, int timeout) {
+    Handle handle = handles.get(device);
+    return handle == null ? -1 : read(handle, (WideStringBuffer) bytes, length, timeout);
+  }
+
+  @Override
+  public int hid_write(Pointer device, WideStringBuffer.ByReference data, int len) {
+    Handle handle = handles.get(device);
+    if (handle == null) {
+      return -1;
+    }
+    byte[] buffer = ((WideStringBuffer) data).buffer;
+    return result(handle, libc.write(handle.fd, buffer, new NativeLong(Math.min(len, buffer.length))).intValue());
+  }
+
+  @Override
+  public int hid_write(Pointer device, Pointer data, int len) {
+    Handle handle = handles.get(device);
+    if (handle == null) {
+      return -1;
+    }
+    return result(handle, libc.write(handle.fd, data, new NativeLong(len)).intValue());
+  }
+
+  @Override
+  public int hid_get_feature_report(Pointer device, WideStringBuffer.ByReference data, int length) {
+    // HIDIOCGFEATURE(len)
+    return featureReport(device, (WideStringBuffer) data, length, 0x07);
+  }
+
+  @Override
+  public int hid_send_feature_report(Pointer device, WideStringBuffer.ByReference data, int length) {
+    // HIDIOCSFEATURE(len)
+    return featureReport(device, (WideStringBuffer) data, length, 0x06);
+  }
+
+  @Override
+  public int hid_get_indexed_string(Pointer device, int idx, WideStringBuffer.ByReference string, int len) {
+    Handle handle = handles.get(device);
+    if (handle != null) {
+      handle.error = "Indexed strings are not supported by hidraw";
+    }
+    return -1;
+  }
+
+  @Override
+  public int hid_get_manufacturer_string(Pointer device, WideStringBuffer.ByReference str, int len) {
+    Handle handle = handles.get(device);
+    return handle == null || handle.info == null ? -1 : putString((WideStringBuffer) str, handle.info.manufacturer_string);
+  }
+
+  @Override
+  public int hid_get_product_string(Pointer device, WideStringBuffer.ByReference str, int len) {
+    Handle handle = handles.get(device);
+    return handle == null || handle.info == null ? -1 : putString((WideStringBuffer) str, handle.info.product_string);
+  }
+
+  @Override
+  public int hid_get_serial_number_string(Pointer device, WideStringBuffer.ByReference str, int len) {
+    Handle handle = handles.get(device);
+    return handle == null || handle.info == null ? -1 : putString((WideStringBuffer) str, handle.info.serial_number);
+  }
+
+  @Override
+  public int hid_set_nonblocking(Pointer device, int nonblock) {
+    Handle handle = handles.get(device);
+    if (handle == null) {
+      return -1;
+    }
+    handle.nonBlocking = nonblock != 0;
+    return 0;
+  }
+
+  @Override
+  public HidDeviceInfoStructure hid_enumerate(short vendor_id, short product_id) {
+    return enumerator.enumerate(vendor_id & 0xffff, product_id & 0xffff);
+  }
+
+  @Override
+  public void hid_free_enumeration(Pointer devs) {
+    // Nothing to free
+  }
+
+  @Override
+  public String hid_version_str() {
+    return "hid4java-hidraw";
+  }
+
+  /**
+   * @param device A device handle
+   * @return The file descriptor or -1 if the device is not open
+   */
+  int fd(Pointer device) {
+    Handle handle = handles.get(device);
+    return handle == null ? -1 : handle.fd;
+  }
+
+  private int read(Handle handle, WideStringBuffer bytes, int length, int timeoutMillis) {
+
+    if (timeoutMillis != 0) {
+      Memory pollFd = new Memory(8);
+      pollFd.setInt(0, handle.fd);
+      pollFd.setShort(4, LibC.POLLIN);
+      pollFd.setShort(6, (short) 0);
+      int ready = libc.poll(pollFd, new NativeLong(1), timeoutMillis);
+      if (ready < 0) {
+        int errno = Native.getLastError();
+        return errno == LibC.EINTR ? 0 : fail(handle, errno);
+      }
+      if (ready == 0) {
+        return 0;
+      }
+      short events = pollFd.getShort(6);
+      if ((events & (LibC.POLLERR | LibC.POLLHUP | LibC.POLLNVAL)) != 0) {
+        handle.error = "Device disconnected";
+        return -1;
+      }
+    }
+
+    byte[] buffer = bytes.buffer;
+    int result = libc.read(handle.fd, buffer, new NativeLong(Math.min(length, buffer.length))).intValue();
+    if (result < 0) {
+      int errno = Native.getLastError();
+      return errno == LibC.EAGAIN || errno == LibC.EINPROGRESS ? 0 : fail(handle, errno);
+    }
+    return result;
+
+  }
+
+  private int featureReport(Pointer device, WideStringBuffer data, int length, int command) {
+    Handle handle = handles.get(device);
+    if (handle == null) {
+      return -1;
+    }
+    int size = Math.min(length, data.buffer.length);
+    long request = ((long) (IOC_READ | IOC_WRITE) << 30) | ((long) size << 16) | ('H' << 8) | command;
+    return result(handle, libc.ioctl(handle.fd, new NativeLong(request, true), data.buffer));
+  }
+
+  /**
+   * @return The result or -1 (with the handle error set) if negative
+   */
+  private int result(Handle handle, int result) {
+    return result < 0 ? fail(handle, Native.getLastError()) : result;
+  }
+
+  private int fail(Handle handle, int errno) {
+    handle.error = libc.strerror(errno);
+    return -1;
+  }
+
+  private static int putString(WideStringBuffer buffer, WString value) {
+    buffer.setString(value == null ? "" : value.toString());
+    return 0;
+  }
+
+  /**
+   * An open hidraw node
+   */
+  private static class Handle {
+
+    private final int fd;
+    private final HidDeviceInfoStructure info;
+    private volatile boolean nonBlocking = false;
+    private volatile String error = null;
+
+    private Handle(int fd, HidDeviceInfoStructure info) {
+      this.fd = fd;
+      this.info = info;
+    }
+  }
+
+}
@@ -0,0 +1,63 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014-2020 Gary Rowe
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package org.hid4java.hidraw;
+
+import org.hid4java.jna.HidApiLibrary;
+import org.hid4java.jna.HidApiLibraryProvider;
+
+import java.io.File;
+
+/**
+ * Provider registering {@link PureJavaHidApiLibrary} as the {@value #NAME} backend
+ *
+ * The roots are configured through system properties:
+ * <ul>
+ * <li>{@code hid4java.hidraw.deviceRoot} - the directory containing the hidraw nodes (default /dev)</li>
+ * <li>{@code hid4java.hidraw.sysfsRoot} - the sysfs mount point (default /sys)</li>
+ * </ul>
+ *
+ * @since 0.8.0
+ */
+public class PureJavaHidApiLibraryProvider implements HidApiLibraryProvider {
+
+  public static final String NAME = "hidraw-java";
+
+  private static final String PROPERTY_PREFIX = "hid4java.hidraw.";
+
+  @Override
+  public String getName() {
+    return NAME;
+  }
+
+  @Override
+  public HidApiLibrary create() {
+    return new PureJavaHidApiLibrary(
+      new File(System.getProperty(PROPERTY_PREFIX + "deviceRoot", PureJavaHidApiLibrary.DEFAULT_DEVICE_ROOT)),
+      new File(System.getProperty(PROPERTY_PREFIX + "sysfsRoot", PureJavaHidApiLibrary.DEFAULT_SYSFS_ROOT))
+    );
+  }
+
+}
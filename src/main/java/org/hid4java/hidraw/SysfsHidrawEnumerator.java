@@ -0,0 +1,518 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014-2020 Gary Rowe
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package org.hid4java.hidraw;
+
+import com.sun.jna.WString;
+import org.hid4java.HidException;
+import org.hid4java.jna.HidDeviceInfoStructure;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Describes hidraw device nodes from sysfs in the same way as the hidapi hidraw variant
+ *
+ * Each <code>class/hidraw/hidrawN</code> entry provides the bus, vendor, product, name and
+ * unique ID through <code>device/uevent</code> and the top level usage through
+ * <code>device/report_descriptor</code>. USB devices additionally provide the interface number,
+ * release number and descriptor strings from the parent USB interface and device.
+ *
+ * Descriptions are cached against the inode and modification time of <code>device/uevent</code>
+ * so a scan of unchanged devices costs one stat per node. Nodes that are new (or were recreated
+ * for a different device) are parsed in parallel.
+ *
+ * @since 0.8.0
+ */
+public class SysfsHidrawEnumerator {
+
+  /**
+   * The default directory containing the hidraw device nodes
+   */
+  public static final String DEFAULT_DEVICE_ROOT = "/dev";
+
+  /**
+   * The default sysfs mount point
+   */
+  public static final String DEFAULT_SYSFS_ROOT = "/sys";
+
+  private static final int BUS_USB = 0x03;
+
+  /**
+   * Describing a node is mostly waiting on small sysfs reads so a few threads are enough
+   */
+  private static final int DEFAULT_PARALLELISM = Math.min(4, Runtime.getRuntime().availableProcessors());
+
+  /**
+   * Idle parser threads exit after this time
+   */
+  private static final long KEEP_ALIVE_SECONDS = 30;
+
+  private final File deviceRoot;
+  private final File classDirectory;
+  private final int parallelism;
+
+  /**
+   * Descriptions of the nodes seen at the last scan keyed by node name
+   */
+  private final Map<String, CachedDescription> cache = new ConcurrentHashMap<>();
+
+  /**
+   * The number of nodes parsed from sysfs (rather than served from the cache)
+   */
+  private final AtomicLong parseCount = new AtomicLong();
+
+  /**
+   * The parser threads (created on first use)
+   */
+  private ThreadPoolExecutor executorService = null;
+
+  /**
+   * Describe the nodes under {@link #DEFAULT_DEVICE_ROOT} using {@link #DEFAULT_SYSFS_ROOT}
+   */
+  public SysfsHidrawEnumerator() {
+    this(new File(DEFAULT_DEVICE_ROOT), new File(DEFAULT_SYSFS_ROOT));
+  }
+
+  /**
+   * @param deviceRoot The directory containing the hidraw device nodes (e.g. /dev)
+   * @param sysfsRoot  The sysfs mount point (e.g. /sys)
+   */
+  public SysfsHidrawEnumerator(File deviceRoot, File sysfsRoot) {
+    this(deviceRoot, sysfsRoot, DEFAULT_PARALLELISM);
+  }
+
+  /**
+   * @param deviceRoot  The directory containing the hidraw device nodes (e.g. /dev)
+   * @param sysfsRoot   The sysfs mount point (e.g. /sys)
+   * @param parallelism The maximum number of nodes parsed at the same time (1 to parse on the calling thread)
+   */
+  public SysfsHidrawEnumerator(File deviceRoot, File sysfsRoot, int parallelism) {
+    if (parallelism < 1) {
+      throw new IllegalArgumentException("'parallelism' must be greater than zero.");
+    }
+    this.deviceRoot = deviceRoot;
+    this.classDirectory = new File(sysfsRoot, "class/hidraw");
+    this.parallelism = parallelism;
+  }
+
+  /**
+   * @param vendorId  The vendor ID (0 for any)
+   * @param productId The product ID (0 for any)
+   * @return The linked list of matching devices or null if none
+   */
+  public HidDeviceInfoStructure enumerate(int vendorId, int productId) {
+
+    List<String> names = names();
+    Description[] descriptions = describeAll(names);
+
+    // Forget nodes that have gone
+    cache.keySet().retainAll(names);
+
+    HidDeviceInfoStructure root = null;
+    HidDeviceInfoStructure last = null;
+    for (Description description : descriptions) {
+      if (description == null
+        || (vendorId != 0 && description.vendorId != vendorId)
+        || (productId != 0 && description.productId != productId)) {
+        continue;
+      }
+      HidDeviceInfoStructure structure = description.toStructure();
+      if (root == null) {
+        root = structure;
+      } else {
+        last.next = structure;
+      }
+      last = structure;
+    }
+    return root;
+
+  }
+
+  /**
+   * Discard the cached descriptions so the next scan parses every node
+   */
+  public void invalidate() {
+    cache.clear();
+  }
+
+  /**
+   * @return The hidraw node names in numeric order
+   */
+  List<String> names() {
+    String[] names = classDirectory.list();
+    if (names == null) {
+      return new ArrayList<>();
+    }
+    List<String> sorted = new ArrayList<>(Arrays.asList(names));
+    sorted.sort(new Comparator<String>() {
+      @Override
+      public int compare(String first, String second) {
+        return first.length() != second.length() ? first.length() - second.length() : first.compareTo(second);
+      }
+    });
+    return sorted;
+  }
+
+  /**
+   * @param name The hidraw node name (e.g. "hidraw0")
+   * @return The device information or null if sysfs does not describe a HID device
+   */
+  HidDeviceInfoStructure describe(String name) {
+    Description description = describeAll(Arrays.asList(name))[0];
+    return description == null ? null : description.toStructure();
+  }
+
+  /**
+   * @return The number of nodes parsed from sysfs rather than served from the cache
+   */
+  long getParseCount() {
+    return parseCount.get();
+  }
+
+  /**
+   * @param names The hidraw node names
+   * @return The descriptions in the same order (null if not a HID device)
+   */
+  private Description[] describeAll(List<String> names) {
+
+    Description[] descriptions = new Description[names.size()];
+    BasicFileAttributes[] attributes = new BasicFileAttributes[names.size()];
+    List<Integer> misses = new ArrayList<>();
+
+    for (int i = 0; i < names.size(); i++) {
+      String name = names.get(i);
+      try {
+        attributes[i] = Files.readAttributes(new File(classDirectory, name + "/device/uevent").toPath(), BasicFileAttributes.class);
+      } catch (IOException e) {
+        // Not a HID device (or removed during enumeration)
+        cache.remove(name);
+        continue;
+      }
+      CachedDescription cached = cache.get(name);
+      if (cached != null && cached.matches(attributes[i])) {
+        descriptions[i] = cached.description;
+      } else {
+        misses.add(i);
+      }
+    }
+
+    if (misses.size() > 1 && parallelism > 1) {
+      parseParallel(names, misses, descriptions);
+    } else {
+      for (int i : misses) {
+        descriptions[i] = parse(names.get(i));
+      }
+    }
+
+    for (int i : misses) {
+      if (descriptions[i] != null) {
+        cache.put(names.get(i), new CachedDescription(attributes[i], descriptions[i]));
+      }
+    }
+
+    return descriptions;
+
+  }
+
+  private void parseParallel(List<String> names, List<Integer> misses, Description[] descriptions) {
+
+    List<Callable<Description>> tasks = new ArrayList<>(misses.size());
+    for (int i : misses) {
+      final String name = names.get(i);
+      tasks.add(new Callable<Description>() {
+        @Override
+        public Description call() {
+          return parse(name);
+        }
+      });
+    }
+
+    try {
+      List<Future<Description>> futures = executorService().invokeAll(tasks);
+      for (int i = 0; i < misses.size(); i++) {
+        descriptions[misses.get(i)] = futures.get(i).get();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      // Complete the scan on the calling thread
+      for (int i : misses) {
+        descriptions[i] = parse(names.get(i));
+      }
+    } catch (ExecutionException e) {
+      throw new HidException("Unable to describe hidraw device: " + e.getCause().getMessage());
+    }
+
+  }
+
+  private synchronized ThreadPoolExecutor executorService() {
+
+    if (executorService == null) {
+      executorService = new ThreadPoolExecutor(parallelism, parallelism, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+        new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable runnable) {
+          Thread thread = new Thread(runnable, "hid4java sysfs enumerator");
+          thread.setDaemon(true);
+          return thread;
+        }
+      });
+      executorService.allowCoreThreadTimeOut(true);
+    }
+    return executorService;
+
+  }
+
+  /**
+   * @param name The hidraw node name (e.g. "hidraw0")
+   * @return The device description or null if sysfs does not describe a HID device
+   */
+  private Description parse(String name) {
+
+    parseCount.incrementAndGet();
+
+    File device = new File(classDirectory, name + "/device");
+    Map<String, String> uevent = readUevent(new File(device, "uevent"));
+    String[] id = uevent.containsKey("HID_ID") ? uevent.get("HID_ID").split(":") : new String[0];
+    if (id.length != 3) {
+      return null;
+    }
+
+    Description description = new Description();
+    int bus;
+    try {
+      bus = Integer.parseInt(id[0], 16);
+      description.vendorId = (int) (Long.parseLong(id[1], 16) & 0xffff);
+      description.productId = (int) (Long.parseLong(id[2], 16) & 0xffff);
+    } catch (NumberFormatException e) {
+      return null;
+    }
+    description.path = new File(deviceRoot, name).getPath();
+
+    description.manufacturer = "";
+    description.product = uevent.containsKey("HID_NAME") ? uevent.get("HID_NAME") : "";
+    description.serialNumber = uevent.containsKey("HID_UNIQ") ? uevent.get("HID_UNIQ") : "";
+    description.interfaceNumber = -1;
+
+    if (bus == BUS_USB) {
+      // hidrawN/device links to .../<usb device>/<usb interface>/<hid device>
+      File usbInterface = canonicalParent(device);
+      File usbDevice = usbInterface == null ? null : usbInterface.getParentFile();
+      Integer interfaceNumber = readHex(new File(usbInterface, "bInterfaceNumber"));
+      if (interfaceNumber != null) {
+        description.interfaceNumber = interfaceNumber;
+      }
+      Integer releaseNumber = readHex(new File(usbDevice, "bcdDevice"));
+      if (releaseNumber != null) {
+        description.releaseNumber = releaseNumber;
+      }
+      description.manufacturer = readAttribute(new File(usbDevice, "manufacturer"), description.manufacturer);
+      description.product = readAttribute(new File(usbDevice, "product"), description.product);
+      description.serialNumber = readAttribute(new File(usbDevice, "serial"), description.serialNumber);
+    }
+
+    int[] usage = topLevelUsage(new File(device, "report_descriptor"));
+    description.usagePage = usage[0];
+    description.usage = usage[1];
+
+    return description;
+
+  }
+
+  /**
+   * Parse the first usage page and usage from a report descriptor (as hidapi does)
+   *
+   * @param reportDescriptor The report descriptor file
+   * @return The usage page and usage (zero if not found)
+   */
+  static int[] topLevelUsage(File reportDescriptor) {
+
+    int[] usage = new int[2];
+    byte[] descriptor;
+    try {
+      descriptor = Files.readAllBytes(reportDescriptor.toPath());
+    } catch (IOException e) {
+      return usage;
+    }
+
+    boolean usagePageFound = false;
+    boolean usageFound = false;
+    int i = 0;
+    while (i < descriptor.length && !(usagePageFound && usageFound)) {
+      int key = descriptor[i] & 0xff;
+      if (key == 0xfe) {
+        // Long item so skip the declared data size
+        int size = i + 1 < descriptor.length ? descriptor[i + 1] & 0xff : 0;
+        i += 3 + size;
+        continue;
+      }
+      int size = key & 0x03;
+      if (size == 3) {
+        size = 4;
+      }
+      if (i + size >= descriptor.length) {
+        break;
+      }
+      int value = 0;
+      for (int b = 0; b < size; b++) {
+        value |= (descriptor[i + 1 + b] & 0xff) << (8 * b);
+      }
+      if ((key & 0xfc) == 0x04 && !usagePageFound) {
+        usage[0] = value;
+        usagePageFound = true;
+      } else if ((key & 0xfc) == 0x08 && !usageFound) {
+        usage[1] = value;
+        usageFound = true;
+      }
+      i += 1 + size;
+    }
+    return usage;
+
+  }
+
+  private static Map<String, String> readUevent(File uevent) {
+    Map<String, String> values = new HashMap<>();
+    try {
+      for (String line : Files.readAllLines(uevent.toPath(), StandardCharsets.UTF_8)) {
+        int equals = line.indexOf('=');
+        if (equals > 0) {
+          values.put(line.substring(0, equals), line.substring(equals + 1));
+        }
+      }
+    } catch (IOException e) {
+      // Not a HID device (or removed during enumeration)
+    }
+    return values;
+  }
+
+  private static File canonicalParent(File file) {
+    try {
+      return file.getCanonicalFile().getParentFile();
+    } catch (IOException e) {
+      return null;
+    }
+  }
+
+  private static String readAttribute(File file, String defaultValue) {
+    if (file.getParentFile() == null || !file.isFile()) {
+      return defaultValue;
+    }
+    try {
+      return new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8).trim();
+    } catch (IOException e) {
+      return defaultValue;
+    }
+  }
+
+  private static Integer readHex(File file) {
+    String value = readAttribute(file, null);
+    if (value == null) {
+      return null;
+    }
+    try {
+      return Integer.parseInt(value, 16);
+    } catch (NumberFormatException e) {
+      return null;
+    }
+  }
+
+  /**
+   * The fields of a {@link HidDeviceInfoStructure} held apart from native memory so they can be
+   * shared between scans
+   */
+  private static final class Description {
+
+    private String path;
+    private int vendorId;
+    private int productId;
+    private int releaseNumber;
+    private int interfaceNumber;
+    private int usagePage;
+    private int usage;
+    private String manufacturer;
+    private String product;
+    private String serialNumber;
+
+    private HidDeviceInfoStructure toStructure() {
+      HidDeviceInfoStructure structure = new HidDeviceInfoStructure();
+      structure.path = path;
+      structure.vendor_id = (short) vendorId;
+      structure.product_id = (short) productId;
+      structure.release_number = (short) releaseNumber;
+      structure.interface_number = interfaceNumber;
+      structure.usage_page = (short) usagePage;
+      structure.usage = (short) usage;
+      structure.manufacturer_string = new WString(manufacturer);
+      structure.product_string = new WString(product);
+      structure.serial_number = new WString(serialNumber);
+      return structure;
+    }
+  }
+
+  /**
+   * A description with the identity of the uevent file it was parsed from
+   */
+  private static final class CachedDescription {
+
+    private final Object fileKey;
+    private final FileTime lastModifiedTime;
+    private final Description description;
+
+    private CachedDescription(BasicFileAttributes attributes, Description description) {
+      this.fileKey = attributes.fileKey();
+      this.lastModifiedTime = attributes.lastModifiedTime();
+      this.description = description;
+    }
+
+    /**
+     * @param attributes The current uevent attributes
+     * @return True if the node still refers to the same device
+     */
+    private boolean matches(BasicFileAttributes attributes) {
+      return Objects.equals(fileKey, attributes.fileKey()) && lastModifiedTime.equals(attributes.lastModifiedTime());
+    }
+  }
+
+}
@@ -0,0 +1,108 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014-2020 Gary Rowe
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package org.hid4java.io;
+
+import org.hid4java.HidDevice;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ByteChannel;
+import java.nio.channels.ClosedChannelException;
+
+/**
+ * NIO channel view to provide the following to API consumers:
+ * <ul>
+ * <li>Input reports of a {@link HidDevice} read into byte buffers (see {@link HidInputStream})</li>
+ * <li>Byte buffers written as output reports</li>
+ * </ul>
+ *
+ * Unlike {@link HidOutputStream} a write sends every byte before returning, with any final partly filled
+ * report sent (padded if configured) immediately. Wrap the channel in a stream for buffering of small writes.
+ * Reads and writes may run in different threads. Closing the channel does not close the device.
+ *
+ * @since 0.8.0
+ */
+public class HidByteChannel implements ByteChannel {
+
+  private final HidInputStream inputStream;
+  private final HidOutputStream outputStream;
+
+  private volatile boolean open = true;
+
+  /**
+   * @param hidDevice              The open device
+   * @param hidStreamSpecification The report format
+   */
+  public HidByteChannel(HidDevice hidDevice, HidStreamSpecification hidStreamSpecification) {
+    this.inputStream = new HidInputStream(hidDevice, hidStreamSpecification);
+    this.outputStream = new HidOutputStream(hidDevice, hidStreamSpecification);
+  }
+
+  /**
+   * Transfer the rest of the current input report, waiting for a report only if none is buffered
+   *
+   * @param dst The buffer to read into
+   *
+   * @return The number of bytes read (possibly less than the space remaining) or -1 once the device is closed
+   */
+  @Override
+  public int read(ByteBuffer dst) throws IOException {
+    if (!open) {
+      throw new ClosedChannelException();
+    }
+    return inputStream.read(dst);
+  }
+
+  /**
+   * @param src The buffer to write
+   *
+   * @return The number of bytes written (always all remaining bytes)
+   */
+  @Override
+  public int write(ByteBuffer src) throws IOException {
+    if (!open) {
+      throw new ClosedChannelException();
+    }
+    synchronized (outputStream) {
+      int written = outputStream.write(src);
+      outputStream.flush();
+      return written;
+    }
+  }
+
+  @Override
+  public boolean isOpen() {
+    return open;
+  }
+
+  @Override
+  public void close() throws IOException {
+    open = false;
+    inputStream.close();
+    outputStream.close();
+  }
+
+}
@@ -0,0 +1,218 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014-2020 Gary Rowe
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package org.hid4java.io;
+
+import org.hid4java.HidDevice;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Byte stream view to provide the following to API consumers:
+ * <ul>
+ * <li>Input reports of a {@link HidDevice} as a continuous stream of bytes</li>
+ * <li>Partial reads that leave the rest of a report buffered for the next read</li>
+ * </ul>
+ *
+ * A read only waits for an input report when nothing is buffered. The stream ends when the device is
+ * closed and closing the stream does not close the device.
+ *
+ * @since 0.8.0
+ */
+public class HidInputStream extends InputStream {
+
+  /**
+   * The longest a read waits in the device before checking for close
+   */
+  private static final int POLL_MILLIS = 100;
+
+  private final HidDevice hidDevice;
+  private final ReportIdMode reportIdMode;
+  private final byte reportId;
+  private final int readTimeout;
+
+  /**
+   * The current input report (with room for a report ID)
+   */
+  private final byte[] report;
+  private int position = 0;
+  private int limit = 0;
+
+  private volatile boolean closed = false;
+
+  /**
+   * @param hidDevice              The open device
+   * @param hidStreamSpecification The report format
+   */
+  public HidInputStream(HidDevice hidDevice, HidStreamSpecification hidStreamSpecification) {
+    hidStreamSpecification.validate();
+    this.hidDevice = hidDevice;
+    this.reportIdMode = hidStreamSpecification.getReportIdMode();
+    this.reportId = hidStreamSpecification.getReportId();
+    this.readTimeout = hidStreamSpecification.getReadTimeout();
+    this.report = new byte[hidStreamSpecification.getPacketLength() + 1];
+  }
+
+  @Override
+  public synchronized int read() throws IOException {
+    if (!fill()) {
+      return -1;
+    }
+    return report[position++] & 0xff;
+  }
+
+  @Override
+  public synchronized int read(byte[] b, int off, int len) throws IOException {
+    if (off < 0 || len < 0 || len > b.length - off) {
+      throw new IndexOutOfBoundsException();
+    }
+    if (len == 0) {
+      return 0;
+    }
+    if (!fill()) {
+      return -1;
+    }
+    int count = Math.min(len, limit - position);
+    System.arraycopy(report, position, b, off, count);
+    position += count;
+    return count;
+  }
+
+  /**
+   * @param dst The buffer to transfer into
+   *
+   * @return The number of bytes transferred or -1 at the end of the stream
+   */
+  synchronized int read(ByteBuffer dst) throws IOException {
+    if (!dst.hasRemaining()) {
+      return 0;
+    }
+    if (!fill()) {
+      return -1;
+    }
+    int count = Math.min(dst.remaining(), limit - position);
+    dst.put(report, position, count);
+    position += count;
+    return count;
+  }
+
+  /**
+   * @return The number of bytes remaining from the current input report
+   */
+  @Override
+  public synchronized int available() throws IOException {
+    if (closed) {
+      throw new IOException("Stream closed");
+    }
+    return limit - position;
+  }
+
+  @Override
+  public void close() {
+    closed = true;
+  }
+
+  /**
+   * Wait for an input report with payload unless bytes are already buffered
+   *
+   * @return False at the end of the stream
+   * @throws InterruptedIOException If the read timeout expires or the thread is interrupted
+   */
+  private boolean fill() throws IOException {
+
+    if (closed) {
+      throw new IOException("Stream closed");
+    }
+    if (position < limit) {
+      return true;
+    }
+
+    long deadline = readTimeout == 0 ? Long.MAX_VALUE : System.currentTimeMillis() + readTimeout;
+    while (true) {
+      if (Thread.interrupted()) {
+        throw new InterruptedIOException("Read interrupted");
+      }
+      long remaining = deadline - System.currentTimeMillis();
+      if (remaining <= 0) {
+        throw new InterruptedIOException("Read timed out");
+      }
+      if (closed) {
+        throw new IOException("Stream closed");
+      }
+
+      int result;
+      try {
+        result = hidDevice.isClosed() ? -1 : hidDevice.read(report, (int) Math.min(remaining, POLL_MILLIS));
+      } catch (IllegalStateException e) {
+        // Closed by another thread
+        result = -1;
+      }
+      if (result < 0) {
+        if (hidDevice.isClosed()) {
+          return false;
+        }
+        throw new IOException("Read failed: " + hidDevice.getLastErrorMessage());
+      }
+      if (result > 0 && accept(result)) {
+        return true;
+      }
+    }
+
+  }
+
+  /**
+   * Locate the payload of a newly read report
+   *
+   * @param length The number of bytes read
+   *
+   * @return True if the report has payload for this stream
+   */
+  private boolean accept(int length) {
+
+    switch (reportIdMode) {
+      case FIXED:
+        if (report[0] != reportId) {
+          // Some other report
+          return false;
+        }
+        position = 1;
+        limit = length;
+        break;
+      case LENGTH:
+        position = 1;
+        limit = Math.min(length, 1 + (report[0] & 0xff));
+        break;
+      default:
+        position = 0;
+        limit = length;
+    }
+    return position < limit;
+
+  }
+
+}
@@ -0,0 +1,192 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014-2020 Gary Rowe
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package org.hid4java.io;
+
+import org.hid4java.HidDevice;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Byte stream view to provide the following to API consumers:
+ * <ul>
+ * <li>A continuous stream of bytes sent to a {@link HidDevice} as output reports</li>
+ * <li>Buffering so that small writes are gathered into full reports</li>
+ * </ul>
+ *
+ * A report is sent as soon as it is full. A partly filled report waits for {@link #flush()} or
+ * {@link #close()}. Closing the stream does not close the device. A report that is not
+ * written in full (including one dropped by a rate limiter using
+ * {@link org.hid4java.WriteRateLimiter.OverLimitPolicy#DROP}) fails with an {@link IOException}.
+ *
+ * @since 0.8.0
+ */
+public class HidOutputStream extends OutputStream {
+
+  private final HidDevice hidDevice;
+  private final ReportIdMode reportIdMode;
+  private final byte reportId;
+  private final boolean applyPadding;
+
+  /**
+   * The payload of the next output report
+   */
+  private final byte[] buffer;
+  private int count = 0;
+
+  private boolean closed = false;
+
+  /**
+   * @param hidDevice              The open device
+   * @param hidStreamSpecification The report format
+   */
+  public HidOutputStream(HidDevice hidDevice, HidStreamSpecification hidStreamSpecification) {
+    hidStreamSpecification.validate();
+    this.hidDevice = hidDevice;
+    this.reportIdMode = hidStreamSpecification.getReportIdMode();
+    this.reportId = hidStreamSpecification.getReportId();
+    this.applyPadding = hidStreamSpecification.isApplyPadding();
+    this.buffer = new byte[hidStreamSpecification.getPacketLength()];
+  }
+
+  @Override
+  public synchronized void write(int b) throws IOException {
+    ensureOpen();
+    buffer[count++] = (byte) b;
+    if (count == buffer.length) {
+      send();
+    }
+  }
+
+  @Override
+  public synchronized void write(byte[] b, int off, int len) throws IOException {
+    if (off < 0 || len < 0 || len > b.length - off) {
+      throw new IndexOutOfBoundsException();
+    }
+    ensureOpen();
+    while (len > 0) {
+      int chunk = Math.min(len, buffer.length - count);
+      System.arraycopy(b, off, buffer, count, chunk);
+      count += chunk;
+      off += chunk;
+      len -= chunk;
+      if (count == buffer.length) {
+        send();
+      }
+    }
+  }
+
+  /**
+   * @param src The buffer to transfer from (fully consumed)
+   *
+   * @return The number of bytes transferred
+   */
+  synchronized int write(ByteBuffer src) throws IOException {
+    ensureOpen();
+    int total = src.remaining();
+    while (src.hasRemaining()) {
+      int chunk = Math.min(src.remaining(), buffer.length - count);
+      src.get(buffer, count, chunk);
+      count += chunk;
+      if (count == buffer.length) {
+        send();
+      }
+    }
+    return total;
+  }
+
+  /**
+   * Send any partly filled report (padded if configured)
+   */
+  @Override
+  public synchronized void flush() throws IOException {
+    ensureOpen();
+    if (count > 0) {
+      send();
+    }
+  }
+
+  @Override
+  public synchronized void close() throws IOException {
+    if (!closed) {
+      try {
+        flush();
+      } finally {
+        closed = true;
+      }
+    }
+  }
+
+  private void ensureOpen() throws IOException {
+    if (closed) {
+      throw new IOException("Stream closed");
+    }
+  }
+
+  /**
+   * Send the buffered payload as one output report
+   */
+  private void send() throws IOException {
+
+    byte id;
+    switch (reportIdMode) {
+      case FIXED:
+        id = reportId;
+        break;
+      case LENGTH:
+        id = (byte) count;
+        break;
+      default:
+        id = 0;
+    }
+
+    int length = count;
+    if (applyPadding && length < buffer.length) {
+      Arrays.fill(buffer, length, buffer.length, (byte) 0);
+      length = buffer.length;
+    }
+    // The buffer is free for reuse whatever the outcome
+    count = 0;
+
+    int result;
+    try {
+      result = hidDevice.write(buffer, length, id);
+    } catch (IllegalStateException e) {
+      throw new IOException(e.getMessage(), e);
+    }
+    if (result < 0) {
+      throw new IOException("Write failed: " + hidDevice.getLastErrorMessage());
+    }
+    // A report dropped by a write rate limiter or cut short would otherwise lose stream data
+    if (result < length + 1) {
+      throw new IOException("Incomplete write: " + result + " of " + (length + 1) + " bytes");
+    }
+
+  }
+
+}
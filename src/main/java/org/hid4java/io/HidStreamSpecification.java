@@ -0,0 +1,126 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014-2020 Gary Rowe
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package org.hid4java.io;
+
+/**
+ * Specification to provide the following to HID streams and channels:
+ * <ul>
+ * <li>The report length and report ID handling used to convert between reports and bytes</li>
+ * <li>Padding of output reports and the read timeout</li>
+ * </ul>
+ *
+ * Streams take a copy of the values when created.
+ *
+ * @since 0.8.0
+ */
+public class HidStreamSpecification {
+
+  /**
+   * The largest payload described by a report ID in {@link ReportIdMode#LENGTH}
+   */
+  static final int MAX_LENGTH_REPORT = 255;
+
+  private int packetLength = 64;
+  private ReportIdMode reportIdMode = ReportIdMode.NONE;
+  private byte reportId = 0;
+  private boolean applyPadding = true;
+  private int readTimeout = 0;
+
+  public int getPacketLength() {
+    return packetLength;
+  }
+
+  /**
+   * @param packetLength The report length excluding the report ID
+   */
+  public void setPacketLength(int packetLength) {
+    if (packetLength < 1) {
+      throw new IllegalArgumentException("'packetLength' must be greater than zero.");
+    }
+    this.packetLength = packetLength;
+  }
+
+  public ReportIdMode getReportIdMode() {
+    return reportIdMode;
+  }
+
+  /**
+   * @param reportIdMode How report IDs are sent and removed (default is unnumbered reports)
+   */
+  public void setReportIdMode(ReportIdMode reportIdMode) {
+    if (reportIdMode == null) {
+      throw new IllegalArgumentException("'reportIdMode' must be present.");
+    }
+    this.reportIdMode = reportIdMode;
+  }
+
+  public byte getReportId() {
+    return reportId;
+  }
+
+  /**
+   * @param reportId The report ID used by {@link ReportIdMode#FIXED}
+   */
+  public void setReportId(byte reportId) {
+    this.reportId = reportId;
+  }
+
+  public boolean isApplyPadding() {
+    return applyPadding;
+  }
+
+  /**
+   * @param applyPadding True if a partly filled output report should be filled with zero bytes to the packet length
+   */
+  public void setApplyPadding(boolean applyPadding) {
+    this.applyPadding = applyPadding;
+  }
+
+  public int getReadTimeout() {
+    return readTimeout;
+  }
+
+  /**
+   * @param readTimeout The milliseconds a read waits for an input report before failing with
+   *                    {@link java.io.InterruptedIOException} (0 to wait until the device closes)
+   */
+  public void setReadTimeout(int readTimeout) {
+    if (readTimeout < 0) {
+      throw new IllegalArgumentException("'readTimeout' must be greater than or equal to zero.");
+    }
+    this.readTimeout = readTimeout;
+  }
+
+  /**
+   * @throws IllegalArgumentException If the combination of values cannot be used
+   */
+  void validate() {
+    if (reportIdMode == ReportIdMode.LENGTH && packetLength > MAX_LENGTH_REPORT) {
+      throw new IllegalArgumentException("'packetLength' must be " + MAX_LENGTH_REPORT + " or less when the report ID carries the length.");
+    }
+  }
+
+}
@@ -0,0 +1,56 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014-2020 Gary Rowe
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package org.hid4java.io;
+
+/**
+ * Report ID handling to provide the following to {@link HidStreamSpecification}:
+ * <ul>
+ * <li>Selection of the report ID sent with output reports</li>
+ * <li>Removal of the report ID (and any padding it describes) from input reports</li>
+ * </ul>
+ *
+ * @since 0.8.0
+ */
+public enum ReportIdMode {
+
+  /**
+   * Unnumbered reports: output reports use ID 0x00 and input reports are delivered whole
+   */
+  NONE,
+
+  /**
+   * Numbered reports: output reports use the configured ID, input reports start with their ID which is removed
+   * and reports with any other ID are ignored
+   */
+  FIXED,
+
+  /**
+   * The report ID carries the number of payload bytes that follow (common in serial over HID bridges) so
+   * input padding beyond that number is discarded
+   */
+  LENGTH
+
+}
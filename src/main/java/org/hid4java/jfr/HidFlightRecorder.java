@@ -0,0 +1,142 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014-2020 Gary Rowe
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package org.hid4java.jfr;
+
+/**
+ * Flight recorder hooks to provide the following to HID operations:
+ * <ul>
+ * <li>Native read, write and feature report calls with device path, byte counts and duration</li>
+ * <li>Device opens and enumeration scans</li>
+ * <li>Queueing and execution of listener dispatch</li>
+ * </ul>
+ *
+ * This is the Java 8 version where every hook does nothing. On Java 11 and later the multi-release
+ * JAR supplies a version that emits JDK Flight Recorder events in the "hid4java" category. The begin
+ * methods return null when the event is not enabled in the active recording, so the cost without a
+ * recording is a single check.
+ *
+ * @since 0.8.0
+ */
+public final class HidFlightRecorder {
+
+  /**
+   * Operation names for I/O events
+   */
+  public static final String READ = "read";
+  public static final String READ_TIMEOUT = "read_timeout";
+  public static final String WRITE = "write";
+  public static final String GET_FEATURE_REPORT = "get_feature_report";
+  public static final String SEND_FEATURE_REPORT = "send_feature_report";
+
+  private HidFlightRecorder() {
+  }
+
+  /**
+   * @return A token for {@link #endIo(Object, String, String, int, int)} or null if not recording
+   */
+  public static Object beginIo() {
+    return null;
+  }
+
+  /**
+   * @param token          The token from {@link #beginIo()}
+   * @param operation      The operation (e.g. {@link #READ})
+   * @param path           The device path
+   * @param requestedBytes The size of the buffer or report
+   * @param result         The bytes transferred or negative on error
+   */
+  public static void endIo(Object token, String operation, String path, int requestedBytes, int result) {
+  }
+
+  /**
+   * @return A token for {@link #endOpen(Object, String, boolean)} or null if not recording
+   */
+  public static Object beginOpen() {
+    return null;
+  }
+
+  /**
+   * @param token   The token from {@link #beginOpen()}
+   * @param path    The device path
+   * @param success True if the device was opened
+   */
+  public static void endOpen(Object token, String path, boolean success) {
+  }
+
+  /**
+   * @return A token for {@link #endScan(Object, int, int, int)} or null if not recording
+   */
+  public static Object beginScan() {
+    return null;
+  }
+
+  /**
+   * @param token       The token from {@link #beginScan()}
+   * @param deviceCount The number of devices enumerated
+   * @param attached    The number of newly attached devices
+   * @param detached    The number of newly detached devices
+   */
+  public static void endScan(Object token, int deviceCount, int attached, int detached) {
+  }
+
+  /**
+   * @return True if dispatch queued events are being recorded
+   */
+  public static boolean isDispatchQueuedEnabled() {
+    return false;
+  }
+
+  /**
+   * @param eventType  The listener event (e.g. "DATA_RECEIVED")
+   * @param path       The device path
+   * @param bytes      The number of bytes carried by the event
+   * @param queueDepth The number of events already waiting
+   *
+   * @return The {@link System#nanoTime()} of queueing for {@link #endDispatch(Object, String, String, int, int, long)}
+   */
+  public static long dispatchQueued(String eventType, String path, int bytes, int queueDepth) {
+    return 0;
+  }
+
+  /**
+   * @return A token for {@link #endDispatch(Object, String, String, int, int, long)} or null if not recording
+   */
+  public static Object beginDispatch() {
+    return null;
+  }
+
+  /**
+   * @param token         The token from {@link #beginDispatch()}
+   * @param eventType     The listener event (e.g. "DATA_RECEIVED")
+   * @param path          The device path
+   * @param bytes         The number of bytes carried by the event
+   * @param listenerCount The number of listeners called
+   * @param queuedNanos   The value returned by {@link #dispatchQueued(String, String, int, int)} (zero if unknown)
+   */
+  public static void endDispatch(Object token, String eventType, String path, int bytes, int listenerCount, long queuedNanos) {
+  }
+
+}
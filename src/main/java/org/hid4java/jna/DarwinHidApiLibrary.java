@@ -5,7 +5,7 @@ import com.sun.jna.WString;
 
 public interface DarwinHidApiLibrary extends HidrawHidApiLibrary {
 
-  DarwinHidApiLibrary INSTANCE = Native.load("hidapi", DarwinHidApiLibrary.class);
+  DarwinHidApiLibrary INSTANCE = Native.load(NativeLibraryCache.resolve("hidapi"), DarwinHidApiLibrary.class);
 
   /**
    * Changes the behavior of all further calls to {@link #hid_open(short, short, WString)} or {@link #hid_open_path(String)}.
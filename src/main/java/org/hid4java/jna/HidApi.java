@@ -25,9 +25,16 @@
 
 package org.hid4java.jna;
 
+import com.sun.jna.Memory;
 import com.sun.jna.Platform;
 import com.sun.jna.Pointer;
-import com.sun.jna.WString;
+import org.hid4java.capture.HidCaptureJournal;
+import org.hid4java.capture.HidCaptureRecord;
+import org.hid4java.ffm.ForeignHidApi;
+import org.hid4java.hidraw.SysfsHidrawEnumerator;
+import org.hid4java.jfr.HidFlightRecorder;
+
+import java.util.ServiceLoader;
 
 /**
  * JNA utility class to provide the following to low level operations:
@@ -35,6 +42,10 @@ import com.sun.jna.WString;
  * <li>Direct access to the HID API library through JNA</li>
  * </ul>
  *
+ * Opening and enumeration use the default context owned by these static methods, created by
+ * <code>init</code> and released by {@link #exit()}. Device operations use the context that opened the
+ * device (see {@link HidApiContext}). HID services use their own context and never change the default.
+ *
  * @since 0.0.1
  */
 public class HidApi {
@@ -61,6 +72,40 @@ public class HidApi {
    */
   public static boolean useLibUsbVariant = false;
 
+  /**
+   * Enables the pure Java hidraw backend when running on a Linux platform (takes precedence over
+   * {@link #useLibUsbVariant}).
+   * <p>
+   * Devices are driven through /dev/hidrawN without the hidapi native library and many devices can be
+   * waited on with a single epoll instance (see {@link #openInputMultiplexer()}). Only x86, ARM and
+   * RISC-V processors are supported and initialisation fails with a {@link org.hid4java.HidException} on others.
+   *
+   * @since 0.8.0
+   */
+  public static boolean usePureJavaHidraw = false;
+
+  /**
+   * Enumerates devices by reading sysfs directly rather than through udev when the hidapi hidraw variant
+   * is used on a Linux platform.
+   * <p>
+   * Descriptions are cached between scans and only new devices are parsed (in parallel) so scans remain
+   * cheap on hosts with many devices (see {@link SysfsHidrawEnumerator}).
+   *
+   * @since 0.8.0
+   */
+  public static boolean useSysfsEnumeration = false;
+
+  /**
+   * Enables report transfers through java.lang.foreign downcall handles rather than JNA when running on
+   * Java 22 or later with one of the hidapi native variants.
+   * <p>
+   * Each device keeps its native report buffers until it is closed so a report costs a copy and a
+   * downcall. Has no effect on earlier Java versions (see {@link ForeignHidApi}).
+   *
+   * @since 0.8.0
+   */
+  public static boolean useForeignFunctionApi = false;
+
   /**
    * When false - all devices will be opened in exclusive mode. (Default)
    * When true - all devices will be opened in non-exclusive mode.
@@ -75,14 +120,37 @@ public class HidApi {
    *
    * Format is '&gt;' for host to device then '[count]' then hex bytes.
    *
+   * Logging is asynchronous so the I/O thread only copies the bytes (see {@link #setTrafficLogger(HidTrafficLogger)}
+   * to log elsewhere or in binary).
+   *
    * This may present a security issue if left enabled in production, although a packet sniffer would see the same data.
    */
   public static boolean logTraffic = false;
 
   /**
-   * The HID API library
+   * The number of reports buffered by the default traffic logger
+   */
+  private static final int TRAFFIC_LOG_CAPACITY = 4096;
+
+  /**
+   * The traffic logger (created on first use)
    */
-  private static HidApiLibrary hidApiLibrary;
+  private static volatile HidTrafficLogger trafficLogger = null;
+
+  /**
+   * The capture journal recording all report traffic (null if not capturing)
+   */
+  private static volatile HidCaptureJournal captureJournal = null;
+
+  /**
+   * The context used for opening and enumeration (null until initialised)
+   */
+  private static volatile HidApiContext defaultContext;
+
+  /**
+   * Guards replacing the default context
+   */
+  private static final Object defaultContextLock = new Object();
 
   /**
    * Open a HID device using a Vendor ID (VID), Product ID (PID) and optionally a serial number
@@ -94,48 +162,128 @@ public class HidApi {
    * @return The device or null if not found
    */
   public static HidDeviceStructure open(int vendor, int product, String serialNumber) {
+    return defaultContext().open(vendor, product, serialNumber);
+  }
 
-    // Attempt to open the device
-    Pointer p = hidApiLibrary.hid_open(
-      (short) vendor,
-      (short) product,
-      serialNumber == null ? null : new WString(serialNumber)
-    );
-
-    if (p != null) {
-      // Wrap the structure
-      return new HidDeviceStructure(p);
+  /**
+   * Initialise the HID API library. Should always be called before using any other API calls.
+   *
+   * The backend is selected from {@link #usePureJavaHidraw}, {@link #useLibUsbVariant} and the other flags
+   * when the default context is first created. Further calls have no effect and keep the existing default
+   * context, so changing those flags afterwards does not switch the backend. Call {@link #exit()} first
+   * (or supply a context with {@link #init(HidApiContext)}) to switch.
+   */
+  public static void init() {
+    synchronized (defaultContextLock) {
+      if (defaultContext == null) {
+        defaultContext = HidApiContext.create();
+      }
     }
+  }
 
-    return null;
+  /**
+   * Initialise the HID API using the given library rather than one of the native variants
+   * (e.g. a replay of captured traffic).
+   *
+   * Has no effect if the default context already uses the library, otherwise the previous default
+   * context is released.
+   *
+   * @param library The HID API library
+   * @since 0.8.0
+   */
+  public static void init(HidApiLibrary library) {
+    synchronized (defaultContextLock) {
+      if (defaultContext != null && defaultContext.getLibrary() == library) {
+        return;
+      }
+    }
+    init(new HidApiContext(library));
+  }
 
+  /**
+   * Use the given context for opening and enumeration, releasing any previous default context
+   *
+   * @param context The HID API context (released by {@link #exit()})
+   * @since 0.8.0
+   */
+  public static void init(HidApiContext context) {
+    HidApiContext previous;
+    synchronized (defaultContextLock) {
+      previous = defaultContext;
+      defaultContext = context;
+    }
+    if (previous != null && previous != context) {
+      previous.exit();
+    }
   }
 
   /**
-   * Initialise the HID API library. Should always be called before using any other API calls.
+   * Start extracting and loading the native variant that {@link #init()} will select on a background thread
+   * (see {@link NativeLibraryCache})
+   *
+   * @since 0.8.0
    */
-  public static void init() {
+  public static void preloadNativeLibrary() {
 
-    if (useLibUsbVariant && Platform.isLinux()) {
-      hidApiLibrary = LibusbHidApiLibrary.INSTANCE;
-    } else if (Platform.isMac()) {
-      hidApiLibrary = DarwinHidApiLibrary.INSTANCE;
-    } else {
-      hidApiLibrary = HidrawHidApiLibrary.INSTANCE;
+    if (usePureJavaHidraw && Platform.isLinux()) {
+      return;
     }
+    NativeLibraryCache.preload(useLibUsbVariant && Platform.isLinux() ? "hidapi-libusb" : "hidapi");
+
+  }
+
+  /**
+   * @return A new input multiplexer for the current library or null if it has no readiness notification
+   * @since 0.8.0
+   */
+  public static HidInputMultiplexer openInputMultiplexer() {
+    return defaultContext().openInputMultiplexer();
+  }
 
-    hidApiLibrary.hid_init();
+  /**
+   * Locate a backend registered as a {@link HidApiLibraryProvider} service
+   *
+   * @param name The backend name
+   *
+   * @return A new library instance or null if no provider has the name
+   * @since 0.8.0
+   */
+  public static HidApiLibrary createLibrary(String name) {
 
-    if (hidApiLibrary instanceof DarwinHidApiLibrary) {
-      ((DarwinHidApiLibrary) hidApiLibrary).hid_darwin_set_open_exclusive(darwinOpenDevicesNonExclusive ? 0 : 1);
+    for (HidApiLibraryProvider provider : ServiceLoader.load(HidApiLibraryProvider.class)) {
+      if (provider.getName().equals(name)) {
+        return provider.create();
+      }
     }
+
+    return null;
+
   }
 
   /**
-   * Finalise the HID API library
+   * Finalise the HID API library (releases the default context, no effect if not initialised)
    */
   public static void exit() {
-    hidApiLibrary.hid_exit();
+    HidApiContext previous;
+    synchronized (defaultContextLock) {
+      previous = defaultContext;
+      defaultContext = null;
+    }
+    if (previous != null) {
+      previous.exit();
+    }
+  }
+
+  /**
+   * @return The default context
+   * @throws IllegalStateException If not initialised
+   */
+  private static HidApiContext defaultContext() {
+    HidApiContext context = defaultContext;
+    if (context == null) {
+      throw new IllegalStateException("HidApi is not initialised");
+    }
+    return context;
   }
 
   /**
@@ -146,8 +294,7 @@ public class HidApi {
    * @return The device or null if not found
    */
   public static HidDeviceStructure open(String path) {
-    Pointer p = hidApiLibrary.hid_open_path(path);
-    return (p == null ? null : new HidDeviceStructure(p));
+    return defaultContext().open(path);
   }
 
   /**
@@ -158,7 +305,7 @@ public class HidApi {
   public static void close(HidDeviceStructure device) {
 
     if (device != null) {
-      hidApiLibrary.hid_close(device.ptr());
+      library(device).hid_close(device.ptr());
     }
 
   }
@@ -172,9 +319,7 @@ public class HidApi {
    * @return The device info of the matching device
    */
   public static HidDeviceInfoStructure enumerateDevices(int vendor, int product) {
-
-    return hidApiLibrary.hid_enumerate((short) vendor, (short) product);
-
+    return defaultContext().enumerateDevices(vendor, product);
   }
 
   /**
@@ -183,9 +328,7 @@ public class HidApi {
    * @param list The list to free
    */
   public static void freeEnumeration(HidDeviceInfoStructure list) {
-
-    hidApiLibrary.hid_free_enumeration(list.getPointer());
-
+    defaultContext().freeEnumeration(list);
   }
 
   /**
@@ -199,7 +342,7 @@ public class HidApi {
       return DEVICE_NULL;
     }
 
-    Pointer p = hidApiLibrary.hid_error(device.ptr());
+    Pointer p = library(device).hid_error(device.ptr());
 
     return p == null ? null : new WideStringBuffer(p.getByteArray(0, WSTR_LEN)).toString();
   }
@@ -216,7 +359,7 @@ public class HidApi {
     }
 
     WideStringBuffer wStr = new WideStringBuffer(WSTR_LEN);
-    hidApiLibrary.hid_get_manufacturer_string(device.ptr(), wStr, WSTR_LEN);
+    library(device).hid_get_manufacturer_string(device.ptr(), wStr, WSTR_LEN);
 
     return wStr.toString();
   }
@@ -233,7 +376,7 @@ public class HidApi {
     }
 
     WideStringBuffer wBuffer = new WideStringBuffer(WSTR_LEN);
-    hidApiLibrary.hid_get_product_string(device.ptr(), wBuffer, WSTR_LEN);
+    library(device).hid_get_product_string(device.ptr(), wBuffer, WSTR_LEN);
 
     return wBuffer.toString();
   }
@@ -251,7 +394,7 @@ public class HidApi {
 
     WideStringBuffer wBuffer = new WideStringBuffer(WSTR_LEN);
 
-    hidApiLibrary.hid_get_serial_number_string(device.ptr(), wBuffer, WSTR_LEN);
+    library(device).hid_get_serial_number_string(device.ptr(), wBuffer, WSTR_LEN);
 
     return wBuffer.toString();
   }
@@ -271,7 +414,7 @@ public class HidApi {
    */
   public static boolean setNonBlocking(HidDeviceStructure device, boolean nonBlocking) {
 
-    return device != null && 0 == hidApiLibrary.hid_set_nonblocking(device.ptr(), nonBlocking ? 1 : 0);
+    return device != null && 0 == library(device).hid_set_nonblocking(device.ptr(), nonBlocking ? 1 : 0);
 
   }
 
@@ -294,10 +437,13 @@ public class HidApi {
 
     WideStringBuffer wBuffer = new WideStringBuffer(buffer);
 
-    int result = hidApiLibrary.hid_read(device.ptr(), wBuffer, wBuffer.buffer.length);
+    Object jfr = HidFlightRecorder.beginIo();
+    int result = library(device).hid_read(device.ptr(), wBuffer, wBuffer.buffer.length);
+    HidFlightRecorder.endIo(jfr, HidFlightRecorder.READ, device.path(), buffer.length, result);
 
     if (result > 0) {
-      logTraffic(wBuffer, false);
+      logTraffic(device, buffer, result, false);
+      capture(HidCaptureRecord.Type.INPUT, device, buffer, result);
     }
 
     return result;
@@ -322,10 +468,13 @@ public class HidApi {
 
     WideStringBuffer wBuffer = new WideStringBuffer(buffer);
 
-    int result = hidApiLibrary.hid_read_timeout(device.ptr(), wBuffer, buffer.length, timeoutMillis);
+    Object jfr = HidFlightRecorder.beginIo();
+    int result = library(device).hid_read_timeout(device.ptr(), wBuffer, buffer.length, timeoutMillis);
+    HidFlightRecorder.endIo(jfr, HidFlightRecorder.READ_TIMEOUT, device.path(), buffer.length, result);
 
     if (result > 0) {
-      logTraffic(wBuffer, false);
+      logTraffic(device, buffer, result, false);
+      capture(HidCaptureRecord.Type.INPUT, device, buffer, result);
     }
 
     return result;
@@ -356,7 +505,9 @@ public class HidApi {
     // Create a large buffer
     WideStringBuffer report = new WideStringBuffer(WSTR_LEN);
     report.buffer[0] = reportId;
-    int res = hidApiLibrary.hid_get_feature_report(device.ptr(), report, data.length + 1);
+    Object jfr = HidFlightRecorder.beginIo();
+    int res = library(device).hid_get_feature_report(device.ptr(), report, data.length + 1);
+    HidFlightRecorder.endIo(jfr, HidFlightRecorder.GET_FEATURE_REPORT, device.path(), data.length + 1, res);
 
     if (res == -1) {
       return res;
@@ -365,7 +516,8 @@ public class HidApi {
     // Avoid index out of bounds exception
     System.arraycopy(report.buffer, 1, data, 0, Math.min(res, data.length));
 
-    logTraffic(report, false);
+    logTraffic(device, report.buffer, Math.min(res, report.buffer.length), false);
+    capture(HidCaptureRecord.Type.GET_FEATURE, device, report.buffer, Math.min(res, report.buffer.length));
 
     return res;
 
@@ -405,9 +557,17 @@ public class HidApi {
 
     System.arraycopy(data, 0, report.buffer, 1, data.length);
 
-    logTraffic(report, true);
+    logTraffic(device, report.buffer, report.buffer.length, true);
+
+    Object jfr = HidFlightRecorder.beginIo();
+    int result = library(device).hid_send_feature_report(device.ptr(), report, report.buffer.length);
+    HidFlightRecorder.endIo(jfr, HidFlightRecorder.SEND_FEATURE_REPORT, device.path(), report.buffer.length, result);
 
-    return hidApiLibrary.hid_send_feature_report(device.ptr(), report, report.buffer.length);
+    if (result >= 0) {
+      capture(HidCaptureRecord.Type.SEND_FEATURE, device, report.buffer, report.buffer.length);
+    }
+
+    return result;
 
   }
 
@@ -457,9 +617,75 @@ public class HidApi {
       System.arraycopy(data, 0, report.buffer, 1, len);
     }
 
-    logTraffic(report, true);
+    logTraffic(device, report.buffer, report.buffer.length, true);
 
-    return hidApiLibrary.hid_write(device.ptr(), report, report.buffer.length);
+    Object jfr = HidFlightRecorder.beginIo();
+    int result = library(device).hid_write(device.ptr(), report, report.buffer.length);
+    HidFlightRecorder.endIo(jfr, HidFlightRecorder.WRITE, device.path(), report.buffer.length, result);
+
+    if (result >= 0) {
+      capture(HidCaptureRecord.Type.OUTPUT, device, report.buffer, report.buffer.length);
+    }
+
+    return result;
+
+  }
+
+  /**
+   * Encode an Output report into native memory so that it can be written to many devices without further copying
+   *
+   * @param data         The data to send
+   * @param len          The number of bytes of data to send (excluding report ID)
+   * @param reportId     The report ID (will be prefixed to the report)
+   * @param applyPadding True if the report should be filled with zero bytes to the given length
+   *
+   * @return The encoded report (read only once encoded)
+   * @since 0.8.0
+   */
+  public static Memory encodeReport(byte[] data, int len, byte reportId, boolean applyPadding) {
+
+    if (!applyPadding && data.length < len) {
+      len = data.length;
+    }
+
+    // Memory is not zeroed on allocation so clear any padding
+    Memory report = new Memory(len + 1);
+    report.clear();
+    report.setByte(0, reportId);
+    report.write(1, data, 0, Math.min(len, data.length));
+
+    return report;
+  }
+
+  /**
+   * Write an encoded Output report to a HID device
+   *
+   * The report may be shared by concurrent writes to different devices since it is never modified.
+   *
+   * @param device The HID device
+   * @param report The report encoded by {@link #encodeReport(byte[], int, byte, boolean)}
+   *
+   * @return The number of bytes written, or -1 if an error occurs
+   * @since 0.8.0
+   */
+  public static int write(HidDeviceStructure device, Memory report) {
+
+    // Fail fast
+    if (device == null || report == null) {
+      return DEVICE_ERROR;
+    }
+
+    logTraffic(device, report, (int) report.size(), true);
+
+    Object jfr = HidFlightRecorder.beginIo();
+    int result = library(device).hid_write(device.ptr(), report, (int) report.size());
+    HidFlightRecorder.endIo(jfr, HidFlightRecorder.WRITE, device.path(), (int) report.size(), result);
+
+    if (result >= 0 && captureJournal != null) {
+      capture(HidCaptureRecord.Type.OUTPUT, device, report.getByteArray(0, (int) report.size()), (int) report.size());
+    }
+
+    return result;
 
   }
 
@@ -477,28 +703,115 @@ public class HidApi {
       return DEVICE_NULL;
     }
     WideStringBuffer wStr = new WideStringBuffer(WSTR_LEN);
-    int res = hidApiLibrary.hid_get_indexed_string(device.ptr(), idx, wStr, WSTR_LEN);
+    int res = library(device).hid_get_indexed_string(device.ptr(), idx, wStr, WSTR_LEN);
 
     return res == -1 ? null : wStr.toString();
   }
 
   /**
+   * @return The traffic logger, created on first use to write text to stdout if not configured
+   */
+  private static HidTrafficLogger trafficLogger() {
+    HidTrafficLogger logger = trafficLogger;
+    if (logger == null) {
+      synchronized (HidApi.class) {
+        logger = trafficLogger;
+        if (logger == null) {
+          logger = new HidTrafficLogger(HidTrafficLogger.Format.TEXT, System.out, TRAFFIC_LOG_CAPACITY, WSTR_LEN);
+          trafficLogger = logger;
+        }
+      }
+    }
+    return logger;
+  }
+
+  /**
+   * Give any buffered traffic a chance to reach the log
+   */
+  static void flushTrafficLogger() {
+    HidTrafficLogger logger = trafficLogger;
+    if (logger != null) {
+      logger.flush(1000);
+    }
+  }
+
+  /**
+   * @param trafficLogger The traffic logger to use when {@link #logTraffic} is enabled (null for the default stdout logger)
+   * @since 0.8.0
+   */
+  public static void setTrafficLogger(HidTrafficLogger trafficLogger) {
+    HidApi.trafficLogger = trafficLogger;
+  }
+
+  /**
+   * @param captureJournal The journal to record all input, output and feature reports (null to stop capturing)
+   * @since 0.8.0
+   */
+  public static void setCaptureJournal(HidCaptureJournal captureJournal) {
+    HidApi.captureJournal = captureJournal;
+  }
+
+  /**
+   * @return The capture journal or null if not capturing
+   */
+  static HidCaptureJournal captureJournal() {
+    return captureJournal;
+  }
+
+  /**
+   * @param device The HID device structure
+   *
+   * @return The library of the context that opened the device, or of the default context
+   */
+  private static HidApiLibrary library(HidDeviceStructure device) {
+    HidApiContext context = device.context();
+    return (context != null ? context : defaultContext()).getLibrary();
+  }
+
+  /**
+   * @param type   The report type
+   * @param device The HID device
+   * @param bytes  The report bytes (including report ID)
+   * @param length The number of bytes transferred
+   */
+  private static void capture(HidCaptureRecord.Type type, HidDeviceStructure device, byte[] bytes, int length) {
+    HidCaptureJournal journal = captureJournal;
+    if (journal != null && length > 0) {
+      journal.record(type, device.path(), bytes, length);
+    }
+  }
+
+  /**
+   * @param device The HID device structure
    *
-   * @param buffer The buffer to serialise for traffic
+   * @return True if traffic for the device should be logged
+   */
+  private static boolean isLogTraffic(HidDeviceStructure device) {
+    HidApiContext context = device.context();
+    return HidApi.logTraffic || (context != null && context.isLogTraffic());
+  }
+
+  /**
+   * @param device  The HID device structure
+   * @param bytes   The buffer to serialise for traffic
+   * @param length  The number of bytes transferred
    * @param isWrite True if writing (from host to device)
    */
-  private static void logTraffic(WideStringBuffer buffer, boolean isWrite) {
-    if (HidApi.logTraffic && buffer != null && buffer.size() > 0) {
-      if (isWrite) {
-        System.out.print("> ");
-      } else {
-        System.out.print("< ");
-      }
-      System.out.printf("[%02x]:", buffer.buffer.length);
-      for (byte b : buffer.buffer) {
-        System.out.printf(" %02x", b);
-      }
-      System.out.println();
+  private static void logTraffic(HidDeviceStructure device, byte[] bytes, int length, boolean isWrite) {
+    if (length > 0 && isLogTraffic(device)) {
+      trafficLogger().log(bytes, length, isWrite);
+    }
+  }
+
+  /**
+   * @param device  The HID device structure
+   * @param pointer The native buffer to serialise for traffic
+   * @param length  The number of bytes transferred
+   * @param isWrite True if writing (from host to device)
+   */
+  private static void logTraffic(HidDeviceStructure device, Pointer pointer, int length, boolean isWrite) {
+    if (length > 0 && isLogTraffic(device)) {
+      trafficLogger().log(pointer, length, isWrite);
     }
   }
 
@@ -510,10 +823,8 @@ public class HidApi {
    * @see org.hid4java.HidServices#getNativeVersion
    */
   public static String getVersion() {
-    if(hidApiLibrary == null) {
-      init();
-    }
-    return hidApiLibrary.hid_version_str();
+    init();
+    return defaultContext().getLibrary().hid_version_str();
   }
 
 }
@@ -0,0 +1,341 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014-2020 Gary Rowe
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package org.hid4java.jna;
+
+import com.sun.jna.Platform;
+import com.sun.jna.Pointer;
+import com.sun.jna.WString;
+import org.hid4java.capture.HidCaptureDeviceInfo;
+import org.hid4java.capture.HidCaptureJournal;
+import org.hid4java.ffm.ForeignHidApi;
+import org.hid4java.hidraw.PureJavaHidApiLibrary;
+import org.hid4java.hidraw.SysfsHidrawEnumerator;
+import org.hid4java.jfr.HidFlightRecorder;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Instance scoped HID API to provide the following to {@link HidApi} and HID services:
+ * <ul>
+ * <li>A backend (library and enumeration strategy) per context so several can be used at once</li>
+ * <li>Device structures that route their reports back to the library that opened them</li>
+ * <li>Per context traffic logging and capture of attach/detach history</li>
+ * </ul>
+ *
+ * The native hidapi variants are process wide so the library is only finalised when the last
+ * context using it exits.
+ *
+ * @since 0.8.0
+ */
+public final class HidApiContext {
+
+  /**
+   * The number of contexts that have not exited keyed on the underlying library
+   */
+  private static final Map<HidApiLibrary, Integer> users = new HashMap<>();
+
+  /**
+   * The library used for all calls
+   */
+  private final HidApiLibrary library;
+
+  /**
+   * The library that is initialised and finalised (differs from the library if wrapped)
+   */
+  private final HidApiLibrary underlyingLibrary;
+
+  /**
+   * The sysfs enumerator used in place of the library enumeration (null if not in use)
+   */
+  private final SysfsHidrawEnumerator sysfsEnumerator;
+
+  /**
+   * Device paths present at the last captured enumeration
+   */
+  private final Set<String> capturedPaths = new HashSet<>();
+
+  /**
+   * The journal the captured paths were recorded in
+   */
+  private HidCaptureJournal capturedJournal = null;
+
+  private volatile boolean logTraffic = false;
+
+  private boolean exited = false;
+
+  /**
+   * @param library The HID API library (e.g. a replay of captured traffic or one of the native variants)
+   */
+  public HidApiContext(HidApiLibrary library) {
+    this(library, library, null);
+  }
+
+  /**
+   * @param library           The HID API library used for all calls
+   * @param underlyingLibrary The library that is initialised and finalised (differs from the library if wrapped)
+   */
+  HidApiContext(HidApiLibrary library, HidApiLibrary underlyingLibrary) {
+    this(library, underlyingLibrary, null);
+  }
+
+  private HidApiContext(HidApiLibrary library, HidApiLibrary underlyingLibrary, SysfsHidrawEnumerator sysfsEnumerator) {
+
+    this.library = library;
+    this.underlyingLibrary = underlyingLibrary;
+    this.sysfsEnumerator = sysfsEnumerator;
+
+    // Repeated initialisation of a native variant has no effect
+    library.hid_init();
+
+    synchronized (users) {
+      Integer count = users.get(underlyingLibrary);
+      users.put(underlyingLibrary, count == null ? 1 : count + 1);
+    }
+
+    if (underlyingLibrary instanceof DarwinHidApiLibrary) {
+      ((DarwinHidApiLibrary) underlyingLibrary).hid_darwin_set_open_exclusive(HidApi.darwinOpenDevicesNonExclusive ? 0 : 1);
+    }
+
+  }
+
+  /**
+   * Select a backend for this platform using the {@link HidApi} configuration
+   * (see {@link HidApi#usePureJavaHidraw}, {@link HidApi#useLibUsbVariant}, {@link HidApi#useSysfsEnumeration}
+   * and {@link HidApi#useForeignFunctionApi})
+   *
+   * @return A new context
+   */
+  public static HidApiContext create() {
+
+    if (HidApi.usePureJavaHidraw && Platform.isLinux()) {
+      return new HidApiContext(new PureJavaHidApiLibrary());
+    }
+
+    HidApiLibrary nativeLibrary;
+    SysfsHidrawEnumerator sysfsEnumerator = null;
+    if (HidApi.useLibUsbVariant && Platform.isLinux()) {
+      nativeLibrary = LibusbHidApiLibrary.INSTANCE;
+    } else if (Platform.isMac()) {
+      nativeLibrary = DarwinHidApiLibrary.INSTANCE;
+    } else {
+      nativeLibrary = HidrawHidApiLibrary.INSTANCE;
+      if (HidApi.useSysfsEnumeration && Platform.isLinux()) {
+        // The hidraw variant opens the same /dev/hidrawN paths
+        sysfsEnumerator = new SysfsHidrawEnumerator();
+      }
+    }
+
+    // The wrapper hides the Darwin extensions so they are applied to the underlying library
+    HidApiLibrary library = HidApi.useForeignFunctionApi && ForeignHidApi.isSupported()
+      ? ForeignHidApi.wrap(nativeLibrary)
+      : nativeLibrary;
+
+    return new HidApiContext(library, nativeLibrary, sysfsEnumerator);
+
+  }
+
+  /**
+   * @return The library used for all calls made through this context
+   */
+  public HidApiLibrary getLibrary() {
+    return library;
+  }
+
+  /**
+   * @return True if traffic for devices opened through this context is logged regardless of {@link HidApi#logTraffic}
+   */
+  public boolean isLogTraffic() {
+    return logTraffic;
+  }
+
+  /**
+   * @param logTraffic True if traffic for devices opened through this context should be logged
+   */
+  public void setLogTraffic(boolean logTraffic) {
+    this.logTraffic = logTraffic;
+  }
+
+  /**
+   * Open a HID device using a Vendor ID (VID), Product ID (PID) and optionally a serial number
+   *
+   * @param vendor       The vendor ID
+   * @param product      The product ID
+   * @param serialNumber The serial number
+   *
+   * @return The device or null if not found
+   */
+  public HidDeviceStructure open(int vendor, int product, String serialNumber) {
+
+    Pointer p = library.hid_open(
+      (short) vendor,
+      (short) product,
+      serialNumber == null ? null : new WString(serialNumber)
+    );
+
+    return p == null ? null : new HidDeviceStructure(p, null, this);
+
+  }
+
+  /**
+   * Open a HID device by its path name
+   *
+   * @param path The device path
+   *
+   * @return The device or null if not found
+   */
+  public HidDeviceStructure open(String path) {
+    Object jfr = HidFlightRecorder.beginOpen();
+    Pointer p = library.hid_open_path(path);
+    HidFlightRecorder.endOpen(jfr, path, p != null);
+    return p == null ? null : new HidDeviceStructure(p, path, this);
+  }
+
+  /**
+   * Enumerate the attached HID devices
+   *
+   * @param vendor  The vendor ID
+   * @param product The product ID
+   *
+   * @return The device info of the matching devices (release with {@link #freeEnumeration(HidDeviceInfoStructure)})
+   */
+  public HidDeviceInfoStructure enumerateDevices(int vendor, int product) {
+
+    HidDeviceInfoStructure root = sysfsEnumerator != null
+      ? sysfsEnumerator.enumerate(vendor, product)
+      : library.hid_enumerate((short) vendor, (short) product);
+
+    // Only a complete enumeration can reveal detached devices
+    HidCaptureJournal journal = HidApi.captureJournal();
+    if (journal != null && vendor == 0 && product == 0) {
+      captureEnumeration(journal, root);
+    }
+
+    return root;
+
+  }
+
+  /**
+   * Free an enumeration linked list
+   *
+   * @param list The list to free
+   */
+  public void freeEnumeration(HidDeviceInfoStructure list) {
+
+    // A sysfs enumeration is held in Java memory rather than allocated by the library
+    if (sysfsEnumerator == null) {
+      library.hid_free_enumeration(list.getPointer());
+    }
+
+  }
+
+  /**
+   * @return A new input multiplexer for this library or null if it has no readiness notification
+   */
+  public HidInputMultiplexer openInputMultiplexer() {
+
+    if (library instanceof PureJavaHidApiLibrary) {
+      return ((PureJavaHidApiLibrary) library).openInputMultiplexer();
+    }
+    return null;
+
+  }
+
+  /**
+   * Release this context, finalising the library if no other context is using it
+   *
+   * Subsequent calls have no effect.
+   */
+  public void exit() {
+
+    boolean last;
+    synchronized (users) {
+      if (exited) {
+        return;
+      }
+      exited = true;
+      Integer count = users.get(underlyingLibrary);
+      last = count == null || count == 1;
+      if (last) {
+        users.remove(underlyingLibrary);
+      } else {
+        users.put(underlyingLibrary, count - 1);
+      }
+    }
+
+    if (last) {
+      library.hid_exit();
+    }
+
+    HidApi.flushTrafficLogger();
+
+  }
+
+  /**
+   * Record devices that have attached or detached since the previous enumeration
+   *
+   * @param journal The capture journal
+   * @param root    The enumeration linked list (may be null)
+   */
+  private void captureEnumeration(HidCaptureJournal journal, HidDeviceInfoStructure root) {
+
+    synchronized (capturedPaths) {
+      if (journal != capturedJournal) {
+        // Treat every device as newly attached in a new journal
+        capturedPaths.clear();
+        capturedJournal = journal;
+      }
+      Set<String> paths = new HashSet<>();
+      for (HidDeviceInfoStructure info = root; info != null; info = info.next()) {
+        paths.add(info.path);
+        if (!capturedPaths.contains(info.path)) {
+          journal.recordAttach(info.path, new HidCaptureDeviceInfo(
+            info.vendor_id,
+            info.product_id,
+            info.serial_number == null ? null : info.serial_number.toString(),
+            info.release_number,
+            info.manufacturer_string == null ? null : info.manufacturer_string.toString(),
+            info.product_string == null ? null : info.product_string.toString(),
+            info.usage_page,
+            info.usage,
+            info.interface_number
+          ));
+        }
+      }
+      for (String path : capturedPaths) {
+        if (!paths.contains(path)) {
+          journal.recordDetach(path);
+        }
+      }
+      capturedPaths.clear();
+      capturedPaths.addAll(paths);
+    }
+
+  }
+
+}
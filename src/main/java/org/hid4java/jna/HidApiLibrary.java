@@ -135,6 +135,21 @@ public interface HidApiLibrary extends Library {
    */
   int hid_write(Pointer device, WideStringBuffer.ByReference data, int len);
 
+  /**
+   * Write an Output report held in native memory to a HID device.
+   *
+   * Identical to {@code hid_write} with a {@link WideStringBuffer} but avoids marshalling a Java buffer on
+   * every call so that a single encoded report can be shared by many concurrent writes.
+   *
+   * @param device A device handle
+   * @param data   the native data to send, including the report number as the first byte
+   * @param len    The length in bytes of the data to send
+   *
+   * @return The actual number of bytes written, -1 on error
+   * @since 0.8.0
+   */
+  int hid_write(Pointer device, Pointer data, int len);
+
   /**
    * Get a feature report from a HID device.
    *
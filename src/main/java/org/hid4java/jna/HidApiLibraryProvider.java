@@ -0,0 +1,51 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014-2020 Gary Rowe
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package org.hid4java.jna;
+
+/**
+ * Service provider interface to provide the following to {@link HidApi}:
+ * <ul>
+ * <li>Named alternative backends discovered through {@link java.util.ServiceLoader}</li>
+ * <li>Selection through {@link org.hid4java.HidServicesSpecification#setBackendName(String)}</li>
+ * </ul>
+ *
+ * Register an implementation in {@code META-INF/services/org.hid4java.jna.HidApiLibraryProvider}.
+ *
+ * @since 0.8.0
+ */
+public interface HidApiLibraryProvider {
+
+  /**
+   * @return The unique backend name (e.g. "simulated")
+   */
+  String getName();
+
+  /**
+   * @return A new library instance ready for {@link HidApi#init(HidApiLibrary)}
+   */
+  HidApiLibrary create();
+
+}
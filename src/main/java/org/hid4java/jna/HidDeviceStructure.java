@@ -39,14 +39,61 @@ public class HidDeviceStructure extends Structure implements Structure.ByReferen
 
   public Pointer ptr;
 
+  /**
+   * The device path if opened by path (not part of the native structure)
+   */
+  private String path;
+
+  /**
+   * The context that opened the device (null to use the {@link HidApi} default)
+   */
+  private HidApiContext context;
+
   public HidDeviceStructure(Pointer p) {
     ptr = p;
   }
 
+  /**
+   * @param p    The device pointer
+   * @param path The device path
+   * @since 0.8.0
+   */
+  public HidDeviceStructure(Pointer p, String path) {
+    ptr = p;
+    this.path = path;
+  }
+
+  /**
+   * @param p       The device pointer
+   * @param path    The device path (may be null)
+   * @param context The context that opened the device
+   */
+  HidDeviceStructure(Pointer p, String path, HidApiContext context) {
+    ptr = p;
+    this.path = path;
+    this.context = context;
+  }
+
   public Pointer ptr() {
     return ptr;
   }
 
+  /**
+   * @return The device path or null if not known
+   * @since 0.8.0
+   */
+  public String path() {
+    return path;
+  }
+
+  /**
+   * @return The context that opened the device or null if not known
+   * @since 0.8.0
+   */
+  public HidApiContext context() {
+    return context;
+  }
+
   @Override
   protected List getFieldOrder() {
     return Arrays.asList("ptr");
@@ -0,0 +1,75 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014-2020 Gary Rowe
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package org.hid4java.jna;
+
+import com.sun.jna.Pointer;
+
+/**
+ * Optional backend capability to provide the following to {@link org.hid4java.HidSelector}:
+ * <ul>
+ * <li>Readiness notification for input reports across many open devices</li>
+ * <li>A single thread blocked until any registered device has input</li>
+ * </ul>
+ *
+ * Obtained with {@link HidApi#openInputMultiplexer()}. Each instance is used by one
+ * waiting thread although {@link #register(Pointer)}, {@link #deregister(Pointer)} and
+ * {@link #wakeup()} may be called from any thread.
+ *
+ * @since 0.8.0
+ */
+public interface HidInputMultiplexer {
+
+  /**
+   * @param device A device handle (in non-blocking mode)
+   * @return True if the device will be included in {@link #await(Pointer[], int)}
+   */
+  boolean register(Pointer device);
+
+  /**
+   * @param device A device handle previously registered (must be called before the device is closed)
+   */
+  void deregister(Pointer device);
+
+  /**
+   * Wait for registered devices to have input (or an error) pending
+   *
+   * @param ready         Receives the device handles that are ready
+   * @param timeoutMillis The number of milliseconds to wait or -1 for blocking wait
+   * @return The number of device handles placed in the ready array (0 on timeout or wakeup) or -1 on error
+   */
+  int await(Pointer[] ready, int timeoutMillis);
+
+  /**
+   * Cause a blocked (or the next) {@link #await(Pointer[], int)} to return
+   */
+  void wakeup();
+
+  /**
+   * Release the native resources (no waiting thread may remain)
+   */
+  void close();
+
+}
@@ -0,0 +1,332 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014-2020 Gary Rowe
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package org.hid4java.jna;
+
+import com.sun.jna.Pointer;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Asynchronous traffic logger to provide the following to {@link HidApi}:
+ * <ul>
+ * <li>Bounded, allocation free capture of report bytes on the I/O thread</li>
+ * <li>Background formatting as hex text (the traditional {@code logTraffic} format) or binary records</li>
+ * <li>Drop counting rather than blocking I/O when the writer falls behind</li>
+ * </ul>
+ *
+ * Reports are copied into a pre-allocated lock-free ring buffer of fixed size slots. Reports
+ * longer than a slot are truncated (the original length is still recorded).
+ *
+ * Binary records are written big endian as: timestamp ({@link System#nanoTime()}, 8 bytes),
+ * direction (1 for host to device, 0 for device to host, 1 byte), original length (4 bytes),
+ * captured length (2 bytes) then the captured bytes.
+ *
+ * @since 0.8.0
+ */
+public class HidTrafficLogger {
+
+  /**
+   * The output format
+   */
+  public enum Format {
+
+    /**
+     * '&gt;' for host to device or '&lt;' for device to host then '[count]' then hex bytes, one report per line
+     */
+    TEXT,
+    /**
+     * Fixed header binary records (see class documentation)
+     */
+    BINARY,
+
+  }
+
+  /**
+   * Two lower case hex digits for every byte value
+   */
+  private static final byte[] HEX = new byte[512];
+
+  static {
+    byte[] digits = "0123456789abcdef".getBytes();
+    for (int i = 0; i < 256; i++) {
+      HEX[i << 1] = digits[i >>> 4];
+      HEX[(i << 1) + 1] = digits[i & 0x0f];
+    }
+  }
+
+  /**
+   * How long the writer parks when the ring buffer is empty
+   */
+  private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+  private final Format format;
+  private final OutputStream outputStream;
+
+  private final int mask;
+  private final int slotLength;
+  private final byte[] data;
+  private final int[] lengths;
+  private final boolean[] writes;
+  private final long[] timestamps;
+
+  /**
+   * Slot i holds a complete record for sequence s when published[i] == s + 1
+   */
+  private final AtomicLongArray published;
+
+  /**
+   * The next sequence to be claimed by a producer
+   */
+  private final AtomicLong head = new AtomicLong();
+
+  /**
+   * The next sequence to be consumed by the writer
+   */
+  private volatile long tail = 0;
+
+  /**
+   * All sequences below this have been written and flushed
+   */
+  private volatile long flushed = 0;
+
+  private final AtomicLong droppedCount = new AtomicLong();
+
+  private final Thread writerThread;
+  private volatile boolean running = true;
+
+  /**
+   * @param format       The output format
+   * @param outputStream The destination (e.g. System.out or a file)
+   * @param capacity     The number of reports that may be buffered (rounded up to a power of two)
+   * @param slotLength   The maximum number of bytes captured per report
+   */
+  public HidTrafficLogger(Format format, OutputStream outputStream, int capacity, int slotLength) {
+    if (capacity < 1) {
+      throw new IllegalArgumentException("'capacity' must be greater than zero.");
+    }
+    if (slotLength < 1 || slotLength > 0xffff) {
+      throw new IllegalArgumentException("'slotLength' must be between 1 and 65535.");
+    }
+    int slots = Integer.highestOneBit(capacity);
+    if (slots < capacity) {
+      slots <<= 1;
+    }
+    this.format = format;
+    this.outputStream = new BufferedOutputStream(outputStream, 8192);
+    this.mask = slots - 1;
+    this.slotLength = slotLength;
+    this.data = new byte[slots * slotLength];
+    this.lengths = new int[slots];
+    this.writes = new boolean[slots];
+    this.timestamps = new long[slots];
+    this.published = new AtomicLongArray(slots);
+
+    writerThread = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        drain();
+      }
+    });
+    writerThread.setDaemon(true);
+    writerThread.setName("hid4java traffic logger");
+    writerThread.start();
+  }
+
+  /**
+   * @param bytes   The report bytes (including report ID)
+   * @param length  The number of bytes to log
+   * @param isWrite True if writing (from host to device)
+   */
+  public void log(byte[] bytes, int length, boolean isWrite) {
+    long sequence = claim();
+    if (sequence < 0) {
+      return;
+    }
+    int slot = (int) sequence & mask;
+    System.arraycopy(bytes, 0, data, slot * slotLength, Math.min(length, slotLength));
+    publish(sequence, slot, length, isWrite);
+  }
+
+  /**
+   * @param pointer The native report bytes (including report ID)
+   * @param length  The number of bytes to log
+   * @param isWrite True if writing (from host to device)
+   */
+  public void log(Pointer pointer, int length, boolean isWrite) {
+    long sequence = claim();
+    if (sequence < 0) {
+      return;
+    }
+    int slot = (int) sequence & mask;
+    pointer.read(0, data, slot * slotLength, Math.min(length, slotLength));
+    publish(sequence, slot, length, isWrite);
+  }
+
+  /**
+   * @return The number of reports discarded because the ring buffer was full
+   */
+  public long getDroppedCount() {
+    return droppedCount.get();
+  }
+
+  /**
+   * Wait until every report logged before this call has been written and flushed
+   *
+   * @param timeoutMillis The maximum number of milliseconds to wait
+   * @return True if flushed within the timeout
+   */
+  public boolean flush(int timeoutMillis) {
+    long target = head.get();
+    long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+    while (flushed < target) {
+      if (!writerThread.isAlive() || System.nanoTime() - deadline > 0) {
+        return false;
+      }
+      LockSupport.parkNanos(IDLE_PARK_NANOS);
+    }
+    return true;
+  }
+
+  /**
+   * Write any outstanding reports and stop the writer thread (the output stream is flushed but not closed)
+   */
+  public void close() {
+    running = false;
+    LockSupport.unpark(writerThread);
+    try {
+      writerThread.join(1000);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * @return The claimed sequence or -1 if the ring buffer is full or closed
+   */
+  private long claim() {
+    while (running) {
+      long sequence = head.get();
+      if (sequence - tail > mask) {
+        droppedCount.incrementAndGet();
+        return -1;
+      }
+      if (head.compareAndSet(sequence, sequence + 1)) {
+        return sequence;
+      }
+    }
+    return -1;
+  }
+
+  private void publish(long sequence, int slot, int length, boolean isWrite) {
+    lengths[slot] = length;
+    writes[slot] = isWrite;
+    timestamps[slot] = System.nanoTime();
+    // Ordered store makes the slot contents visible to the writer before the marker
+    published.lazySet(slot, sequence + 1);
+  }
+
+  /**
+   * Writer thread loop
+   */
+  private void drain() {
+
+    byte[] line = new byte[8 + slotLength * 3 + 1];
+    DataOutputStream binary = new DataOutputStream(outputStream);
+
+    try {
+      while (true) {
+        long sequence = tail;
+        int slot = (int) sequence & mask;
+        if (published.get(slot) == sequence + 1) {
+          int length = lengths[slot];
+          int captured = Math.min(length, slotLength);
+          if (format == Format.BINARY) {
+            binary.writeLong(timestamps[slot]);
+            binary.writeByte(writes[slot] ? 1 : 0);
+            binary.writeInt(length);
+            binary.writeShort(captured);
+            binary.write(data, slot * slotLength, captured);
+          } else {
+            writeText(line, slot, length, captured);
+          }
+          // Release the slot to producers
+          tail = sequence + 1;
+          continue;
+        }
+
+        // Nothing published so flush while idle
+        if (flushed < sequence) {
+          outputStream.flush();
+          flushed = sequence;
+        }
+        if (!running && head.get() == sequence) {
+          return;
+        }
+        LockSupport.parkNanos(IDLE_PARK_NANOS);
+      }
+    } catch (IOException e) {
+      // Stop logging rather than affect device I/O
+      running = false;
+    }
+  }
+
+  private void writeText(byte[] line, int slot, int length, int captured) throws IOException {
+
+    int position = 0;
+    line[position++] = (byte) (writes[slot] ? '>' : '<');
+    line[position++] = ' ';
+    line[position++] = '[';
+    if (length <= 0xff) {
+      line[position++] = HEX[length << 1];
+      line[position++] = HEX[(length << 1) + 1];
+    } else {
+      outputStream.write(line, 0, position);
+      outputStream.write(Integer.toHexString(length).getBytes());
+      position = 0;
+    }
+    line[position++] = ']';
+    line[position++] = ':';
+
+    int offset = slot * slotLength;
+    for (int i = 0; i < captured; i++) {
+      int value = data[offset + i] & 0xff;
+      line[position++] = ' ';
+      line[position++] = HEX[value << 1];
+      line[position++] = HEX[(value << 1) + 1];
+    }
+    line[position++] = '\n';
+
+    outputStream.write(line, 0, position);
+  }
+
+}
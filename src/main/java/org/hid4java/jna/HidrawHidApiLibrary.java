@@ -34,6 +34,6 @@ import com.sun.jna.Native;
  */
 public interface HidrawHidApiLibrary extends HidApiLibrary {
 
-  HidApiLibrary INSTANCE = Native.load("hidapi", HidApiLibrary.class);
+  HidApiLibrary INSTANCE = Native.load(NativeLibraryCache.resolve("hidapi"), HidApiLibrary.class);
 
 }
\ No newline at end of file
@@ -0,0 +1,144 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014-2020 Gary Rowe
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package org.hid4java.jna;
+
+import com.sun.jna.Memory;
+import com.sun.jna.Pointer;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * <p>Support to provide the following to {@link HidApiLibrary} implementations written in Java:</p>
+ * <ul>
+ * <li>A table of open devices keyed by opaque handles standing in for native pointers</li>
+ * <li>The wide string returned by hid_error</li>
+ * <li>Timed waits that give up on a deadline or interruption</li>
+ * </ul>
+ *
+ * @param <H> The per-device state held for each open handle
+ * @since 0.8.0
+ */
+public final class JavaHidApiSupport<H> {
+
+  /**
+   * The number of bytes read by {@code HidApi} from the error string pointer
+   */
+  private static final int ERROR_LENGTH = 512;
+
+  private final Map<Long, H> handles = new ConcurrentHashMap<>();
+  private final AtomicLong nextHandle = new AtomicLong(1);
+
+  /**
+   * @param handle The state of a newly opened device
+   * @return The opaque handle to return from hid_open_path
+   */
+  public Pointer add(H handle) {
+    long id = nextHandle.getAndIncrement();
+    handles.put(id, handle);
+    return new Pointer(id);
+  }
+
+  /**
+   * @param device The handle returned by {@link #add(Object)} (may be null)
+   * @return The state of the open device, or null if not open
+   */
+  public H get(Pointer device) {
+    return device == null ? null : handles.get(Pointer.nativeValue(device));
+  }
+
+  /**
+   * @param device The handle returned by {@link #add(Object)} (may be null)
+   * @return The state of the device that was open, or null if not open
+   */
+  public H remove(Pointer device) {
+    return device == null ? null : handles.remove(Pointer.nativeValue(device));
+  }
+
+  /**
+   * Remove every open device (typically from hid_exit)
+   *
+   * @return The state of each device that was open
+   */
+  public List<H> removeAll() {
+    List<H> removed = new ArrayList<>();
+    for (Long id : handles.keySet()) {
+      H handle = handles.remove(id);
+      if (handle != null) {
+        removed.add(handle);
+      }
+    }
+    return removed;
+  }
+
+  /**
+   * @param message The error message (null for none)
+   * @return A terminated UTF-16LE buffer in the form read by {@link HidApi#getLastErrorMessage}
+   */
+  public static Pointer errorString(String message) {
+    Memory memory = new Memory(ERROR_LENGTH);
+    memory.clear();
+    if (message != null) {
+      byte[] bytes = message.getBytes(StandardCharsets.UTF_16LE);
+      memory.write(0, bytes, 0, Math.min(bytes.length, ERROR_LENGTH - 2));
+    }
+    return memory;
+  }
+
+  /**
+   * @param target   The {@link System#nanoTime()} to wait for ({@link Long#MAX_VALUE} for never)
+   * @param deadline The {@link System#nanoTime()} at which to give up ({@link Long#MAX_VALUE} for never)
+   * @return True if the target was reached before the deadline or interruption
+   */
+  public static boolean await(long target, long deadline) {
+    while (true) {
+      long now = System.nanoTime();
+      if (target != Long.MAX_VALUE && target - now <= 0) {
+        return true;
+      }
+      if (deadline != Long.MAX_VALUE && deadline - now <= 0) {
+        return false;
+      }
+      if (Thread.currentThread().isInterrupted()) {
+        return false;
+      }
+      long wait = Long.MAX_VALUE;
+      if (target != Long.MAX_VALUE) {
+        wait = target - now;
+      }
+      if (deadline != Long.MAX_VALUE) {
+        wait = Math.min(wait, deadline - now);
+      }
+      LockSupport.parkNanos(wait);
+    }
+  }
+
+}
@@ -34,6 +34,6 @@ import com.sun.jna.Native;
  */
 public interface LibusbHidApiLibrary extends HidrawHidApiLibrary {
 
-  LibusbHidApiLibrary INSTANCE = Native.load("hidapi-libusb", LibusbHidApiLibrary.class);
+  LibusbHidApiLibrary INSTANCE = Native.load(NativeLibraryCache.resolve("hidapi-libusb"), LibusbHidApiLibrary.class);
 
 }
\ No newline at end of file
@@ -0,0 +1,385 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014-2020 Gary Rowe
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package org.hid4java.jna;
+
+import com.sun.jna.Native;
+import com.sun.jna.NativeLibrary;
+import com.sun.jna.Platform;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.JarURLConnection;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.jar.JarEntry;
+import java.util.zip.CRC32;
+
+/**
+ * Native library cache to provide the following to the hidapi JNA bindings:
+ * <ul>
+ * <li>Extraction of a bundled library once per content hash rather than on every start</li>
+ * <li>Atomic extraction so processes starting together never load a partially written file</li>
+ * <li>Background extraction and loading while HID services are constructed</li>
+ * </ul>
+ *
+ * JNA looks for a library on the system (<code>jna.library.path</code>, the platform library paths and the
+ * dynamic linker search path) before falling back to extracting the bundled copy from the classpath to a new
+ * temporary file on every start. The cache only replaces that last step, so a library installed on the system
+ * is still preferred exactly as it would be without the cache. Cached libraries are kept under
+ * <code>&lt;cache&gt;/&lt;layout version&gt;/&lt;platform&gt;/&lt;crc&gt;-&lt;size&gt;</code> where the CRC-32 and
+ * size are those of the bundled library (taken from the JAR directory without inflating the entry), so a new
+ * hid4java release (or a different library on the classpath) never reuses a stale file. A cached copy is
+ * only loaded if its own CRC-32 matches, so a truncated or corrupted file is written again. CRC-32 does not
+ * protect against deliberate modification, so the cache must only be writable by the user running hid4java.
+ * The cache is the platform user cache directory (e.g. <code>~/.cache/hid4java</code>) unless the
+ * <code>hid4java.nativeCacheDir</code> system property is set.
+ *
+ * Setting the <code>hid4java.nativeCache</code> system property to false, or setting <code>jna.library.path</code>
+ * to supply a library, leaves loading entirely to JNA.
+ *
+ * @since 0.8.0
+ */
+public final class NativeLibraryCache {
+
+  /**
+   * System property overriding the cache directory
+   */
+  public static final String CACHE_DIRECTORY_PROPERTY = "hid4java.nativeCacheDir";
+
+  /**
+   * System property that disables the cache when "false"
+   */
+  public static final String ENABLED_PROPERTY = "hid4java.nativeCache";
+
+  /**
+   * Incremented if the layout of the cache directory changes
+   */
+  private static final String LAYOUT_VERSION = "1";
+
+  /**
+   * The directories JNA searches for its dispatch library before extracting it
+   */
+  private static final String JNA_BOOT_LIBRARY_PATH = "jna.boot.library.path";
+
+  /**
+   * True once the JNA dispatch library has been considered
+   */
+  private static final AtomicBoolean dispatchPrepared = new AtomicBoolean();
+
+  /**
+   * Resolutions started in this JVM keyed by library name (the value is the path or name to load)
+   */
+  private static final ConcurrentMap<String, FutureTask<String>> resolutions = new ConcurrentHashMap<>();
+
+  private NativeLibraryCache() {
+  }
+
+  /**
+   * Resolve the library to load, waiting for a preload that is already running
+   *
+   * @param libraryName The library name (e.g. "hidapi")
+   *
+   * @return The absolute path of the cached library or the library name if JNA should locate it
+   */
+  public static String resolve(String libraryName) {
+
+    FutureTask<String> resolution = resolution(libraryName);
+    // Runs in this thread unless a preload has already started it
+    resolution.run();
+    try {
+      return resolution.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return libraryName;
+    } catch (ExecutionException e) {
+      return libraryName;
+    }
+
+  }
+
+  /**
+   * Extract and load the library on a background thread so a later {@link #resolve(String)} finds it ready
+   *
+   * @param libraryName The library name (e.g. "hidapi")
+   */
+  public static void preload(final String libraryName) {
+
+    final FutureTask<String> resolution = resolution(libraryName);
+    if (resolution.isDone()) {
+      return;
+    }
+    Thread thread = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        resolution.run();
+        try {
+          String path = resolution.get();
+          if (new File(path).isAbsolute()) {
+            // Map the library and its dependencies ahead of the JNA binding
+            NativeLibrary.getInstance(path);
+          }
+        } catch (Throwable t) {
+          // Reported by the JNA binding when it loads
+        }
+      }
+    }, "hid4java native preload");
+    thread.setDaemon(true);
+    thread.start();
+
+  }
+
+  /**
+   * @param libraryName The library name
+   *
+   * @return The shared resolution of the library (not yet run)
+   */
+  private static FutureTask<String> resolution(final String libraryName) {
+
+    FutureTask<String> resolution = resolutions.get(libraryName);
+    if (resolution == null) {
+      FutureTask<String> created = new FutureTask<>(new Callable<String>() {
+        @Override
+        public String call() throws IOException {
+          if ("false".equalsIgnoreCase(System.getProperty(ENABLED_PROPERTY)) || System.getProperty("jna.library.path") != null) {
+            return libraryName;
+          }
+          File cacheRoot = cacheDirectory();
+          prepareDispatchLibrary(cacheRoot);
+          if (isSystemLibrary(libraryName)) {
+            return libraryName;
+          }
+          File library = extract(libraryName, cacheRoot);
+          return library == null ? libraryName : library.getAbsolutePath();
+        }
+      });
+      resolution = resolutions.putIfAbsent(libraryName, created);
+      if (resolution == null) {
+        resolution = created;
+      }
+    }
+    return resolution;
+
+  }
+
+  /**
+   * Point JNA at a cached copy of its own dispatch library, which it would otherwise also extract on
+   * every start (no effect if JNA is already initialised or <code>jna.boot.library.path</code> is set)
+   *
+   * @param cacheRoot The cache directory
+   */
+  private static void prepareDispatchLibrary(File cacheRoot) {
+
+    if (!dispatchPrepared.compareAndSet(false, true) || System.getProperty(JNA_BOOT_LIBRARY_PATH) != null) {
+      return;
+    }
+    String fileName = System.mapLibraryName("jnidispatch");
+    try {
+      // Referring to the class does not initialise it
+      File library = extract(Native.class, "com/sun/jna/" + Platform.RESOURCE_PREFIX + "/" + fileName, fileName, cacheRoot);
+      if (library != null) {
+        System.setProperty(JNA_BOOT_LIBRARY_PATH, library.getParent());
+      }
+    } catch (IOException e) {
+      // JNA extracts it as usual
+    }
+
+  }
+
+  /**
+   * @param libraryName The library name
+   *
+   * @return True if JNA finds the library without extracting it from the classpath
+   */
+  private static boolean isSystemLibrary(String libraryName) {
+
+    try {
+      // A class loader without resources leaves JNA only the system search
+      NativeLibrary.getInstance(libraryName, new ClassLoader(null) {
+      });
+      return true;
+    } catch (UnsatisfiedLinkError e) {
+      return false;
+    }
+
+  }
+
+  /**
+   * Extract a bundled library into the cache unless an identical copy is already there
+   *
+   * @param libraryName The library name (e.g. "hidapi")
+   * @param cacheRoot   The cache directory
+   *
+   * @return The cached library or null if the library is not bundled for this platform
+   *
+   * @throws IOException If the library cannot be written to the cache
+   */
+  static File extract(String libraryName, File cacheRoot) throws IOException {
+    String fileName = System.mapLibraryName(libraryName);
+    return extract(NativeLibraryCache.class, Platform.RESOURCE_PREFIX + "/" + fileName, fileName, cacheRoot);
+  }
+
+  /**
+   * @param owner        The class whose class loader holds the resource
+   * @param resourceName The resource name of the library
+   * @param fileName     The file name of the library
+   * @param cacheRoot    The cache directory
+   *
+   * @return The cached library or null if the resource does not exist
+   *
+   * @throws IOException If the library cannot be written to the cache
+   */
+  private static File extract(Class<?> owner, String resourceName, String fileName, File cacheRoot) throws IOException {
+
+    ClassLoader classLoader = owner.getClassLoader();
+    URL resource = classLoader == null ? ClassLoader.getSystemResource(resourceName) : classLoader.getResource(resourceName);
+    if (resource == null) {
+      return null;
+    }
+
+    // A JAR records the CRC-32 and size of each entry so a cached copy is found without inflating it
+    URLConnection connection = resource.openConnection();
+    long crc = -1;
+    long size = -1;
+    if (connection instanceof JarURLConnection) {
+      JarEntry entry = ((JarURLConnection) connection).getJarEntry();
+      crc = entry.getCrc();
+      size = entry.getSize();
+    }
+    byte[] content = null;
+    if (crc < 0 || size < 0) {
+      content = read(connection);
+      CRC32 checksum = new CRC32();
+      checksum.update(content, 0, content.length);
+      crc = checksum.getValue();
+      size = content.length;
+    }
+
+    File directory = new File(cacheRoot, LAYOUT_VERSION + File.separator + Platform.RESOURCE_PREFIX + File.separator + Long.toHexString(crc) + "-" + size);
+    File library = new File(directory, fileName);
+    if (matches(library, crc, size)) {
+      return library;
+    }
+
+    if (content == null) {
+      content = read(connection);
+    }
+    if (!directory.isDirectory() && !directory.mkdirs() && !directory.isDirectory()) {
+      throw new IOException("Unable to create " + directory);
+    }
+
+    // Write alongside and rename so a concurrent loader sees either nothing or the complete file
+    Path temporary = Files.createTempFile(directory.toPath(), fileName, ".tmp");
+    try {
+      Files.write(temporary, content);
+      Files.move(temporary, library.toPath(), StandardCopyOption.ATOMIC_MOVE);
+    } catch (IOException e) {
+      // Another process may have won (Windows cannot replace a library that is in use)
+      if (!matches(library, crc, size)) {
+        throw e;
+      }
+    } finally {
+      Files.deleteIfExists(temporary);
+    }
+    return library;
+
+  }
+
+  /**
+   * @param library The cached library
+   * @param crc     The CRC-32 of the bundled library
+   * @param size    The size of the bundled library
+   *
+   * @return True if the cached library has the size and CRC-32 of the bundled one (a check against
+   * truncation and corruption rather than tampering)
+   */
+  private static boolean matches(File library, long crc, long size) {
+
+    if (!library.isFile() || library.length() != size) {
+      return false;
+    }
+    CRC32 checksum = new CRC32();
+    byte[] buffer = new byte[64 * 1024];
+    try (InputStream input = Files.newInputStream(library.toPath())) {
+      int count;
+      while ((count = input.read(buffer)) != -1) {
+        checksum.update(buffer, 0, count);
+      }
+    } catch (IOException e) {
+      return false;
+    }
+    return checksum.getValue() == crc;
+
+  }
+
+  /**
+   * @return The directory holding cached libraries
+   */
+  static File cacheDirectory() {
+
+    String configured = System.getProperty(CACHE_DIRECTORY_PROPERTY);
+    if (configured != null) {
+      return new File(configured);
+    }
+
+    String home = System.getProperty("user.home");
+    if (Platform.isWindows()) {
+      String localAppData = System.getenv("LOCALAPPDATA");
+      return new File(localAppData != null ? localAppData : home, "hid4java" + File.separator + "cache");
+    }
+    if (Platform.isMac()) {
+      return new File(home, "Library" + File.separator + "Caches" + File.separator + "hid4java");
+    }
+    String xdgCacheHome = System.getenv("XDG_CACHE_HOME");
+    return new File(xdgCacheHome != null && !xdgCacheHome.isEmpty() ? new File(xdgCacheHome) : new File(home, ".cache"), "hid4java");
+
+  }
+
+  private static byte[] read(URLConnection connection) throws IOException {
+
+    try (InputStream input = connection.getInputStream()) {
+      ByteArrayOutputStream output = new ByteArrayOutputStream(128 * 1024);
+      byte[] buffer = new byte[64 * 1024];
+      int count;
+      while ((count = input.read(buffer)) != -1) {
+        output.write(buffer, 0, count);
+      }
+      return output.toByteArray();
+    }
+
+  }
+
+}
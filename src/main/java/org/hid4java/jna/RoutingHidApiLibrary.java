@@ -0,0 +1,499 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014-2020 Gary Rowe
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package org.hid4java.jna;
+
+import com.sun.jna.Pointer;
+import com.sun.jna.WString;
+import org.hid4java.ffm.ForeignHidApi;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * HID API library to provide the following to {@link HidApi}:
+ * <ul>
+ * <li>Several backends in use at the same time (e.g. the hidraw and libusb variants on Linux)</li>
+ * <li>Merged enumeration with each device listed once</li>
+ * <li>Per device routing by vendor and product ID rule or automatic choice</li>
+ * </ul>
+ *
+ * A device is identified across backends by vendor ID, product ID, serial number and interface number.
+ * When no rule applies, or the backend named by the rule cannot see the device, it is served by the first
+ * backend added that can (so a Bluetooth device only visible to hidraw stays on hidraw).
+ *
+ * Each backend is initialised and finalised through its own {@link HidApiContext}, so a native variant
+ * shared with other contexts is only finalised once none of them are using it.
+ *
+ * Configure the backends and rules before use, for example:
+ * <pre>
+ * RoutingHidApiLibrary library = RoutingHidApiLibrary.createLinux();
+ * library.addRule(0x1209, 0, RoutingHidApiLibrary.LIBUSB);
+ * hidServicesSpecification.setHidApiLibrary(library);
+ * </pre>
+ *
+ * @since 0.8.0
+ */
+public class RoutingHidApiLibrary implements HidApiLibrary {
+
+  /**
+   * The backend name of the hidraw variant in {@link #createLinux()}
+   */
+  public static final String HIDRAW = "hidraw";
+
+  /**
+   * The backend name of the libusb variant in {@link #createLinux()}
+   */
+  public static final String LIBUSB = "libusb";
+
+  /**
+   * The backends in order of automatic preference
+   */
+  private final List<Backend> backends = new CopyOnWriteArrayList<>();
+
+  /**
+   * The routing rules in order of precedence
+   */
+  private final List<Rule> rules = new CopyOnWriteArrayList<>();
+
+  /**
+   * The backend serving each device path (replaced by every unfiltered enumeration)
+   */
+  private volatile Map<String, Backend> pathBackends = new ConcurrentHashMap<>();
+
+  /**
+   * Open devices keyed on the handle given out in place of the backend handle
+   */
+  private final JavaHidApiSupport<Handle> handles = new JavaHidApiSupport<>();
+
+  /**
+   * The backend of the most recent failed open (reports errors for a null device)
+   */
+  private volatile Backend lastFailure = null;
+
+  /**
+   * @return A library with the hidraw variant preferred over the libusb variant (both are loaded)
+   */
+  public static RoutingHidApiLibrary createLinux() {
+
+    RoutingHidApiLibrary library = new RoutingHidApiLibrary();
+    library.addBackend(HIDRAW, nativeVariant(HidrawHidApiLibrary.INSTANCE), HidrawHidApiLibrary.INSTANCE);
+    library.addBackend(LIBUSB, nativeVariant(LibusbHidApiLibrary.INSTANCE), LibusbHidApiLibrary.INSTANCE);
+    return library;
+
+  }
+
+  /**
+   * @param name    The backend name used in rules
+   * @param library The library (devices it shares with earlier backends are served by the earlier one by default)
+   */
+  public void addBackend(String name, HidApiLibrary library) {
+    addBackend(name, library, library);
+  }
+
+  /**
+   * @param name              The backend name used in rules
+   * @param library           The library used for all calls
+   * @param underlyingLibrary The library that is initialised and finalised (differs from the library if wrapped)
+   */
+  private void addBackend(String name, HidApiLibrary library, HidApiLibrary underlyingLibrary) {
+    if (name == null || library == null) {
+      throw new IllegalArgumentException("'name' and 'library' must be present.");
+    }
+    if (backend(name) != null) {
+      throw new IllegalArgumentException("'name' must be unique.");
+    }
+    backends.add(new Backend(name, library, underlyingLibrary));
+  }
+
+  /**
+   * Route matching devices to a backend whenever that backend can see them
+   *
+   * Rules are checked in the order added.
+   *
+   * @param vendorId  The vendor ID (0 for any)
+   * @param productId The product ID (0 for any)
+   * @param name      The backend name
+   */
+  public void addRule(int vendorId, int productId, String name) {
+    Backend backend = backend(name);
+    if (backend == null) {
+      throw new IllegalArgumentException("'name' must be the name of a backend.");
+    }
+    rules.add(new Rule(vendorId, productId, backend));
+  }
+
+  /**
+   * @param path The device path from an enumeration
+   *
+   * @return The name of the backend serving the device or null if it has not been enumerated
+   */
+  public String getBackendName(String path) {
+    Backend backend = pathBackends.get(path);
+    return backend == null ? null : backend.name;
+  }
+
+  /**
+   * Initialise every backend in a context of its own (repeated calls have no effect)
+   */
+  @Override
+  public synchronized void hid_init() {
+    for (Backend backend : backends) {
+      if (backend.context == null) {
+        backend.context = new HidApiContext(backend.library, backend.underlyingLibrary);
+      }
+    }
+  }
+
+  /**
+   * Close any devices still open and release the context of every backend
+   */
+  @Override
+  public synchronized void hid_exit() {
+    for (Handle handle : handles.removeAll()) {
+      handle.backend.library.hid_close(handle.device);
+    }
+    pathBackends = new ConcurrentHashMap<>();
+    for (Backend backend : backends) {
+      if (backend.context != null) {
+        backend.context.exit();
+        backend.context = null;
+      }
+    }
+  }
+
+  @Override
+  public Pointer hid_open(short vendor_id, short product_id, WString serial_number) {
+
+    // Try the routed backend first
+    List<Backend> candidates = new ArrayList<>(backends);
+    Rule rule = rule(vendor_id & 0xffff, product_id & 0xffff);
+    if (rule != null) {
+      candidates.remove(rule.backend);
+      candidates.add(0, rule.backend);
+    }
+    for (Backend backend : candidates) {
+      Pointer device = open(backend, backend.library.hid_open(vendor_id, product_id, serial_number));
+      if (device != null) {
+        return device;
+      }
+    }
+    return null;
+
+  }
+
+  @Override
+  public Pointer hid_open_path(String path) {
+
+    Backend routed = pathBackends.get(path);
+    if (routed != null) {
+      return open(routed, routed.library.hid_open_path(path));
+    }
+
+    // Not enumerated yet so any backend recognising the path will do
+    for (Backend backend : backends) {
+      Pointer device = open(backend, backend.library.hid_open_path(path));
+      if (device != null) {
+        return device;
+      }
+    }
+    return null;
+
+  }
+
+  @Override
+  public void hid_close(Pointer device) {
+    Handle handle = handles.remove(device);
+    if (handle != null) {
+      handle.backend.library.hid_close(handle.device);
+    }
+  }
+
+  @Override
+  public Pointer hid_error(Pointer device) {
+    if (device == null) {
+      Backend backend = lastFailure;
+      if (backend == null && !backends.isEmpty()) {
+        backend = backends.get(0);
+      }
+      return backend == null ? null : backend.library.hid_error(null);
+    }
+    Handle handle = handles.get(device);
+    return handle == null ? null : handle.backend.library.hid_error(handle.device);
+  }
+
+  @Override
+  public int hid_read(Pointer device, WideStringBuffer.ByReference bytes, int length) {
+    Handle handle = handles.get(device);
+    return handle == null ? -1 : handle.backend.library.hid_read(handle.device, bytes, length);
+  }
+
+  @Override
+  public int hid_read_timeout(Pointer device, WideStringBuffer.ByReference bytes, int length, int timeout) {
+    Handle handle = handles.get(device);
+    return handle == null ? -1 : handle.backend.library.hid_read_timeout(handle.device, bytes, length, timeout);
+  }
+
+  @Override
+  public int hid_write(Pointer device, WideStringBuffer.ByReference data, int len) {
+    Handle handle = handles.get(device);
+    return handle == null ? -1 : handle.backend.library.hid_write(handle.device, data, len);
+  }
+
+  @Override
+  public int hid_write(Pointer device, Pointer data, int len) {
+    Handle handle = handles.get(device);
+    return handle == null ? -1 : handle.backend.library.hid_write(handle.device, data, len);
+  }
+
+  @Override
+  public int hid_get_feature_report(Pointer device, WideStringBuffer.ByReference data, int length) {
+    Handle handle = handles.get(device);
+    return handle == null ? -1 : handle.backend.library.hid_get_feature_report(handle.device, data, length);
+  }
+
+  @Override
+  public int hid_send_feature_report(Pointer device, WideStringBuffer.ByReference data, int length) {
+    Handle handle = handles.get(device);
+    return handle == null ? -1 : handle.backend.library.hid_send_feature_report(handle.device, data, length);
+  }
+
+  @Override
+  public int hid_get_indexed_string(Pointer device, int idx, WideStringBuffer.ByReference string, int len) {
+    Handle handle = handles.get(device);
+    return handle == null ? -1 : handle.backend.library.hid_get_indexed_string(handle.device, idx, string, len);
+  }
+
+  @Override
+  public int hid_get_manufacturer_string(Pointer device, WideStringBuffer.ByReference str, int len) {
+    Handle handle = handles.get(device);
+    return handle == null ? -1 : handle.backend.library.hid_get_manufacturer_string(handle.device, str, len);
+  }
+
+  @Override
+  public int hid_get_product_string(Pointer device, WideStringBuffer.ByReference str, int len) {
+    Handle handle = handles.get(device);
+    return handle == null ? -1 : handle.backend.library.hid_get_product_string(handle.device, str, len);
+  }
+
+  @Override
+  public int hid_get_serial_number_string(Pointer device, WideStringBuffer.ByReference str, int len) {
+    Handle handle = handles.get(device);
+    return handle == null ? -1 : handle.backend.library.hid_get_serial_number_string(handle.device, str, len);
+  }
+
+  @Override
+  public int hid_set_nonblocking(Pointer device, int nonblock) {
+    Handle handle = handles.get(device);
+    return handle == null ? -1 : handle.backend.library.hid_set_nonblocking(handle.device, nonblock);
+  }
+
+  /**
+   * Enumerate every backend and keep each device from the backend routed to serve it
+   *
+   * The returned list is held in Java memory since the backend lists are freed before returning. An
+   * unfiltered enumeration replaces the routed paths so detached devices are forgotten.
+   */
+  @Override
+  public HidDeviceInfoStructure hid_enumerate(short vendor_id, short product_id) {
+
+    List<List<HidDeviceInfoStructure>> enumerations = new ArrayList<>();
+    Map<String, Backend> chosen = new HashMap<>();
+    for (Backend backend : backends) {
+      List<HidDeviceInfoStructure> devices = new ArrayList<>();
+      HidDeviceInfoStructure root = backend.library.hid_enumerate(vendor_id, product_id);
+      for (HidDeviceInfoStructure info = root; info != null; info = info.next()) {
+        HidDeviceInfoStructure device = copy(info);
+        devices.add(device);
+        String key = key(device);
+        Rule rule = rule(device.vendor_id & 0xffff, device.product_id & 0xffff);
+        if (!chosen.containsKey(key) || (rule != null && rule.backend == backend)) {
+          chosen.put(key, backend);
+        }
+      }
+      if (root != null) {
+        backend.library.hid_free_enumeration(root.getPointer());
+      }
+      enumerations.add(devices);
+    }
+
+    Map<String, Backend> routed = vendor_id == 0 && product_id == 0 ? new ConcurrentHashMap<String, Backend>() : pathBackends;
+    HidDeviceInfoStructure root = null;
+    HidDeviceInfoStructure last = null;
+    for (int i = 0; i < enumerations.size(); i++) {
+      Backend backend = backends.get(i);
+      for (HidDeviceInfoStructure device : enumerations.get(i)) {
+        if (chosen.get(key(device)) != backend) {
+          // Served by another backend
+          continue;
+        }
+        routed.put(device.path, backend);
+        if (root == null) {
+          root = device;
+        } else {
+          last.next = device;
+        }
+        last = device;
+      }
+    }
+    pathBackends = routed;
+    return root;
+
+  }
+
+  @Override
+  public void hid_free_enumeration(Pointer devs) {
+    // Nothing to free (see hid_enumerate)
+  }
+
+  /**
+   * @return The version of the first backend
+   */
+  @Override
+  public String hid_version_str() {
+    return backends.isEmpty() ? null : backends.get(0).library.hid_version_str();
+  }
+
+  /**
+   * @param library The JNA binding of a hidapi native variant
+   *
+   * @return The binding to use given the {@link HidApi#useForeignFunctionApi} setting
+   */
+  private static HidApiLibrary nativeVariant(HidApiLibrary library) {
+    return HidApi.useForeignFunctionApi && ForeignHidApi.isSupported() ? ForeignHidApi.wrap(library) : library;
+  }
+
+  /**
+   * @param name The backend name
+   *
+   * @return The backend or null if not present
+   */
+  private Backend backend(String name) {
+    for (Backend backend : backends) {
+      if (backend.name.equals(name)) {
+        return backend;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * @return The first matching rule or null if none match
+   */
+  private Rule rule(int vendorId, int productId) {
+    for (Rule rule : rules) {
+      if ((rule.vendorId == 0 || rule.vendorId == vendorId) && (rule.productId == 0 || rule.productId == productId)) {
+        return rule;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * @param backend The backend that opened the device
+   * @param device  The backend handle (null if the open failed)
+   *
+   * @return The handle to give out or null if the open failed
+   */
+  private Pointer open(Backend backend, Pointer device) {
+    if (device == null) {
+      lastFailure = backend;
+      return null;
+    }
+    return handles.add(new Handle(backend, device));
+  }
+
+  /**
+   * @return The identity of the device shared by all backends
+   */
+  private static String key(HidDeviceInfoStructure info) {
+    return (info.vendor_id & 0xffff) + ":" + (info.product_id & 0xffff) + ":" + info.serial_number + ":" + info.interface_number;
+  }
+
+  /**
+   * @return A copy held in Java memory without the link to the next device
+   */
+  private static HidDeviceInfoStructure copy(HidDeviceInfoStructure info) {
+    HidDeviceInfoStructure copy = new HidDeviceInfoStructure();
+    copy.path = info.path;
+    copy.vendor_id = info.vendor_id;
+    copy.product_id = info.product_id;
+    copy.serial_number = info.serial_number;
+    copy.release_number = info.release_number;
+    copy.manufacturer_string = info.manufacturer_string;
+    copy.product_string = info.product_string;
+    copy.usage_page = info.usage_page;
+    copy.usage = info.usage;
+    copy.interface_number = info.interface_number;
+    return copy;
+  }
+
+  private static final class Backend {
+
+    private final String name;
+    private final HidApiLibrary library;
+    private final HidApiLibrary underlyingLibrary;
+
+    /**
+     * The context holding the library initialised (null when not initialised, guarded by the routing library)
+     */
+    private HidApiContext context;
+
+    private Backend(String name, HidApiLibrary library, HidApiLibrary underlyingLibrary) {
+      this.name = name;
+      this.library = library;
+      this.underlyingLibrary = underlyingLibrary;
+    }
+  }
+
+  private static final class Rule {
+
+    private final int vendorId;
+    private final int productId;
+    private final Backend backend;
+
+    private Rule(int vendorId, int productId, Backend backend) {
+      this.vendorId = vendorId;
+      this.productId = productId;
+      this.backend = backend;
+    }
+  }
+
+  private static final class Handle {
+
+    private final Backend backend;
+    private final Pointer device;
+
+    private Handle(Backend backend, Pointer device) {
+      this.backend = backend;
+      this.device = device;
+    }
+  }
+
+}
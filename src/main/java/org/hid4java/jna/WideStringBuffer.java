@@ -27,6 +27,7 @@ package org.hid4java.jna;
 
 import com.sun.jna.Structure;
 
+import java.nio.charset.StandardCharsets;
 import java.util.Collections;
 import java.util.List;
 
@@ -51,6 +52,21 @@ public class WideStringBuffer extends Structure implements Structure.ByReference
     return Collections.singletonList("buffer");
   }
 
+  /**
+   * Fill the buffer with a string in the two byte form read by {@link #toString()} (used by Java backends)
+   *
+   * @param value The string (null for empty), truncated to fit with a terminator
+   * @since 0.8.0
+   */
+  public void setString(String value) {
+    byte[] bytes = value == null ? new byte[0] : value.getBytes(StandardCharsets.UTF_16LE);
+    int count = Math.max(0, Math.min(bytes.length, buffer.length - 2)) & ~1;
+    System.arraycopy(bytes, 0, buffer, 0, count);
+    for (int i = count; i < buffer.length; i++) {
+      buffer[i] = 0;
+    }
+  }
+
   /**
    * HIDAPI uses wchar_t which is written l i k e   t h i s (with '\0' in between)
    */
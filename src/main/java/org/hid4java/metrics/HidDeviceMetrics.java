@@ -0,0 +1,245 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014-2020 Gary Rowe
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package org.hid4java.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Per device I/O metrics to provide the following to monitoring:
+ * <ul>
+ * <li>Reports and bytes in and out</li>
+ * <li>Read timeouts, errors and open/close cycles</li>
+ * <li>Latency histograms for read, write and feature report calls</li>
+ * </ul>
+ *
+ * Metrics are kept per device path so they survive the device being closed and opened again, or
+ * being wrapped by a new {@link org.hid4java.HidDevice} after each enumeration. All recording is lock free.
+ *
+ * @since 0.8.0
+ */
+public class HidDeviceMetrics implements HidDeviceMetricsMBean {
+
+  /**
+   * Latencies are held in microseconds up to one hour
+   */
+  private static final long HIGHEST_LATENCY_MICROS = 3_600_000_000L;
+
+  private final String path;
+
+  private final LongAdder inputReports = new LongAdder();
+  private final LongAdder inputBytes = new LongAdder();
+  private final LongAdder outputReports = new LongAdder();
+  private final LongAdder outputBytes = new LongAdder();
+  private final LongAdder readTimeouts = new LongAdder();
+  private final LongAdder errors = new LongAdder();
+  private final LongAdder openCount = new LongAdder();
+  private final LongAdder closeCount = new LongAdder();
+
+  private final LatencyHistogram readLatency = new LatencyHistogram(HIGHEST_LATENCY_MICROS);
+  private final LatencyHistogram writeLatency = new LatencyHistogram(HIGHEST_LATENCY_MICROS);
+  private final LatencyHistogram featureReportLatency = new LatencyHistogram(HIGHEST_LATENCY_MICROS);
+
+  /**
+   * @param path The device path
+   */
+  public HidDeviceMetrics(String path) {
+    this.path = path;
+  }
+
+  /**
+   * @param result The result of a successful or failed open
+   */
+  public void recordOpen(boolean result) {
+    if (result) {
+      openCount.increment();
+    } else {
+      errors.increment();
+    }
+  }
+
+  public void recordClose() {
+    closeCount.increment();
+  }
+
+  /**
+   * @param startNanos The {@link System#nanoTime()} before the read
+   * @param result     The number of bytes read, zero for a timeout or negative for an error
+   */
+  public void recordRead(long startNanos, int result) {
+    readLatency.record((System.nanoTime() - startNanos) / 1000);
+    if (result > 0) {
+      inputReports.increment();
+      inputBytes.add(result);
+    } else if (result == 0) {
+      readTimeouts.increment();
+    } else {
+      errors.increment();
+    }
+  }
+
+  /**
+   * @param startNanos The {@link System#nanoTime()} before the write
+   * @param result     The number of bytes written, zero if dropped by a rate limiter or negative for an error
+   */
+  public void recordWrite(long startNanos, int result) {
+    writeLatency.record((System.nanoTime() - startNanos) / 1000);
+    if (result > 0) {
+      outputReports.increment();
+      outputBytes.add(result);
+    } else if (result < 0) {
+      errors.increment();
+    }
+  }
+
+  /**
+   * @param startNanos The {@link System#nanoTime()} before the get or send
+   * @param result     The number of bytes transferred or negative for an error
+   */
+  public void recordFeatureReport(long startNanos, int result) {
+    featureReportLatency.record((System.nanoTime() - startNanos) / 1000);
+    if (result < 0) {
+      errors.increment();
+    }
+  }
+
+  public LatencyHistogram getReadLatency() {
+    return readLatency;
+  }
+
+  public LatencyHistogram getWriteLatency() {
+    return writeLatency;
+  }
+
+  public LatencyHistogram getFeatureReportLatency() {
+    return featureReportLatency;
+  }
+
+  @Override
+  public String getPath() {
+    return path;
+  }
+
+  @Override
+  public long getInputReports() {
+    return inputReports.sum();
+  }
+
+  @Override
+  public long getInputBytes() {
+    return inputBytes.sum();
+  }
+
+  @Override
+  public long getOutputReports() {
+    return outputReports.sum();
+  }
+
+  @Override
+  public long getOutputBytes() {
+    return outputBytes.sum();
+  }
+
+  @Override
+  public long getReadTimeouts() {
+    return readTimeouts.sum();
+  }
+
+  @Override
+  public long getErrors() {
+    return errors.sum();
+  }
+
+  @Override
+  public long getOpenCount() {
+    return openCount.sum();
+  }
+
+  @Override
+  public long getCloseCount() {
+    return closeCount.sum();
+  }
+
+  @Override
+  public long getReadCount() {
+    return readLatency.getCount();
+  }
+
+  @Override
+  public double getReadLatencyMeanMicros() {
+    return readLatency.getMean();
+  }
+
+  @Override
+  public long getReadLatencyP99Micros() {
+    return readLatency.getPercentile(99);
+  }
+
+  @Override
+  public long getReadLatencyMaxMicros() {
+    return readLatency.getMax();
+  }
+
+  @Override
+  public long getWriteCount() {
+    return writeLatency.getCount();
+  }
+
+  @Override
+  public double getWriteLatencyMeanMicros() {
+    return writeLatency.getMean();
+  }
+
+  @Override
+  public long getWriteLatencyP99Micros() {
+    return writeLatency.getPercentile(99);
+  }
+
+  @Override
+  public long getWriteLatencyMaxMicros() {
+    return writeLatency.getMax();
+  }
+
+  @Override
+  public long getFeatureReportCount() {
+    return featureReportLatency.getCount();
+  }
+
+  @Override
+  public double getFeatureReportLatencyMeanMicros() {
+    return featureReportLatency.getMean();
+  }
+
+  @Override
+  public long getFeatureReportLatencyP99Micros() {
+    return featureReportLatency.getPercentile(99);
+  }
+
+  @Override
+  public long getFeatureReportLatencyMaxMicros() {
+    return featureReportLatency.getMax();
+  }
+
+}
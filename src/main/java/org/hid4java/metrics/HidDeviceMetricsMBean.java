@@ -0,0 +1,77 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014-2020 Gary Rowe
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package org.hid4java.metrics;
+
+/**
+ * JMX view of {@link HidDeviceMetrics} (latencies are in microseconds)
+ *
+ * @since 0.8.0
+ */
+public interface HidDeviceMetricsMBean {
+
+  String getPath();
+
+  long getInputReports();
+
+  long getInputBytes();
+
+  long getOutputReports();
+
+  long getOutputBytes();
+
+  long getReadTimeouts();
+
+  long getErrors();
+
+  long getOpenCount();
+
+  long getCloseCount();
+
+  long getReadCount();
+
+  double getReadLatencyMeanMicros();
+
+  long getReadLatencyP99Micros();
+
+  long getReadLatencyMaxMicros();
+
+  long getWriteCount();
+
+  double getWriteLatencyMeanMicros();
+
+  long getWriteLatencyP99Micros();
+
+  long getWriteLatencyMaxMicros();
+
+  long getFeatureReportCount();
+
+  double getFeatureReportLatencyMeanMicros();
+
+  long getFeatureReportLatencyP99Micros();
+
+  long getFeatureReportLatencyMaxMicros();
+
+}
@@ -0,0 +1,173 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014-2020 Gary Rowe
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package org.hid4java.metrics;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Holds the metrics for one {@link org.hid4java.HidServices} to provide the following:
+ * <ul>
+ * <li>One {@link HidDeviceMetrics} per attached device path</li>
+ * <li>Optional registration as platform MBeans under the <code>org.hid4java</code> domain</li>
+ * </ul>
+ *
+ * MBeans are named <code>org.hid4java:type=HidServices,id=N</code> and
+ * <code>org.hid4java:type=HidDevice,services=N,path="..."</code> where N distinguishes
+ * several services in one JVM.
+ *
+ * @since 0.8.0
+ */
+public class HidMetricsRegistry {
+
+  public static final String DOMAIN = "org.hid4java";
+
+  private static final AtomicInteger nextId = new AtomicInteger(1);
+
+  private final int id = nextId.getAndIncrement();
+  private final HidServicesMetrics servicesMetrics;
+  private final boolean jmxEnabled;
+
+  private final ConcurrentMap<String, HidDeviceMetrics> deviceMetrics = new ConcurrentHashMap<>();
+
+  /**
+   * @param servicesMetrics The manager level metrics
+   * @param jmxEnabled      True if the metrics should be registered as platform MBeans
+   */
+  public HidMetricsRegistry(HidServicesMetrics servicesMetrics, boolean jmxEnabled) {
+    this.servicesMetrics = servicesMetrics;
+    this.jmxEnabled = jmxEnabled;
+    register(servicesObjectName(), servicesMetrics);
+  }
+
+  public HidServicesMetrics getServicesMetrics() {
+    return servicesMetrics;
+  }
+
+  /**
+   * @param path The device path
+   *
+   * @return The metrics for the path (created if necessary but only registered once attached)
+   */
+  public HidDeviceMetrics getDeviceMetrics(String path) {
+    HidDeviceMetrics metrics = deviceMetrics.get(path);
+    if (metrics == null) {
+      HidDeviceMetrics created = new HidDeviceMetrics(path);
+      metrics = deviceMetrics.putIfAbsent(path, created);
+      if (metrics == null) {
+        metrics = created;
+      }
+    }
+    return metrics;
+  }
+
+  /**
+   * @param path The path of a newly attached device
+   */
+  public void attached(String path) {
+    servicesMetrics.recordAttach();
+    register(deviceObjectName(path), getDeviceMetrics(path));
+  }
+
+  /**
+   * Forget the metrics for the path so that churning device paths do not accumulate
+   *
+   * @param path The path of a detached device
+   */
+  public void detached(String path) {
+    servicesMetrics.recordDetach();
+    deviceMetrics.remove(path);
+    unregister(deviceObjectName(path));
+  }
+
+  /**
+   * Unregister all MBeans (the metrics remain available directly)
+   */
+  public void close() {
+    for (String path : deviceMetrics.keySet()) {
+      unregister(deviceObjectName(path));
+    }
+    unregister(servicesObjectName());
+  }
+
+  /**
+   * @return The name of the manager level MBean
+   */
+  public ObjectName servicesObjectName() {
+    return objectName(DOMAIN + ":type=HidServices,id=" + id);
+  }
+
+  /**
+   * @param path The device path
+   *
+   * @return The name of the device MBean
+   */
+  public ObjectName deviceObjectName(String path) {
+    return objectName(DOMAIN + ":type=HidDevice,services=" + id + ",path=" + ObjectName.quote(path));
+  }
+
+  private static ObjectName objectName(String name) {
+    try {
+      return new ObjectName(name);
+    } catch (JMException e) {
+      throw new IllegalArgumentException("Invalid MBean name: " + name, e);
+    }
+  }
+
+  private void register(ObjectName name, Object mbean) {
+    if (!jmxEnabled) {
+      return;
+    }
+    MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    try {
+      if (!server.isRegistered(name)) {
+        server.registerMBean(mbean, name);
+      }
+    } catch (JMException e) {
+      // Monitoring must never interfere with device access
+    }
+  }
+
+  private void unregister(ObjectName name) {
+    if (!jmxEnabled) {
+      return;
+    }
+    MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    try {
+      if (server.isRegistered(name)) {
+        server.unregisterMBean(name);
+      }
+    } catch (JMException e) {
+      // Monitoring must never interfere with device access
+    }
+  }
+
+}
@@ -0,0 +1,144 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014-2020 Gary Rowe
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package org.hid4java.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntSupplier;
+import java.util.function.LongSupplier;
+
+/**
+ * Manager level metrics to provide the following to monitoring:
+ * <ul>
+ * <li>Enumeration scan count and duration</li>
+ * <li>Devices currently attached and attach/detach counts</li>
+ * <li>Events waiting for delivery to listeners</li>
+ * </ul>
+ *
+ * @since 0.8.0
+ */
+public class HidServicesMetrics implements HidServicesMetricsMBean {
+
+  /**
+   * Scan durations are held in microseconds up to one minute
+   */
+  private static final long HIGHEST_SCAN_MICROS = 60_000_000L;
+
+  private final IntSupplier attachedDeviceCount;
+  private final IntSupplier eventQueueDepth;
+  private final LongSupplier droppedEventCount;
+  private final LongSupplier coalescedEventCount;
+
+  private final LatencyHistogram scanDuration = new LatencyHistogram(HIGHEST_SCAN_MICROS);
+  private final LongAdder deviceAttachCount = new LongAdder();
+  private final LongAdder deviceDetachCount = new LongAdder();
+
+  private volatile long lastScanDurationMicros = 0;
+
+  /**
+   * @param attachedDeviceCount Provides the number of devices currently attached
+   * @param eventQueueDepth     Provides the number of events waiting for delivery
+   * @param droppedEventCount   Provides the number of data events dropped by the event queue policy
+   * @param coalescedEventCount Provides the number of data events replaced by a newer one
+   */
+  public HidServicesMetrics(IntSupplier attachedDeviceCount, IntSupplier eventQueueDepth, LongSupplier droppedEventCount, LongSupplier coalescedEventCount) {
+    this.attachedDeviceCount = attachedDeviceCount;
+    this.eventQueueDepth = eventQueueDepth;
+    this.droppedEventCount = droppedEventCount;
+    this.coalescedEventCount = coalescedEventCount;
+  }
+
+  /**
+   * @param startNanos The {@link System#nanoTime()} before the scan
+   */
+  public void recordScan(long startNanos) {
+    long micros = (System.nanoTime() - startNanos) / 1000;
+    scanDuration.record(micros);
+    lastScanDurationMicros = micros;
+  }
+
+  public void recordAttach() {
+    deviceAttachCount.increment();
+  }
+
+  public void recordDetach() {
+    deviceDetachCount.increment();
+  }
+
+  public LatencyHistogram getScanDuration() {
+    return scanDuration;
+  }
+
+  @Override
+  public long getScanCount() {
+    return scanDuration.getCount();
+  }
+
+  @Override
+  public long getLastScanDurationMicros() {
+    return lastScanDurationMicros;
+  }
+
+  @Override
+  public double getScanDurationMeanMicros() {
+    return scanDuration.getMean();
+  }
+
+  @Override
+  public long getScanDurationMaxMicros() {
+    return scanDuration.getMax();
+  }
+
+  @Override
+  public int getAttachedDeviceCount() {
+    return attachedDeviceCount.getAsInt();
+  }
+
+  @Override
+  public long getDeviceAttachCount() {
+    return deviceAttachCount.sum();
+  }
+
+  @Override
+  public long getDeviceDetachCount() {
+    return deviceDetachCount.sum();
+  }
+
+  @Override
+  public int getEventQueueDepth() {
+    return eventQueueDepth.getAsInt();
+  }
+
+  @Override
+  public long getDroppedEventCount() {
+    return droppedEventCount.getAsLong();
+  }
+
+  @Override
+  public long getCoalescedEventCount() {
+    return coalescedEventCount.getAsLong();
+  }
+
+}
@@ -0,0 +1,147 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014-2020 Gary Rowe
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package org.hid4java.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock free log-linear histogram to provide the following to metrics:
+ * <ul>
+ * <li>Recording from any number of threads without locking or allocation</li>
+ * <li>Percentiles within about 6% (16 buckets per power of two)</li>
+ * <li>Exact count, mean and maximum</li>
+ * </ul>
+ *
+ * Values are in whatever unit the caller chooses. Values above the highest trackable value are counted in
+ * the last bucket but still reach the maximum exactly.
+ *
+ * @since 0.8.0
+ */
+public class LatencyHistogram {
+
+  private static final int SUB_BUCKET_BITS = 4;
+  private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+  private final long highestTrackableValue;
+  private final AtomicLongArray buckets;
+  private final LongAdder count = new LongAdder();
+  private final LongAdder sum = new LongAdder();
+  private final AtomicLong max = new AtomicLong();
+
+  /**
+   * @param highestTrackableValue The highest value that is bucketed precisely (e.g. one hour in microseconds)
+   */
+  public LatencyHistogram(long highestTrackableValue) {
+    if (highestTrackableValue < 1) {
+      throw new IllegalArgumentException("'highestTrackableValue' must be greater than zero.");
+    }
+    this.highestTrackableValue = highestTrackableValue;
+    this.buckets = new AtomicLongArray(index(highestTrackableValue) + 1);
+  }
+
+  /**
+   * @param value The value to record (negative values are recorded as zero)
+   */
+  public void record(long value) {
+    if (value < 0) {
+      value = 0;
+    }
+    buckets.incrementAndGet(index(Math.min(value, highestTrackableValue)));
+    count.increment();
+    sum.add(value);
+    long current;
+    while (value > (current = max.get()) && !max.compareAndSet(current, value)) {
+      // Retry until the maximum is at least this value
+    }
+  }
+
+  static int index(long value) {
+    if (value < 2 * SUB_BUCKETS) {
+      return (int) value;
+    }
+    int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+    return shift * SUB_BUCKETS + (int) (value >>> shift);
+  }
+
+  /**
+   * @return The highest value that maps to the bucket
+   */
+  static long highestValue(int index) {
+    if (index < 2 * SUB_BUCKETS) {
+      return index;
+    }
+    int shift = index / SUB_BUCKETS - 1;
+    long mantissa = index - (long) shift * SUB_BUCKETS;
+    return ((mantissa + 1) << shift) - 1;
+  }
+
+  public long getCount() {
+    return count.sum();
+  }
+
+  /**
+   * @return The mean of all recorded values or zero if nothing was recorded
+   */
+  public double getMean() {
+    long total = count.sum();
+    return total == 0 ? 0 : (double) sum.sum() / total;
+  }
+
+  public long getMax() {
+    return max.get();
+  }
+
+  /**
+   * @param percentile The percentile (0 to 100)
+   *
+   * @return The value at the percentile (never more than the maximum) or zero if nothing was recorded
+   */
+  public long getPercentile(double percentile) {
+    if (percentile < 0 || percentile > 100) {
+      throw new IllegalArgumentException("'percentile' must be between 0 and 100.");
+    }
+    long total = 0;
+    for (int i = 0; i < buckets.length(); i++) {
+      total += buckets.get(i);
+    }
+    if (total == 0) {
+      return 0;
+    }
+    long target = Math.max(1, (long) Math.ceil(total * percentile / 100));
+    long seen = 0;
+    for (int i = 0; i < buckets.length(); i++) {
+      seen += buckets.get(i);
+      if (seen >= target) {
+        // The last bucket also holds everything beyond the trackable range
+        return i == buckets.length() - 1 ? max.get() : Math.min(highestValue(i), max.get());
+      }
+    }
+    return max.get();
+  }
+
+}
@@ -0,0 +1,550 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014-2020 Gary Rowe
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package org.hid4java.simulated;
+
+import com.sun.jna.Pointer;
+import com.sun.jna.WString;
+import org.hid4java.jna.HidApiLibrary;
+import org.hid4java.jna.HidDeviceInfoStructure;
+import org.hid4java.jna.JavaHidApiSupport;
+import org.hid4java.jna.WideStringBuffer;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * In-process backend to provide the following to load and stress testing:
+ * <ul>
+ * <li>Any number of identical virtual devices without USB hardware</li>
+ * <li>Input reports generated at a configurable rate per open device</li>
+ * <li>Configurable write latency and random read/write error injection</li>
+ * <li>Hotplug churn where devices detach and reattach in turn</li>
+ * </ul>
+ *
+ * Install with {@link org.hid4java.HidServicesSpecification#setHidApiLibrary(HidApiLibrary)} or by name
+ * ({@value SimulatedHidApiLibraryProvider#NAME}) with {@link org.hid4java.HidServicesSpecification#setBackendName(String)}.
+ *
+ * Input reports are generated lazily from the time since the device was opened so no threads are
+ * involved. Like a real device only {@value #MAX_QUEUED_REPORTS} unread reports are buffered and the
+ * oldest are dropped beyond that (see {@link #getDroppedReportCount()}). Each report carries a 4 byte big
+ * endian sequence number followed by the device index. Reports of at least {@value #TIMESTAMPED_REPORT_LENGTH}
+ * bytes also carry the big endian {@link System#nanoTime()} at which the report arrived at the device so
+ * that delivery latency can be measured.
+ *
+ * With hotplug churn enabled device {@code i} detaches at {@code i} hotplug intervals into every cycle of
+ * {@code deviceCount} intervals and reattaches after the downtime. Handles opened before a detach fail
+ * from then on and the device must be opened again.
+ *
+ * @since 0.8.0
+ */
+public class SimulatedHidApiLibrary implements HidApiLibrary {
+
+  /**
+   * The vendor ID of every simulated device (pid.codes test VID)
+   */
+  public static final int VENDOR_ID = 0x1209;
+
+  /**
+   * The product ID of every simulated device
+   */
+  public static final int PRODUCT_ID = 0x0001;
+
+  /**
+   * The number of unread input reports buffered per open device
+   */
+  public static final int MAX_QUEUED_REPORTS = 64;
+
+  /**
+   * The minimum input report length that includes the arrival time
+   */
+  public static final int TIMESTAMPED_REPORT_LENGTH = 13;
+
+  private static final String PATH_PREFIX = "simulated-";
+
+  private final int deviceCount;
+
+  private volatile double inputReportRate = 100;
+  private volatile int inputReportLength = 64;
+  private volatile long writeLatencyNanos = 0;
+  private volatile double errorRate = 0;
+  private volatile long hotplugIntervalNanos = 0;
+  private volatile long hotplugDowntimeNanos = 0;
+
+  private final JavaHidApiSupport<Handle> handles = new JavaHidApiSupport<>();
+  private final AtomicLong droppedReportCount = new AtomicLong();
+
+  private volatile long startNanos = System.nanoTime();
+
+  /**
+   * @param deviceCount The number of virtual devices
+   */
+  public SimulatedHidApiLibrary(int deviceCount) {
+    if (deviceCount < 0) {
+      throw new IllegalArgumentException("'deviceCount' must be greater than or equal to zero.");
+    }
+    this.deviceCount = deviceCount;
+  }
+
+  public int getDeviceCount() {
+    return deviceCount;
+  }
+
+  public double getInputReportRate() {
+    return inputReportRate;
+  }
+
+  /**
+   * @param inputReportRate The number of input reports per second generated by each open device (zero for none)
+   */
+  public void setInputReportRate(double inputReportRate) {
+    if (inputReportRate < 0) {
+      throw new IllegalArgumentException("'inputReportRate' must be greater than or equal to zero.");
+    }
+    this.inputReportRate = inputReportRate;
+  }
+
+  public int getInputReportLength() {
+    return inputReportLength;
+  }
+
+  /**
+   * @param inputReportLength The length of each input report in bytes (at least 5)
+   */
+  public void setInputReportLength(int inputReportLength) {
+    if (inputReportLength < 5) {
+      throw new IllegalArgumentException("'inputReportLength' must be at least 5.");
+    }
+    this.inputReportLength = inputReportLength;
+  }
+
+  public int getWriteLatencyMicros() {
+    return (int) TimeUnit.NANOSECONDS.toMicros(writeLatencyNanos);
+  }
+
+  /**
+   * @param writeLatencyMicros The time in microseconds taken by each output or feature report write
+   */
+  public void setWriteLatencyMicros(int writeLatencyMicros) {
+    if (writeLatencyMicros < 0) {
+      throw new IllegalArgumentException("'writeLatencyMicros' must be greater than or equal to zero.");
+    }
+    this.writeLatencyNanos = TimeUnit.MICROSECONDS.toNanos(writeLatencyMicros);
+  }
+
+  public double getErrorRate() {
+    return errorRate;
+  }
+
+  /**
+   * @param errorRate The probability (0 to 1) that any read or write fails
+   */
+  public void setErrorRate(double errorRate) {
+    if (errorRate < 0 || errorRate > 1) {
+      throw new IllegalArgumentException("'errorRate' must be between 0 and 1.");
+    }
+    this.errorRate = errorRate;
+  }
+
+  /**
+   * @param intervalMillis The interval in milliseconds between successive device detaches (zero for no churn)
+   * @param downtimeMillis The time in milliseconds a device remains detached (less than the interval)
+   */
+  public void setHotplugChurn(int intervalMillis, int downtimeMillis) {
+    if (intervalMillis < 0) {
+      throw new IllegalArgumentException("'intervalMillis' must be greater than or equal to zero.");
+    }
+    if (downtimeMillis < 0 || (intervalMillis > 0 && downtimeMillis >= intervalMillis)) {
+      throw new IllegalArgumentException("'downtimeMillis' must be greater than or equal to zero and less than 'intervalMillis'.");
+    }
+    this.hotplugIntervalNanos = TimeUnit.MILLISECONDS.toNanos(intervalMillis);
+    this.hotplugDowntimeNanos = TimeUnit.MILLISECONDS.toNanos(downtimeMillis);
+  }
+
+  /**
+   * @return The number of input reports discarded because they were not read in time
+   */
+  public long getDroppedReportCount() {
+    return droppedReportCount.get();
+  }
+
+  /**
+   * @param index The device index
+   * @return The device path
+   */
+  public static String path(int index) {
+    return PATH_PREFIX + index;
+  }
+
+  @Override
+  public void hid_init() {
+    startNanos = System.nanoTime();
+  }
+
+  @Override
+  public void hid_exit() {
+    handles.removeAll();
+  }
+
+  @Override
+  public Pointer hid_open(short vendor_id, short product_id, WString serial_number) {
+    if (!matches(vendor_id, product_id)) {
+      return null;
+    }
+    for (int i = 0; i < deviceCount; i++) {
+      if (serial_number == null || serialNumber(i).equals(serial_number.toString())) {
+        return hid_open_path(path(i));
+      }
+    }
+    return null;
+  }
+
+  @Override
+  public Pointer hid_open_path(String path) {
+    int index = indexOf(path);
+    long now = System.nanoTime();
+    if (index < 0 || !isAttached(index, now)) {
+      return null;
+    }
+    return handles.add(new Handle(index, now, nextDetach(index, now), inputReportRate));
+  }
+
+  @Override
+  public void hid_close(Pointer device) {
+    handles.remove(device);
+  }
+
+  @Override
+  public Pointer hid_error(Pointer device) {
+    Handle handle = handles.get(device);
+    String message = handle == null ? "Device not open" : handle.error;
+    return JavaHidApiSupport.errorString(message);
+  }
+
+  @Override
+  public int hid_read(Pointer device, WideStringBuffer.ByReference bytes, int length) {
+    Handle handle = handles.get(device);
+    return handle == null ? -1 : read(handle, (WideStringBuffer) bytes, length, handle.nonBlocking ? 0 : -1);
+  }
+
+  @Override
+  public int hid_read_timeout(Pointer device, WideStringBuffer.ByReference bytes, int length, int timeout) {
+    Handle handle = handles.get(device);
+    return handle == null ? -1 : read(handle, (WideStringBuffer) bytes, length, timeout);
+  }
+
+  @Override
+  public int hid_write(Pointer device, WideStringBuffer.ByReference data, int len) {
+    return write(device, len);
+  }
+
+  @Override
+  public int hid_write(Pointer device, Pointer data, int len) {
+    return write(device, len);
+  }
+
+  @Override
+  public int hid_get_feature_report(Pointer device, WideStringBuffer.ByReference data, int length) {
+    Handle handle = handles.get(device);
+    if (handle == null || fails(handle)) {
+      return -1;
+    }
+    // Answer with the last feature report sent with the same ID (zeros if none)
+    byte[] buffer = ((WideStringBuffer) data).buffer;
+    int count = Math.min(length, buffer.length);
+    byte[] report;
+    synchronized (handle) {
+      report = handle.featureReports.get(buffer[0]);
+    }
+    for (int i = 1; i < count; i++) {
+      buffer[i] = report != null && i < report.length ? report[i] : 0;
+    }
+    return count;
+  }
+
+  @Override
+  public int hid_send_feature_report(Pointer device, WideStringBuffer.ByReference data, int length) {
+    Handle handle = handles.get(device);
+    int result = write(device, length);
+    if (result >= 0) {
+      byte[] buffer = ((WideStringBuffer) data).buffer;
+      synchronized (handle) {
+        handle.featureReports.put(buffer[0], buffer.clone());
+      }
+    }
+    return result;
+  }
+
+  @Override
+  public int hid_get_indexed_string(Pointer device, int idx, WideStringBuffer.ByReference string, int len) {
+    return -1;
+  }
+
+  @Override
+  public int hid_get_manufacturer_string(Pointer device, WideStringBuffer.ByReference str, int len) {
+    return putString(device, (WideStringBuffer) str, "hid4java");
+  }
+
+  @Override
+  public int hid_get_product_string(Pointer device, WideStringBuffer.ByReference str, int len) {
+    return putString(device, (WideStringBuffer) str, "Simulated Device");
+  }
+
+  @Override
+  public int hid_get_serial_number_string(Pointer device, WideStringBuffer.ByReference str, int len) {
+    Handle handle = handles.get(device);
+    return handle == null ? -1 : putString(device, (WideStringBuffer) str, serialNumber(handle.index));
+  }
+
+  @Override
+  public int hid_set_nonblocking(Pointer device, int nonblock) {
+    Handle handle = handles.get(device);
+    if (handle == null) {
+      return -1;
+    }
+    handle.nonBlocking = nonblock != 0;
+    return 0;
+  }
+
+  @Override
+  public HidDeviceInfoStructure hid_enumerate(short vendor_id, short product_id) {
+
+    if (!matches(vendor_id, product_id)) {
+      return null;
+    }
+
+    long now = System.nanoTime();
+    HidDeviceInfoStructure root = null;
+    HidDeviceInfoStructure last = null;
+    for (int i = 0; i < deviceCount; i++) {
+      if (isAttached(i, now)) {
+        HidDeviceInfoStructure structure = new HidDeviceInfoStructure();
+        structure.path = path(i);
+        structure.vendor_id = (short) VENDOR_ID;
+        structure.product_id = (short) PRODUCT_ID;
+        structure.serial_number = new WString(serialNumber(i));
+        structure.release_number = 0x0100;
+        structure.manufacturer_string = new WString("hid4java");
+        structure.product_string = new WString("Simulated Device");
+        structure.usage_page = (short) 0xff00;
+        structure.usage = 0x01;
+        structure.interface_number = 0;
+        if (root == null) {
+          root = structure;
+        } else {
+          last.next = structure;
+        }
+        last = structure;
+      }
+    }
+    return root;
+  }
+
+  @Override
+  public void hid_free_enumeration(Pointer devs) {
+    // Nothing to free
+  }
+
+  @Override
+  public String hid_version_str() {
+    return "simulated";
+  }
+
+  private int read(Handle handle, WideStringBuffer bytes, int length, int timeoutMillis) {
+
+    long deadline = timeoutMillis < 0 ? Long.MAX_VALUE : System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+
+    synchronized (handle) {
+      if (fails(handle)) {
+        return -1;
+      }
+
+      long due = Long.MAX_VALUE;
+      if (handle.intervalNanos > 0) {
+        long now = System.nanoTime();
+        long generated = (now - handle.openNanos) / handle.intervalNanos;
+        long backlog = generated - handle.sequence;
+        if (backlog > MAX_QUEUED_REPORTS) {
+          // The device buffer overflowed so the oldest reports are lost
+          droppedReportCount.addAndGet(backlog - MAX_QUEUED_REPORTS);
+          handle.sequence += backlog - MAX_QUEUED_REPORTS;
+        }
+        due = handle.openNanos + (handle.sequence + 1) * handle.intervalNanos;
+      }
+
+      // Wait for the next report, a detach or the timeout
+      long target = Math.min(due, handle.endNanos);
+      if (!JavaHidApiSupport.await(target, deadline)) {
+        return 0;
+      }
+      if (System.nanoTime() - handle.endNanos >= 0 && handle.endNanos != Long.MAX_VALUE) {
+        handle.error = "Device detached";
+        return -1;
+      }
+
+      handle.sequence++;
+      int count = Math.min(inputReportLength, Math.min(length, bytes.buffer.length));
+      byte[] buffer = bytes.buffer;
+      for (int i = 0; i < count; i++) {
+        buffer[i] = 0;
+      }
+      // Short reports carry as much of the sequence number and index as fits
+      byte[] header = new byte[]{
+        (byte) (handle.sequence >> 24),
+        (byte) (handle.sequence >> 16),
+        (byte) (handle.sequence >> 8),
+        (byte) handle.sequence,
+        (byte) handle.index
+      };
+      System.arraycopy(header, 0, buffer, 0, Math.min(count, header.length));
+      if (count >= TIMESTAMPED_REPORT_LENGTH) {
+        long arrival = handle.openNanos + handle.sequence * handle.intervalNanos;
+        for (int i = 0; i < 8; i++) {
+          buffer[5 + i] = (byte) (arrival >> (56 - 8 * i));
+        }
+      }
+      return count;
+    }
+  }
+
+  private int write(Pointer device, int length) {
+    Handle handle = handles.get(device);
+    if (handle == null || fails(handle)) {
+      return -1;
+    }
+    long deadline = System.nanoTime() + writeLatencyNanos;
+    long remaining;
+    while ((remaining = deadline - System.nanoTime()) > 0) {
+      LockSupport.parkNanos(remaining);
+    }
+    return length;
+  }
+
+  /**
+   * @return True (with the handle error set) if the device has detached or an error is injected
+   */
+  private boolean fails(Handle handle) {
+    if (handle.endNanos != Long.MAX_VALUE && System.nanoTime() - handle.endNanos >= 0) {
+      handle.error = "Device detached";
+      return true;
+    }
+    if (errorRate > 0 && ThreadLocalRandom.current().nextDouble() < errorRate) {
+      handle.error = "Simulated error";
+      return true;
+    }
+    return false;
+  }
+
+  private int putString(Pointer device, WideStringBuffer buffer, String value) {
+    if (handles.get(device) == null) {
+      return -1;
+    }
+    buffer.setString(value);
+    return 0;
+  }
+
+  /**
+   * @param index The device index
+   * @param now   The {@link System#nanoTime()}
+   * @return True if the device is attached
+   */
+  private boolean isAttached(int index, long now) {
+    long interval = hotplugIntervalNanos;
+    if (interval == 0) {
+      return true;
+    }
+    long phase = Math.floorMod(now - startNanos, interval * deviceCount);
+    long detachAt = index * interval;
+    return phase < detachAt || phase >= detachAt + hotplugDowntimeNanos;
+  }
+
+  /**
+   * @param index The device index
+   * @param now   The {@link System#nanoTime()}
+   * @return The {@link System#nanoTime()} of the next detach or {@link Long#MAX_VALUE} if there is no churn
+   */
+  private long nextDetach(int index, long now) {
+    long interval = hotplugIntervalNanos;
+    if (interval == 0 || hotplugDowntimeNanos == 0) {
+      return Long.MAX_VALUE;
+    }
+    long cycle = interval * deviceCount;
+    long elapsed = now - startNanos;
+    long detach = elapsed - Math.floorMod(elapsed, cycle) + index * interval;
+    if (detach <= elapsed) {
+      detach += cycle;
+    }
+    return startNanos + detach;
+  }
+
+  private static boolean matches(short vendorId, short productId) {
+    int vendor = vendorId & 0xffff;
+    int product = productId & 0xffff;
+    return (vendor == 0 || vendor == VENDOR_ID) && (product == 0 || product == PRODUCT_ID);
+  }
+
+  private int indexOf(String path) {
+    if (path == null || !path.startsWith(PATH_PREFIX)) {
+      return -1;
+    }
+    try {
+      int index = Integer.parseInt(path.substring(PATH_PREFIX.length()));
+      return index >= 0 && index < deviceCount ? index : -1;
+    } catch (NumberFormatException e) {
+      return -1;
+    }
+  }
+
+  private static String serialNumber(int index) {
+    return String.format("SIM%05d", index);
+  }
+
+  /**
+   * An open device
+   */
+  private static class Handle {
+
+    private final int index;
+    private final long openNanos;
+    private final long endNanos;
+    private final long intervalNanos;
+    private final Map<Byte, byte[]> featureReports = new HashMap<>();
+    private long sequence = 0;
+    private volatile boolean nonBlocking = false;
+    private volatile String error = null;
+
+    private Handle(int index, long openNanos, long endNanos, double inputReportRate) {
+      this.index = index;
+      this.openNanos = openNanos;
+      this.endNanos = endNanos;
+      this.intervalNanos = inputReportRate == 0 ? 0 : (long) (TimeUnit.SECONDS.toNanos(1) / inputReportRate);
+    }
+  }
+
+}
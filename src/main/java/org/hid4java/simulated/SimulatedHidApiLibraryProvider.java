@@ -0,0 +1,72 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014-2020 Gary Rowe
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package org.hid4java.simulated;
+
+import org.hid4java.jna.HidApiLibrary;
+import org.hid4java.jna.HidApiLibraryProvider;
+
+/**
+ * Provider registering {@link SimulatedHidApiLibrary} as the {@value #NAME} backend
+ *
+ * Since services are created without arguments the simulation is configured through system properties:
+ * <ul>
+ * <li>{@code hid4java.simulated.devices} - the number of devices (default 4)</li>
+ * <li>{@code hid4java.simulated.inputReportRate} - input reports per second per open device (default 100)</li>
+ * <li>{@code hid4java.simulated.inputReportLength} - input report length in bytes (default 64)</li>
+ * <li>{@code hid4java.simulated.writeLatencyMicros} - write latency in microseconds (default 0)</li>
+ * <li>{@code hid4java.simulated.errorRate} - probability of a read or write failing (default 0)</li>
+ * <li>{@code hid4java.simulated.hotplugIntervalMillis} - interval between detaches (default 0 for none)</li>
+ * <li>{@code hid4java.simulated.hotplugDowntimeMillis} - time a device stays detached (default 0)</li>
+ * </ul>
+ *
+ * @since 0.8.0
+ */
+public class SimulatedHidApiLibraryProvider implements HidApiLibraryProvider {
+
+  public static final String NAME = "simulated";
+
+  private static final String PROPERTY_PREFIX = "hid4java.simulated.";
+
+  @Override
+  public String getName() {
+    return NAME;
+  }
+
+  @Override
+  public HidApiLibrary create() {
+    SimulatedHidApiLibrary library = new SimulatedHidApiLibrary(Integer.getInteger(PROPERTY_PREFIX + "devices", 4));
+    library.setInputReportRate(Double.parseDouble(System.getProperty(PROPERTY_PREFIX + "inputReportRate", "100")));
+    library.setInputReportLength(Integer.getInteger(PROPERTY_PREFIX + "inputReportLength", 64));
+    library.setWriteLatencyMicros(Integer.getInteger(PROPERTY_PREFIX + "writeLatencyMicros", 0));
+    library.setErrorRate(Double.parseDouble(System.getProperty(PROPERTY_PREFIX + "errorRate", "0")));
+    library.setHotplugChurn(
+      Integer.getInteger(PROPERTY_PREFIX + "hotplugIntervalMillis", 0),
+      Integer.getInteger(PROPERTY_PREFIX + "hotplugDowntimeMillis", 0)
+    );
+    return library;
+  }
+
+}
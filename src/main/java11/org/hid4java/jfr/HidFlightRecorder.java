@@ -0,0 +1,157 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014-2020 Gary Rowe
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package org.hid4java.jfr;
+
+/**
+ * Flight recorder hooks for Java 11 and later emitting JDK Flight Recorder events
+ *
+ * See the Java 8 version for the contract. Events are only allocated while enabled in the
+ * active recording and are committed only if they pass the recording's duration threshold.
+ *
+ * @since 0.8.0
+ */
+public final class HidFlightRecorder {
+
+  public static final String READ = "read";
+  public static final String READ_TIMEOUT = "read_timeout";
+  public static final String WRITE = "write";
+  public static final String GET_FEATURE_REPORT = "get_feature_report";
+  public static final String SEND_FEATURE_REPORT = "send_feature_report";
+
+  private HidFlightRecorder() {
+  }
+
+  public static Object beginIo() {
+    HidIoEvent event = new HidIoEvent();
+    if (!event.isEnabled()) {
+      return null;
+    }
+    event.begin();
+    return event;
+  }
+
+  public static void endIo(Object token, String operation, String path, int requestedBytes, int result) {
+    if (token == null) {
+      return;
+    }
+    HidIoEvent event = (HidIoEvent) token;
+    event.end();
+    if (event.shouldCommit()) {
+      event.operation = operation;
+      event.path = path;
+      event.requestedBytes = requestedBytes;
+      event.result = result;
+      event.commit();
+    }
+  }
+
+  public static Object beginOpen() {
+    HidOpenEvent event = new HidOpenEvent();
+    if (!event.isEnabled()) {
+      return null;
+    }
+    event.begin();
+    return event;
+  }
+
+  public static void endOpen(Object token, String path, boolean success) {
+    if (token == null) {
+      return;
+    }
+    HidOpenEvent event = (HidOpenEvent) token;
+    event.end();
+    if (event.shouldCommit()) {
+      event.path = path;
+      event.success = success;
+      event.commit();
+    }
+  }
+
+  public static Object beginScan() {
+    HidScanEvent event = new HidScanEvent();
+    if (!event.isEnabled()) {
+      return null;
+    }
+    event.begin();
+    return event;
+  }
+
+  public static void endScan(Object token, int deviceCount, int attached, int detached) {
+    if (token == null) {
+      return;
+    }
+    HidScanEvent event = (HidScanEvent) token;
+    event.end();
+    if (event.shouldCommit()) {
+      event.deviceCount = deviceCount;
+      event.attached = attached;
+      event.detached = detached;
+      event.commit();
+    }
+  }
+
+  public static boolean isDispatchQueuedEnabled() {
+    return new HidDispatchQueuedEvent().isEnabled();
+  }
+
+  public static long dispatchQueued(String eventType, String path, int bytes, int queueDepth) {
+    HidDispatchQueuedEvent event = new HidDispatchQueuedEvent();
+    if (event.shouldCommit()) {
+      event.eventType = eventType;
+      event.path = path;
+      event.bytes = bytes;
+      event.queueDepth = queueDepth;
+      event.commit();
+    }
+    return System.nanoTime();
+  }
+
+  public static Object beginDispatch() {
+    HidDispatchEvent event = new HidDispatchEvent();
+    if (!event.isEnabled()) {
+      return null;
+    }
+    event.begin();
+    return event;
+  }
+
+  public static void endDispatch(Object token, String eventType, String path, int bytes, int listenerCount, long queuedNanos) {
+    if (token == null) {
+      return;
+    }
+    HidDispatchEvent event = (HidDispatchEvent) token;
+    event.end();
+    if (event.shouldCommit()) {
+      event.eventType = eventType;
+      event.path = path;
+      event.bytes = bytes;
+      event.listenerCount = listenerCount;
+      event.queueTime = queuedNanos == 0 ? 0 : System.nanoTime() - queuedNanos;
+      event.commit();
+    }
+  }
+
+}
@@ -0,0 +1,415 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014-2020 Gary Rowe
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package org.hid4java.ffm;
+
+import com.sun.jna.Function;
+import com.sun.jna.Library;
+import com.sun.jna.NativeLibrary;
+import com.sun.jna.Pointer;
+import com.sun.jna.WString;
+import org.hid4java.HidException;
+import org.hid4java.jna.HidApiLibrary;
+import org.hid4java.jna.HidDeviceInfoStructure;
+import org.hid4java.jna.WideStringBuffer;
+
+import java.lang.foreign.Arena;
+import java.lang.foreign.FunctionDescriptor;
+import java.lang.foreign.Linker;
+import java.lang.foreign.MemoryLayout;
+import java.lang.foreign.MemorySegment;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Proxy;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static java.lang.foreign.ValueLayout.ADDRESS;
+import static java.lang.foreign.ValueLayout.JAVA_BYTE;
+import static java.lang.foreign.ValueLayout.JAVA_INT;
+
+/**
+ * HID API library to provide the following to {@link org.hid4java.jna.HidApi} on Java 22 and later:
+ * <ul>
+ * <li>Input, output and feature reports through downcall handles bound to the hidapi functions</li>
+ * <li>Per device report segments allocated once and reused until the device is closed</li>
+ * </ul>
+ *
+ * The downcall handles target the functions of the library already loaded by JNA so device handles
+ * and library state are shared with the JNA binding, which still serves opening, enumeration,
+ * strings and errors. Each device has a shared rather than confined arena because it is read and
+ * written from different threads (e.g. the data read thread and the caller). Reads and writes use
+ * separate segments so they can proceed at the same time.
+ *
+ * @since 0.8.0
+ */
+final class ForeignHidApiLibrary implements HidApiLibrary {
+
+  /**
+   * The smallest report segment allocated for a device
+   */
+  private static final int MIN_SEGMENT_SIZE = 64;
+
+  // Report operations
+  private static final int READ = 0;
+  private static final int READ_TIMEOUT = 1;
+  private static final int GET_FEATURE_REPORT = 2;
+  private static final int WRITE = 3;
+  private static final int SEND_FEATURE_REPORT = 4;
+
+  /**
+   * hid_read, hid_write and the feature report calls after adapting size_t to int
+   */
+  private static final MethodType TRANSFER_TYPE = MethodType.methodType(int.class, MemorySegment.class, MemorySegment.class, int.class);
+
+  /**
+   * hid_read_timeout after adapting size_t to int
+   */
+  private static final MethodType TRANSFER_TIMEOUT_TYPE = MethodType.methodType(int.class, MemorySegment.class, MemorySegment.class, int.class, int.class);
+
+  private final HidApiLibrary delegate;
+
+  private final MethodHandle hidRead;
+  private final MethodHandle hidReadTimeout;
+  private final MethodHandle hidWrite;
+  private final MethodHandle hidGetFeatureReport;
+  private final MethodHandle hidSendFeatureReport;
+
+  /**
+   * Report segments keyed by the native device handle
+   */
+  private final Map<Long, DeviceSegments> deviceSegments = new ConcurrentHashMap<>();
+
+  /**
+   * @param delegate The JNA binding of a hidapi native library
+   */
+  ForeignHidApiLibrary(HidApiLibrary delegate) {
+
+    if (!Proxy.isProxyClass(delegate.getClass()) || !(Proxy.getInvocationHandler(delegate) instanceof Library.Handler)) {
+      throw new IllegalArgumentException("'library' must be a JNA binding of hidapi.");
+    }
+    this.delegate = delegate;
+
+    NativeLibrary nativeLibrary = ((Library.Handler) Proxy.getInvocationHandler(delegate)).getNativeLibrary();
+    Linker linker = Linker.nativeLinker();
+    MemoryLayout sizeT = linker.canonicalLayouts().get("size_t");
+    FunctionDescriptor transfer = FunctionDescriptor.of(JAVA_INT, ADDRESS, ADDRESS, sizeT);
+
+    hidRead = downcall(linker, nativeLibrary, "hid_read", transfer, TRANSFER_TYPE);
+    hidReadTimeout = downcall(linker, nativeLibrary, "hid_read_timeout", FunctionDescriptor.of(JAVA_INT, ADDRESS, ADDRESS, sizeT, JAVA_INT), TRANSFER_TIMEOUT_TYPE);
+    hidWrite = downcall(linker, nativeLibrary, "hid_write", transfer, TRANSFER_TYPE);
+    hidGetFeatureReport = downcall(linker, nativeLibrary, "hid_get_feature_report", transfer, TRANSFER_TYPE);
+    hidSendFeatureReport = downcall(linker, nativeLibrary, "hid_send_feature_report", transfer, TRANSFER_TYPE);
+
+  }
+
+  @Override
+  public void hid_init() {
+    delegate.hid_init();
+  }
+
+  @Override
+  public void hid_exit() {
+    for (Long address : deviceSegments.keySet()) {
+      DeviceSegments segments = deviceSegments.remove(address);
+      if (segments != null) {
+        segments.close();
+      }
+    }
+    delegate.hid_exit();
+  }
+
+  @Override
+  public Pointer hid_open(short vendor_id, short product_id, WString serial_number) {
+    return delegate.hid_open(vendor_id, product_id, serial_number);
+  }
+
+  @Override
+  public void hid_close(Pointer device) {
+    DeviceSegments segments = deviceSegments.remove(Pointer.nativeValue(device));
+    delegate.hid_close(device);
+    if (segments != null) {
+      segments.close();
+    }
+  }
+
+  @Override
+  public Pointer hid_error(Pointer device) {
+    return delegate.hid_error(device);
+  }
+
+  @Override
+  public int hid_read(Pointer device, WideStringBuffer.ByReference bytes, int length) {
+    return transfer(READ, device, (WideStringBuffer) bytes, length, 0);
+  }
+
+  @Override
+  public int hid_read_timeout(Pointer device, WideStringBuffer.ByReference bytes, int length, int timeout) {
+    return transfer(READ_TIMEOUT, device, (WideStringBuffer) bytes, length, timeout);
+  }
+
+  @Override
+  public int hid_write(Pointer device, WideStringBuffer.ByReference data, int len) {
+    return transfer(WRITE, device, (WideStringBuffer) data, len, 0);
+  }
+
+  @Override
+  public int hid_write(Pointer device, Pointer data, int len) {
+    // Already in native memory so no copy is needed
+    try {
+      return (int) hidWrite.invokeExact(MemorySegment.ofAddress(Pointer.nativeValue(device)), MemorySegment.ofAddress(Pointer.nativeValue(data)), len);
+    } catch (RuntimeException | Error e) {
+      throw e;
+    } catch (Throwable t) {
+      throw new HidException("Unable to call hid_write", t);
+    }
+  }
+
+  @Override
+  public int hid_get_feature_report(Pointer device, WideStringBuffer.ByReference data, int length) {
+    return transfer(GET_FEATURE_REPORT, device, (WideStringBuffer) data, length, 0);
+  }
+
+  @Override
+  public int hid_send_feature_report(Pointer device, WideStringBuffer.ByReference data, int length) {
+    return transfer(SEND_FEATURE_REPORT, device, (WideStringBuffer) data, length, 0);
+  }
+
+  @Override
+  public int hid_get_indexed_string(Pointer device, int idx, WideStringBuffer.ByReference string, int len) {
+    return delegate.hid_get_indexed_string(device, idx, string, len);
+  }
+
+  @Override
+  public int hid_get_manufacturer_string(Pointer device, WideStringBuffer.ByReference str, int len) {
+    return delegate.hid_get_manufacturer_string(device, str, len);
+  }
+
+  @Override
+  public int hid_get_product_string(Pointer device, WideStringBuffer.ByReference str, int len) {
+    return delegate.hid_get_product_string(device, str, len);
+  }
+
+  @Override
+  public int hid_get_serial_number_string(Pointer device, WideStringBuffer.ByReference str, int len) {
+    return delegate.hid_get_serial_number_string(device, str, len);
+  }
+
+  @Override
+  public int hid_set_nonblocking(Pointer device, int nonblock) {
+    return delegate.hid_set_nonblocking(device, nonblock);
+  }
+
+  @Override
+  public HidDeviceInfoStructure hid_enumerate(short vendor_id, short product_id) {
+    return delegate.hid_enumerate(vendor_id, product_id);
+  }
+
+  @Override
+  public void hid_free_enumeration(Pointer devs) {
+    delegate.hid_free_enumeration(devs);
+  }
+
+  @Override
+  public Pointer hid_open_path(String path) {
+    return delegate.hid_open_path(path);
+  }
+
+  @Override
+  public String hid_version_str() {
+    return delegate.hid_version_str();
+  }
+
+  /**
+   * Copy a report through the device segment for the direction and call hidapi
+   *
+   * @param operation The report operation (e.g. {@link #READ})
+   * @param device    The device handle
+   * @param data      The report (the report ID is the first byte for anything other than a read)
+   * @param length    The report length
+   * @param timeout   The timeout in milliseconds for {@link #READ_TIMEOUT}
+   *
+   * @return The result of the hidapi call
+   */
+  private int transfer(int operation, Pointer device, WideStringBuffer data, int length, int timeout) {
+
+    boolean input = operation == READ || operation == READ_TIMEOUT || operation == GET_FEATURE_REPORT;
+    DeviceSegments segments = acquire(device);
+    ReentrantLock lock = input ? segments.inputLock : segments.outputLock;
+    lock.lock();
+    try {
+      MemorySegment handle = MemorySegment.ofAddress(Pointer.nativeValue(device));
+      MemorySegment segment = segments.segment(input, length);
+      if (operation != READ && operation != READ_TIMEOUT) {
+        MemorySegment.copy(data.buffer, 0, segment, JAVA_BYTE, 0, Math.min(length, data.buffer.length));
+      }
+
+      int result;
+      switch (operation) {
+        case READ:
+          result = (int) hidRead.invokeExact(handle, segment, length);
+          break;
+        case READ_TIMEOUT:
+          result = (int) hidReadTimeout.invokeExact(handle, segment, length, timeout);
+          break;
+        case GET_FEATURE_REPORT:
+          result = (int) hidGetFeatureReport.invokeExact(handle, segment, length);
+          break;
+        case WRITE:
+          result = (int) hidWrite.invokeExact(handle, segment, length);
+          break;
+        default:
+          result = (int) hidSendFeatureReport.invokeExact(handle, segment, length);
+          break;
+      }
+
+      if (input && result > 0) {
+        MemorySegment.copy(segment, JAVA_BYTE, 0, data.buffer, 0, Math.min(result, data.buffer.length));
+      }
+      return result;
+    } catch (RuntimeException | Error e) {
+      throw e;
+    } catch (Throwable t) {
+      throw new HidException("Unable to transfer report", t);
+    } finally {
+      lock.unlock();
+      segments.release();
+    }
+
+  }
+
+  /**
+   * @param device The device handle
+   *
+   * @return The segments of the device with a use registered (see {@link DeviceSegments#release()})
+   */
+  private DeviceSegments acquire(Pointer device) {
+
+    long address = Pointer.nativeValue(device);
+    while (true) {
+      DeviceSegments segments = deviceSegments.get(address);
+      if (segments == null) {
+        DeviceSegments created = new DeviceSegments();
+        segments = deviceSegments.putIfAbsent(address, created);
+        if (segments == null) {
+          segments = created;
+        } else {
+          created.close();
+        }
+      }
+      if (segments.acquire()) {
+        return segments;
+      }
+      // Closed by hid_close between the lookup and the acquire so look again
+    }
+
+  }
+
+  private static MethodHandle downcall(Linker linker, NativeLibrary nativeLibrary, String name, FunctionDescriptor descriptor, MethodType type) {
+
+    Function function;
+    try {
+      function = nativeLibrary.getFunction(name);
+    } catch (UnsatisfiedLinkError e) {
+      throw new HidException("Native library does not provide " + name, e);
+    }
+    MethodHandle handle = linker.downcallHandle(MemorySegment.ofAddress(Pointer.nativeValue(function)), descriptor);
+
+    // Take the length as an int whatever the size of size_t so every call site is exact
+    return MethodHandles.explicitCastArguments(handle, type);
+
+  }
+
+  /**
+   * The report segments of an open device
+   */
+  private static final class DeviceSegments {
+
+    private final Arena arena = Arena.ofShared();
+    private final ReentrantLock inputLock = new ReentrantLock();
+    private final ReentrantLock outputLock = new ReentrantLock();
+
+    private MemorySegment input = MemorySegment.NULL;
+    private MemorySegment output = MemorySegment.NULL;
+
+    private int users = 0;
+    private boolean closed = false;
+
+    /**
+     * Must be called with the lock for the direction held
+     *
+     * @param input  True for the input segment
+     * @param length The report length
+     *
+     * @return A segment of at least the length (grown if necessary)
+     */
+    private MemorySegment segment(boolean input, int length) {
+      MemorySegment segment = input ? this.input : this.output;
+      if (segment.byteSize() < length || segment.byteSize() == 0) {
+        segment = arena.allocate(Math.max(MIN_SEGMENT_SIZE, Math.max(length, 2 * segment.byteSize())));
+        if (input) {
+          this.input = segment;
+        } else {
+          this.output = segment;
+        }
+      }
+      return segment;
+    }
+
+    /**
+     * @return False if the segments have been closed
+     */
+    private synchronized boolean acquire() {
+      if (closed) {
+        return false;
+      }
+      users++;
+      return true;
+    }
+
+    private synchronized void release() {
+      users--;
+      if (closed && users == 0) {
+        arena.close();
+      }
+    }
+
+    /**
+     * Free the segments once no call is using them
+     */
+    private synchronized void close() {
+      if (closed) {
+        return;
+      }
+      closed = true;
+      if (users == 0) {
+        arena.close();
+      }
+    }
+  }
+
+}
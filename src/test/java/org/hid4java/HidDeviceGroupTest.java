@@ -0,0 +1,198 @@
+package org.hid4java;
+
+import com.sun.jna.Memory;
+import org.hid4java.event.HidServicesListenerList;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HidDeviceGroupTest {
+
+  @Test
+  void write_SharedReportWithOutcomes() {
+
+    // Arrange
+    List<HidDevice> devices = new ArrayList<>();
+    for (int i = 0; i < 20; i++) {
+      devices.add(new LatencyHidDevice("device-" + i, TimeUnit.MILLISECONDS.toNanos(1)));
+    }
+    devices.get(7).close();
+    HidDeviceGroup testObject = new HidDeviceGroup(devices, 4);
+    LatencyHidDevice.resetMaxConcurrentWrites();
+
+    // Act
+    HidDeviceGroup.GroupResult result = testObject.write(new byte[]{1, 2, 3}, 8, (byte) 0x05, true);
+    testObject.shutdown();
+
+    // Assert
+    assertEquals(20, result.getOutcomes().size());
+    assertEquals(19, result.getSuccessCount());
+    assertEquals(1, result.getFailures().size());
+    assertSame(devices.get(7), result.getFailures().get(0).getDevice());
+    assertEquals("Device has not been opened", result.getFailures().get(0).getErrorMessage());
+    for (int i = 0; i < 20; i++) {
+      assertSame(devices.get(i), result.getOutcomes().get(i).getDevice());
+      if (i != 7) {
+        assertEquals(9, result.getOutcomes().get(i).getBytesWritten());
+        assertArrayEquals(new byte[]{5, 1, 2, 3, 0, 0, 0, 0, 0}, ((LatencyHidDevice) devices.get(i)).getLastReport());
+      }
+    }
+    assertTrue(LatencyHidDevice.resetMaxConcurrentWrites() <= 4);
+
+  }
+
+  @Test
+  void write_NotifiesEachManager() {
+
+    // Arrange (devices from two services)
+    CountingHidDeviceManager first = new CountingHidDeviceManager();
+    CountingHidDeviceManager second = new CountingHidDeviceManager();
+    List<HidDevice> devices = new ArrayList<>();
+    for (int i = 0; i < 6; i++) {
+      devices.add(new LatencyHidDevice("device-" + i, 0, i % 2 == 0 ? first : second));
+    }
+    HidDeviceGroup testObject = new HidDeviceGroup(devices, 2);
+
+    // Act
+    HidDeviceGroup.GroupResult result = testObject.write(new byte[]{1}, 8, (byte) 0x00, true);
+    testObject.shutdown();
+
+    // Assert (once per batch for each manager)
+    assertTrue(result.isAllSuccessful());
+    assertEquals(1, first.writes.get());
+    assertEquals(1, second.writes.get());
+
+  }
+
+  @Test
+  void write_WithoutPaddingTruncatesToMessage() {
+
+    // Arrange
+    LatencyHidDevice device = new LatencyHidDevice("device", 0);
+    List<HidDevice> devices = new ArrayList<>();
+    devices.add(device);
+    HidDeviceGroup testObject = new HidDeviceGroup(devices, 1);
+
+    // Act
+    HidDeviceGroup.GroupResult result = testObject.write(new byte[]{1, 2, 3}, 8, (byte) 0x00, false);
+    testObject.shutdown();
+
+    // Assert
+    assertTrue(result.isAllSuccessful());
+    assertArrayEquals(new byte[]{0, 1, 2, 3}, device.getLastReport());
+
+  }
+
+  @Test
+  void write_FailureIsNotTimeout() {
+
+    // Arrange (the native error happens to read like a timeout)
+    LatencyHidDevice device = new LatencyHidDevice("device", 0) {
+      @Override
+      int writeEncodedReport(Memory report) {
+        return -1;
+      }
+
+      @Override
+      public String getLastErrorMessage() {
+        return "Timed out";
+      }
+    };
+    List<HidDevice> devices = new ArrayList<>();
+    devices.add(device);
+    HidDeviceGroup testObject = new HidDeviceGroup(devices, 1);
+
+    // Act
+    HidDeviceGroup.GroupResult result = testObject.write(new byte[]{1}, 8, (byte) 0x00, true);
+    testObject.shutdown();
+
+    // Assert
+    assertEquals(1, result.getFailures().size());
+    assertEquals("Timed out", result.getFailures().get(0).getErrorMessage());
+    assertFalse(result.getFailures().get(0).isTimedOut());
+
+  }
+
+  @Test
+  void openAll_closeAll_BoundedParallelism() {
+
+    // Arrange
+    List<HidDevice> devices = new ArrayList<>();
+    for (int i = 0; i < 50; i++) {
+      LatencyHidDevice device = new LatencyHidDevice("device-" + i, 0);
+      device.close();
+      device.setOpenCloseLatency(TimeUnit.MILLISECONDS.toNanos(20));
+      devices.add(device);
+    }
+    HidDeviceGroup testObject = new HidDeviceGroup(devices, 10);
+
+    // Act (serially this would take 1s each way)
+    long start = System.nanoTime();
+    HidDeviceGroup.GroupResult opened = testObject.openAll(5000);
+    HidDeviceGroup.GroupResult closed = testObject.closeAll(5000);
+    long elapsed = System.nanoTime() - start;
+    testObject.shutdown();
+
+    // Assert
+    assertTrue(opened.isAllSuccessful());
+    assertTrue(closed.isAllSuccessful());
+    for (HidDevice device : devices) {
+      assertTrue(device.isClosed());
+    }
+    assertTrue(elapsed < TimeUnit.MILLISECONDS.toNanos(1000), "Elapsed " + elapsed);
+
+  }
+
+  @Test
+  void closeAll_DeadlineFinishesSlowDevicesInBackground() throws Exception {
+
+    // Arrange
+    List<HidDevice> devices = new ArrayList<>();
+    for (int i = 0; i < 10; i++) {
+      LatencyHidDevice device = new LatencyHidDevice("device-" + i, 0);
+      device.setOpenCloseLatency(TimeUnit.MILLISECONDS.toNanos(100));
+      devices.add(device);
+    }
+    HidDeviceGroup testObject = new HidDeviceGroup(devices, 2);
+
+    // Act
+    long start = System.nanoTime();
+    HidDeviceGroup.GroupResult result = testObject.closeAll(150);
+    long elapsed = System.nanoTime() - start;
+    testObject.shutdown();
+
+    // Assert (two waves of two devices fit within the deadline at most)
+    assertTrue(elapsed < TimeUnit.MILLISECONDS.toNanos(500), "Elapsed " + elapsed);
+    assertTrue(result.getSuccessCount() >= 2);
+    assertTrue(result.getSuccessCount() <= 4);
+    for (HidDeviceGroup.Outcome outcome : result.getFailures()) {
+      assertTrue(outcome.isTimedOut());
+    }
+    assertFalse(devices.get(9).isClosed());
+    testObject.awaitTermination();
+    for (HidDevice device : devices) {
+      assertTrue(device.isClosed());
+    }
+
+  }
+
+  private static class CountingHidDeviceManager extends HidDeviceManager {
+
+    private final AtomicInteger writes = new AtomicInteger();
+
+    private CountingHidDeviceManager() {
+      super(new HidServicesListenerList(), new HidServicesSpecification());
+    }
+
+    @Override
+    public void afterDeviceWrite() {
+      writes.incrementAndGet();
+    }
+  }
+
+}
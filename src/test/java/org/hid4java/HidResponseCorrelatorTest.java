@@ -0,0 +1,178 @@
+package org.hid4java;
+
+import org.hid4java.jna.HidDeviceInfoStructure;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HidResponseCorrelatorTest {
+
+  @Test
+  void transact_ResponsesOutOfOrder() throws Exception {
+
+    // Arrange
+    ReversingHidDevice device = new ReversingHidDevice(16);
+    List<CompletableFuture<byte[]>> futures = new ArrayList<>();
+
+    // Act (responses are only released once all 16 requests are in flight, newest first)
+    for (int i = 0; i < 16; i++) {
+      byte[] request = new byte[]{0x00, (byte) i, (byte) (i * 2)};
+      futures.add(device.transact(request, ResponseMatcher.sequence(0, (byte) i), Duration.ofSeconds(2)));
+    }
+
+    // Assert
+    for (int i = 0; i < 16; i++) {
+      assertArrayEquals(new byte[]{(byte) i, (byte) (i * 2)}, futures.get(i).get(2, TimeUnit.SECONDS));
+    }
+
+  }
+
+  @Test
+  void transact_Timeout() {
+
+    // Arrange
+    ReversingHidDevice device = new ReversingHidDevice(2);
+
+    // Act (the second request that releases responses never arrives)
+    CompletableFuture<byte[]> future = device.transact(new byte[]{0x00, 0x01}, ResponseMatcher.any(), Duration.ofMillis(50));
+
+    // Assert
+    ExecutionException e = assertThrows(ExecutionException.class, () -> future.get(2, TimeUnit.SECONDS));
+    assertTrue(e.getCause() instanceof TimeoutException);
+
+  }
+
+  @Test
+  void transact_CloseFailsPending() {
+
+    // Arrange
+    ReversingHidDevice device = new ReversingHidDevice(2);
+    CompletableFuture<byte[]> future = device.transact(new byte[]{0x00, 0x01}, ResponseMatcher.any(), Duration.ofSeconds(10));
+
+    // Act
+    device.close();
+
+    // Assert
+    ExecutionException e = assertThrows(ExecutionException.class, () -> future.get(2, TimeUnit.SECONDS));
+    assertTrue(e.getCause() instanceof HidException);
+
+  }
+
+  @Test
+  void close_WaitsForReader() throws Exception {
+
+    // Arrange
+    ReversingHidDevice device = new ReversingHidDevice(2);
+    device.transact(new byte[]{0x00, 0x01}, ResponseMatcher.any(), Duration.ofSeconds(10));
+    long deadline = System.currentTimeMillis() + 5000;
+    while (device.readsInProgress.get() == 0 && System.currentTimeMillis() < deadline) {
+      Thread.sleep(1);
+    }
+
+    // Act
+    device.close();
+
+    // Assert (the native handle is not freed under a read)
+    assertEquals(0, device.readsInProgress.get());
+
+  }
+
+  @Test
+  void transact_ReaderStopsWhenIdle() throws Exception {
+
+    // Arrange
+    ReversingHidDevice device = new ReversingHidDevice(1);
+    byte[] response = device.transact(new byte[]{0x00, 0x01}, ResponseMatcher.any(), Duration.ofSeconds(2)).get(2, TimeUnit.SECONDS);
+    Thread reader = device.lastReader;
+    reader.join(5000);
+    device.inputReports.add(new byte[]{0x02});
+    byte[] buffer = new byte[8];
+
+    // Act
+    int bytesRead = device.read(buffer, 1000);
+
+    // Assert (the input stream is handed back to direct reads)
+    assertArrayEquals(new byte[]{0x01}, response);
+    assertFalse(reader.isAlive());
+    assertEquals(1, bytesRead);
+    assertEquals(0x02, buffer[0]);
+    device.close();
+
+  }
+
+  /**
+   * Holds back echoes until a batch of requests has arrived then releases them in reverse order
+   */
+  private static class ReversingHidDevice extends HidDevice {
+
+    private final int batchSize;
+    private final List<byte[]> held = new ArrayList<>();
+    private final BlockingQueue<byte[]> inputReports = new LinkedBlockingQueue<>();
+    private final AtomicInteger readsInProgress = new AtomicInteger();
+    private volatile boolean open = true;
+    private volatile Thread lastReader = null;
+
+    ReversingHidDevice(int batchSize) {
+      super(new HidDeviceInfoStructure(), null, new HidServicesSpecification());
+      this.batchSize = batchSize;
+    }
+
+    @Override
+    public boolean isClosed() {
+      return !open;
+    }
+
+    @Override
+    public void close() {
+      super.close();
+      open = false;
+    }
+
+    @Override
+    public synchronized int write(byte[] message, int packetLength, byte reportId) {
+      held.add(Arrays.copyOf(message, packetLength));
+      if (held.size() == batchSize) {
+        for (int i = held.size() - 1; i >= 0; i--) {
+          inputReports.add(held.get(i));
+        }
+        held.clear();
+      }
+      return packetLength + 1;
+    }
+
+    @Override
+    public int read(byte[] bytes, int timeoutMillis) {
+      if (!open) {
+        throw new IllegalStateException("Device has not been opened");
+      }
+      readsInProgress.incrementAndGet();
+      lastReader = Thread.currentThread();
+      try {
+        byte[] report = inputReports.poll(timeoutMillis, TimeUnit.MILLISECONDS);
+        if (report == null) {
+          return 0;
+        }
+        System.arraycopy(report, 0, bytes, 0, report.length);
+        return report.length;
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return -1;
+      } finally {
+        readsInProgress.decrementAndGet();
+      }
+    }
+  }
+
+}
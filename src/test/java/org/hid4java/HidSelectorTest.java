@@ -0,0 +1,215 @@
+package org.hid4java;
+
+import org.hid4java.simulated.SimulatedHidApiLibrary;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HidSelectorTest {
+
+  private SimulatedHidApiLibrary library;
+  private HidServices hidServices;
+  private HidSelector testObject;
+  private List<HidDevice> devices;
+
+  private List<HidDevice> openDevices(int deviceCount, double inputReportRate) {
+    library = new SimulatedHidApiLibrary(deviceCount);
+    library.setInputReportRate(inputReportRate);
+    library.setInputReportLength(8);
+    HidServicesSpecification specification = new HidServicesSpecification();
+    specification.setHidApiLibrary(library);
+    specification.setAutoStart(false);
+    specification.setAutoShutdown(false);
+    hidServices = new HidServices(specification);
+    hidServices.scan();
+    devices = hidServices.getAttachedHidDevices();
+    for (HidDevice device : devices) {
+      assertTrue(device.open());
+    }
+    return devices;
+  }
+
+  @AfterEach
+  void tearDown() {
+    if (testObject != null) {
+      testObject.close();
+    }
+    if (hidServices != null) {
+      for (HidDevice device : devices) {
+        device.close();
+      }
+      hidServices.shutdown();
+    }
+  }
+
+  @Test
+  void select_ManyDevicesFewThreads() {
+
+    // Arrange
+    List<HidDevice> devices = openDevices(50, 100);
+    testObject = new HidSelector(2);
+    for (HidDevice device : devices) {
+      testObject.register(device);
+    }
+    Map<HidSelectionKey, Integer> lastSequence = new HashMap<>();
+
+    // Act (consume until every device has delivered 10 reports)
+    long deadline = System.currentTimeMillis() + 10_000;
+    int complete = 0;
+    while (complete < devices.size() && System.currentTimeMillis() < deadline) {
+      for (HidSelectionKey key : testObject.select(100)) {
+        byte[] report;
+        while ((report = key.read()) != null) {
+          int sequence = ((report[0] & 0xff) << 24) | ((report[1] & 0xff) << 16) | ((report[2] & 0xff) << 8) | (report[3] & 0xff);
+          Integer previous = lastSequence.put(key, sequence);
+
+          // Assert (reports arrive in order without gaps)
+          assertEquals(previous == null ? 1 : previous + 1, sequence);
+          if (sequence == 10) {
+            complete++;
+          }
+        }
+      }
+    }
+
+    // Assert
+    assertEquals(devices.size(), complete);
+    assertEquals(devices.size(), testObject.keys().size());
+    for (HidSelectionKey key : testObject.keys()) {
+      assertEquals(0, key.getDroppedReports());
+    }
+
+  }
+
+  @Test
+  void cancel_RestoresBlockingRead() {
+
+    // Arrange
+    HidDevice device = openDevices(1, 20).get(0);
+    testObject = new HidSelector();
+    HidSelectionKey key = testObject.register(device);
+
+    // Act
+    key.cancel();
+
+    // Assert (a blocking read waits for the next report)
+    assertFalse(key.isValid());
+    assertTrue(testObject.keys().isEmpty());
+    assertEquals(8, device.read(new byte[64]));
+    assertNotSame(key, testObject.register(device));
+
+  }
+
+  @Test
+  void close_CancelsKey() {
+
+    // Arrange
+    HidDevice device = openDevices(1, 100).get(0);
+    testObject = new HidSelector();
+    HidSelectionKey key = testObject.register(device);
+
+    // Act
+    device.close();
+
+    // Assert
+    assertFalse(key.isValid());
+    assertFalse(key.isFailed());
+    assertTrue(testObject.keys().isEmpty());
+
+  }
+
+  @Test
+  void select_FailedRead() {
+
+    // Arrange
+    HidDevice device = openDevices(1, 100).get(0);
+    testObject = new HidSelector();
+    HidSelectionKey key = testObject.register(device);
+
+    // Act
+    library.setErrorRate(1);
+    long deadline = System.currentTimeMillis() + 5000;
+    Set<HidSelectionKey> selected;
+    do {
+      selected = testObject.select(100);
+      for (HidSelectionKey selectedKey : selected) {
+        while (selectedKey.isValid() && selectedKey.read() != null) {
+          // Discard reports read before the failure
+        }
+      }
+    } while (!key.isFailed() && System.currentTimeMillis() < deadline);
+
+    // Assert
+    assertTrue(key.isFailed());
+    assertFalse(key.isValid());
+    assertTrue(testObject.selectedKeys().contains(key));
+    assertTrue(testObject.keys().isEmpty());
+
+  }
+
+  @Test
+  void register_AlreadyRegistered() {
+
+    // Arrange
+    HidDevice device = openDevices(1, 100).get(0);
+    testObject = new HidSelector();
+    testObject.register(device);
+    HidSelector other = new HidSelector();
+
+    // Act
+    IllegalStateException e = assertThrows(IllegalStateException.class, () -> other.register(device));
+
+    // Assert
+    assertEquals("Device is already registered with a selector", e.getMessage());
+    other.close();
+
+  }
+
+  @Test
+  void select_DevicesOfTwoContexts() {
+
+    // Arrange (each service has its own context and backend)
+    HidDevice first = openDevices(1, 100).get(0);
+    SimulatedHidApiLibrary otherLibrary = new SimulatedHidApiLibrary(1);
+    otherLibrary.setInputReportRate(100);
+    otherLibrary.setInputReportLength(16);
+    HidServicesSpecification specification = new HidServicesSpecification();
+    specification.setHidApiLibrary(otherLibrary);
+    specification.setAutoStart(false);
+    specification.setAutoShutdown(false);
+    HidServices otherServices = new HidServices(specification);
+    otherServices.scan();
+    HidDevice second = otherServices.getAttachedHidDevices().get(0);
+    assertTrue(second.open());
+    testObject = new HidSelector();
+    HidSelectionKey firstKey = testObject.register(first);
+    HidSelectionKey secondKey = testObject.register(second);
+
+    // Act
+    Map<HidSelectionKey, Integer> lengths = new HashMap<>();
+    long deadline = System.currentTimeMillis() + 5000;
+    while (lengths.size() < 2 && System.currentTimeMillis() < deadline) {
+      for (HidSelectionKey key : testObject.select(100)) {
+        byte[] report;
+        while ((report = key.read()) != null) {
+          lengths.put(key, report.length);
+        }
+      }
+    }
+
+    // Assert (each device is read through the backend that opened it)
+    assertEquals(8, lengths.get(firstKey));
+    assertEquals(16, lengths.get(secondKey));
+    testObject.close();
+    second.close();
+    otherServices.shutdown();
+
+  }
+
+}
@@ -0,0 +1,354 @@
+package org.hid4java;
+
+import com.sun.jna.Pointer;
+import org.hid4java.event.HidServicesEvent;
+import org.hid4java.simulated.SimulatedHidApiLibrary;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HidServicesTest {
+
+  private HidServices testObject;
+
+  @AfterEach
+  void tearDown() {
+    if (testObject != null) {
+      testObject.shutdown();
+    }
+  }
+
+  @Test
+  void getReady_Synchronous() throws Exception {
+
+    // Arrange
+    HidServicesSpecification specification = specification(new SimulatedHidApiLibrary(2));
+
+    // Act
+    testObject = new HidServices(specification);
+
+    // Assert
+    assertTrue(testObject.getReady().isDone());
+    assertSame(testObject, testObject.getReady().get());
+    assertEquals(2, testObject.getAttachedHidDevices().size());
+
+  }
+
+  @Test
+  void getReady_AsyncInitialisation() throws Exception {
+
+    // Arrange
+    final CountDownLatch initialising = new CountDownLatch(1);
+    SimulatedHidApiLibrary library = new SimulatedHidApiLibrary(3) {
+      @Override
+      public void hid_init() {
+        try {
+          initialising.await();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+        super.hid_init();
+      }
+    };
+    HidServicesSpecification specification = specification(library);
+    specification.setAsyncInitialisation(true);
+    final CountDownLatch attached = new CountDownLatch(3);
+
+    // Act (construction returns while hidapi is still initialising)
+    testObject = new HidServices(specification);
+    assertFalse(testObject.getReady().isDone());
+    testObject.addHidServicesListener(new HidServicesListener() {
+      @Override
+      public void hidDeviceAttached(HidServicesEvent event) {
+        attached.countDown();
+      }
+
+      @Override
+      public void hidDeviceDetached(HidServicesEvent event) {
+      }
+
+      @Override
+      public void hidFailure(HidServicesEvent event) {
+      }
+
+      @Override
+      public void hidDataReceived(HidServicesEvent event) {
+      }
+    });
+    testObject.getReady().cancel(false);
+    initialising.countDown();
+
+    // Assert (the first scan happens after listeners are registered)
+    assertEquals(3, testObject.getAttachedHidDevices().size());
+    assertSame(testObject, testObject.getReady().get(5, TimeUnit.SECONDS));
+    assertTrue(attached.await(5, TimeUnit.SECONDS));
+
+  }
+
+  @Test
+  void getAttachedHidDevices_AsyncInitialisationFailed() {
+
+    // Arrange
+    HidServicesSpecification specification = specification(new SimulatedHidApiLibrary(1) {
+      @Override
+      public void hid_init() {
+        throw new IllegalStateException("No USB");
+      }
+    });
+    specification.setAsyncInitialisation(true);
+
+    // Act
+    testObject = new HidServices(specification);
+    ExecutionException ready = assertThrows(ExecutionException.class, () -> testObject.getReady().get(5, TimeUnit.SECONDS));
+    HidException e = assertThrows(HidException.class, () -> testObject.getAttachedHidDevices());
+
+    // Assert
+    assertSame(e, ready.getCause());
+    assertEquals("Hidapi did not initialise: No USB", e.getMessage());
+
+  }
+
+  @Test
+  void createHidServices_IndependentContexts() {
+
+    // Arrange (report lengths identify the backend that served a read)
+    SimulatedHidApiLibrary first = new SimulatedHidApiLibrary(1);
+    first.setInputReportLength(8);
+    SimulatedHidApiLibrary second = new SimulatedHidApiLibrary(2);
+    second.setInputReportLength(16);
+    testObject = HidManager.createHidServices(specification(first));
+    HidServices other = HidManager.createHidServices(specification(second));
+    HidDevice firstDevice = testObject.getAttachedHidDevices().get(0);
+    assertEquals(2, other.getAttachedHidDevices().size());
+    HidDevice secondDevice = other.getAttachedHidDevices().get(0);
+    assertTrue(firstDevice.open());
+    assertTrue(secondDevice.open());
+
+    // Act
+    int firstRead = firstDevice.read(new byte[64], 1000);
+    other.shutdown();
+
+    // Assert (shutting down one context leaves the other working)
+    assertNotSame(testObject, other);
+    assertEquals(1, testObject.getAttachedHidDevices().size());
+    assertEquals(8, firstRead);
+    assertEquals(8, firstDevice.read(new byte[64], 1000));
+    firstDevice.close();
+
+  }
+
+  @Test
+  void shutdown_ExitWaitsForSlowClose() throws Exception {
+
+    // Arrange (closing a device takes longer than the close timeout)
+    final AtomicInteger closing = new AtomicInteger();
+    final AtomicInteger closed = new AtomicInteger();
+    final AtomicBoolean exitedDuringClose = new AtomicBoolean();
+    final CountDownLatch exited = new CountDownLatch(1);
+    SimulatedHidApiLibrary library = new SimulatedHidApiLibrary(3) {
+      @Override
+      public void hid_close(Pointer device) {
+        closing.incrementAndGet();
+        try {
+          Thread.sleep(200);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+        super.hid_close(device);
+        closing.decrementAndGet();
+        closed.incrementAndGet();
+      }
+
+      @Override
+      public void hid_exit() {
+        exitedDuringClose.set(closing.get() > 0 || closed.get() < 3);
+        super.hid_exit();
+        exited.countDown();
+      }
+    };
+    HidServicesSpecification specification = specification(library);
+    specification.setCloseParallelism(1);
+    specification.setCloseTimeout(50);
+    specification.setAutoStart(false);
+    HidServices hidServices = new HidServices(specification);
+    final List<HidDevice> attached = new CopyOnWriteArrayList<>();
+    final CountDownLatch attachedAll = new CountDownLatch(3);
+    hidServices.addHidServicesListener(new HidServicesListener() {
+      @Override
+      public void hidDeviceAttached(HidServicesEvent event) {
+        attached.add(event.getHidDevice());
+        attachedAll.countDown();
+      }
+
+      @Override
+      public void hidDeviceDetached(HidServicesEvent event) {
+      }
+
+      @Override
+      public void hidFailure(HidServicesEvent event) {
+      }
+
+      @Override
+      public void hidDataReceived(HidServicesEvent event) {
+      }
+    });
+    hidServices.start();
+    assertTrue(attachedAll.await(5, TimeUnit.SECONDS));
+    for (HidDevice device : attached) {
+      assertTrue(device.open());
+    }
+
+    // Act
+    hidServices.shutdown();
+
+    // Assert (every device is still closed and hidapi is finalised afterwards)
+    assertEquals(3, hidServices.getCloseTimedOutDevices().size());
+    assertTrue(exited.await(5, TimeUnit.SECONDS));
+    assertFalse(exitedDuringClose.get());
+    assertEquals(3, closed.get());
+
+  }
+
+  @Test
+  void shutdown_InitialisationStillRunning() throws Exception {
+
+    // Arrange
+    final CountDownLatch initialising = new CountDownLatch(1);
+    final CountDownLatch exited = new CountDownLatch(1);
+    final AtomicBoolean initialised = new AtomicBoolean();
+    final AtomicBoolean exitedBeforeInitialised = new AtomicBoolean();
+    SimulatedHidApiLibrary library = new SimulatedHidApiLibrary(1) {
+      @Override
+      public void hid_init() {
+        try {
+          initialising.await();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+        super.hid_init();
+        initialised.set(true);
+      }
+
+      @Override
+      public void hid_exit() {
+        exitedBeforeInitialised.set(!initialised.get());
+        super.hid_exit();
+        exited.countDown();
+      }
+    };
+    HidServicesSpecification specification = specification(library);
+    specification.setAsyncInitialisation(true);
+    specification.setCloseTimeout(100);
+    HidServices hidServices = new HidServices(specification);
+
+    // Act (as from a shutdown hook while hidapi is stuck initialising)
+    long start = System.nanoTime();
+    hidServices.shutdown();
+    long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    boolean exitedEarly = exited.getCount() == 0;
+    initialising.countDown();
+
+    // Assert (hidapi is finalised once initialisation finishes)
+    assertTrue(elapsedMillis < 2000, "Shutdown took " + elapsedMillis + "ms");
+    assertFalse(exitedEarly);
+    assertTrue(exited.await(5, TimeUnit.SECONDS));
+    assertFalse(exitedBeforeInitialised.get());
+
+  }
+
+  @Test
+  void shutdown_StopsEventWorkers() throws Exception {
+
+    // Arrange
+    int before = eventWorkerCount();
+    HidServices first = new HidServices(specification(new SimulatedHidApiLibrary(1)));
+    HidServices second = new HidServices(specification(new SimulatedHidApiLibrary(1)));
+    int running = eventWorkerCount();
+
+    // Act
+    first.shutdown();
+    second.shutdown();
+
+    // Assert (no threads are left behind by a create and shutdown cycle)
+    assertEquals(before + 6, running);
+    assertEquals(before, eventWorkerCount());
+
+  }
+
+  @Test
+  void close_FromListenerWhileQueueFull() throws Exception {
+
+    // Arrange (every worker is busy and the data reader is waiting for room in the queue)
+    SimulatedHidApiLibrary library = new SimulatedHidApiLibrary(1);
+    library.setInputReportRate(5);
+    library.setInputReportLength(8);
+    HidServicesSpecification specification = specification(library);
+    specification.setAutoDataRead(true);
+    specification.setDataReadInterval(1);
+    specification.setEventQueueCapacity(1);
+    specification.setEventQueuePolicy(EventQueuePolicy.BLOCK);
+    testObject = new HidServices(specification);
+    final HidDevice device = testObject.getAttachedHidDevices().get(0);
+    final CountDownLatch closed = new CountDownLatch(3);
+    testObject.addHidServicesListener(new HidServicesListener() {
+      @Override
+      public void hidDeviceAttached(HidServicesEvent event) {
+      }
+
+      @Override
+      public void hidDeviceDetached(HidServicesEvent event) {
+      }
+
+      @Override
+      public void hidFailure(HidServicesEvent event) {
+      }
+
+      @Override
+      public void hidDataReceived(HidServicesEvent event) {
+        try {
+          Thread.sleep(1000);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+        event.getHidDevice().close();
+        closed.countDown();
+      }
+    });
+
+    // Act
+    assertTrue(device.open());
+
+    // Assert (listeners closing the device do not wait on the blocked reader)
+    assertTrue(closed.await(5, TimeUnit.SECONDS));
+    assertTrue(device.isClosed());
+
+  }
+
+  private static int eventWorkerCount() {
+    int count = 0;
+    for (Thread thread : Thread.getAllStackTraces().keySet()) {
+      if (thread.isAlive() && "hid4java event worker".equals(thread.getName())) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  private static HidServicesSpecification specification(SimulatedHidApiLibrary library) {
+    HidServicesSpecification specification = new HidServicesSpecification();
+    specification.setHidApiLibrary(library);
+    specification.setScanMode(ScanMode.NO_SCAN);
+    specification.setAutoShutdown(false);
+    return specification;
+  }
+
+}
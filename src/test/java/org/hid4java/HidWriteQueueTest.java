@@ -0,0 +1,148 @@
+package org.hid4java;
+
+import org.hid4java.jna.HidDeviceInfoStructure;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HidWriteQueueTest {
+
+  @Test
+  void writeAsync_CoalescesQueuedStateReports() throws Exception {
+
+    // Arrange
+    BlockingHidDevice device = new BlockingHidDevice();
+    List<CompletableFuture<Integer>> futures = new ArrayList<>();
+
+    // Act (the first write blocks the writer so the rest queue up behind it)
+    futures.add(device.writeAsync(new byte[]{0}, 1, (byte) 0x01, true));
+    device.firstWriteStarted.await(2, TimeUnit.SECONDS);
+    for (int i = 1; i <= 100; i++) {
+      futures.add(device.writeAsync(new byte[]{(byte) i}, 1, (byte) 0x01, true));
+    }
+    futures.add(device.writeAsync(new byte[]{(byte) 0xaa}, 1, (byte) 0x02, false));
+    futures.add(device.writeAsync(new byte[]{(byte) 0xbb}, 1, (byte) 0x02, false));
+    device.release.countDown();
+
+    // Assert
+    for (CompletableFuture<Integer> future : futures) {
+      assertEquals(2, future.get(2, TimeUnit.SECONDS));
+    }
+    assertEquals(4, device.written.size());
+    assertArrayEquals(new byte[]{0x01, 0}, device.written.get(0));
+    assertArrayEquals(new byte[]{0x01, 100}, device.written.get(1));
+    assertArrayEquals(new byte[]{0x02, (byte) 0xaa}, device.written.get(2));
+    assertArrayEquals(new byte[]{0x02, (byte) 0xbb}, device.written.get(3));
+    // One notification for the first write and one for the coalesced batch
+    assertEquals(2, device.batches.get());
+
+  }
+
+  @Test
+  void writeAsync_CloseFailsQueuedWrites() throws Exception {
+
+    // Arrange
+    BlockingHidDevice device = new BlockingHidDevice();
+    CompletableFuture<Integer> first = device.writeAsync(new byte[]{0}, 1, (byte) 0x01, false);
+    device.firstWriteStarted.await(2, TimeUnit.SECONDS);
+    CompletableFuture<Integer> second = device.writeAsync(new byte[]{1}, 1, (byte) 0x01, false);
+
+    // Act
+    device.release.countDown();
+    device.close();
+
+    // Assert
+    assertEquals(2, first.get(2, TimeUnit.SECONDS));
+    if (second.isCompletedExceptionally()) {
+      ExecutionException e = assertThrows(ExecutionException.class, second::get);
+      assertTrue(e.getCause() instanceof HidException);
+    }
+    assertThrows(IllegalStateException.class, () -> device.writeAsync(new byte[]{2}, 1, (byte) 0x01, false));
+
+  }
+
+  @Test
+  void writeAsync_RejectedWriteFailsOnlyItself() throws Exception {
+
+    // Arrange (the second write is rejected as by a rate limiter)
+    BlockingHidDevice device = new BlockingHidDevice();
+    device.rejectedReportId = 0x02;
+    CompletableFuture<Integer> first = device.writeAsync(new byte[]{0}, 1, (byte) 0x01, false);
+    device.firstWriteStarted.await(2, TimeUnit.SECONDS);
+    CompletableFuture<Integer> rejected = device.writeAsync(new byte[]{1}, 1, (byte) 0x02, false);
+    CompletableFuture<Integer> last = device.writeAsync(new byte[]{2}, 1, (byte) 0x03, false);
+
+    // Act
+    device.release.countDown();
+
+    // Assert (the rest of the batch is still written)
+    assertEquals(2, first.get(2, TimeUnit.SECONDS));
+    ExecutionException e = assertThrows(ExecutionException.class, () -> rejected.get(2, TimeUnit.SECONDS));
+    assertEquals("Write rate limit exceeded", e.getCause().getMessage());
+    assertEquals(2, last.get(2, TimeUnit.SECONDS));
+    assertArrayEquals(new byte[]{0x03, 2}, device.written.get(1));
+    device.close();
+
+  }
+
+  /**
+   * Records writes and blocks the first one until released
+   */
+  private static class BlockingHidDevice extends HidDevice {
+
+    private final List<byte[]> written = Collections.synchronizedList(new ArrayList<byte[]>());
+    private final CountDownLatch firstWriteStarted = new CountDownLatch(1);
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final AtomicInteger batches = new AtomicInteger();
+    private volatile boolean open = true;
+    private volatile byte rejectedReportId = 0;
+
+    BlockingHidDevice() {
+      super(new HidDeviceInfoStructure(), null, new HidServicesSpecification());
+    }
+
+    @Override
+    public boolean isClosed() {
+      return !open;
+    }
+
+    @Override
+    public void close() {
+      super.close();
+      open = false;
+    }
+
+    @Override
+    int writeReport(byte[] message, int packetLength, byte reportId) {
+      if (reportId != 0 && reportId == rejectedReportId) {
+        throw new HidException("Write rate limit exceeded");
+      }
+      firstWriteStarted.countDown();
+      try {
+        release.await(2, TimeUnit.SECONDS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      byte[] report = new byte[packetLength + 1];
+      report[0] = reportId;
+      System.arraycopy(message, 0, report, 1, packetLength);
+      written.add(report);
+      return report.length;
+    }
+
+    @Override
+    void afterBatchWrite() {
+      batches.incrementAndGet();
+    }
+  }
+
+}
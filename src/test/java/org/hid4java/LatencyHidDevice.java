@@ -0,0 +1,115 @@
+package org.hid4java;
+
+import com.sun.jna.Memory;
+import org.hid4java.jna.HidDeviceInfoStructure;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Simulated device that charges a fixed latency per output report (standing in for
+ * the interrupt OUT endpoint interval and the native write call)
+ */
+class LatencyHidDevice extends HidDevice {
+
+  private static final AtomicInteger concurrentWrites = new AtomicInteger();
+  private static final AtomicInteger maxConcurrentWrites = new AtomicInteger();
+
+  private final long writeLatencyNanos;
+  private volatile long openCloseLatencyNanos = 0;
+  private volatile boolean open = true;
+  private volatile byte[] lastReport = null;
+
+  LatencyHidDevice(String path, long writeLatencyNanos) {
+    this(path, writeLatencyNanos, null);
+  }
+
+  LatencyHidDevice(String path, long writeLatencyNanos, HidDeviceManager hidDeviceManager) {
+    super(infoStructure(path), hidDeviceManager, new HidServicesSpecification());
+    this.writeLatencyNanos = writeLatencyNanos;
+  }
+
+  private static HidDeviceInfoStructure infoStructure(String path) {
+    HidDeviceInfoStructure structure = new HidDeviceInfoStructure();
+    structure.path = path;
+    return structure;
+  }
+
+  /**
+   * @return The highest number of simulated writes seen in progress at once since the last reset
+   */
+  static int resetMaxConcurrentWrites() {
+    return maxConcurrentWrites.getAndSet(0);
+  }
+
+  /**
+   * @param openCloseLatencyNanos The time taken to open or close the device
+   */
+  void setOpenCloseLatency(long openCloseLatencyNanos) {
+    this.openCloseLatencyNanos = openCloseLatencyNanos;
+  }
+
+  byte[] getLastReport() {
+    return lastReport;
+  }
+
+  @Override
+  public boolean isClosed() {
+    return !open;
+  }
+
+  @Override
+  public boolean open() {
+    park(openCloseLatencyNanos);
+    open = true;
+    return true;
+  }
+
+  @Override
+  public void close() {
+    if (!open) {
+      return;
+    }
+    super.close();
+    park(openCloseLatencyNanos);
+    open = false;
+  }
+
+  @Override
+  public String getLastErrorMessage() {
+    return "Simulated failure";
+  }
+
+  @Override
+  int writeReport(byte[] message, int packetLength, byte reportId) {
+    byte[] report = new byte[packetLength + 1];
+    report[0] = reportId;
+    System.arraycopy(message, 0, report, 1, Math.min(message.length, packetLength));
+    return simulateWrite(report);
+  }
+
+  @Override
+  int writeEncodedReport(Memory report) {
+    return simulateWrite(report.getByteArray(0, (int) report.size()));
+  }
+
+  private int simulateWrite(byte[] report) {
+    int concurrent = concurrentWrites.incrementAndGet();
+    maxConcurrentWrites.accumulateAndGet(concurrent, Math::max);
+    try {
+      park(writeLatencyNanos);
+      lastReport = report;
+      return report.length;
+    } finally {
+      concurrentWrites.decrementAndGet();
+    }
+  }
+
+  private static void park(long nanos) {
+    long deadline = System.nanoTime() + nanos;
+    long remaining;
+    while ((remaining = deadline - System.nanoTime()) > 0) {
+      LockSupport.parkNanos(remaining);
+    }
+  }
+}
@@ -0,0 +1,65 @@
+package org.hid4java;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WriteRateLimiterTest {
+
+  @Test
+  void acquire_MinimumGapWaits() {
+
+    // Arrange
+    WriteRateLimiter testObject = WriteRateLimiter.minimumGap(2, TimeUnit.MILLISECONDS, WriteRateLimiter.OverLimitPolicy.WAIT);
+    long start = System.nanoTime();
+
+    // Act
+    for (int i = 0; i < 21; i++) {
+      assertTrue(testObject.acquire());
+    }
+    long elapsed = System.nanoTime() - start;
+
+    // Assert (the first write is immediate, then 20 gaps)
+    assertTrue(elapsed >= TimeUnit.MILLISECONDS.toNanos(40), "Elapsed " + elapsed);
+    assertEquals(0, testObject.getDeniedCount());
+
+  }
+
+  @Test
+  void acquire_TokenBucketBurstThenReject() {
+
+    // Arrange
+    WriteRateLimiter testObject = WriteRateLimiter.tokenBucket(1, 5, WriteRateLimiter.OverLimitPolicy.REJECT);
+
+    // Act
+    for (int i = 0; i < 5; i++) {
+      assertTrue(testObject.acquire());
+    }
+
+    // Assert
+    assertThrows(HidException.class, testObject::acquire);
+    assertEquals(1, testObject.getDeniedCount());
+
+  }
+
+  @Test
+  void acquire_DropDoesNotConsumeSlot() throws Exception {
+
+    // Arrange
+    WriteRateLimiter testObject = WriteRateLimiter.minimumGap(20, TimeUnit.MILLISECONDS, WriteRateLimiter.OverLimitPolicy.DROP);
+    assertTrue(testObject.acquire());
+
+    // Act
+    boolean dropped = !testObject.acquire();
+    Thread.sleep(25);
+
+    // Assert
+    assertTrue(dropped);
+    assertTrue(testObject.acquire());
+    assertEquals(1, testObject.getDeniedCount());
+
+  }
+
+}
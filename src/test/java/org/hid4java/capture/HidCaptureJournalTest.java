@@ -0,0 +1,136 @@
+package org.hid4java.capture;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HidCaptureJournalTest {
+
+  @TempDir
+  Path directory;
+
+  @Test
+  void record_ReadBack() throws Exception {
+
+    // Arrange
+    HidCaptureJournal testObject = new HidCaptureJournal(directory, "capture", 64 * 1024, 4);
+    long before = System.currentTimeMillis();
+
+    // Act
+    testObject.record(HidCaptureRecord.Type.OUTPUT, "/dev/hidraw0", new byte[]{0x00, 0x01, 0x02}, 3);
+    testObject.record(HidCaptureRecord.Type.INPUT, "/dev/hidraw1", new byte[]{0x03, 0x04, 0x05, 0x06}, 2);
+    testObject.record(HidCaptureRecord.Type.SEND_FEATURE, "/dev/hidraw0", new byte[]{0x07}, 1);
+    testObject.record(HidCaptureRecord.Type.GET_FEATURE, null, new byte[]{0x08}, 1);
+    testObject.close();
+
+    // Assert
+    List<HidCaptureRecord> records = readAll();
+    assertEquals(4, records.size());
+    assertEquals(HidCaptureRecord.Type.OUTPUT, records.get(0).getType());
+    assertEquals("/dev/hidraw0", records.get(0).getPath());
+    assertArrayEquals(new byte[]{0x00, 0x01, 0x02}, records.get(0).getData());
+    assertEquals(HidCaptureRecord.Type.INPUT, records.get(1).getType());
+    assertEquals("/dev/hidraw1", records.get(1).getPath());
+    assertArrayEquals(new byte[]{0x03, 0x04}, records.get(1).getData());
+    assertEquals("/dev/hidraw0", records.get(2).getPath());
+    assertEquals("", records.get(3).getPath());
+    assertTrue(records.get(1).getTimestampNanos() - records.get(0).getTimestampNanos() >= 0);
+    assertTrue(records.get(0).getEpochNanos() / 1_000_000 >= before - 1);
+
+  }
+
+  @Test
+  void record_RotatesAndRetains() throws Exception {
+
+    // Arrange
+    HidCaptureJournal testObject = new HidCaptureJournal(directory, "capture", 64 * 1024, 3);
+    byte[] report = new byte[65];
+
+    // Act (each record is 78 bytes so 5000 records need 6 files)
+    for (int i = 0; i < 5000; i++) {
+      report[1] = (byte) i;
+      report[2] = (byte) (i >> 8);
+      testObject.record(HidCaptureRecord.Type.OUTPUT, "/dev/hidraw0", report, report.length);
+    }
+    testObject.close();
+
+    // Assert (every retained file is self-contained and the last record is present)
+    List<Path> files = HidCaptureJournal.listJournalFiles(directory, "capture");
+    assertEquals(3, files.size());
+    assertTrue(files.get(2).getFileName().toString().endsWith("0000000005" + HidCaptureJournal.FILE_SUFFIX));
+    List<HidCaptureRecord> records = readAll();
+    HidCaptureRecord last = records.get(records.size() - 1);
+    assertEquals(4999, (last.getData()[1] & 0xff) | (last.getData()[2] & 0xff) << 8);
+    for (HidCaptureRecord record : records) {
+      assertEquals("/dev/hidraw0", record.getPath());
+    }
+
+  }
+
+  @Test
+  void record_ConcurrentWithRotation() throws Exception {
+
+    // Arrange (enough files are retained to read back every record)
+    final HidCaptureJournal testObject = new HidCaptureJournal(directory, "capture", 64 * 1024, 100);
+    final int threads = 4;
+    final int perThread = 3000;
+    List<Thread> writers = new ArrayList<>();
+    for (int t = 0; t < threads; t++) {
+      final String path = "/dev/hidraw" + t;
+      writers.add(new Thread(() -> {
+        byte[] report = new byte[33];
+        for (int i = 0; i < perThread; i++) {
+          report[1] = (byte) i;
+          report[2] = (byte) (i >> 8);
+          testObject.record(HidCaptureRecord.Type.INPUT, path, report, report.length);
+        }
+      }));
+    }
+
+    // Act
+    for (Thread writer : writers) {
+      writer.start();
+    }
+    for (Thread writer : writers) {
+      writer.join();
+    }
+    testObject.close();
+
+    // Assert (nothing lost or interleaved and each device keeps its order)
+    assertNull(testObject.getFailure());
+    assertTrue(HidCaptureJournal.listJournalFiles(directory, "capture").size() > 1);
+    Map<String, Integer> next = new HashMap<>();
+    for (HidCaptureRecord record : readAll()) {
+      int sequence = (record.getData()[1] & 0xff) | (record.getData()[2] & 0xff) << 8;
+      Integer expected = next.get(record.getPath());
+      assertEquals(expected == null ? 0 : expected, sequence, record.getPath());
+      next.put(record.getPath(), sequence + 1);
+    }
+    assertEquals(threads, next.size());
+    for (int count : next.values()) {
+      assertEquals(perThread, count);
+    }
+
+  }
+
+  private List<HidCaptureRecord> readAll() throws Exception {
+    List<HidCaptureRecord> records = new ArrayList<>();
+    for (Path file : HidCaptureJournal.listJournalFiles(directory, "capture")) {
+      try (HidCaptureReader reader = new HidCaptureReader(file)) {
+        HidCaptureRecord record;
+        while ((record = reader.next()) != null) {
+          records.add(record);
+        }
+      }
+    }
+    return records;
+  }
+
+}
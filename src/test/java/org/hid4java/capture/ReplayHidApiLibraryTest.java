@@ -0,0 +1,134 @@
+package org.hid4java.capture;
+
+import com.sun.jna.Pointer;
+import org.hid4java.HidDevice;
+import org.hid4java.HidServices;
+import org.hid4java.HidServicesSpecification;
+import org.hid4java.jna.HidDeviceInfoStructure;
+import org.hid4java.jna.WideStringBuffer;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReplayHidApiLibraryTest {
+
+  private static final HidCaptureDeviceInfo KEYPAD = new HidCaptureDeviceInfo(0x1234, 0x5678, "S1", 0x0100, "Acme", "Keypad", 0xff00, 0x01, 0);
+
+  @TempDir
+  Path directory;
+
+  @Test
+  void replay_AsFastAsPossible() throws Exception {
+
+    // Arrange
+    HidCaptureJournal journal = new HidCaptureJournal(directory, "capture", 64 * 1024, 2);
+    journal.recordAttach("keypad", KEYPAD);
+    journal.record(HidCaptureRecord.Type.INPUT, "keypad", new byte[]{0x01, 0x0a}, 2);
+    journal.record(HidCaptureRecord.Type.OUTPUT, "keypad", new byte[]{0x02, 0x00}, 2);
+    journal.record(HidCaptureRecord.Type.GET_FEATURE, "keypad", new byte[]{0x03, 0x7f}, 2);
+    journal.record(HidCaptureRecord.Type.INPUT, "keypad", new byte[]{0x01, 0x0b}, 2);
+    journal.recordDetach("keypad");
+    journal.close();
+    ReplayHidApiLibrary testObject = ReplayHidApiLibrary.load(directory, "capture", ReplayHidApiLibrary.AS_FAST_AS_POSSIBLE);
+    testObject.hid_init();
+
+    // Act
+    HidDeviceInfoStructure attached = testObject.hid_enumerate((short) 0, (short) 0);
+    Pointer handle = testObject.hid_open_path("keypad");
+    WideStringBuffer first = new WideStringBuffer(64);
+    WideStringBuffer second = new WideStringBuffer(64);
+    WideStringBuffer feature = new WideStringBuffer(64);
+    feature.buffer[0] = 0x03;
+    WideStringBuffer product = new WideStringBuffer(512);
+    int firstCount = testObject.hid_read_timeout(handle, first, 64, 1000);
+    int featureCount = testObject.hid_get_feature_report(handle, feature, 3);
+    int secondCount = testObject.hid_read_timeout(handle, second, 64, 1000);
+    int detachedCount = testObject.hid_read_timeout(handle, second, 64, 1000);
+    testObject.hid_get_product_string(handle, product, 256);
+    HidDeviceInfoStructure detached = testObject.hid_enumerate((short) 0, (short) 0);
+
+    // Assert
+    assertNotNull(attached);
+    assertEquals("keypad", attached.path);
+    assertEquals(0x1234, attached.vendor_id);
+    assertEquals("S1", attached.serial_number.toString());
+    assertFalse(attached.hasNext());
+    assertEquals(2, firstCount);
+    assertEquals(0x0a, first.buffer[1]);
+    assertEquals(2, featureCount);
+    assertEquals(0x7f, feature.buffer[1]);
+    assertEquals(2, secondCount);
+    assertEquals(0x0b, second.buffer[1]);
+    assertEquals(-1, detachedCount);
+    assertEquals("Keypad", product.toString());
+    assertNull(detached);
+    assertEquals(-1, testObject.hid_write(handle, new WideStringBuffer(new byte[]{0x02, 0x00}), 2));
+
+  }
+
+  @Test
+  void replay_Scaled() throws Exception {
+
+    // Arrange (input reports 200ms apart replayed ten times faster)
+    HidCaptureJournal journal = new HidCaptureJournal(directory, "capture", 64 * 1024, 2);
+    journal.recordAttach("keypad", KEYPAD);
+    Thread.sleep(50);
+    journal.record(HidCaptureRecord.Type.INPUT, "keypad", new byte[]{0x01}, 1);
+    Thread.sleep(200);
+    journal.record(HidCaptureRecord.Type.INPUT, "keypad", new byte[]{0x02}, 1);
+    journal.close();
+    ReplayHidApiLibrary testObject = ReplayHidApiLibrary.load(directory, "capture", 10);
+    testObject.hid_init();
+    Pointer handle = testObject.hid_open_path("keypad");
+    WideStringBuffer buffer = new WideStringBuffer(8);
+
+    // Act
+    assertEquals(1, testObject.hid_read_timeout(handle, buffer, 8, 1000));
+    long start = System.nanoTime();
+    int early = testObject.hid_read_timeout(handle, buffer, 8, 1);
+    int count = testObject.hid_read_timeout(handle, buffer, 8, 1000);
+    long elapsed = System.nanoTime() - start;
+
+    // Assert
+    assertEquals(0, early);
+    assertEquals(1, count);
+    assertEquals(0x02, buffer.buffer[0]);
+    assertTrue(elapsed >= TimeUnit.MILLISECONDS.toNanos(10), "Elapsed " + elapsed);
+    assertTrue(elapsed < TimeUnit.MILLISECONDS.toNanos(150), "Elapsed " + elapsed);
+
+  }
+
+  @Test
+  void replay_ThroughHidServices() throws Exception {
+
+    // Arrange
+    HidCaptureJournal journal = new HidCaptureJournal(directory, "capture", 64 * 1024, 2);
+    journal.recordAttach("keypad", KEYPAD);
+    journal.record(HidCaptureRecord.Type.INPUT, "keypad", new byte[]{0x01, 0x2a}, 2);
+    journal.close();
+    HidServicesSpecification specification = new HidServicesSpecification();
+    specification.setAutoStart(false);
+    specification.setAutoShutdown(false);
+    specification.setHidApiLibrary(ReplayHidApiLibrary.load(directory, "capture", ReplayHidApiLibrary.AS_FAST_AS_POSSIBLE));
+    HidServices hidServices = new HidServices(specification);
+
+    // Act
+    HidDevice device = hidServices.getHidDevice(0x1234, 0x5678, null);
+    assertNotNull(device);
+    assertTrue(device.open());
+    byte[] report = new byte[2];
+    int count = device.read(report, 1000);
+
+    // Assert
+    assertEquals(2, count);
+    assertArrayEquals(new byte[]{0x01, 0x2a}, report);
+    assertEquals("Keypad", device.getProduct());
+    hidServices.shutdown();
+
+  }
+
+}
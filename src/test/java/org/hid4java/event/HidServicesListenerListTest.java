@@ -0,0 +1,196 @@
+package org.hid4java.event;
+
+import org.hid4java.EventQueuePolicy;
+import org.hid4java.HidDevice;
+import org.hid4java.HidServicesListener;
+import org.hid4java.HidServicesSpecification;
+import org.hid4java.jna.HidDeviceInfoStructure;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HidServicesListenerListTest {
+
+  /**
+   * The number of event workers in a listener list
+   */
+  private static final int WORKERS = 3;
+
+  @Test
+  void fireHidDataReceived_DropOldest() throws Exception {
+
+    // Arrange
+    HidServicesListenerList testObject = new HidServicesListenerList(2, EventQueuePolicy.DROP_OLDEST);
+    StallingListener listener = stallWorkers(testObject);
+
+    // Act
+    for (int i = WORKERS; i < WORKERS + 5; i++) {
+      testObject.fireHidDataReceived(device("a"), new byte[]{(byte) i});
+    }
+    testObject.fireHidDeviceAttached(device("b"));
+    testObject.fireHidDeviceDetached(device("b"));
+
+    // Assert (attach and detach are queued beyond the capacity)
+    assertEquals(3, testObject.getDroppedEventCount());
+    assertEquals(4, testObject.getQueueDepth());
+    listener.release(WORKERS + 2, 2);
+    assertEquals("[0, 1, 2, 6, 7]", listener.sortedData());
+
+  }
+
+  @Test
+  void fireHidDataReceived_DropNewest() throws Exception {
+
+    // Arrange
+    HidServicesListenerList testObject = new HidServicesListenerList(2, EventQueuePolicy.DROP_NEWEST);
+    StallingListener listener = stallWorkers(testObject);
+
+    // Act
+    for (int i = WORKERS; i < WORKERS + 5; i++) {
+      testObject.fireHidDataReceived(device("a"), new byte[]{(byte) i});
+    }
+    testObject.fireHidDeviceAttached(device("b"));
+
+    // Assert
+    assertEquals(3, testObject.getDroppedEventCount());
+    assertEquals(3, testObject.getQueueDepth());
+    listener.release(WORKERS + 2, 1);
+    assertEquals("[0, 1, 2, 3, 4]", listener.sortedData());
+
+  }
+
+  @Test
+  void fireHidDataReceived_Coalesce() throws Exception {
+
+    // Arrange
+    HidServicesListenerList testObject = new HidServicesListenerList(16, EventQueuePolicy.COALESCE);
+    StallingListener listener = stallWorkers(testObject);
+
+    // Act (last report per device wins)
+    for (int i = WORKERS; i < WORKERS + 5; i++) {
+      testObject.fireHidDataReceived(device("a"), new byte[]{(byte) i});
+      testObject.fireHidDataReceived(device("b"), new byte[]{(byte) (i + 10)});
+    }
+
+    // Assert
+    assertEquals(0, testObject.getDroppedEventCount());
+    assertEquals(8, testObject.getCoalescedEventCount());
+    assertEquals(2, testObject.getQueueDepth());
+    listener.release(WORKERS + 2, 0);
+    assertEquals("[0, 1, 2, 7, 17]", listener.sortedData());
+
+  }
+
+  @Test
+  void fireHidDataReceived_BlockByDefault() throws Exception {
+
+    // Arrange
+    HidServicesListenerList testObject = new HidServicesListenerList(2, new HidServicesSpecification().getEventQueuePolicy());
+    StallingListener listener = stallWorkers(testObject);
+    testObject.fireHidDataReceived(device("a"), new byte[]{3});
+    testObject.fireHidDataReceived(device("a"), new byte[]{4});
+    CountDownLatch fired = new CountDownLatch(1);
+    Thread reader = new Thread(() -> {
+      testObject.fireHidDataReceived(device("a"), new byte[]{5});
+      fired.countDown();
+    });
+
+    // Act (the reading thread waits for room rather than dropping)
+    reader.start();
+    boolean blocked = !fired.await(100, TimeUnit.MILLISECONDS);
+    listener.release(WORKERS + 3, 0);
+
+    // Assert
+    assertTrue(blocked);
+    assertTrue(fired.await(5, TimeUnit.SECONDS));
+    assertEquals(0, testObject.getDroppedEventCount());
+    assertEquals("[0, 1, 2, 3, 4, 5]", listener.sortedData());
+
+  }
+
+  /**
+   * Occupy every event worker with a data event that blocks until released
+   */
+  private static StallingListener stallWorkers(HidServicesListenerList testObject) throws InterruptedException {
+    StallingListener listener = new StallingListener();
+    testObject.add(listener);
+    for (int i = 0; i < WORKERS; i++) {
+      // Separate devices so the events cannot be coalesced
+      testObject.fireHidDataReceived(device("stall" + i), new byte[]{(byte) i});
+      // Wait for a worker to take it so the queue capacity is not involved
+      long deadline = System.currentTimeMillis() + 5000;
+      while (listener.stalled.getCount() > WORKERS - i - 1) {
+        assertTrue(System.currentTimeMillis() < deadline);
+        Thread.sleep(1);
+      }
+    }
+    return listener;
+  }
+
+  private static HidDevice device(String path) {
+    HidDeviceInfoStructure structure = new HidDeviceInfoStructure();
+    structure.path = path;
+    return new HidDevice(structure, null, new HidServicesSpecification());
+  }
+
+  private static class StallingListener implements HidServicesListener {
+
+    private final CountDownLatch stalled = new CountDownLatch(WORKERS);
+    private final CountDownLatch released = new CountDownLatch(1);
+    private final List<Integer> data = new CopyOnWriteArrayList<>();
+    private final List<HidDevice> devices = new CopyOnWriteArrayList<>();
+
+    private volatile CountDownLatch delivered;
+
+    @Override
+    public void hidDeviceAttached(HidServicesEvent event) {
+      devices.add(event.getHidDevice());
+      delivered.countDown();
+    }
+
+    @Override
+    public void hidDeviceDetached(HidServicesEvent event) {
+      devices.add(event.getHidDevice());
+      delivered.countDown();
+    }
+
+    @Override
+    public void hidFailure(HidServicesEvent event) {
+    }
+
+    @Override
+    public void hidDataReceived(HidServicesEvent event) {
+      stalled.countDown();
+      try {
+        released.await();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      data.add((int) event.getDataReceived()[0]);
+      delivered.countDown();
+    }
+
+    /**
+     * Let the workers continue and wait for the remaining events
+     */
+    private void release(int dataEvents, int deviceEvents) throws InterruptedException {
+      delivered = new CountDownLatch(dataEvents + deviceEvents);
+      released.countDown();
+      assertTrue(delivered.await(5, TimeUnit.SECONDS));
+      assertEquals(deviceEvents, devices.size());
+    }
+
+    private String sortedData() {
+      Integer[] values = data.toArray(new Integer[0]);
+      Arrays.sort(values);
+      return Arrays.toString(values);
+    }
+  }
+
+}
@@ -26,10 +26,13 @@
 package org.hid4java.examples;
 
 import org.hid4java.*;
-import org.hid4java.event.HidServicesEvent;
+import org.hid4java.fido.CtapHidChannel;
+import org.hid4java.fido.CtapHidException;
+import org.hid4java.fido.CtapHidTransport;
 import org.hid4java.jna.HidApi;
 
 import java.security.SecureRandom;
+import java.util.Arrays;
 
 /*
  * Demonstrate the USB HID interface using a FIDO2 USB device
@@ -122,13 +125,9 @@ public class Fido2AuthenticationExample extends BaseExample {
   private static int FIDO_CRED_PROT_UV_OPTIONAL_WITH_ID = 0x02;
   private static int FIDO_CRED_PROT_UV_REQUIRED = 0x03;
 
-  // Secure random source for nonce
+  // Secure random source for ping data
   private static SecureRandom secureRandom = new SecureRandom();
 
-  // Instance variables
-  private byte[] nonce = new byte[8];
-  private byte[] fidoChannel = new byte[4];
-
   public static void main(String[] args) throws HidException {
 
     Fido2AuthenticationExample example = new Fido2AuthenticationExample();
@@ -149,10 +148,6 @@ public class Fido2AuthenticationExample extends BaseExample {
     // Use manual start
     hidServicesSpecification.setAutoStart(false);
 
-    // Use data received events
-    hidServicesSpecification.setAutoDataRead(true);
-    hidServicesSpecification.setDataReadInterval(500);
-
     // Get HID services using custom specification
     HidServices hidServices = HidManager.getHidServices(hidServicesSpecification);
 
@@ -187,83 +182,45 @@ public class Fido2AuthenticationExample extends BaseExample {
   }
 
   /**
-   * Generate a random set of 8 bytes for use as a nonce
-   */
-  private void generateNonce() {
-
-    secureRandom.nextBytes(nonce);
-
-  }
-
-  /**
-   * Initialise the FIDO2 device and set a communications channel
+   * Initialise the FIDO2 device and allocate a communications channel
    * @param hidDevice The device to use
    * @return True if the device is now initialised for use
    */
   private boolean handleInitialise(HidDevice hidDevice) {
 
-    // Ensure device is open
-    if (hidDevice.isClosed()) {
-      if (!hidDevice.open()) {
-        throw new IllegalStateException("Unable to open device");
-      }
-    }
-
-    generateNonce();
-
-    // Initialise
-    byte[] initialiseRequest = new byte[]{
-      (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, // Broadcast channel
-      (byte) ((byte) 0x80 + CTAP_CMD_INIT), // Initialise command
-      0x00, 0x08, // Payload byte count (BCNT)
-      nonce[0], nonce[1], nonce[2], nonce[3], nonce[4], nonce[5], nonce[6], nonce[7]
-    };
-
-    // Write message to device with zero byte padding
-    System.out.println(ANSI_GREEN + "Sending CTAPHID_INIT..." + ANSI_RESET);
-    int bytesWritten = hidDevice.write(initialiseRequest, CTAP_MAX_REPORT_LEN, (byte) 0x00, true);
-    if (bytesWritten < 0) {
-      System.out.println(ANSI_RED + hidDevice.getLastErrorMessage() + ANSI_RESET);
+    // The transport opens the device and takes over reading input reports
+    CtapHidTransport transport = new CtapHidTransport(hidDevice);
+    transport.start();
+
+    try {
+      // Allocate a channel (CTAPHID_INIT with a random nonce on the broadcast channel)
+      System.out.println(ANSI_GREEN + "Sending CTAPHID_INIT..." + ANSI_RESET);
+      CtapHidChannel channel = transport.allocateChannel(1000);
+
+      System.out.println(ANSI_GREEN + "Response is:" + ANSI_RESET);
+      System.out.printf("New channel id: %08x%n", channel.getChannelId());
+      System.out.printf("Protocol (0x02): %02x%n", channel.getProtocolVersion());
+      System.out.printf("Major: %02x%n", channel.getMajorVersion());
+      System.out.printf("Minor: %02x%n", channel.getMinorVersion());
+      System.out.printf("Build: %02x%n", channel.getBuildVersion());
+      System.out.printf("Capabilities: %02x%n", channel.getCapabilities());
+
+      // Demonstrate fragmentation and reassembly with a multi-packet ping
+      byte[] ping = new byte[CTAP_MAX_REPORT_LEN * 4];
+      secureRandom.nextBytes(ping);
+      System.out.println(ANSI_GREEN + "Sending CTAPHID_PING..." + ANSI_RESET);
+      byte[] echo = channel.ping(ping, 1000);
+      System.out.println(ANSI_GREEN + "Ping echo matches: " + Arrays.equals(ping, echo) + ANSI_RESET);
+
+    } catch (CtapHidException e) {
+      System.out.println(ANSI_RED + e.getMessage() + ANSI_RESET);
       return false;
+    } finally {
+      transport.stop();
     }
 
     return true;
 
   }
 
-  @Override
-  public void hidDataReceived(HidServicesEvent event) {
-    super.hidDataReceived(event);
-
-    // Analyse the response
-    byte[] initialiseResponse = event.getDataReceived();
-
-    // Decode the response
-    System.out.println(ANSI_GREEN + "Response is:" + ANSI_RESET);
-    System.out.printf("Channel id: %02x %02x %02x %02x%n",
-      initialiseResponse[0], initialiseResponse[1], initialiseResponse[2], initialiseResponse[3]
-    );
-    System.out.printf("Command (0x86): %02x%n", initialiseResponse[4]);
-    System.out.printf("Byte count (0x00 0x11): %02x %02x%n", initialiseResponse[5], initialiseResponse[6]);
-    System.out.printf("Nonce (%02x %02x %02x %02x %02x %02x %02x %02x): %02x %02x %02x %02x %02x %02x %02x %02x%n",
-      nonce[0], nonce[1], nonce[2], nonce[3], nonce[4], nonce[5], nonce[6], nonce[7],
-      initialiseResponse[7], initialiseResponse[8],initialiseResponse[9], initialiseResponse[10],
-      initialiseResponse[11], initialiseResponse[12],initialiseResponse[13], initialiseResponse[14]
-    );
-    System.out.printf("New channel id: %02x %02x %02x %02x%n",
-      initialiseResponse[15], initialiseResponse[16],initialiseResponse[17], initialiseResponse[18]
-    );
-    System.out.printf("Protocol (0x02): %02x%n", initialiseResponse[19]);
-    System.out.printf("Major: %02x%n", initialiseResponse[20]);
-    System.out.printf("Minor: %02x%n", initialiseResponse[21]);
-    System.out.printf("Build: %02x%n", initialiseResponse[22]);
-    System.out.printf("Capabilities: %02x%n", initialiseResponse[23]);
-
-    // Copy the channel for ongoing communications
-    fidoChannel[0] = initialiseResponse[15];
-    fidoChannel[1] = initialiseResponse[16];
-    fidoChannel[2] = initialiseResponse[17];
-    fidoChannel[3] = initialiseResponse[18];
-
-  }
 }
@@ -0,0 +1,43 @@
+package org.hid4java.ffm;
+
+import org.hid4java.jna.HidApiLibrary;
+import org.hid4java.simulated.SimulatedHidApiLibrary;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeFalse;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class ForeignHidApiTest {
+
+  @Test
+  void wrap_Unsupported() {
+
+    // Arrange
+    assumeFalse(ForeignHidApi.isSupported());
+    HidApiLibrary library = new SimulatedHidApiLibrary(1);
+
+    // Act
+    HidApiLibrary wrapped = ForeignHidApi.wrap(library);
+
+    // Assert (the JNA binding is used unchanged)
+    assertSame(library, wrapped);
+
+  }
+
+  @Test
+  void wrap_NotJna() {
+
+    // Arrange
+    assumeTrue(ForeignHidApi.isSupported());
+    HidApiLibrary library = new SimulatedHidApiLibrary(1);
+
+    // Act
+    IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> ForeignHidApi.wrap(library));
+
+    // Assert
+    assertEquals("'library' must be a JNA binding of hidapi.", e.getMessage());
+
+  }
+
+}
@@ -0,0 +1,187 @@
+package org.hid4java.fido;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CtapHidTransportTest {
+
+  private SimulatedAuthenticator authenticator;
+  private CtapHidTransport testObject;
+
+  @BeforeEach
+  void setUp() {
+    authenticator = new SimulatedAuthenticator();
+    testObject = new CtapHidTransport(authenticator);
+    testObject.start();
+  }
+
+  @AfterEach
+  void tearDown() {
+    testObject.stop();
+    authenticator.close();
+  }
+
+  @Test
+  void fragment_MaxMessage() {
+
+    // Arrange
+    byte[] payload = new byte[CtapHidTransport.FIDO_MAXMSG];
+
+    // Act
+    List<byte[]> packets = CtapHidTransport.fragment(0x01020304, CtapHidTransport.CTAPHID_CBOR, payload, 64);
+
+    // Assert (57 bytes in the initialization packet then 59 bytes per continuation)
+    assertEquals(1 + 34, packets.size());
+    assertEquals((byte) 0x90, packets.get(0)[4]);
+    assertEquals(0x08, packets.get(0)[5]);
+    assertEquals(0x00, packets.get(0)[6]);
+    for (int i = 1; i < packets.size(); i++) {
+      assertEquals(0x01020304, CtapHidTransport.readInt(packets.get(i), 0));
+      assertEquals(i - 1, packets.get(i)[4]);
+    }
+
+  }
+
+  @Test
+  void fragment_TooLarge() {
+
+    // Arrange
+    byte[] payload = new byte[CtapHidTransport.FIDO_MAXMSG + 1];
+
+    // Act
+    CtapHidException e = assertThrows(CtapHidException.class, () -> CtapHidTransport.fragment(1, CtapHidTransport.CTAPHID_PING, payload, 64));
+
+    // Assert
+    assertEquals(CtapHidTransport.ERR_INVALID_LEN, e.getErrorCode());
+
+  }
+
+  @Test
+  void allocateChannel() {
+
+    // Act
+    CtapHidChannel first = testObject.allocateChannel(1000);
+    CtapHidChannel second = testObject.allocateChannel(1000);
+
+    // Assert
+    assertNotEquals(first.getChannelId(), second.getChannelId());
+    assertEquals(2, first.getProtocolVersion());
+    assertTrue(first.hasCapability(CtapHidChannel.CAPABILITY_CBOR));
+    assertFalse(first.hasCapability(CtapHidChannel.CAPABILITY_NMSG));
+
+  }
+
+  @Test
+  void ping_ConcurrentChannels() throws Exception {
+
+    // Arrange
+    ExecutorService executorService = Executors.newFixedThreadPool(8);
+    List<Future<Boolean>> results = new ArrayList<>();
+
+    // Act
+    for (int i = 0; i < 8; i++) {
+      final int seed = i;
+      results.add(executorService.submit(new Callable<Boolean>() {
+        @Override
+        public Boolean call() {
+          CtapHidChannel channel = testObject.allocateChannel(1000);
+          Random random = new Random(seed);
+          for (int j = 0; j < 20; j++) {
+            byte[] request = new byte[random.nextInt(CtapHidTransport.FIDO_MAXMSG + 1)];
+            random.nextBytes(request);
+            if (!Arrays.equals(request, channel.ping(request, 2000))) {
+              return false;
+            }
+          }
+          return true;
+        }
+      }));
+    }
+
+    // Assert
+    for (Future<Boolean> result : results) {
+      assertTrue(result.get());
+    }
+    executorService.shutdown();
+
+  }
+
+  @Test
+  void cbor_KeepAliveExtendsTimeout() {
+
+    // Arrange
+    authenticator.setKeepAlives(5, 40);
+    CtapHidChannel channel = testObject.allocateChannel(1000);
+    final AtomicInteger keepAlives = new AtomicInteger();
+    channel.setKeepAliveListener(new CtapHidChannel.KeepAliveListener() {
+      @Override
+      public void keepAlive(int status) {
+        assertEquals(CtapHidTransport.KEEPALIVE_PROCESSING, status);
+        keepAlives.incrementAndGet();
+      }
+    });
+
+    // Act (overall duration exceeds the timeout)
+    byte[] response = channel.cbor(new byte[]{0x04}, 100);
+
+    // Assert
+    assertArrayEquals(new byte[]{SimulatedAuthenticator.CTAP2_OK, 0x04}, response);
+    assertEquals(5, keepAlives.get());
+
+  }
+
+  @Test
+  void cbor_Cancel() throws Exception {
+
+    // Arrange
+    authenticator.setKeepAlives(100, 20);
+    final CtapHidChannel channel = testObject.allocateChannel(1000);
+    channel.setKeepAliveListener(new CtapHidChannel.KeepAliveListener() {
+      @Override
+      public void keepAlive(int status) {
+        // Cancel from a different thread to the one waiting on the response
+        new Thread(new Runnable() {
+          @Override
+          public void run() {
+            channel.cancel();
+          }
+        }).start();
+      }
+    });
+
+    // Act
+    byte[] response = channel.cbor(new byte[]{0x01}, 1000);
+
+    // Assert
+    assertArrayEquals(new byte[]{SimulatedAuthenticator.CTAP2_ERR_KEEPALIVE_CANCEL}, response);
+
+  }
+
+  @Test
+  void transact_Error() {
+
+    // Arrange
+    CtapHidChannel channel = testObject.allocateChannel(1000);
+
+    // Act
+    CtapHidException e = assertThrows(CtapHidException.class, () -> channel.transact((byte) 0x70, new byte[0], 1000));
+
+    // Assert
+    assertEquals(CtapHidTransport.ERR_INVALID_CMD, e.getErrorCode());
+
+  }
+
+}
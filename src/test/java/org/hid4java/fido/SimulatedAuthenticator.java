@@ -0,0 +1,212 @@
+package org.hid4java.fido;
+
+import org.hid4java.HidDevice;
+import org.hid4java.HidServicesSpecification;
+import org.hid4java.jna.HidDeviceInfoStructure;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * In-process CTAPHID authenticator for exercising {@link CtapHidTransport} without hardware
+ *
+ * Supports CTAPHID_INIT, CTAPHID_PING (echo) and CTAPHID_CBOR (echo after a configurable
+ * number of keepalives, honouring CTAPHID_CANCEL). Responses are queued from worker threads
+ * so that packets for different channels interleave on the input stream.
+ */
+class SimulatedAuthenticator extends HidDevice {
+
+  static final byte CTAP2_OK = 0x00;
+  static final byte CTAP2_ERR_KEEPALIVE_CANCEL = 0x2d;
+
+  private final BlockingQueue<byte[]> inputReports = new LinkedBlockingQueue<>();
+  private final Map<Integer, Request> requests = new ConcurrentHashMap<>();
+  private final Set<Integer> cancelled = ConcurrentHashMap.newKeySet();
+  private final AtomicInteger nextChannelId = new AtomicInteger(1);
+  private final ExecutorService workers = Executors.newCachedThreadPool();
+
+  private volatile boolean open = false;
+  private volatile int keepAlives = 0;
+  private volatile int keepAliveIntervalMillis = 20;
+
+  SimulatedAuthenticator() {
+    super(infoStructure(), null, new HidServicesSpecification());
+  }
+
+  private static HidDeviceInfoStructure infoStructure() {
+    HidDeviceInfoStructure structure = new HidDeviceInfoStructure();
+    structure.path = "simulated-authenticator";
+    structure.usage_page = (short) 0xf1d0;
+    structure.usage = 0x01;
+    return structure;
+  }
+
+  /**
+   * @param keepAlives         The number of keepalives to send before each CBOR response
+   * @param intervalMillis     The interval between keepalives
+   */
+  void setKeepAlives(int keepAlives, int intervalMillis) {
+    this.keepAlives = keepAlives;
+    this.keepAliveIntervalMillis = intervalMillis;
+  }
+
+  @Override
+  public boolean open() {
+    open = true;
+    return true;
+  }
+
+  @Override
+  public boolean isClosed() {
+    return !open;
+  }
+
+  @Override
+  public void close() {
+    open = false;
+    workers.shutdownNow();
+  }
+
+  @Override
+  public String getLastErrorMessage() {
+    return "Simulated failure";
+  }
+
+  @Override
+  public int read(byte[] bytes, int timeoutMillis) {
+    try {
+      byte[] report = inputReports.poll(timeoutMillis, TimeUnit.MILLISECONDS);
+      if (report == null) {
+        return 0;
+      }
+      int length = Math.min(bytes.length, report.length);
+      System.arraycopy(report, 0, bytes, 0, length);
+      return length;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return -1;
+    }
+  }
+
+  @Override
+  public int write(byte[] message, int packetLength, byte reportId) {
+    return write(message, packetLength, reportId, false);
+  }
+
+  @Override
+  public int write(byte[] message, int packetLength, byte reportId, boolean applyPadding) {
+
+    int channelId = CtapHidTransport.readInt(message, 0);
+    byte commandOrSequence = message[4];
+
+    if ((commandOrSequence & 0x80) != 0) {
+      byte command = (byte) (commandOrSequence & 0x7f);
+      if (command == CtapHidTransport.CTAPHID_CANCEL) {
+        cancelled.add(channelId);
+        return packetLength + 1;
+      }
+      int byteCount = ((message[5] & 0xff) << 8) | (message[6] & 0xff);
+      Request request = new Request(command, byteCount);
+      request.append(message, CtapHidTransport.INIT_HEADER_LEN, packetLength - CtapHidTransport.INIT_HEADER_LEN);
+      requests.put(channelId, request);
+      complete(channelId, request);
+    } else {
+      Request request = requests.get(channelId);
+      if (request != null) {
+        request.append(message, CtapHidTransport.CONT_HEADER_LEN, packetLength - CtapHidTransport.CONT_HEADER_LEN);
+        complete(channelId, request);
+      }
+    }
+
+    return packetLength + 1;
+  }
+
+  private void complete(final int channelId, final Request request) {
+
+    if (request.received < request.payload.length) {
+      return;
+    }
+    requests.remove(channelId);
+
+    workers.submit(new Runnable() {
+      @Override
+      public void run() {
+        handle(channelId, request.command, request.payload);
+      }
+    });
+  }
+
+  private void handle(int channelId, byte command, byte[] payload) {
+
+    switch (command) {
+      case CtapHidTransport.CTAPHID_INIT:
+        byte[] response = new byte[17];
+        System.arraycopy(payload, 0, response, 0, 8);
+        CtapHidTransport.writeInt(response, 8, nextChannelId.getAndIncrement());
+        response[12] = 2;
+        response[13] = 1;
+        response[14] = 2;
+        response[15] = 3;
+        response[16] = CtapHidChannel.CAPABILITY_CBOR | CtapHidChannel.CAPABILITY_WINK;
+        respond(CtapHidTransport.CID_BROADCAST, CtapHidTransport.CTAPHID_INIT, response);
+        break;
+      case CtapHidTransport.CTAPHID_PING:
+        respond(channelId, command, payload);
+        break;
+      case CtapHidTransport.CTAPHID_CBOR:
+        cancelled.remove(channelId);
+        for (int i = 0; i < keepAlives; i++) {
+          if (cancelled.remove(channelId)) {
+            respond(channelId, command, new byte[]{CTAP2_ERR_KEEPALIVE_CANCEL});
+            return;
+          }
+          respond(channelId, CtapHidTransport.CTAPHID_KEEPALIVE, new byte[]{CtapHidTransport.KEEPALIVE_PROCESSING});
+          try {
+            Thread.sleep(keepAliveIntervalMillis);
+          } catch (InterruptedException e) {
+            return;
+          }
+        }
+        byte[] cborResponse = new byte[payload.length + 1];
+        cborResponse[0] = CTAP2_OK;
+        System.arraycopy(payload, 0, cborResponse, 1, payload.length);
+        respond(channelId, command, cborResponse);
+        break;
+      default:
+        respond(channelId, CtapHidTransport.CTAPHID_ERROR, new byte[]{CtapHidTransport.ERR_INVALID_CMD});
+    }
+  }
+
+  private void respond(int channelId, byte command, byte[] payload) {
+    for (byte[] packet : CtapHidTransport.fragment(channelId, command, payload, CtapHidTransport.DEFAULT_REPORT_LENGTH)) {
+      inputReports.add(packet);
+      // Encourage interleaving with responses on other channels
+      Thread.yield();
+    }
+  }
+
+  private static final class Request {
+
+    private final byte command;
+    private final byte[] payload;
+    private int received = 0;
+
+    private Request(byte command, int byteCount) {
+      this.command = command;
+      this.payload = new byte[byteCount];
+    }
+
+    private void append(byte[] packet, int offset, int length) {
+      int chunk = Math.min(length, payload.length - received);
+      System.arraycopy(packet, offset, payload, received, chunk);
+      received += chunk;
+    }
+  }
+}
@@ -0,0 +1,129 @@
+package org.hid4java.framing;
+
+import org.hid4java.HidException;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HidMessageCodecTest {
+
+  private final Random random = new Random(42);
+
+  @Test
+  void lengthPrefixed_RoundTrip() {
+
+    // Arrange
+    HidMessageCodec testObject = new LengthPrefixedCodec();
+
+    // Act/Assert (including the boundary where the message exactly fills the packets)
+    for (int length : new int[]{0, 1, 62, 63, 64, 126, 1000}) {
+      assertRoundTrip(testObject, randomMessage(length), 64);
+    }
+
+  }
+
+  @Test
+  void sequenceNumbered_RoundTrip() {
+
+    // Arrange
+    HidMessageCodec testObject = new SequenceNumberedCodec();
+
+    // Act/Assert (long enough to wrap the sequence number)
+    for (int length : new int[]{0, 61, 62, 63, 20000}) {
+      assertRoundTrip(testObject, randomMessage(length), 64);
+    }
+
+  }
+
+  @Test
+  void sequenceNumbered_DroppedPacket() {
+
+    // Arrange
+    HidMessageCodec testObject = new SequenceNumberedCodec();
+    List<byte[]> packets = testObject.encode(randomMessage(200), 64);
+    HidMessageDecoder decoder = testObject.newDecoder();
+
+    // Act
+    assertNull(decoder.decode(packets.get(0), 0, 64));
+
+    // Assert
+    assertThrows(HidException.class, () -> decoder.decode(packets.get(2), 0, 64));
+
+  }
+
+  @Test
+  void terminator_RoundTrip() {
+
+    // Arrange
+    HidMessageCodec testObject = new TerminatorCodec((byte) '\n');
+
+    // Act/Assert
+    for (String message : new String[]{"", "OK", "0123456789012345678901234567890123456789012345678901234567890123"}) {
+      List<byte[]> packets = testObject.encode(message.getBytes(), 32);
+      HidMessageDecoder decoder = testObject.newDecoder();
+      byte[] decoded = null;
+      for (byte[] packet : packets) {
+        assertNull(decoded);
+        decoded = decoder.decode(packet, 0, packet.length);
+      }
+      assertEquals(message, new String(decoded));
+    }
+
+  }
+
+  @Test
+  void terminator_RejectsTerminatorInMessage() {
+
+    // Arrange
+    HidMessageCodec testObject = new TerminatorCodec((byte) 0x03);
+
+    // Act/Assert
+    assertThrows(IllegalArgumentException.class, () -> testObject.encode(new byte[]{0x01, 0x03}, 64));
+
+  }
+
+  @Test
+  void framedHidDevice_Loopback() {
+
+    // Arrange
+    LoopbackHidDevice device = new LoopbackHidDevice(0);
+    FramedHidDevice testObject = new FramedHidDevice(device, new LengthPrefixedCodec(), 64, (byte) 0x00);
+    byte[] first = randomMessage(5000);
+    byte[] second = randomMessage(10);
+
+    // Act
+    testObject.writeMessage(first);
+    testObject.writeMessage(second);
+
+    // Assert
+    assertArrayEquals(first, testObject.readMessage(1000));
+    assertArrayEquals(second, testObject.readMessage(1000));
+    assertNull(testObject.readMessage(10));
+
+  }
+
+  private void assertRoundTrip(HidMessageCodec codec, byte[] message, int packetLength) {
+
+    List<byte[]> packets = codec.encode(message, packetLength);
+    HidMessageDecoder decoder = codec.newDecoder();
+
+    byte[] decoded = null;
+    for (byte[] packet : packets) {
+      assertEquals(packetLength, packet.length);
+      assertNull(decoded, "Message completed before final packet");
+      decoded = decoder.decode(packet, 0, packet.length);
+    }
+
+    assertArrayEquals(message, decoded);
+  }
+
+  private byte[] randomMessage(int length) {
+    byte[] message = new byte[length];
+    random.nextBytes(message);
+    return message;
+  }
+
+}
@@ -0,0 +1,110 @@
+package org.hid4java.framing;
+
+import org.hid4java.HidDevice;
+import org.hid4java.HidServicesSpecification;
+import org.hid4java.jna.HidDeviceInfoStructure;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Simulated device that echoes every output report back as an input report
+ *
+ * Each output report costs a configurable latency to model the interrupt OUT endpoint
+ * interval and its echo only becomes readable after a further latency to model the
+ * device processing time and interrupt IN polling.
+ */
+class LoopbackHidDevice extends HidDevice {
+
+  private final BlockingQueue<InputReport> inputReports = new LinkedBlockingQueue<>();
+  private final long writeLatencyNanos;
+  private final long inputLatencyNanos;
+  private final AtomicInteger writeCount = new AtomicInteger();
+
+  LoopbackHidDevice(long writeLatencyNanos) {
+    this(writeLatencyNanos, 0);
+  }
+
+  LoopbackHidDevice(long writeLatencyNanos, long inputLatencyNanos) {
+    super(infoStructure(), null, new HidServicesSpecification());
+    this.writeLatencyNanos = writeLatencyNanos;
+    this.inputLatencyNanos = inputLatencyNanos;
+  }
+
+  private static HidDeviceInfoStructure infoStructure() {
+    HidDeviceInfoStructure structure = new HidDeviceInfoStructure();
+    structure.path = "loopback";
+    return structure;
+  }
+
+  int getWriteCount() {
+    return writeCount.get();
+  }
+
+  @Override
+  public boolean isClosed() {
+    return false;
+  }
+
+  @Override
+  public int read(byte[] bytes, int timeoutMillis) {
+    try {
+      InputReport inputReport = inputReports.poll(timeoutMillis, TimeUnit.MILLISECONDS);
+      if (inputReport == null) {
+        return 0;
+      }
+      // Reports are queued in order of availability
+      long wait;
+      while ((wait = inputReport.availableAt - System.nanoTime()) > 0) {
+        LockSupport.parkNanos(wait);
+      }
+      byte[] report = inputReport.bytes;
+      int length = Math.min(bytes.length, report.length);
+      System.arraycopy(report, 0, bytes, 0, length);
+      return length;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return -1;
+    }
+  }
+
+  @Override
+  public int write(byte[] message, int packetLength, byte reportId) {
+    return write(message, packetLength, reportId, false);
+  }
+
+  @Override
+  public int write(byte[] message, int packetLength, byte reportId, boolean applyPadding) {
+    if (writeLatencyNanos > 0) {
+      LockSupport.parkNanos(writeLatencyNanos);
+    }
+    writeCount.incrementAndGet();
+    inputReports.add(new InputReport(Arrays.copyOf(message, packetLength), System.nanoTime() + inputLatencyNanos));
+    return packetLength + 1;
+  }
+
+  @Override
+  public int write(List<byte[]> packets, int packetLength, byte reportId, boolean applyPadding) {
+    int total = 0;
+    for (byte[] packet : packets) {
+      total += write(packet, packetLength, reportId, applyPadding);
+    }
+    return total;
+  }
+
+  private static final class InputReport {
+
+    private final byte[] bytes;
+    private final long availableAt;
+
+    private InputReport(byte[] bytes, long availableAt) {
+      this.bytes = bytes;
+      this.availableAt = availableAt;
+    }
+  }
+}
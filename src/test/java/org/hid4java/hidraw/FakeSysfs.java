@@ -0,0 +1,66 @@
+package org.hid4java.hidraw;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+/**
+ * Fabricates the parts of a sysfs tree read by {@link SysfsHidrawEnumerator}
+ *
+ * Each hidraw node is a <code>class/hidraw/hidrawN/device</code> symlink to a HID device
+ * directory holding <code>uevent</code> and <code>report_descriptor</code>.
+ */
+class FakeSysfs {
+
+  /**
+   * Usage page 0xF1D0 (FIDO), usage 0x01 then an application collection
+   */
+  static final byte[] REPORT_DESCRIPTOR = {0x06, (byte) 0xd0, (byte) 0xf1, 0x09, 0x01, (byte) 0xa1, 0x01, (byte) 0xc0};
+
+  private final File sysfsRoot;
+
+  FakeSysfs(File sysfsRoot) {
+    this.sysfsRoot = sysfsRoot;
+  }
+
+  /**
+   * Fabricate the sysfs layout of a USB HID interface
+   */
+  void addUsbDevice(int index, int vendorId, int productId, String usbInterface) throws IOException {
+    File usbDevice = new File(sysfsRoot, "devices/pci0000:00/usb1/" + usbInterface.substring(0, usbInterface.indexOf(':')));
+    File interfaceDirectory = new File(usbDevice, usbInterface);
+    write(new File(usbDevice, "manufacturer"), "hid4java\n");
+    write(new File(usbDevice, "product"), "Test Device\n");
+    write(new File(usbDevice, "serial"), "SN" + index + "\n");
+    write(new File(usbDevice, "bcdDevice"), "0102\n");
+    write(new File(interfaceDirectory, "bInterfaceNumber"), usbInterface.substring(usbInterface.lastIndexOf('.') + 1) + "\n");
+    String id = String.format("0003:%08X:%08X", vendorId, productId);
+    addDevice(index, new File(interfaceDirectory, String.format("0003:%04X:%04X.%04X", vendorId, productId, index + 1)), id, "hid4java Test Device", "");
+  }
+
+  void addDevice(int index, File hidDevice, String id, String name, String uniq) throws IOException {
+    write(new File(hidDevice, "uevent"), "DRIVER=hid-generic\nHID_ID=" + id + "\nHID_NAME=" + name + "\nHID_PHYS=usb\nHID_UNIQ=" + uniq + "\n");
+    Files.write(new File(hidDevice, "report_descriptor").toPath(), REPORT_DESCRIPTOR);
+    File classEntry = new File(sysfsRoot, "class/hidraw/hidraw" + index);
+    if (!classEntry.mkdirs()) {
+      throw new IOException("Unable to create " + classEntry);
+    }
+    Files.createSymbolicLink(new File(classEntry, "device").toPath(), hidDevice.toPath());
+  }
+
+  /**
+   * Remove the hidraw node (the device directory is left behind as it would be for a new node)
+   */
+  void removeDevice(int index) throws IOException {
+    File classEntry = new File(sysfsRoot, "class/hidraw/hidraw" + index);
+    Files.delete(new File(classEntry, "device").toPath());
+    Files.delete(classEntry.toPath());
+  }
+
+  private static void write(File file, String content) throws IOException {
+    file.getParentFile().mkdirs();
+    Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+  }
+
+}
@@ -0,0 +1,218 @@
+package org.hid4java.hidraw;
+
+import com.sun.jna.Pointer;
+import org.hid4java.HidDevice;
+import org.hid4java.HidSelectionKey;
+import org.hid4java.HidSelector;
+import org.hid4java.HidServices;
+import org.hid4java.HidServicesSpecification;
+import org.hid4java.jna.HidDeviceInfoStructure;
+import org.hid4java.jna.HidInputMultiplexer;
+import org.hid4java.jna.WideStringBuffer;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class PureJavaHidApiLibraryTest {
+
+  @TempDir
+  File root;
+
+  private File deviceRoot;
+  private File sysfsRoot;
+  private FakeSysfs sysfs;
+  private PureJavaHidApiLibrary testObject;
+
+  @BeforeEach
+  void setUp() {
+    assumeTrue(PureJavaHidApiLibrary.isSupported());
+    deviceRoot = new File(root, "dev");
+    sysfsRoot = new File(root, "sys");
+    assertTrue(deviceRoot.mkdirs());
+    sysfs = new FakeSysfs(sysfsRoot);
+    testObject = new PureJavaHidApiLibrary(deviceRoot, sysfsRoot);
+  }
+
+  @Test
+  void hid_enumerate_UsbAndBluetooth() throws Exception {
+
+    // Arrange
+    sysfs.addUsbDevice(0, 0x1209, 0x0001, "1-1:1.2");
+    sysfs.addDevice(1, new File(sysfsRoot, "devices/virtual/0005:046D:B01A.0002"), "0005:0000046D:0000B01A", "Keyboard K380", "aa:bb:cc:dd:ee:ff");
+
+    // Act
+    HidDeviceInfoStructure usb = testObject.hid_enumerate((short) 0, (short) 0);
+    HidDeviceInfoStructure bluetooth = usb.next();
+
+    // Assert
+    assertEquals(new File(deviceRoot, "hidraw0").getPath(), usb.path);
+    assertEquals(0x1209, usb.vendor_id & 0xffff);
+    assertEquals(0x0001, usb.product_id & 0xffff);
+    assertEquals("hid4java", usb.manufacturer_string.toString());
+    assertEquals("Test Device", usb.product_string.toString());
+    assertEquals("SN0", usb.serial_number.toString());
+    assertEquals(0x0102, usb.release_number);
+    assertEquals(2, usb.interface_number);
+    assertEquals(0xf1d0, usb.usage_page & 0xffff);
+    assertEquals(0x01, usb.usage);
+
+    assertEquals(0x046d, bluetooth.vendor_id & 0xffff);
+    assertEquals("Keyboard K380", bluetooth.product_string.toString());
+    assertEquals("aa:bb:cc:dd:ee:ff", bluetooth.serial_number.toString());
+    assertEquals(-1, bluetooth.interface_number);
+    assertNull(bluetooth.next());
+
+    assertNull(testObject.hid_enumerate((short) 0x1234, (short) 0));
+
+  }
+
+  @Test
+  void hid_read_Fifo() throws Exception {
+
+    // Arrange
+    File fifo = fifo("hidraw0");
+    Pointer device = testObject.hid_open_path(fifo.getPath());
+    assertNotNull(device);
+    WideStringBuffer buffer = new WideStringBuffer(64);
+
+    // Act
+    int empty = testObject.hid_read_timeout(device, buffer, 64, 10);
+    try (FileOutputStream input = new FileOutputStream(fifo)) {
+      input.write(new byte[]{1, 2, 3, 4});
+    }
+    int read = testObject.hid_read_timeout(device, buffer, 64, 1000);
+    testObject.hid_set_nonblocking(device, 1);
+    int nonBlocking = testObject.hid_read(device, buffer, 64);
+
+    // Assert
+    assertEquals(0, empty);
+    assertEquals(4, read);
+    assertEquals(3, buffer.buffer[2]);
+    assertEquals(0, nonBlocking);
+    testObject.hid_close(device);
+
+  }
+
+  @Test
+  void hid_write_Fifo() throws Exception {
+
+    // Arrange
+    File fifo = fifo("hidraw0");
+    Pointer device = testObject.hid_open_path(fifo.getPath());
+    WideStringBuffer report = new WideStringBuffer(new byte[]{0, 5, 6, 7});
+
+    // Act
+    int written = testObject.hid_write(device, report, 4);
+    byte[] received = new byte[4];
+    try (FileInputStream output = new FileInputStream(fifo)) {
+      assertEquals(4, output.read(received));
+    }
+
+    // Assert
+    assertEquals(4, written);
+    assertArrayEquals(report.buffer, received);
+    testObject.hid_close(device);
+
+  }
+
+  @Test
+  void hid_send_feature_report_NotHidraw() throws Exception {
+
+    // Arrange
+    Pointer device = testObject.hid_open_path(fifo("hidraw0").getPath());
+
+    // Act
+    int result = testObject.hid_send_feature_report(device, new WideStringBuffer(new byte[]{0, 1}), 2);
+
+    // Assert (a FIFO does not support the hidraw ioctls)
+    assertEquals(-1, result);
+    String error = new WideStringBuffer(testObject.hid_error(device).getByteArray(0, 512)).toString();
+    assertFalse(error.isEmpty());
+    testObject.hid_close(device);
+
+  }
+
+  @Test
+  void hid_open_path_Missing() {
+
+    // Act
+    Pointer device = testObject.hid_open_path(new File(deviceRoot, "hidraw9").getPath());
+
+    // Assert
+    assertNull(device);
+    String error = new WideStringBuffer(testObject.hid_error(Pointer.NULL).getByteArray(0, 512)).toString();
+    assertTrue(error.contains("hidraw9"));
+
+  }
+
+  @Test
+  void select_Epoll() throws Exception {
+
+    // Arrange
+    Map<String, File> fifos = new HashMap<>();
+    for (int i = 0; i < 3; i++) {
+      sysfs.addUsbDevice(i, 0x1209, 0x0001, "1-" + (i + 1) + ":1.0");
+      fifos.put(new File(deviceRoot, "hidraw" + i).getPath(), fifo("hidraw" + i));
+    }
+    HidServicesSpecification specification = new HidServicesSpecification();
+    specification.setHidApiLibrary(testObject);
+    specification.setAutoStart(false);
+    specification.setAutoShutdown(false);
+    HidServices hidServices = new HidServices(specification);
+    List<HidDevice> devices = hidServices.getAttachedHidDevices();
+    assertEquals(3, devices.size());
+    HidInputMultiplexer multiplexer = testObject.openInputMultiplexer();
+    assertNotNull(multiplexer);
+    multiplexer.close();
+    HidSelector selector = new HidSelector();
+    for (HidDevice device : devices) {
+      assertTrue(device.open());
+      selector.register(device);
+    }
+
+    // Act (only the second device has input)
+    try (FileOutputStream input = new FileOutputStream(fifos.get(devices.get(1).getPath()))) {
+      input.write(new byte[]{9, 8, 7});
+    }
+    HidSelectionKey selected = null;
+    long deadline = System.currentTimeMillis() + 5000;
+    while (selected == null && System.currentTimeMillis() < deadline) {
+      for (HidSelectionKey key : selector.select(100)) {
+        selected = key;
+      }
+    }
+
+    // Assert
+    assertNotNull(selected);
+    assertSame(devices.get(1), selected.getHidDevice());
+    assertArrayEquals(new byte[]{9, 8, 7}, selected.read());
+    assertNull(selected.read());
+    assertTrue(selector.select(0).isEmpty());
+
+    selector.close();
+    for (HidDevice device : devices) {
+      device.close();
+    }
+    hidServices.shutdown();
+
+  }
+
+  private File fifo(String name) throws IOException, InterruptedException {
+    File fifo = new File(deviceRoot, name);
+    Process process = new ProcessBuilder("mkfifo", fifo.getPath()).start();
+    assertEquals(0, process.waitFor());
+    return fifo;
+  }
+
+}
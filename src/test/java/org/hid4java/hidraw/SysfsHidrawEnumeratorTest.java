@@ -0,0 +1,116 @@
+package org.hid4java.hidraw;
+
+import com.sun.jna.Platform;
+import org.hid4java.jna.HidDeviceInfoStructure;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class SysfsHidrawEnumeratorTest {
+
+  @TempDir
+  File root;
+
+  private File deviceRoot;
+  private File sysfsRoot;
+  private FakeSysfs sysfs;
+
+  @BeforeEach
+  void setUp() {
+    assumeTrue(Platform.isLinux());
+    deviceRoot = new File(root, "dev");
+    sysfsRoot = new File(root, "sys");
+    sysfs = new FakeSysfs(sysfsRoot);
+  }
+
+  @Test
+  void enumerate_CachedUntilReplaced() throws Exception {
+
+    // Arrange
+    for (int i = 0; i < 3; i++) {
+      sysfs.addUsbDevice(i, 0x1209, 0x0001, "1-" + (i + 1) + ":1.0");
+    }
+    SysfsHidrawEnumerator testObject = new SysfsHidrawEnumerator(deviceRoot, sysfsRoot, 2);
+    List<String> first = describe(testObject.enumerate(0, 0));
+
+    // Act
+    List<String> second = describe(testObject.enumerate(0, 0));
+    long parsedBeforeReplace = testObject.getParseCount();
+    sysfs.removeDevice(1);
+    sysfs.addUsbDevice(1, 0x1209, 0x0002, "1-9:1.0");
+    sysfs.removeDevice(2);
+    List<String> third = describe(testObject.enumerate(0, 0));
+
+    // Assert (only the replaced node is parsed again)
+    assertEquals(3, first.size());
+    assertEquals(first, second);
+    assertEquals(3, parsedBeforeReplace);
+    assertEquals(4, testObject.getParseCount());
+    assertEquals(2, third.size());
+    assertEquals(first.get(0), third.get(0));
+    assertTrue(third.get(1).contains("1209:0002"));
+
+  }
+
+  @Test
+  void enumerate_ParallelMatchesSequential() throws Exception {
+
+    // Arrange
+    for (int i = 0; i < 40; i++) {
+      sysfs.addUsbDevice(i, 0x1209, 0x0100 + i % 4, "1-" + (i + 1) + ":1." + i % 3);
+    }
+    sysfs.addDevice(40, new File(sysfsRoot, "devices/virtual/0005:046D:B01A.0029"), "0005:0000046D:0000B01A", "Keyboard K380", "aa:bb:cc:dd:ee:ff");
+    SysfsHidrawEnumerator sequential = new SysfsHidrawEnumerator(deviceRoot, sysfsRoot, 1);
+    SysfsHidrawEnumerator parallel = new SysfsHidrawEnumerator(deviceRoot, sysfsRoot, 4);
+
+    // Act
+    List<String> expected = describe(sequential.enumerate(0, 0));
+    List<String> actual = describe(parallel.enumerate(0, 0));
+    List<String> filtered = describe(parallel.enumerate(0x1209, 0x0102));
+
+    // Assert (numeric order with hidraw10 after hidraw9)
+    assertEquals(41, actual.size());
+    assertEquals(expected, actual);
+    assertTrue(actual.get(10).startsWith(new File(deviceRoot, "hidraw10").getPath()));
+    assertEquals(10, filtered.size());
+    assertEquals(41, parallel.getParseCount());
+
+  }
+
+  @Test
+  void constructor_InvalidParallelism() {
+
+    // Act
+    IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> new SysfsHidrawEnumerator(deviceRoot, sysfsRoot, 0));
+
+    // Assert
+    assertEquals("'parallelism' must be greater than zero.", e.getMessage());
+
+  }
+
+  private static List<String> describe(HidDeviceInfoStructure structure) {
+    List<String> descriptions = new ArrayList<>();
+    for (; structure != null; structure = structure.next()) {
+      descriptions.add(String.format("%s %04x:%04x %04x %d %04x:%04x %s/%s/%s",
+        structure.path,
+        structure.vendor_id & 0xffff,
+        structure.product_id & 0xffff,
+        structure.release_number & 0xffff,
+        structure.interface_number,
+        structure.usage_page & 0xffff,
+        structure.usage & 0xffff,
+        structure.manufacturer_string,
+        structure.product_string,
+        structure.serial_number));
+    }
+    return descriptions;
+  }
+
+}
@@ -0,0 +1,328 @@
+package org.hid4java.io;
+
+import org.hid4java.HidDevice;
+import org.hid4java.HidServicesSpecification;
+import org.hid4java.jna.HidDeviceInfoStructure;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedChannelException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HidStreamTest {
+
+  @Test
+  void read_PartialReportsFixedId() throws Exception {
+
+    // Arrange (a report with another ID is skipped)
+    FakeHidDevice device = new FakeHidDevice();
+    device.input(new byte[]{2, 1, 2, 3, 4});
+    device.input(new byte[]{7, 99});
+    device.input(new byte[]{2, 5, 6});
+    HidStreamSpecification specification = new HidStreamSpecification();
+    specification.setReportIdMode(ReportIdMode.FIXED);
+    specification.setReportId((byte) 2);
+    InputStream testObject = device.newInputStream(specification);
+    byte[] buffer = new byte[3];
+
+    // Act
+    int first = testObject.read(buffer);
+    int available = testObject.available();
+    int second = testObject.read(buffer, 0, 3);
+    int third = testObject.read();
+
+    // Assert (a read never waits for more than it has buffered)
+    assertEquals(3, first);
+    assertEquals(1, available);
+    assertEquals(1, second);
+    assertEquals(4, buffer[0]);
+    assertEquals(5, third);
+
+  }
+
+  @Test
+  void read_LengthIdLines() throws Exception {
+
+    // Arrange (the report ID holds the payload length and the rest is padding)
+    FakeHidDevice device = new FakeHidDevice();
+    device.input(report(8, "hel"));
+    device.input(report(8, "lo\nwor"));
+    device.input(report(8, "ld\n"));
+    HidStreamSpecification specification = new HidStreamSpecification();
+    specification.setPacketLength(8);
+    specification.setReportIdMode(ReportIdMode.LENGTH);
+    BufferedReader testObject = new BufferedReader(new InputStreamReader(device.newInputStream(specification), StandardCharsets.US_ASCII));
+
+    // Act
+    String first = testObject.readLine();
+    String second = testObject.readLine();
+
+    // Assert
+    assertEquals("hello", first);
+    assertEquals("world", second);
+
+  }
+
+  @Test
+  void write_BuffersUntilFlush() throws Exception {
+
+    // Arrange
+    FakeHidDevice device = new FakeHidDevice();
+    HidStreamSpecification specification = new HidStreamSpecification();
+    specification.setPacketLength(4);
+    specification.setReportIdMode(ReportIdMode.FIXED);
+    specification.setReportId((byte) 3);
+    OutputStream testObject = device.newOutputStream(specification);
+
+    // Act
+    testObject.write(new byte[]{1, 2, 3});
+    int beforeFull = device.output.size();
+    testObject.write(new byte[]{4, 5});
+    int afterFull = device.output.size();
+    testObject.flush();
+    testObject.close();
+
+    // Assert (the last report is padded and closing does not send it again)
+    assertEquals(0, beforeFull);
+    assertEquals(1, afterFull);
+    assertEquals(2, device.output.size());
+    assertArrayEquals(new byte[]{3, 1, 2, 3, 4}, device.output.get(0));
+    assertArrayEquals(new byte[]{3, 5, 0, 0, 0}, device.output.get(1));
+    assertFalse(device.isClosed());
+    assertThrows(IOException.class, () -> testObject.write(1));
+
+  }
+
+  @Test
+  void write_LengthIdNoPadding() throws Exception {
+
+    // Arrange
+    FakeHidDevice device = new FakeHidDevice();
+    HidStreamSpecification specification = new HidStreamSpecification();
+    specification.setPacketLength(4);
+    specification.setReportIdMode(ReportIdMode.LENGTH);
+    specification.setApplyPadding(false);
+    OutputStream testObject = device.newOutputStream(specification);
+
+    // Act
+    testObject.write(new byte[]{1, 2, 3, 4, 5, 6});
+    testObject.flush();
+
+    // Assert
+    assertArrayEquals(new byte[]{4, 1, 2, 3, 4}, device.output.get(0));
+    assertArrayEquals(new byte[]{2, 5, 6}, device.output.get(1));
+
+  }
+
+  @Test
+  void write_Failed() {
+
+    // Arrange
+    FakeHidDevice device = new FakeHidDevice();
+    device.writeResult = -1;
+    OutputStream testObject = device.newOutputStream(new HidStreamSpecification());
+
+    // Act
+    IOException e = assertThrows(IOException.class, () -> testObject.write(new byte[64]));
+
+    // Assert
+    assertEquals("Write failed: Simulated failure", e.getMessage());
+
+  }
+
+  @Test
+  void write_Dropped() {
+
+    // Arrange (as returned when a rate limiter drops the report)
+    FakeHidDevice device = new FakeHidDevice();
+    device.writeResult = 0;
+    OutputStream testObject = device.newOutputStream(new HidStreamSpecification());
+
+    // Act
+    IOException e = assertThrows(IOException.class, () -> testObject.write(new byte[64]));
+
+    // Assert
+    assertEquals("Incomplete write: 0 of 65 bytes", e.getMessage());
+
+  }
+
+  @Test
+  void newByteChannel_Loopback() throws Exception {
+
+    // Arrange (output reports are echoed as input reports)
+    FakeHidDevice device = new FakeHidDevice();
+    device.loopback = true;
+    HidStreamSpecification specification = new HidStreamSpecification();
+    specification.setPacketLength(8);
+    specification.setReportIdMode(ReportIdMode.LENGTH);
+    HidByteChannel testObject = device.newByteChannel(specification);
+    byte[] message = "serial-over-hid".getBytes(StandardCharsets.US_ASCII);
+
+    // Act
+    int written = testObject.write(ByteBuffer.wrap(message));
+    ByteBuffer received = ByteBuffer.allocate(32);
+    int firstRead = testObject.read(received);
+    InputStream pipeline = Channels.newInputStream(testObject);
+    while (received.position() < message.length) {
+      int count = pipeline.read(received.array(), received.position(), received.remaining());
+      received.position(received.position() + count);
+    }
+    testObject.close();
+
+    // Assert (the tail is sent immediately rather than waiting for a full report)
+    assertEquals(message.length, written);
+    assertEquals(2, device.output.size());
+    assertEquals(8, firstRead);
+    assertArrayEquals(message, Arrays.copyOf(received.array(), received.position()));
+    assertFalse(testObject.isOpen());
+    assertThrows(ClosedChannelException.class, () -> testObject.read(ByteBuffer.allocate(1)));
+
+  }
+
+  @Test
+  void read_Timeout() {
+
+    // Arrange
+    FakeHidDevice device = new FakeHidDevice();
+    HidStreamSpecification specification = new HidStreamSpecification();
+    specification.setReadTimeout(50);
+    InputStream testObject = device.newInputStream(specification);
+
+    // Act
+    InterruptedIOException e = assertThrows(InterruptedIOException.class, testObject::read);
+
+    // Assert
+    assertEquals("Read timed out", e.getMessage());
+
+  }
+
+  @Test
+  void read_EndOfStreamWhenDeviceClosed() throws Exception {
+
+    // Arrange
+    FakeHidDevice device = new FakeHidDevice();
+    device.input(new byte[]{1, 2});
+    InputStream testObject = device.newInputStream(new HidStreamSpecification());
+
+    // Act (buffered bytes are still delivered)
+    int first = testObject.read(new byte[4]);
+    device.closed = true;
+    int second = testObject.read(new byte[4]);
+
+    // Assert
+    assertEquals(2, first);
+    assertEquals(-1, second);
+
+  }
+
+  @Test
+  void setPacketLength_LengthIdTooLong() {
+
+    // Arrange
+    HidStreamSpecification specification = new HidStreamSpecification();
+    specification.setPacketLength(256);
+    specification.setReportIdMode(ReportIdMode.LENGTH);
+
+    // Act
+    IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> new FakeHidDevice().newInputStream(specification));
+
+    // Assert
+    assertEquals("'packetLength' must be 255 or less when the report ID carries the length.", e.getMessage());
+
+  }
+
+  private static byte[] report(int packetLength, String payload) {
+    byte[] bytes = payload.getBytes(StandardCharsets.US_ASCII);
+    byte[] report = new byte[packetLength + 1];
+    report[0] = (byte) bytes.length;
+    System.arraycopy(bytes, 0, report, 1, bytes.length);
+    return report;
+  }
+
+  /**
+   * A device that delivers queued input reports and records output reports (with report ID)
+   */
+  private static class FakeHidDevice extends HidDevice {
+
+    private final BlockingQueue<byte[]> input = new LinkedBlockingQueue<>();
+    private final List<byte[]> output = new CopyOnWriteArrayList<>();
+
+    private volatile boolean closed = false;
+    private volatile boolean loopback = false;
+    /**
+     * The result of every write (null to record the report)
+     */
+    private volatile Integer writeResult = null;
+
+    private FakeHidDevice() {
+      super(infoStructure(), null, new HidServicesSpecification());
+    }
+
+    private static HidDeviceInfoStructure infoStructure() {
+      HidDeviceInfoStructure structure = new HidDeviceInfoStructure();
+      structure.path = "fake";
+      return structure;
+    }
+
+    private void input(byte[] report) {
+      input.add(report);
+    }
+
+    @Override
+    public boolean isClosed() {
+      return closed;
+    }
+
+    @Override
+    public int read(byte[] bytes, int timeoutMillis) {
+      try {
+        byte[] report = input.poll(timeoutMillis, TimeUnit.MILLISECONDS);
+        if (report == null) {
+          return 0;
+        }
+        int length = Math.min(report.length, bytes.length);
+        System.arraycopy(report, 0, bytes, 0, length);
+        return length;
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return 0;
+      }
+    }
+
+    @Override
+    public int write(byte[] message, int packetLength, byte reportId) {
+      if (writeResult != null) {
+        return writeResult;
+      }
+      byte[] report = new byte[packetLength + 1];
+      report[0] = reportId;
+      System.arraycopy(message, 0, report, 1, packetLength);
+      output.add(report);
+      if (loopback) {
+        input.add(report);
+      }
+      return report.length;
+    }
+
+    @Override
+    public String getLastErrorMessage() {
+      return "Simulated failure";
+    }
+  }
+
+}
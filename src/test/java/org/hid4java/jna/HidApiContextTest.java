@@ -0,0 +1,100 @@
+package org.hid4java.jna;
+
+import org.hid4java.simulated.SimulatedHidApiLibrary;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HidApiContextTest {
+
+  @Test
+  void exit_SharedLibrary() {
+
+    // Arrange
+    final AtomicInteger exits = new AtomicInteger();
+    SimulatedHidApiLibrary library = new SimulatedHidApiLibrary(1) {
+      @Override
+      public void hid_exit() {
+        exits.incrementAndGet();
+        super.hid_exit();
+      }
+    };
+    HidApiContext first = new HidApiContext(library);
+    HidApiContext second = new HidApiContext(library);
+
+    // Act
+    first.exit();
+    first.exit();
+    int afterFirst = exits.get();
+    second.exit();
+
+    // Assert (the library is only finalised by the last context)
+    assertEquals(0, afterFirst);
+    assertEquals(1, exits.get());
+
+  }
+
+  @Test
+  void read_RoutedToOpeningContext() {
+
+    // Arrange
+    SimulatedHidApiLibrary first = new SimulatedHidApiLibrary(1);
+    first.setInputReportLength(8);
+    SimulatedHidApiLibrary second = new SimulatedHidApiLibrary(1);
+    second.setInputReportLength(16);
+    HidApiContext firstContext = new HidApiContext(first);
+    HidApiContext secondContext = new HidApiContext(second);
+    HidApi.init(secondContext);
+
+    // Act
+    HidDeviceStructure device = firstContext.open(SimulatedHidApiLibrary.path(0));
+    int firstRead = HidApi.read(device, new byte[64], 1000);
+    HidDeviceStructure other = HidApi.open(SimulatedHidApiLibrary.path(0));
+    int secondRead = HidApi.read(other, new byte[64], 1000);
+
+    // Assert
+    assertSame(firstContext, device.context());
+    assertSame(secondContext, other.context());
+    assertEquals(8, firstRead);
+    assertEquals(16, secondRead);
+    HidApi.close(device);
+    HidApi.close(other);
+    firstContext.exit();
+    HidApi.exit();
+
+  }
+
+  @Test
+  void init_ReleasesPreviousDefault() {
+
+    // Arrange
+    final AtomicInteger exits = new AtomicInteger();
+    SimulatedHidApiLibrary first = new SimulatedHidApiLibrary(1) {
+      @Override
+      public void hid_exit() {
+        exits.incrementAndGet();
+        super.hid_exit();
+      }
+    };
+    SimulatedHidApiLibrary second = new SimulatedHidApiLibrary(2);
+    HidApi.init(first);
+
+    // Act
+    HidApi.init(first);
+    int afterRepeat = exits.get();
+    HidApi.init(second);
+    HidDeviceInfoStructure root = HidApi.enumerateDevices(0, 0);
+
+    // Assert (a repeated init keeps the context and a new one releases it)
+    assertEquals(0, afterRepeat);
+    assertEquals(1, exits.get());
+    assertNotNull(root.next());
+    HidApi.freeEnumeration(root);
+    HidApi.exit();
+    assertThrows(IllegalStateException.class, () -> HidApi.open(SimulatedHidApiLibrary.path(0)));
+
+  }
+
+}
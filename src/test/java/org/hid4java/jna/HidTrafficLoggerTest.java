@@ -0,0 +1,101 @@
+package org.hid4java.jna;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HidTrafficLoggerTest {
+
+  @Test
+  void log_Text() {
+
+    // Arrange
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    HidTrafficLogger testObject = new HidTrafficLogger(HidTrafficLogger.Format.TEXT, out, 16, 8);
+
+    // Act (the second report is truncated to the slot length)
+    testObject.log(new byte[]{0x00, 0x01, (byte) 0xff}, 3, true);
+    testObject.log(new byte[]{0x02, 0x10, 0x20, 0x30, 0x40, 0x50, 0x60, 0x70, (byte) 0x80, (byte) 0x90}, 10, false);
+    assertTrue(testObject.flush(1000));
+    testObject.close();
+
+    // Assert
+    assertEquals("> [03]: 00 01 ff\n< [0a]: 02 10 20 30 40 50 60 70\n", out.toString());
+
+  }
+
+  @Test
+  void log_Binary() throws Exception {
+
+    // Arrange
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    HidTrafficLogger testObject = new HidTrafficLogger(HidTrafficLogger.Format.BINARY, out, 16, 64);
+    long before = System.nanoTime();
+
+    // Act
+    testObject.log(new byte[]{0x05, 0x06, 0x07, 0x00}, 3, false);
+    assertTrue(testObject.flush(1000));
+    testObject.close();
+
+    // Assert
+    DataInputStream in = new DataInputStream(new ByteArrayInputStream(out.toByteArray()));
+    assertTrue(in.readLong() - before >= 0);
+    assertEquals(0, in.readByte());
+    assertEquals(3, in.readInt());
+    assertEquals(3, in.readShort());
+    byte[] captured = new byte[3];
+    in.readFully(captured);
+    assertArrayEquals(new byte[]{0x05, 0x06, 0x07}, captured);
+    assertEquals(0, in.available());
+
+  }
+
+  @Test
+  void log_DropsWhenWriterStalls() throws Exception {
+
+    // Arrange
+    final CountDownLatch release = new CountDownLatch(1);
+    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    OutputStream stalled = new OutputStream() {
+      @Override
+      public void write(int b) {
+        out.write(b);
+      }
+
+      @Override
+      public void flush() throws IOException {
+        try {
+          release.await(2, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+          throw new InterruptedIOException();
+        }
+      }
+    };
+    HidTrafficLogger testObject = new HidTrafficLogger(HidTrafficLogger.Format.TEXT, stalled, 4, 4);
+
+    // Act (the writer stalls flushing the first report while the rest arrive)
+    testObject.log(new byte[]{0x01}, 1, true);
+    Thread.sleep(50);
+    for (int i = 0; i < 10; i++) {
+      testObject.log(new byte[]{0x02}, 1, true);
+    }
+    release.countDown();
+    assertTrue(testObject.flush(1000));
+    testObject.close();
+
+    // Assert
+    assertEquals(6, testObject.getDroppedCount());
+    assertEquals(5, out.toString().split("\n").length);
+
+  }
+
+}
@@ -0,0 +1,110 @@
+package org.hid4java.jna;
+
+import com.sun.jna.Platform;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class NativeLibraryCacheTest {
+
+  @TempDir
+  File cacheRoot;
+
+  @BeforeEach
+  void setUp() {
+    assumeTrue(getClass().getClassLoader().getResource(Platform.RESOURCE_PREFIX + "/" + System.mapLibraryName("hidapi")) != null);
+  }
+
+  @Test
+  void extract_Reused() throws Exception {
+
+    // Arrange
+    File first = NativeLibraryCache.extract("hidapi", cacheRoot);
+    assertTrue(first.setLastModified(1000));
+
+    // Act
+    File second = NativeLibraryCache.extract("hidapi", cacheRoot);
+
+    // Assert (the cached copy is not written again)
+    assertEquals(first, second);
+    assertEquals(1000, second.lastModified());
+    assertTrue(second.getPath().contains(Platform.RESOURCE_PREFIX));
+
+  }
+
+  @Test
+  void extract_ReplacesCorruptedCopy() throws Exception {
+
+    // Arrange (same size but different content)
+    File first = NativeLibraryCache.extract("hidapi", cacheRoot);
+    byte[] bundled = Files.readAllBytes(first.toPath());
+    Files.write(first.toPath(), new byte[bundled.length]);
+
+    // Act
+    File second = NativeLibraryCache.extract("hidapi", cacheRoot);
+
+    // Assert
+    assertEquals(first, second);
+    assertArrayEquals(bundled, Files.readAllBytes(second.toPath()));
+
+  }
+
+  @Test
+  void extract_Concurrent() throws Exception {
+
+    // Arrange
+    ExecutorService executorService = Executors.newFixedThreadPool(8);
+    final CountDownLatch start = new CountDownLatch(1);
+    List<Future<File>> results = new ArrayList<>();
+
+    // Act
+    for (int i = 0; i < 8; i++) {
+      results.add(executorService.submit(new Callable<File>() {
+        @Override
+        public File call() throws Exception {
+          start.await();
+          return NativeLibraryCache.extract("hidapi", cacheRoot);
+        }
+      }));
+    }
+    start.countDown();
+
+    // Assert (everyone sees the complete file and no partial writes are left behind)
+    File expected = results.get(0).get();
+    for (Future<File> result : results) {
+      assertEquals(expected, result.get());
+    }
+    byte[] bundled = Files.readAllBytes(new File(getClass().getClassLoader().getResource(Platform.RESOURCE_PREFIX + "/" + expected.getName()).toURI()).toPath());
+    assertArrayEquals(bundled, Files.readAllBytes(expected.toPath()));
+    String[] files = expected.getParentFile().list();
+    assertNotNull(files);
+    assertEquals(1, files.length);
+    executorService.shutdown();
+
+  }
+
+  @Test
+  void extract_NotBundled() throws Exception {
+
+    // Act
+    File library = NativeLibraryCache.extract("hid4java-missing", cacheRoot);
+
+    // Assert
+    assertNull(library);
+
+  }
+
+}
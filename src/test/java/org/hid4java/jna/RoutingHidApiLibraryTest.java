@@ -0,0 +1,180 @@
+package org.hid4java.jna;
+
+import com.sun.jna.Pointer;
+import org.hid4java.simulated.SimulatedHidApiLibrary;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RoutingHidApiLibraryTest {
+
+  private SimulatedHidApiLibrary first;
+  private SimulatedHidApiLibrary second;
+  private RoutingHidApiLibrary testObject;
+
+  @BeforeEach
+  void setUp() {
+    // Report lengths identify the backend that served a read
+    first = new SimulatedHidApiLibrary(2);
+    first.setInputReportLength(8);
+    second = new SimulatedHidApiLibrary(3);
+    second.setInputReportLength(16);
+    testObject = new RoutingHidApiLibrary();
+    testObject.addBackend("first", first);
+    testObject.addBackend("second", second);
+    testObject.hid_init();
+  }
+
+  @Test
+  void hid_enumerate_MergedAndDeduplicated() {
+
+    // Act
+    List<String> paths = paths(testObject.hid_enumerate((short) 0, (short) 0));
+
+    // Assert (shared devices stay on the first backend)
+    assertEquals(3, paths.size());
+    assertEquals("first", testObject.getBackendName(SimulatedHidApiLibrary.path(0)));
+    assertEquals("first", testObject.getBackendName(SimulatedHidApiLibrary.path(1)));
+    assertEquals("second", testObject.getBackendName(SimulatedHidApiLibrary.path(2)));
+    assertEquals(8, read(SimulatedHidApiLibrary.path(0)));
+    assertEquals(16, read(SimulatedHidApiLibrary.path(2)));
+
+  }
+
+  @Test
+  void hid_enumerate_Rule() {
+
+    // Arrange
+    testObject.addRule(SimulatedHidApiLibrary.VENDOR_ID, SimulatedHidApiLibrary.PRODUCT_ID, "second");
+
+    // Act
+    List<String> paths = paths(testObject.hid_enumerate((short) 0, (short) 0));
+
+    // Assert
+    assertEquals(3, paths.size());
+    for (String path : paths) {
+      assertEquals("second", testObject.getBackendName(path));
+    }
+    assertEquals(16, read(SimulatedHidApiLibrary.path(0)));
+
+  }
+
+  @Test
+  void hid_close_RoutedHandle() {
+
+    // Arrange
+    testObject.hid_enumerate((short) 0, (short) 0);
+    Pointer device = testObject.hid_open_path(SimulatedHidApiLibrary.path(0));
+
+    // Act
+    testObject.hid_close(device);
+
+    // Assert
+    assertEquals(-1, testObject.hid_read_timeout(device, new WideStringBuffer(64), 64, 0));
+    assertNull(testObject.hid_open_path("missing"));
+    assertNotNull(testObject.hid_error(null));
+
+  }
+
+  @Test
+  void hid_enumerate_ForgetsDetachedPaths() {
+
+    // Arrange
+    final AtomicBoolean detached = new AtomicBoolean();
+    SimulatedHidApiLibrary third = new SimulatedHidApiLibrary(4) {
+      @Override
+      public HidDeviceInfoStructure hid_enumerate(short vendor_id, short product_id) {
+        return detached.get() ? null : super.hid_enumerate(vendor_id, product_id);
+      }
+    };
+    testObject = new RoutingHidApiLibrary();
+    testObject.addBackend("first", first);
+    testObject.addBackend("third", third);
+    testObject.hid_init();
+    testObject.hid_enumerate((short) 0, (short) 0);
+    String before = testObject.getBackendName(SimulatedHidApiLibrary.path(3));
+
+    // Act
+    detached.set(true);
+    testObject.hid_enumerate((short) 0, (short) 0);
+
+    // Assert
+    assertEquals("third", before);
+    assertNull(testObject.getBackendName(SimulatedHidApiLibrary.path(3)));
+    assertEquals("first", testObject.getBackendName(SimulatedHidApiLibrary.path(0)));
+
+  }
+
+  @Test
+  void hid_exit_SharedBackend() {
+
+    // Arrange (the first backend is also in use by another context)
+    final AtomicInteger exits = new AtomicInteger();
+    final AtomicInteger closes = new AtomicInteger();
+    SimulatedHidApiLibrary shared = new SimulatedHidApiLibrary(1) {
+      @Override
+      public void hid_close(Pointer device) {
+        closes.incrementAndGet();
+        super.hid_close(device);
+      }
+
+      @Override
+      public void hid_exit() {
+        exits.incrementAndGet();
+        super.hid_exit();
+      }
+    };
+    HidApiContext other = new HidApiContext(shared);
+    testObject = new RoutingHidApiLibrary();
+    testObject.addBackend("shared", shared);
+    testObject.hid_init();
+    Pointer device = testObject.hid_open_path(SimulatedHidApiLibrary.path(0));
+    assertNotNull(device);
+
+    // Act
+    testObject.hid_exit();
+    int exitsWhileShared = exits.get();
+    other.exit();
+
+    // Assert (open devices are closed and the backend is finalised by the last user)
+    assertEquals(1, closes.get());
+    assertEquals(0, exitsWhileShared);
+    assertEquals(1, exits.get());
+    assertEquals(-1, testObject.hid_read_timeout(device, new WideStringBuffer(64), 64, 0));
+
+  }
+
+  @Test
+  void addRule_UnknownBackend() {
+
+    // Act
+    IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> testObject.addRule(0, 0, "third"));
+
+    // Assert
+    assertEquals("'name' must be the name of a backend.", e.getMessage());
+
+  }
+
+  private int read(String path) {
+    Pointer device = testObject.hid_open_path(path);
+    assertNotNull(device);
+    int result = testObject.hid_read_timeout(device, new WideStringBuffer(64), 64, 1000);
+    testObject.hid_close(device);
+    return result;
+  }
+
+  private static List<String> paths(HidDeviceInfoStructure root) {
+    List<String> paths = new ArrayList<>();
+    for (HidDeviceInfoStructure info = root; info != null; info = info.next()) {
+      paths.add(info.path);
+    }
+    return paths;
+  }
+
+}
@@ -0,0 +1,92 @@
+package org.hid4java.metrics;
+
+import org.hid4java.HidDevice;
+import org.hid4java.HidServices;
+import org.hid4java.HidServicesSpecification;
+import org.hid4java.simulated.SimulatedHidApiLibrary;
+import org.junit.jupiter.api.Test;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HidMetricsTest {
+
+  @Test
+  void latencyHistogram_Percentiles() {
+
+    // Arrange
+    LatencyHistogram testObject = new LatencyHistogram(1_000_000);
+
+    // Act
+    for (int i = 1; i <= 1000; i++) {
+      testObject.record(i);
+    }
+    testObject.record(5_000_000);
+
+    // Assert (within the bucket precision and clamped values still reach the maximum)
+    assertEquals(1001, testObject.getCount());
+    assertEquals(500, testObject.getPercentile(50), 500 * 0.07);
+    assertEquals(990, testObject.getPercentile(99), 990 * 0.07);
+    assertEquals(5_000_000, testObject.getMax());
+    assertEquals(5_000_000, testObject.getPercentile(100));
+
+  }
+
+  @Test
+  void deviceMetrics_RegisteredThroughJmx() throws Exception {
+
+    // Arrange
+    SimulatedHidApiLibrary library = new SimulatedHidApiLibrary(2);
+    library.setInputReportRate(1000);
+    library.setInputReportLength(8);
+    library.setErrorRate(0);
+    HidServicesSpecification specification = new HidServicesSpecification();
+    specification.setHidApiLibrary(library);
+    specification.setAutoStart(false);
+    specification.setAutoShutdown(false);
+    specification.setJmxEnabled(true);
+    HidServices hidServices = new HidServices(specification);
+    hidServices.scan();
+    HidDevice device = hidServices.getAttachedHidDevices().get(0);
+    MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+
+    // Act
+    assertTrue(device.open());
+    for (int i = 0; i < 5; i++) {
+      assertEquals(8, device.read(new byte[64], 1000));
+    }
+    assertEquals(3, device.write(new byte[]{1, 2}, 2, (byte) 0));
+    device.close();
+
+    // Assert
+    HidDeviceMetrics metrics = device.getMetrics();
+    assertEquals(5, metrics.getInputReports());
+    assertEquals(40, metrics.getInputBytes());
+    assertEquals(1, metrics.getOutputReports());
+    assertEquals(3, metrics.getOutputBytes());
+    assertEquals(1, metrics.getOpenCount());
+    assertEquals(1, metrics.getCloseCount());
+    assertEquals(5, metrics.getReadCount());
+    assertEquals(2, hidServices.getMetrics().getAttachedDeviceCount());
+    assertEquals(1, hidServices.getMetrics().getScanCount());
+
+    ObjectName devices = new ObjectName(HidMetricsRegistry.DOMAIN + ":type=HidDevice,*");
+    ObjectName deviceName = null;
+    for (ObjectName name : server.queryNames(devices, null)) {
+      if (("\"" + device.getPath() + "\"").equals(name.getKeyProperty("path"))
+        && server.getAttribute(name, "InputReports").equals(5L)) {
+        deviceName = name;
+      }
+    }
+    assertNotNull(deviceName);
+    assertEquals(5L, server.getAttribute(deviceName, "InputReports"));
+
+    hidServices.shutdown();
+    assertFalse(server.isRegistered(deviceName));
+
+  }
+
+}
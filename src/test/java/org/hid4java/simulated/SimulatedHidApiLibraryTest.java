@@ -0,0 +1,135 @@
+package org.hid4java.simulated;
+
+import com.sun.jna.Pointer;
+import org.hid4java.HidDevice;
+import org.hid4java.HidException;
+import org.hid4java.HidServices;
+import org.hid4java.HidServicesSpecification;
+import org.hid4java.jna.HidDeviceInfoStructure;
+import org.hid4java.jna.WideStringBuffer;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SimulatedHidApiLibraryTest {
+
+  @Test
+  void read_GeneratesReportsAtRate() {
+
+    // Arrange
+    SimulatedHidApiLibrary testObject = new SimulatedHidApiLibrary(2);
+    testObject.setInputReportRate(1000);
+    testObject.setInputReportLength(8);
+    testObject.hid_init();
+    Pointer handle = testObject.hid_open_path(SimulatedHidApiLibrary.path(1));
+    WideStringBuffer buffer = new WideStringBuffer(64);
+    long start = System.nanoTime();
+
+    // Act
+    for (int i = 1; i <= 20; i++) {
+      assertEquals(8, testObject.hid_read_timeout(handle, buffer, 64, 1000));
+      assertEquals(i, buffer.buffer[3]);
+      assertEquals(1, buffer.buffer[4]);
+    }
+    long elapsed = System.nanoTime() - start;
+
+    // Assert (20 reports at 1ms intervals)
+    assertTrue(elapsed >= 19_000_000L, "Elapsed " + elapsed);
+    assertEquals(0, testObject.getDroppedReportCount());
+
+  }
+
+  @Test
+  void read_ShortBuffer() {
+
+    // Arrange
+    SimulatedHidApiLibrary library = new SimulatedHidApiLibrary(1);
+    library.setInputReportRate(1000);
+    HidServicesSpecification specification = new HidServicesSpecification();
+    specification.setHidApiLibrary(library);
+    specification.setAutoStart(false);
+    specification.setAutoShutdown(false);
+    HidServices hidServices = new HidServices(specification);
+    HidDevice device = hidServices.getAttachedHidDevices().get(0);
+    assertTrue(device.open());
+    byte[] sequence = new byte[4];
+    byte[] partial = new byte[2];
+
+    // Act (shorter than the sequence number and device index header)
+    int first = device.read(sequence, 1000);
+    int second = device.read(partial, 1000);
+
+    // Assert
+    assertEquals(4, first);
+    assertArrayEquals(new byte[]{0, 0, 0, 1}, sequence);
+    assertEquals(2, second);
+    assertArrayEquals(new byte[]{0, 0}, partial);
+    device.close();
+    hidServices.shutdown();
+
+  }
+
+  @Test
+  void enumerate_HotplugChurn() throws Exception {
+
+    // Arrange (device 0 is detached for the first 50ms of every 200ms cycle, device 1 from 100ms to 150ms)
+    SimulatedHidApiLibrary testObject = new SimulatedHidApiLibrary(2);
+    testObject.setInputReportRate(0);
+    testObject.setHotplugChurn(100, 50);
+    testObject.hid_init();
+
+    // Act
+    HidDeviceInfoStructure early = testObject.hid_enumerate((short) 0, (short) 0);
+    Thread.sleep(60);
+    HidDeviceInfoStructure later = testObject.hid_enumerate((short) 0, (short) 0);
+    Pointer handle = testObject.hid_open_path(SimulatedHidApiLibrary.path(1));
+    int result = testObject.hid_read_timeout(handle, new WideStringBuffer(64), 64, 1000);
+
+    // Assert
+    assertEquals(SimulatedHidApiLibrary.path(1), early.path);
+    assertFalse(early.hasNext());
+    assertEquals(SimulatedHidApiLibrary.path(0), later.path);
+    assertEquals(SimulatedHidApiLibrary.path(1), later.next().path);
+    assertEquals(-1, result);
+    assertNull(testObject.hid_open_path(SimulatedHidApiLibrary.path(1)));
+
+  }
+
+  @Test
+  void backendName_ThroughHidServices() {
+
+    // Arrange
+    System.setProperty("hid4java.simulated.devices", "3");
+    System.setProperty("hid4java.simulated.errorRate", "1");
+    HidServicesSpecification specification = new HidServicesSpecification();
+    specification.setAutoStart(false);
+    specification.setAutoShutdown(false);
+    specification.setBackendName(SimulatedHidApiLibraryProvider.NAME);
+
+    try {
+      // Act
+      HidServices hidServices = new HidServices(specification);
+      List<HidDevice> devices = hidServices.getAttachedHidDevices();
+      HidDevice device = devices.get(0);
+      assertTrue(device.open());
+      int result = device.write(new byte[]{0x01}, 1, (byte) 0x00);
+
+      // Assert
+      assertEquals(3, devices.size());
+      assertEquals(SimulatedHidApiLibrary.VENDOR_ID, device.getVendorId());
+      assertEquals(-1, result);
+      assertEquals("Simulated error", device.getLastErrorMessage());
+      hidServices.shutdown();
+    } finally {
+      System.clearProperty("hid4java.simulated.devices");
+      System.clearProperty("hid4java.simulated.errorRate");
+    }
+
+    specification.setBackendName("missing");
+    assertThrows(HidException.class, () -> new HidServices(specification));
+
+  }
+
+}